@@ -2,6 +2,7 @@ package ontologizer.calculation;
 
 import static ontologizer.ontology.TermID.tid;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static ontologizer.calculation.CalculationTestUtils.asList;
 
 import java.io.File;
@@ -96,6 +97,102 @@ public class Bayes2GOCalculationTest
 		assertEquals(0, marg(result, "GO:0000002"), 1e-5);
 	}
 
+	private static EnrichedGOTermsResult calculateMultipleChains(double maxTemperature)
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+
+		Bayes2GOCalculation calc = new Bayes2GOCalculation();
+		calc.setSeed(2);
+		calc.setMcmcSteps(130000);
+		calc.setNumberOfChains(4);
+		calc.setNumberOfThreads(2);
+		calc.setMaxTemperature(maxTemperature);
+		calc.setAlpha(B2GParam.Type.MCMC);
+		calc.setBeta(B2GParam.Type.MCMC);
+		calc.setExpectedNumber(2);
+
+		return calc.calculateStudySet(ontology, assoc, scs.pop, scs.study, new None());
+	}
+
+	@Test
+	public void testBayes2GOIndependentChains()
+	{
+		EnrichedGOTermsResult result = calculateMultipleChains(1);
+		assertEquals(1, marg(result, "GO:0000004"), 1e-2);
+		assertEquals(1, marg(result, "GO:0000010"), 1e-2);
+		assertEquals(0, marg(result, "GO:0000011"), 1e-2);
+
+		double rHat = ((Bayes2GOEnrichedGOTermsResult)result).getScoreRHat();
+		assertTrue(rHat < 1.1);
+	}
+
+	@Test
+	public void testBayes2GOParallelTempering()
+	{
+		EnrichedGOTermsResult result = calculateMultipleChains(4);
+		assertEquals(1, marg(result, "GO:0000004"), 1e-2);
+		assertEquals(1, marg(result, "GO:0000010"), 1e-2);
+		assertEquals(0, marg(result, "GO:0000011"), 1e-2);
+	}
+
+	@Test
+	public void testBayes2GOConvergence()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(tid("GO:0000010"),0.10);
+		wantedActiveTerms.put(tid("GO:0000004"),0.10);
+
+		AssociationContainer assoc = internalOntology.assoc;
+		Ontology ontology = internalOntology.graph;
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.25, ontology, assoc);
+
+		final int [] convergedStep = new int[]{-1};
+		final int [] burnin = new int[]{-1};
+
+		Bayes2GOCalculation calc = new Bayes2GOCalculation();
+		calc.setSeed(2);
+		calc.setMcmcSteps(520000);
+		calc.setConvergenceTolerance(1e-3);
+		calc.setAlpha(B2GParam.Type.MCMC);
+		calc.setBeta(B2GParam.Type.MCMC);
+		calc.setExpectedNumber(2);
+		calc.setBayes2GOCalculationProgress(new Bayes2GOCalculation.Bayes2GOCalculationProgress()
+		{
+			@Override
+			public void update(int iterationNumber, int step, double acceptProb, int numAccept, double score)
+			{
+			}
+
+			@Override
+			public void checkpoint(int iterationNumber, int step, int b, double maxMarginalChange, double acceptRate, double rHat, boolean converged)
+			{
+				burnin[0] = b;
+				if (converged)
+					convergedStep[0] = step;
+			}
+		});
+
+		EnrichedGOTermsResult result = calc.calculateStudySet(ontology, assoc, scs.pop, scs.study, new None());
+		assertTrue(burnin[0] > 0);
+		assertTrue(convergedStep[0] > burnin[0]);
+		assertTrue(convergedStep[0] < 520000);
+		assertEquals(1, marg(result, "GO:0000004"), 1e-2);
+		assertEquals(1, marg(result, "GO:0000010"), 1e-2);
+		assertEquals(0, marg(result, "GO:0000011"), 1e-2);
+	}
+
 	@Test
 	public void testBayes2GOParameterIntegratedOut()
 	{
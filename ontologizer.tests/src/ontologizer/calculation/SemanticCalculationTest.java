@@ -0,0 +1,72 @@
+package ontologizer.calculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.TermID;
+import ontologizer.set.StudySet;
+
+public class SemanticCalculationTest
+{
+	private static class Progress implements SemanticCalculation.ISemanticCalculationProgress
+	{
+		int max;
+		int current;
+
+		@Override
+		public void init(int max)
+		{
+			this.max = max;
+		}
+
+		@Override
+		public void update(int update)
+		{
+			current = update;
+		}
+	}
+
+	@Test
+	public void whetherTiledCalculationMatchesFullOne()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>();
+		wantedActiveTerms.put(new TermID("GO:0000004"),0.0);
+
+		/* The population spans several tiles */
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.1, internalOntology.graph, internalOntology.assoc);
+		StudySet study = scs.pop;
+		int n = study.getGeneCount();
+
+		SemanticCalculation full = new SemanticCalculation(internalOntology.graph, internalOntology.assoc);
+		full.setNumberOfThreads(1);
+		SemanticResult fullResult = full.calculate(study, null);
+
+		SemanticCalculation tiled = new SemanticCalculation(internalOntology.graph, internalOntology.assoc);
+		tiled.setNumberOfThreads(3);
+		Progress progress = new Progress();
+		SemanticResult tiledResult = tiled.calculateTiled(study, progress);
+
+		assertNull(tiledResult.mat);
+		assertNotNull(tiledResult.packedMat);
+		assertEquals(n * (n + 1) / 2, progress.max);
+		assertEquals(progress.max, progress.current);
+
+		for (int i = 0; i < n; i++)
+		{
+			for (int j = 0; j < n; j++)
+			{
+				double expected = fullResult.mat[i][j];
+				assertEquals(expected, tiledResult.get(i, j), Math.max(1, Math.abs(expected)) * 1e-6);
+			}
+		}
+	}
+}
@@ -2,9 +2,19 @@ package ontologizer.calculation;
 
 import static ontologizer.calculation.CalculationTestUtils.assertResultEquals;
 import static ontologizer.calculation.CalculationTestUtils.performTestCalculation;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Random;
 
 import org.junit.Test;
 
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import ontologizer.statistics.WestfallYoungStepDown;
+
 public class SimpleCalculationAlgorithmsTest
 {
 	@Test
@@ -102,6 +112,30 @@ public class SimpleCalculationAlgorithmsTest
 		assertResultEquals(expected, TopGOTermProperties.class, r);
 	}
 
+	@Test
+	public void whetherTopElimSupportsResampling()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(new TermID("GO:0000004"),0.0);
+
+		SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(1), wantedActiveTerms, 0.00, internalOntology.graph, internalOntology.assoc);
+
+		WestfallYoungStepDown wy = new WestfallYoungStepDown();
+		wy.setNumberOfResamplingSteps(100);
+		wy.setSeed(3);
+		EnrichedGOTermsResult sequential = new TopCalculation().calculateStudySet(internalOntology.graph, internalOntology.assoc, scs.pop, scs.study, wy);
+
+		wy.setNumberOfThreads(3);
+		EnrichedGOTermsResult parallel = new TopCalculation().calculateStudySet(internalOntology.graph, internalOntology.assoc, scs.pop, scs.study, wy);
+
+		assertEquals(11, sequential.getSize());
+		for (Term t : internalOntology.graph)
+			assertEquals(sequential.getGOTermProperties(t).p_adjusted, parallel.getGOTermProperties(t).p_adjusted, 0);
+		assertTrue(sequential.getGOTermProperties(new TermID("GO:0000004")).p_adjusted < 0.01);
+	}
+
 	@Test
 	public void whetherTopWeightWorks()
 	{
@@ -0,0 +1,77 @@
+package ontologizer.calculation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ontologizer.internal.InternalOntology;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.set.StudySetList;
+import ontologizer.statistics.WestfallYoungSingleStep;
+
+public class StudySetListCalculationTest
+{
+	private static IdentityHashMap<StudySet,EnrichedGOTermsResult> calculate(InternalOntology internalOntology, PopulationSet pop, StudySetList studySetList, int numberOfThreads)
+	{
+		WestfallYoungSingleStep wy = new WestfallYoungSingleStep();
+		wy.setNumberOfResamplingSteps(100);
+		wy.setSeed(3);
+
+		final IdentityHashMap<StudySet,EnrichedGOTermsResult> results = new IdentityHashMap<StudySet,EnrichedGOTermsResult>();
+		new StudySetListCalculation(internalOntology.graph, internalOntology.assoc, pop).calculate(studySetList, new TermForTermCalculation(), wy, numberOfThreads, new StudySetListCalculation.IResultHandler()
+		{
+			@Override
+			public void result(StudySet studySet, EnrichedGOTermsResult result)
+			{
+				results.put(studySet, result);
+			}
+		});
+		return results;
+	}
+
+	@Test
+	public void whetherParallelCalculationMatchesSequentialOne()
+	{
+		InternalOntology internalOntology = new InternalOntology();
+
+		HashMap<TermID,Double> wantedActiveTerms = new HashMap<TermID,Double>(); /* Terms that are active */
+		wantedActiveTerms.put(new TermID("GO:0000004"),0.0);
+
+		/* Study sets of equal size share the samples of the test correction */
+		PopulationSet pop = null;
+		StudySetList studySetList = new StudySetList("studies");
+		for (int i = 0; i < 8; i++)
+		{
+			SingleCalculationSetting scs = SingleCalculationSetting.create(new Random(i % 4), wantedActiveTerms, 0.1, internalOntology.graph, internalOntology.assoc);
+			if (pop == null)
+				pop = scs.pop;
+			studySetList.addStudySet(scs.study);
+		}
+
+		IdentityHashMap<StudySet,EnrichedGOTermsResult> sequential = calculate(internalOntology, pop, studySetList, 1);
+		IdentityHashMap<StudySet,EnrichedGOTermsResult> parallel = calculate(internalOntology, pop, studySetList, 3);
+
+		assertEquals(studySetList.size(), sequential.size());
+		assertEquals(studySetList.size(), parallel.size());
+		for (StudySet studySet : studySetList)
+		{
+			EnrichedGOTermsResult s = sequential.get(studySet);
+			EnrichedGOTermsResult p = parallel.get(studySet);
+			assertNotNull(p);
+			assertEquals(s.getSize(), p.getSize());
+			for (Term t : internalOntology.graph)
+			{
+				assertEquals(s.getGOTermProperties(t).p, p.getGOTermProperties(t).p, 0);
+				assertEquals(s.getGOTermProperties(t).p_adjusted, p.getGOTermProperties(t).p_adjusted, 0);
+			}
+		}
+	}
+}
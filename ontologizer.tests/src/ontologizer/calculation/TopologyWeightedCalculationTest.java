@@ -0,0 +1,283 @@
+package ontologizer.calculation;
+
+import static ontologizer.types.ByteString.EMPTY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
+import ontologizer.enumeration.TermAnnotations;
+import ontologizer.enumeration.TermEnumerator;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Ontology.TermLevels;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.RelationMeaning;
+import ontologizer.ontology.RelationType;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.None;
+import ontologizer.types.ByteString;
+
+public class TopologyWeightedCalculationTest
+{
+	/**
+	 * The weight algorithm as it was implemented before weights were
+	 * stored per term index, i.e., with the weights of the items being
+	 * stored in the hash maps of the term properties.
+	 */
+	private static class ReferenceCalculation
+	{
+		private Hypergeometric hyperg = new Hypergeometric();
+
+		private void computeTermSig(PopulationSet populationSet, StudySet studySet, Ontology graph, TermID u, Set<TermID> children, EnrichedGOTermsResult studySetResult, TermEnumerator studyTermEnumerator, TermEnumerator populationTermEnumerator)
+		{
+			if (graph.isArtificialRootTerm(u)) return;
+
+			TopologyWeightGOTermProperties prop = wFisher(graph, u, studySetResult, studyTermEnumerator, populationTermEnumerator);
+
+			if (children == null || children.size() == 0) return;
+
+			HashMap<TermID,Double> weights = new HashMap<TermID,Double>();
+			HashSet<TermID> sigChildren = new HashSet<TermID>();
+			for (TermID child : children)
+			{
+				TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
+				double w = prop.p / childProp.p;
+				weights.put(child,w);
+				if (w > 1) sigChildren.add(child);
+			}
+
+			if (sigChildren.size() == 0)
+			{
+				/* Case 1: U is the most significant term in the family */
+				for (TermID child : children)
+				{
+					TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
+					double w = weights.get(child);
+
+					TermAnnotations childAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
+					for (ByteString gene : childAnnotatedGenes.totalAnnotated)
+						childProp.setWeight(gene, childProp.getWeight(gene) * w);
+
+					wFisher(graph, child, studySetResult, studyTermEnumerator, populationTermEnumerator);
+				}
+				return;
+			}
+
+			/* Case 2: At least one child is more significant than u */
+			for (TermID child : sigChildren)
+			{
+				double w = weights.get(child);
+
+				Set<TermID> upper = graph.getTermsOfInducedGraph(graph.getRootTerm().getID(), u);
+				upper.remove(u);
+				upper.remove(graph.getRootTerm().getID());
+
+				for (TermID up : upper)
+				{
+					ensureGOTermPropertiesExistence(up, studySetResult, studyTermEnumerator, populationTermEnumerator);
+
+					TopologyWeightGOTermProperties upProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(up);
+					for (ByteString gene : populationTermEnumerator.getAnnotatedGenes(up).totalAnnotated)
+						upProp.setWeight(gene, upProp.getWeight(gene) / w);
+				}
+			}
+		}
+
+		private TopologyWeightGOTermProperties wFisher(Ontology graph, TermID u, EnrichedGOTermsResult studySetResult, TermEnumerator studyTermEnumerator, TermEnumerator populationTermEnumerator)
+		{
+			TopologyWeightGOTermProperties prop = ensureGOTermPropertiesExistence(u, studySetResult, studyTermEnumerator, populationTermEnumerator);
+
+			double goidAnnotatedPopGeneCount = 0;
+			double goidAnnotatedStudyGeneCount = 0;
+			double popGeneCount = 0;
+			double studyGeneCount = 0;
+
+			for (ByteString gene : populationTermEnumerator.getAnnotatedGenes(u).totalAnnotated)
+				goidAnnotatedPopGeneCount += prop.getWeight(gene);
+
+			for (ByteString gene : studyTermEnumerator.getAnnotatedGenes(u).totalAnnotated)
+				goidAnnotatedStudyGeneCount += prop.getWeight(gene);
+
+			for (ByteString gene : populationTermEnumerator.getGenesAsList())
+				popGeneCount += prop.getWeight(gene);
+
+			for (ByteString gene : studyTermEnumerator.getGenesAsList())
+				studyGeneCount += prop.getWeight(gene);
+
+			if (goidAnnotatedStudyGeneCount != 0)
+			{
+				prop.p = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
+						(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
+			} else
+			{
+				prop.p = 1;
+				prop.p_min = 1.0;
+			}
+			prop.p_adjusted = prop.p;
+			return prop;
+		}
+
+		private TopologyWeightGOTermProperties ensureGOTermPropertiesExistence(TermID u, EnrichedGOTermsResult studySetResult, TermEnumerator studyTermEnumerator, TermEnumerator populationTermEnumerator)
+		{
+			TopologyWeightGOTermProperties prop = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(u);
+			if (prop == null)
+			{
+				prop = new TopologyWeightGOTermProperties();
+				prop.term = u;
+				prop.annotatedStudyGenes = studyTermEnumerator.getAnnotatedGenes(u).totalAnnotatedCount();
+				prop.annotatedPopulationGenes = populationTermEnumerator.getAnnotatedGenes(u).totalAnnotatedCount();
+				studySetResult.addGOTermProperties(prop);
+			}
+			return prop;
+		}
+
+		public EnrichedGOTermsResult calculateStudySet(Ontology graph, AssociationContainer goAssociations, PopulationSet populationSet, StudySet studySet)
+		{
+			EnrichedGOTermsResult studySetResult = new EnrichedGOTermsResult(graph, goAssociations, studySet, populationSet.getGeneCount());
+
+			TermEnumerator studyTermEnumerator = studySet.enumerateTerms(graph,goAssociations);
+			TermEnumerator populationTermEnumerator = populationSet.getContext(graph,goAssociations).getEnumerator();
+
+			Set<TermID> allAnnotatedTerms = studyTermEnumerator.getAllAnnotatedTermsAsSet();
+			TermLevels levels = graph.getTermLevels(allAnnotatedTerms);
+
+			for (int i=levels.getMaxLevel();i>=0;i--)
+			{
+				Set<TermID> terms = levels.getLevelTermSet(i);
+				if (terms == null)
+					continue;
+
+				for (TermID t : terms)
+				{
+					Set<TermID> annotatedDescs = new HashSet<TermID>();
+					for (TermID d : graph.getTermChildren(t))
+					{
+						if (allAnnotatedTerms.contains(d))
+							annotatedDescs.add(d);
+					}
+
+					computeTermSig(populationSet, studySet, graph, t, annotatedDescs, studySetResult, studyTermEnumerator, populationTermEnumerator);
+				}
+			}
+			return studySetResult;
+		}
+	}
+
+	/**
+	 * Creates an ontology whose levels below the root consist of the given
+	 * number of terms. Each term has one or two parents on the level above.
+	 */
+	private static List<Term> createTerms(Random rnd, int...levelSizes)
+	{
+		RelationType isA = new RelationType(RelationMeaning.IS_A);
+
+		List<Term> terms = new ArrayList<Term>();
+		List<Term> above = new ArrayList<Term>();
+		Term root = new Term(new TermID("GO:0000001"), new ByteString("root"));
+		terms.add(root);
+		above.add(root);
+
+		for (int size : levelSizes)
+		{
+			List<Term> level = new ArrayList<Term>();
+			for (int i = 0; i < size; i++)
+			{
+				TermID tid = new TermID(String.format("GO:%07d", terms.size() + 1));
+				Term p1 = above.get(rnd.nextInt(above.size()));
+				Term p2 = above.get(rnd.nextInt(above.size()));
+				Term t;
+				if (p1 == p2)
+					t = new Term(tid, new ByteString(tid.toString()), new ParentTermID(p1.getID(), isA));
+				else
+					t = new Term(tid, new ByteString(tid.toString()), new ParentTermID(p1.getID(), isA), new ParentTermID(p2.getID(), isA));
+				terms.add(t);
+				level.add(t);
+			}
+			above = level;
+		}
+		return terms;
+	}
+
+	@Test
+	public void testLargeLevelsAgainstReference()
+	{
+		Random rnd = new Random(11);
+
+		/* All levels below the first one are processed concurrently */
+		List<Term> terms = createTerms(rnd, 8, 80, 200);
+		Ontology graph = Ontology.create(new TermContainer(new HashSet<Term>(terms), EMPTY, EMPTY));
+
+		List<Association> associations = new ArrayList<Association>();
+		List<ByteString> items = new ArrayList<ByteString>();
+		PopulationSet pop = new PopulationSet("population");
+		for (int i = 0; i < 3000; i++)
+		{
+			ByteString item = new ByteString("item" + i);
+			items.add(item);
+			pop.addGene(item, "");
+
+			int numTerms = rnd.nextInt(3) + 1;
+			for (int j = 0; j < numTerms; j++)
+				associations.add(new Association(item, terms.get(9 + rnd.nextInt(terms.size() - 9)).getID()));
+		}
+		AnnotationContext context = new AnnotationContext(items, new HashMap<ByteString,ByteString>(), new HashMap<ByteString,ByteString>());
+		AssociationContainer assoc = new AssociationContainer(associations, context);
+
+		/* Enrich a few terms, so that both cases of the weight algorithm occur */
+		StudySet study = new StudySet("study");
+		for (Association a : associations)
+		{
+			int t = Integer.parseInt(a.getTermID().toString().substring(3));
+			if (t % 37 == 0 || (t % 23 == 0 && rnd.nextBoolean()))
+				study.addGene(a.getObjectSymbol(), "");
+		}
+		for (int i = 0; i < 100; i++)
+			study.addGene(items.get(rnd.nextInt(items.size())), "");
+
+		EnrichedGOTermsResult expected = new ReferenceCalculation().calculateStudySet(graph, assoc, pop, study);
+
+		TopologyWeightedCalculation calc = new TopologyWeightedCalculation();
+		calc.setNumberOfThreads(1);
+		EnrichedGOTermsResult sequential = calc.calculateStudySet(graph, assoc, pop, study, new None());
+		calc.setNumberOfThreads(4);
+		EnrichedGOTermsResult parallel = calc.calculateStudySet(graph, assoc, pop, study, new None());
+
+		assertEquals(expected.getSize(), sequential.getSize());
+		assertEquals(expected.getSize(), parallel.getSize());
+
+		int significant = 0;
+		for (AbstractGOTermProperties e : expected)
+		{
+			AbstractGOTermProperties s = sequential.getGOTermProperties(e.term);
+			AbstractGOTermProperties p = parallel.getGOTermProperties(e.term);
+			assertNotNull(s);
+			assertNotNull(p);
+
+			assertEquals("Entry " + e.term, e.annotatedPopulationGenes, s.annotatedPopulationGenes);
+			assertEquals("Entry " + e.term, e.annotatedStudyGenes, s.annotatedStudyGenes);
+
+			/* Weights are summed up in a different order */
+			assertEquals("Entry " + e.term, e.p, s.p, e.p * 1e-9);
+			assertEquals("Entry " + e.term, s.p, p.p, 0);
+			if (e.p < TopologyWeightedCalculation.SIGNIFICANCE_LEVEL)
+				significant++;
+		}
+		assertTrue(significant > 1);
+	}
+}
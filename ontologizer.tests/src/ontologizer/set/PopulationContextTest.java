@@ -0,0 +1,94 @@
+package ontologizer.set;
+
+import static ontologizer.types.ByteString.EMPTY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.Association;
+import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.RelationMeaning;
+import ontologizer.ontology.RelationType;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermContainer;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+public class PopulationContextTest
+{
+	private static int [] indices(PopulationContext context, String...ids)
+	{
+		int [] indices = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			indices[i] = context.getTermIndex(new TermID(ids[i]));
+		Arrays.sort(indices);
+		return indices;
+	}
+
+	@Test
+	public void testTermAncestors()
+	{
+		RelationType isA = new RelationType(RelationMeaning.IS_A);
+		RelationType partOf = new RelationType(RelationMeaning.PART_OF_A);
+
+		HashSet<Term> terms = new HashSet<Term>();
+		Term c1 = new Term("GO:0000001", "C1");
+		Term c2 = new Term("GO:0000002", "C2", new ParentTermID(c1.getID(), isA));
+		Term c3 = new Term("GO:0000003", "C3", new ParentTermID(c1.getID(), isA));
+		Term c4 = new Term("GO:0000004", "C4", new ParentTermID(c2.getID(), isA), new ParentTermID(c3.getID(), partOf));
+		Term c5 = new Term("GO:0000005", "C5", new ParentTermID(c4.getID(), isA));
+		Term c6 = new Term("GO:0000006", "C6", new ParentTermID(c3.getID(), isA));
+		Term c7 = new Term("GO:0000007", "C7", new ParentTermID(c1.getID(), isA));
+		terms.add(c1);
+		terms.add(c2);
+		terms.add(c3);
+		terms.add(c4);
+		terms.add(c5);
+		terms.add(c6);
+		terms.add(c7);
+		Ontology graph = Ontology.create(new TermContainer(terms, EMPTY, EMPTY));
+
+		List<ByteString> items = new ArrayList<ByteString>();
+		List<Association> associations = new ArrayList<Association>();
+		for (int i = 1; i <= 3; i++)
+			items.add(new ByteString("item" + i));
+		associations.add(new Association(items.get(0), c5.getID()));
+		associations.add(new Association(items.get(1), c6.getID()));
+		associations.add(new Association(items.get(2), c2.getID()));
+		AnnotationContext mapping = new AnnotationContext(items, new HashMap<ByteString,ByteString>(), new HashMap<ByteString,ByteString>());
+		AssociationContainer assoc = new AssociationContainer(associations, mapping);
+
+		PopulationSet pop = new PopulationSet("population");
+		for (ByteString item : items)
+			pop.addGene(item, "");
+
+		PopulationContext context = pop.getContext(graph, assoc);
+
+		/* C7 is not annotated */
+		assertEquals(6, context.getNumberOfTerms());
+		assertEquals(Integer.MAX_VALUE, context.getTermIndex(c7.getID()));
+
+		int [][] ancestors = context.getTermAncestors();
+		assertEquals(6, ancestors.length);
+		assertArrayEquals(indices(context), ancestors[context.getTermIndex(c1.getID())]);
+		assertArrayEquals(indices(context, "GO:0000001"), ancestors[context.getTermIndex(c2.getID())]);
+		assertArrayEquals(indices(context, "GO:0000001"), ancestors[context.getTermIndex(c3.getID())]);
+		assertArrayEquals(indices(context, "GO:0000001", "GO:0000002", "GO:0000003"), ancestors[context.getTermIndex(c4.getID())]);
+		assertArrayEquals(indices(context, "GO:0000001", "GO:0000002", "GO:0000003", "GO:0000004"), ancestors[context.getTermIndex(c5.getID())]);
+		assertArrayEquals(indices(context, "GO:0000001", "GO:0000003"), ancestors[context.getTermIndex(c6.getID())]);
+
+		/* The ancestors are created only once */
+		assertSame(ancestors, context.getTermAncestors());
+	}
+}
@@ -0,0 +1,157 @@
+package ontologizer.statistics.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.IResamplingPValueCalculation;
+import ontologizer.statistics.ITestCorrectionProgress;
+import ontologizer.statistics.PValue;
+import ontologizer.statistics.ParallelResampler;
+import ontologizer.statistics.WestfallYoungStepDown;
+import ontologizer.statistics.WestfallYoungStepDownCached;
+
+public class ParallelResamplerTest
+{
+	private static final int NUMBER_OF_PVALUES = 20;
+
+	/**
+	 * A calculation that draws uniformly distributed random p-values.
+	 */
+	private static class UniformPValueCalculation implements IResamplingPValueCalculation
+	{
+		private PValue [] pvalues(Random rnd)
+		{
+			PValue [] p = new PValue[NUMBER_OF_PVALUES];
+			for (int i = 0; i < p.length; i++)
+			{
+				p[i] = new PValue();
+				p[i].p = rnd.nextDouble();
+			}
+			return p;
+		}
+
+		@Override
+		public PValue[] calculateRawPValues(IPValueCalculationProgress progress)
+		{
+			return pvalues(new Random(1));
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress)
+		{
+			return pvalues(new Random());
+		}
+
+		@Override
+		public PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd)
+		{
+			return pvalues(rnd);
+		}
+
+		@Override
+		public int currentStudySetSize()
+		{
+			return 10;
+		}
+
+		@Override
+		public int getNumberOfPValues()
+		{
+			return NUMBER_OF_PVALUES;
+		}
+	}
+
+	private static double [][] resample(int numberOfThreads, long seed, int steps, ITestCorrectionProgress progress)
+	{
+		final double [][] samples = new double[steps][];
+		new ParallelResampler(numberOfThreads, seed).resample(new UniformPValueCalculation(), steps, new ParallelResampler.ISampleConsumer()
+		{
+			private int expectedStep;
+
+			@Override
+			public void sample(int step, PValue[] randomP)
+			{
+				assertEquals(expectedStep++, step);
+				samples[step] = new double[randomP.length];
+				for (int i = 0; i < randomP.length; i++)
+					samples[step][i] = randomP[i].p;
+			}
+		}, progress);
+		return samples;
+	}
+
+	@Test
+	public void testReproducible()
+	{
+		final int [] progress = new int[2];
+		double [][] sequential = resample(1, 42, 100, null);
+		double [][] parallel = resample(4, 42, 100, new ITestCorrectionProgress()
+		{
+			@Override
+			public void init(int max)
+			{
+				progress[0] = max;
+			}
+
+			@Override
+			public void update(int current)
+			{
+				progress[1] = current;
+			}
+		});
+
+		for (int i = 0; i < sequential.length; i++)
+			assertArrayEquals(sequential[i], parallel[i], 0);
+		assertEquals(100, progress[0]);
+		assertEquals(100, progress[1]);
+
+		/* Other seeds give other samples */
+		double [][] other = resample(4, 43, 100, null);
+		assertEquals(false, sequential[0][0] == other[0][0]);
+	}
+
+	@Test
+	public void testWestfallYoungStepDown()
+	{
+		WestfallYoungStepDown wy = new WestfallYoungStepDown();
+		wy.setNumberOfResamplingSteps(200);
+		wy.setSeed(7);
+		PValue [] sequential = wy.adjustPValues(new UniformPValueCalculation(), null);
+
+		wy.setNumberOfThreads(3);
+		PValue [] parallel = wy.adjustPValues(new UniformPValueCalculation(), null);
+
+		for (int i = 0; i < sequential.length; i++)
+			assertEquals(sequential[i].p_adjusted, parallel[i].p_adjusted, 0);
+	}
+
+	@Test
+	public void testWestfallYoungStepDownCached()
+	{
+		WestfallYoungStepDown wy = new WestfallYoungStepDown();
+		wy.setNumberOfResamplingSteps(200);
+		wy.setSeed(11);
+		PValue [] expected = wy.adjustPValues(new UniformPValueCalculation(), null);
+
+		WestfallYoungStepDownCached wyc = new WestfallYoungStepDownCached();
+		wyc.setNumberOfResamplingSteps(200);
+		wyc.setSeed(11);
+		wyc.setNumberOfThreads(2);
+		PValue [] sampled = wyc.adjustPValues(new UniformPValueCalculation(), null);
+
+		/* Second call uses the stored samples */
+		wyc.setSeed(12);
+		PValue [] cached = wyc.adjustPValues(new UniformPValueCalculation(), null);
+
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertEquals(expected[i].p_adjusted, sampled[i].p_adjusted, 0);
+			assertEquals(expected[i].p_adjusted, cached[i].p_adjusted, 0);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package ontologizer.tests;
 
+import java.util.Iterator;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -53,6 +55,59 @@ public class PValueSetStoreTest
 			}
 		}
 		Assert.assertTrue(count == 3);
+		Assert.assertEquals(3, store.size());
+
+		for (int i=0; i < nSets; i++) {
+			for (int j=0; j < setSize; j++) {
+				if (sampledPvals[i][j].ignoreAtMTC) {
+					Assert.assertEquals(1.0, store.getP(i, j), 0);
+				} else {
+					Assert.assertEquals(sampledPvals[i][j].p, store.getP(i, j), 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRemoveViaIterator()
+	{
+		int nSets = 4;
+		int setSize = 3;
+
+		PvalueSetStore store = new PvalueSetStore(nSets,setSize);
+		for (int i=0; i < nSets; i++) {
+			PValue [] pvals = new PValue[setSize];
+			for (int j=0; j < setSize; j++) {
+				pvals[j] = new PValue();
+				pvals[j].p = i / 10.0 + j / 100.0;
+			}
+			store.add(pvals);
+		}
+
+		/* Remove the sets with odd index */
+		Iterator<PValue[]> iter = store.iterator();
+		int i = 0;
+		while (iter.hasNext()) {
+			iter.next();
+			if (i % 2 == 1)
+				iter.remove();
+			i++;
+		}
+		Assert.assertEquals(4, i);
+		Assert.assertEquals(2, store.size());
+
+		int count = 0;
+		for (PValue[] pvals : store) {
+			Assert.assertEquals(count * 0.2 + 0.01, pvals[1].p, 1e-12);
+			count++;
+		}
+		Assert.assertEquals(2, count);
+		Assert.assertEquals(0.22, store.getP(1, 2), 1e-12);
 	}
 
+	@Test(expected=IllegalStateException.class)
+	public void testRemoveWithoutNext()
+	{
+		new PvalueSetStore(1,1).iterator().remove();
+	}
 }
@@ -1,24 +1,23 @@
 package ontologizer.calculation;
 
 import java.util.Arrays;
-import java.util.List;
+import java.util.Random;
 
 import ontologizer.association.AssociationContainer;
 import ontologizer.association.Gene2Associations;
-import ontologizer.enumeration.TermEnumerator;
-import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
 import ontologizer.ontology.Ontology;
 import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationContext;
 import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.Hypergeometric;
-import ontologizer.statistics.IPValueCalculation;
 import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.IResamplingPValueCalculation;
 import ontologizer.statistics.PValue;
 import ontologizer.types.ByteString;
-import sonumina.collections.ObjectIntHashMap;
+import ontologizer.util.Util;
 
-public abstract class AbstractPValueCalculation implements IPValueCalculation
+public abstract class AbstractPValueCalculation implements IResamplingPValueCalculation
 {
 	protected final Ontology graph;
 	protected final AssociationContainer associations;
@@ -26,12 +25,21 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 	protected final StudySet observedStudySet;
 	protected final Hypergeometric hyperg;
 
-	private int totalNumberOfAnnotatedTerms;
+	/** The shared enumeration of the population */
+	protected final PopulationContext populationContext;
 
-	protected ObjectIntHashMap<ByteString> item2Index;
-	protected TermID [] termIds;
-	private ObjectIntHashMap<TermID> termId2Index;
-	protected int [][] term2Items;
+	protected final TermID [] termIds;
+	protected final int [][] term2Items;
+
+	/** The number of items of the population, i.e., the size of the item bitsets */
+	private final int numberOfItems;
+
+	/**
+	 * The items of the terms as bitsets. Only dense terms, for which a bitset
+	 * needs no more space than the sorted array, have one. The entries of all
+	 * other terms are null.
+	 */
+	protected final long [][] term2ItemBits;
 
 	public AbstractPValueCalculation(Ontology graph,
 			AssociationContainer goAssociations, PopulationSet populationSet,
@@ -43,50 +51,17 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 		this.observedStudySet = studySet;
 		this.hyperg = hyperg;
 
-		initCalculationContext(graph, goAssociations, populationSet);
-	}
-
-	private void initCalculationContext(Ontology graph, AssociationContainer goAssociations, StudySet populationSet)
-	{
-		TermEnumerator populationTermEnumerator = populationSet.enumerateTerms(graph, goAssociations);
-		totalNumberOfAnnotatedTerms = populationTermEnumerator.getTotalNumberOfAnnotatedTerms();
-
-		List<ByteString> itemList = populationTermEnumerator.getGenesAsList();
-		item2Index = new ObjectIntHashMap<ByteString>(itemList.size()*3/2);
-		int itemId = 0;
-		for (ByteString item : itemList)
-		{
-			item2Index.put(item, itemId++);
-		}
-
-		termIds = new TermID[totalNumberOfAnnotatedTerms];
-		term2Items = new int[totalNumberOfAnnotatedTerms][];
-
-		int i = 0;
-
-		for (TermID term : populationTermEnumerator)
-		{
-			TermAnnotatedGenes tag = populationTermEnumerator.getAnnotatedGenes(term);
-			int nTermItems = tag.totalAnnotated.size();
-
-			term2Items[i] = new int[nTermItems];
-
-			int j = 0;
-			for (ByteString item : tag.totalAnnotated)
-			{
-				term2Items[i][j++] = item2Index.get(item);
-			}
-
-			Arrays.sort(term2Items[i]);
-
-			termIds[i] = term;
-			i++;
-		}
+		populationContext = populationSet.getContext(graph, goAssociations);
+		termIds = populationContext.getTermIds();
+		term2Items = populationContext.getTerm2Items();
+		term2ItemBits = populationContext.getTerm2ItemBits();
+		numberOfItems = populationContext.getNumberOfItems();
+		hyperg.ensureCapacity(numberOfItems);
 	}
 
 	protected final int getTotalNumberOfAnnotatedTerms()
 	{
-		return totalNumberOfAnnotatedTerms;
+		return populationContext.getNumberOfTerms();
 	}
 
 	public final int currentStudySetSize()
@@ -101,7 +76,7 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 
 	/**
 	 * Calculate the p-values for the given study set. The study set must not be the same
-	 * as the observed study set.
+	 * as the observed study set. Implementations must support concurrent calls.
 	 *
 	 * @param studySet the studyset.
 	 * @param progress the progress,
@@ -119,6 +94,11 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 		return calculatePValues(populationSet.generateRandomStudySet(observedStudySet.getGeneCount()), progress);
 	}
 
+	public final PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd)
+	{
+		return calculatePValues(populationSet.generateRandomStudySet(observedStudySet.getGeneCount(), rnd), progress);
+	}
+
 
 	/**
 	 * Get a unique id representation of the given study set.
@@ -132,13 +112,13 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 		int mappedStudyItems = 0;
 		for (ByteString studyItem : studySet)
 		{
-			int index = item2Index.getIfAbsent(studyItem, Integer.MAX_VALUE);
+			int index = populationContext.getItemIndex(studyItem);
 			if (index == Integer.MAX_VALUE)
 			{
 				/* Try synonyms etc. */
 				Gene2Associations g2a = associations.get(studyItem);
 				if (g2a != null)
-					index = item2Index.getIfAbsent(g2a.name(), Integer.MAX_VALUE);
+					index = populationContext.getItemIndex(g2a.name());
 			}
 			if (index != Integer.MAX_VALUE)
 				studyIds[mappedStudyItems++] = index;
@@ -159,6 +139,35 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 		return studyIds;
 	}
 
+	/**
+	 * Get a bitset representation of the given study ids.
+	 *
+	 * @param studyIds the unique ids as returned by getUniqueIDs()
+	 * @return the bitset representation of the study set.
+	 */
+	protected final long [] getUniqueIDBits(int [] studyIds)
+	{
+		return Util.toBitSet(studyIds, numberOfItems);
+	}
+
+	/**
+	 * Determine the number of items of the given study set that are annotated
+	 * to the given term. Dense terms are intersected word-wise with the bitset
+	 * of the study set while for sparse terms each item is looked up in the
+	 * bitset of the study set.
+	 *
+	 * @param termIndex the index of the term
+	 * @param studyIdBits the study set as returned by getUniqueIDBits()
+	 * @return the number of study items annotated to the term.
+	 */
+	protected final int countCommonItems(int termIndex, long [] studyIdBits)
+	{
+		long [] termBits = term2ItemBits[termIndex];
+		if (termBits != null)
+			return Util.commonBits(termBits, studyIdBits);
+		return Util.commonInts(term2Items[termIndex], studyIdBits);
+	}
+
 	/**
 	 * Return the index of the given term.
 	 *
@@ -167,12 +176,6 @@ public abstract class AbstractPValueCalculation implements IPValueCalculation
 	 */
 	protected final int getIndex(TermID tid)
 	{
-		if (termId2Index == null)
-		{
-			termId2Index = new ObjectIntHashMap<TermID>(termIds.length);
-			for (int i = 0; i < termIds.length; i++)
-				termId2Index.put(termIds[i], i);
-		}
-		return termId2Index.getIfAbsentPut(tid, Integer.MAX_VALUE);
+		return populationContext.getTermIndex(tid);
 	}
 }
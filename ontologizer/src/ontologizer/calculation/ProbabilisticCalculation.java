@@ -1,8 +1,5 @@
 package ontologizer.calculation;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -14,6 +11,9 @@ import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.AbstractTestCorrection;
 import ontologizer.types.ByteString;
+import sonumina.collections.IntHashSet;
+import sonumina.collections.IntIntHashMap;
+import sonumina.collections.ObjectIntHashMap;
 
 /**
  * This calculation implements the approach described in
@@ -42,38 +42,88 @@ public class ProbabilisticCalculation implements ICalculation
 
 		public int nsg;
 
-		public Set<TermID> activeTerms = new LinkedHashSet<TermID>();
+		/** Indices of the active terms */
+		public IntHashSet activeTerms = new IntHashSet();
 
 
-		/** Active gene nodes connected to at least one active term */
-		private HashMap<ByteString,Integer> Ag = new HashMap<ByteString,Integer>();
+		/** Active gene nodes connected to at least one active term (gene index to number of active terms) */
+		private IntIntHashMap Ag = new IntIntHashMap();
 
 
 		/* Fixed (initialized from outside) */
-		private TermEnumerator popEnumerator;
-		private HashSet<ByteString> activeGenes; /* Study genes */
-		private HashSet<ByteString> allGenes;
+		private IntHashSet activeGenes; /* Indices of the study genes */
+		private int numberOfActiveGenes;
+		private int numberOfAllGenes;
 		private List<TermID> allTerms;
+		private ObjectIntHashMap<TermID> term2Index;
+
+		/** The indices of the genes annotated to the terms (indexed by term index) */
+		private int [][] term2Genes;
+
+		/**
+		 * Initialize the fixed data.
+		 *
+		 * @param popEnumerator the term enumerator of the population
+		 * @param allGenes the names of the genes of the population
+		 * @param studyGenes the names of the genes of the study set
+		 */
+		public void init(TermEnumerator popEnumerator, Set<ByteString> allGenes, Set<ByteString> studyGenes)
+		{
+			allTerms = popEnumerator.getAllAnnotatedTermsAsList();
+			term2Index = new ObjectIntHashMap<TermID>(allTerms.size());
+			term2Genes = new int[allTerms.size()][];
+
+			ObjectIntHashMap<ByteString> gene2Index = new ObjectIntHashMap<ByteString>();
+			for (int t = 0; t < allTerms.size(); t++)
+			{
+				term2Index.put(allTerms.get(t), t);
+
+				List<ByteString> genes = popEnumerator.getAnnotatedGenes(allTerms.get(t)).totalAnnotated;
+				term2Genes[t] = new int[genes.size()];
+				int i = 0;
+				for (ByteString g : genes)
+					term2Genes[t][i++] = gene2Index.getIfAbsentPut(g, gene2Index.size());
+			}
+
+			activeGenes = new IntHashSet(studyGenes.size());
+			for (ByteString g : studyGenes)
+			{
+				int idx = gene2Index.getIfAbsent(g, -1);
+				if (idx != -1)
+					activeGenes.add(idx);
+			}
+			numberOfActiveGenes = studyGenes.size();
+			numberOfAllGenes = allGenes.size();
+		}
+
+		/**
+		 * @param t
+		 * @return whether the given term is active.
+		 */
+		public boolean isActive(TermID t)
+		{
+			int idx = term2Index.getIfAbsent(t, -1);
+			return idx != -1 && activeTerms.contains(idx);
+		}
 
 		/**
 		 * Switch the given term (i.e., make it active if not active,
 		 * make it inactive if active)
-		 * @param t
+		 * @param t the index of the term
 		 */
-		public void switchTerm(TermID t)
+		public void switchTerm(int t)
 		{
 			if (activeTerms.contains(t))
 			{
 				/* Term is going to be deactivated */
 				activeTerms.remove(t);
 
-				for (ByteString g : popEnumerator.getAnnotatedGenes(t).totalAnnotated)
+				for (int g : term2Genes[t])
 				{
 					if (activeGenes.contains(g))
 					{
-						Integer cnt = Ag.get(g);
-						if (cnt == 1) Ag.remove(g);
-						else Ag.put(g,cnt-1);
+						if (Ag.addToValue(g,-1) == 0)
+							Ag.remove(g);
 					}
 					else
 					{
@@ -86,13 +136,11 @@ public class ProbabilisticCalculation implements ICalculation
 				/* Term is going to be activated */
 				activeTerms.add(t);
 
-				for (ByteString g : popEnumerator.getAnnotatedGenes(t).totalAnnotated)
+				for (int g : term2Genes[t])
 				{
 					if (activeGenes.contains(g))
 					{
-						Integer cnt = Ag.get(g);
-						if (cnt == null) Ag.put(g,1);
-						else Ag.put(g,cnt+1);
+						Ag.addToValue(g,1);
 					}
 					else
 					{
@@ -127,8 +175,7 @@ public class ProbabilisticCalculation implements ICalculation
 		public void calculateParamtersOld()
 		{
 			/* Active gene nodes connected to at least one active term */
-//			Set<ByteString> Ag = new HashSet<ByteString>();
-			HashMap<ByteString,Integer> Ag = new HashMap<ByteString,Integer>();
+			IntIntHashMap Ag = new IntIntHashMap();
 
 			/* I inactive gene nodes */
 			/* Number of edges connecting nodes in I with active term nodes */
@@ -137,18 +184,13 @@ public class ProbabilisticCalculation implements ICalculation
 			/* Number of edges connecting nodes in I with inactive term nodes */
 			sn = 0;
 
-			Ag.clear();
-
-			for (TermID t : activeTerms)
+			for (int t : activeTerms.toArray())
 			{
-				for (ByteString g : popEnumerator.getAnnotatedGenes(t).totalAnnotated)
+				for (int g : term2Genes[t])
 				{
 					if (activeGenes.contains(g))
 					{
-//						Ag.add(g);
-						Integer cnt = Ag.get(g);
-						if (cnt == null) Ag.put(g,1);
-						else Ag.put(g,cnt+1);
+						Ag.addToValue(g,1);
 					}
 					else
 					{
@@ -158,27 +200,11 @@ public class ProbabilisticCalculation implements ICalculation
 				}
 			}
 
-//			for (TermID t : allTerms)
-//			{
-//				if (activeTerms.contains(t))
-//					continue;
-//
-//				/* Inactive terms */
-//				for (ByteString g : popEnumerator.getAnnotatedGenes(t).totalAnnotated)
-//				{
-//					if (!activeGenes.contains(g))
-//					{
-//						/* Gene is inactive as terms are inactive */
-//						sn++;
-//					}
-//				}
-//			}
-
 			/* Active gene nodes connected to at least one active term */
 			ag = Ag.size();
 
 			/* Active gene nodes not connected to any active term */
-			an = activeGenes.size() - ag;
+			an = numberOfActiveGenes - ag;
 
 			sn = st - sg;
 		}
@@ -200,7 +226,7 @@ public class ProbabilisticCalculation implements ICalculation
 			ag = Ag.size();
 
 			/* Active gene nodes not connected to any active term */
-			an = activeGenes.size() - ag;
+			an = numberOfActiveGenes - ag;
 		}
 
 		/**
@@ -222,11 +248,11 @@ public class ProbabilisticCalculation implements ICalculation
 			do
 			{
 				double best = Double.NEGATIVE_INFINITY;
-				TermID bestTerm = null;
+				int bestTerm = -1;
 
 //				System.out.println(obj + "  " + best + "  " + activeTerms.size());
 
-				for (TermID t : allTerms)
+				for (int t = 0; t < allTerms.size(); t++)
 				{
 					switchTerm(t);
 
@@ -240,7 +266,7 @@ public class ProbabilisticCalculation implements ICalculation
 					switchTerm(t);
 				}
 
-				if (bestTerm != null && best > obj)
+				if (bestTerm != -1 && best > obj)
 				{
 					switchTerm(bestTerm);
 					obj = objective();
@@ -285,16 +311,13 @@ public class ProbabilisticCalculation implements ICalculation
 			StudySet studySet, AbstractTestCorrection testCorrection)
 	{
 		Data data = new Data();
-		data.popEnumerator = populationSet.enumerateTerms(graph, goAssociations);
-		data.allTerms = data.popEnumerator.getAllAnnotatedTermsAsList();
-		data.allGenes = populationSet.getAllGeneNames();
-		data.activeGenes = studySet.getAllGeneNames();
+		data.init(populationSet.getContext(graph, goAssociations).getEnumerator(), populationSet.getAllGeneNames(), studySet.getAllGeneNames());
 
 		int total = 0;
-		for (TermID t : data.allTerms)
+		for (int [] genes : data.term2Genes)
 		{
 			/* Inactive terms */
-			for (ByteString g : data.popEnumerator.getAnnotatedGenes(t).totalAnnotated)
+			for (int g : genes)
 			{
 				if (!data.activeGenes.contains(g))
 					total++;
@@ -308,7 +331,7 @@ public class ProbabilisticCalculation implements ICalculation
 		else data.p = defaultP;
 
 		if (Double.isNaN(defaultQ))
-			data.q = ((double)data.activeGenes.size())/data.allGenes.size();
+			data.q = ((double)data.numberOfActiveGenes)/data.numberOfAllGenes;
 		else data.q = defaultQ;
 
 		double eps = 0.0001;
@@ -354,7 +377,7 @@ public class ProbabilisticCalculation implements ICalculation
 
 		for (AbstractGOTermProperties prop : results)
 		{
-			if (!data.activeTerms.contains(prop.term))
+			if (!data.isActive(prop.term))
 			{
 				prop.p = prop.p_adjusted = 1;
 				prop.ignoreAtMTC = true;
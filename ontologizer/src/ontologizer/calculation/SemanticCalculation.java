@@ -1,15 +1,18 @@
 package ontologizer.calculation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import ontologizer.association.AssociationContainer;
@@ -17,380 +20,13 @@ import ontologizer.association.Gene2Associations;
 import ontologizer.enumeration.TermEnumerator;
 import ontologizer.ontology.Ontology;
 import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.types.ByteString;
-
-/**
- * Stripped-down-version of the general HashMap function suitable
- * for integer keys and double values.
- *
- * @author Sebastian Bauer
- * @see java.util.HashMap
- */
-class IntHashMapForDoubles
-{
-	/**
-	 * The default initial capacity - MUST be a power of two.
-	 */
-	static final int DEFAULT_INITIAL_CAPACITY = 16;
-
-	/**
-	 * The maximum capacity, used if a higher value is implicitly specified
-	 * by either of the constructors with arguments.
-	 * MUST be a power of two <= 1<<30.
-	 */
-	static final int MAXIMUM_CAPACITY = 1 << 30;
-
-	/**
-	 * The load factor used when none specified in constructor.
-	 */
-	static final float DEFAULT_LOAD_FACTOR = 0.75f;
-
-	/**
-	 * The table, resized as necessary. Length MUST Always be a power of two.
-	 */
-	transient Entry[] table;
-
-	/**
-	 * The number of key-value mappings contained in this map.
-	 */
-	transient int size;
-
-	/**
-	 * The next size value at which to resize (capacity * load factor).
-	 * @serial
-	 */
-	int threshold;
-
-	/**
-	 * The load factor for the hash table.
-	 *
-	 * @serial
-	 */
-	final float loadFactor;
-
-	/**
-	 * The number of times this HashMap has been structurally modified
-	 * Structural modifications are those that change the number of mappings in
-	 * the HashMap or otherwise modify its internal structure (e.g.,
-	 * rehash).  This field is used to make iterators on Collection-views of
-	 * the HashMap fail-fast.  (See ConcurrentModificationException).
-	 */
-	transient volatile int modCount;
-
-	/**
-	 * Constructs an empty <tt>HashMap</tt> with the specified initial
-	 * capacity and load factor.
-	 *
-	 * @param  initialCapacity the initial capacity
-	 * @param  loadFactor      the load factor
-	 * @throws IllegalArgumentException if the initial capacity is negative
-	 *         or the load factor is nonpositive
-	 */
-	public IntHashMapForDoubles(int initialCapacity, float loadFactor)
-	{
-	    if (initialCapacity < 0)
-	        throw new IllegalArgumentException("Illegal initial capacity: " +
-	                                           initialCapacity);
-	    if (initialCapacity > MAXIMUM_CAPACITY)
-	        initialCapacity = MAXIMUM_CAPACITY;
-	    if (loadFactor <= 0 || Float.isNaN(loadFactor))
-	        throw new IllegalArgumentException("Illegal load factor: " +
-	                                           loadFactor);
-
-	    // Find a power of 2 >= initialCapacity
-	    int capacity = 1;
-	    while (capacity < initialCapacity)
-	        capacity <<= 1;
-
-	    this.loadFactor = loadFactor;
-	    threshold = (int)(capacity * loadFactor);
-	    table = new Entry[capacity];
-	    init();
-	}
-
-	/**
-	 * Constructs an empty <tt>HashMap</tt> with the specified initial
-	 * capacity and the default load factor (0.75).
-	 *
-	 * @param  initialCapacity the initial capacity.
-	 * @throws IllegalArgumentException if the initial capacity is negative.
-	 */
-	public IntHashMapForDoubles(int initialCapacity)
-	{
-	    this(initialCapacity, DEFAULT_LOAD_FACTOR);
-	}
-
-	/**
-	 * Constructs an empty <tt>HashMap</tt> with the default initial capacity
-	 * (16) and the default load factor (0.75).
-	 */
-	public IntHashMapForDoubles()
-	{
-	    this.loadFactor = DEFAULT_LOAD_FACTOR;
-	    threshold = (int)(DEFAULT_INITIAL_CAPACITY * DEFAULT_LOAD_FACTOR);
-	    table = new Entry[DEFAULT_INITIAL_CAPACITY];
-	    init();
-	}
-
-
-	// internal utilities
-
-	/**
-	 * Initialization hook for subclasses. This method is called
-	 * in all constructors and pseudo-constructors (clone, readObject)
-	 * after HashMap has been initialized but before any entries have
-	 * been inserted.  (In the absence of this method, readObject would
-	 * require explicit knowledge of subclasses.)
-	 */
-	void init()
-	{
-	}
-
-	/**
-	 * Applies a supplemental hash function to a given hashCode, which
-	 * defends against poor quality hash functions.  This is critical
-	 * because HashMap uses power-of-two length hash tables, that
-	 * otherwise encounter collisions for hashCodes that do not differ
-	 * in lower bits. Note: Null keys always map to hash 0, thus index 0.
-	 */
-	static int hash(int h) {
-	    // This function ensures that hashCodes that differ only by
-	    // constant multiples at each bit position have a bounded
-	    // number of collisions (approximately 8 at default load factor).
-	    h ^= (h >>> 20) ^ (h >>> 12);
-	    return h ^ (h >>> 7) ^ (h >>> 4);
-	}
-
-	/**
-	 * Returns index for hash code h.
-	 */
-	static int indexFor(int h, int length) {
-	    return h & (length-1);
-	}
-
-	/**
-	 * Returns the number of key-value mappings in this map.
-	 *
-	 * @return the number of key-value mappings in this map
-	 */
-	public int size() {
-	    return size;
-	}
-
-	/**
-	 * Returns <tt>true</tt> if this map contains no key-value mappings.
-	 *
-	 * @return <tt>true</tt> if this map contains no key-value mappings
-	 */
-	public boolean isEmpty() {
-	    return size == 0;
-	}
-
-	/**
-	 * Returns the value to which the specified key is mapped,
-	 * or {@code null} if this map contains no mapping for the key.
-	 *
-	 * <p>More formally, if this map contains a mapping from a key
-	 * {@code k} to a value {@code v} such that {@code (key==null ? k==null :
-	 * key.equals(k))}, then this method returns {@code v}; otherwise
-	 * it returns {@code null}.  (There can be at most one such mapping.)
-	 *
-	 * <p>A return value of {@code null} does not <i>necessarily</i>
-	 * indicate that the map contains no mapping for the key; it's also
-	 * possible that the map explicitly maps the key to {@code null}.
-	 * The {@link #containsKey containsKey} operation may be used to
-	 * distinguish these two cases.
-	 *
-	 * @see #put(int, double)
-	 */
-	public double get(int key)
-	{
-	    int hash = hash(key);
-	    for (Entry e = table[indexFor(hash, table.length)]; e != null; e = e.next)
-	    {
-
-	        if (/*e.hash == hash &&*/ e.key == key)
-	            return e.value;
-	    }
-	    return Double.NaN;
-	}
-
-	/**
-	 * Returns <tt>true</tt> if this map contains a mapping for the
-	 * specified key.
-	 *
-	 * @param   key   The key whose presence in this map is to be tested
-	 * @return <tt>true</tt> if this map contains a mapping for the specified
-	 * key.
-	 */
-	public boolean containsKey(int key)
-	{
-		int hash = hash(key);
-	    for (Entry e = table[indexFor(hash, table.length)]; e != null; e = e.next)
-	    {
-	        if (/*e.hash == hash && */e.key == key)
-	            return true;
-	    }
-	    return false;
-	}
-
-	/**
-	 * Associates the specified value with the specified key in this map.
-	 * If the map previously contained a mapping for the key, the old
-	 * value is replaced.
-	 *
-	 * @param key key with which the specified value is to be associated
-	 * @param value value to be associated with the specified key
-	 */
-	public void put(int  key, double value)
-	{
-	    int hash = hash(key);
-	    int i = indexFor(hash, table.length);
-	    for (Entry e = table[i]; e != null; e = e.next)
-	    {
-	        if (/*e.hash == hash && */e.key == key)
-	        {
-	            e.value = value;
-	            return;
-	        }
-	    }
-
-	    modCount++;
-	    addEntry(hash, key, value, i);
-	}
-
-	/**
-	 * Rehashes the contents of this map into a new array with a
-	 * larger capacity.  This method is called automatically when the
-	 * number of keys in this map reaches its threshold.
-	 *
-	 * If current capacity is MAXIMUM_CAPACITY, this method does not
-	 * resize the map, but sets threshold to Integer.MAX_VALUE.
-	 * This has the effect of preventing future calls.
-	 *
-	 * @param newCapacity the new capacity, MUST be a power of two;
-	 *        must be greater than current capacity unless current
-	 *        capacity is MAXIMUM_CAPACITY (in which case value
-	 *        is irrelevant).
-	 */
-	void resize(int newCapacity)
-	{
-	    Entry[] oldTable = table;
-	    int oldCapacity = oldTable.length;
-	    if (oldCapacity == MAXIMUM_CAPACITY) {
-	        threshold = Integer.MAX_VALUE;
-	        return;
-	    }
-
-	    Entry[] newTable = new Entry[newCapacity];
-	    transfer(newTable);
-	    table = newTable;
-	    threshold = (int)(newCapacity * loadFactor);
-	}
-
-	/**
-	 * Transfers all entries from current table to newTable.
-	 */
-	void transfer(Entry[] newTable) {
-	    Entry[] src = table;
-	    int newCapacity = newTable.length;
-	    for (int j = 0; j < src.length; j++) {
-	        Entry e = src[j];
-	        if (e != null)
-	        {
-	            src[j] = null;
-	            do
-	            {
-	                Entry next = e.next;
-	                int i = indexFor(e.hash, newCapacity);
-	                e.next = newTable[i];
-	                newTable[i] = e;
-	                e = next;
-	            } while (e != null);
-	        }
-	    }
-	}
-	/**
-	 * Removes all of the mappings from this map.
-	 * The map will be empty after this call returns.
-	 */
-	public void clear() {
-	    modCount++;
-	    Entry[] tab = table;
-	    for (int i = 0; i < tab.length; i++)
-	        tab[i] = null;
-	    size = 0;
-	}
-
-	private static final class Entry
-	{
-	    final int key;
-	    double value;
-	    Entry next;
-	    final int hash;
-
-	    /**
-	     * Creates new entry.
-	     */
-	    Entry(int h, int k, double v, Entry n)
-	    {
-	        value = v;
-	        next = n;
-	        key = k;
-	        hash = h;
-	    }
-
-	    public final int getKey()
-	    {
-	        return key;
-	    }
-
-	    public final double getValue()
-	    {
-	        return value;
-	    }
-
-	    public final double setValue(double newValue)
-	    {
-	    	double oldValue = value;
-	        value = newValue;
-	        return oldValue;
-	    }
-	}
-
-	/**
-	 * Adds a new entry with the specified key, value and hash code to
-	 * the specified bucket.  It is the responsibility of this
-	 * method to resize the table if appropriate.
-	 *
-	 * Subclass overrides this to alter the behavior of put method.
-	 */
-	void addEntry(int hash, int key, double value, int bucketIndex)
-	{
-		Entry e = table[bucketIndex];
-
-	    table[bucketIndex] = new Entry(hash, key, value, e);
-	    if (size++ >= threshold)
-	        resize(2 * table.length);
-	}
-
-	/**
-	 * Like addEntry except that this version is used when creating entries
-	 * as part of Map construction or "pseudo-construction" (cloning,
-	 * deserialization).  This version needn't worry about resizing the table.
-	 *
-	 * Subclass overrides this to alter the behavior of HashMap(Map),
-	 * clone, and readObject.
-	 */
-	void createEntry(int hash, int key, double value, int bucketIndex)
-	{
-		Entry e = table[bucketIndex];
-	    table[bucketIndex] = new Entry(hash, key, value, e);
-	    size++;
-	}
-}
-
+import sonumina.collections.ConcurrentLongDoubleCache;
+import sonumina.collections.ObjectIntHashMap;
+import sonumina.collections.PackedSymmetricMatrix;
+import sonumina.math.graph.SlimDirectedGraphView;
 
 public class SemanticCalculation
 {
@@ -402,46 +38,61 @@ public class SemanticCalculation
 		void update(int update);
 	};
 
-	private int numberOfProcessors = 1;//Runtime.getRuntime().availableProcessors();
+	/** Number of genes per row and column of a tile, see calculateTiled() */
+	private static final int TILE_SIZE = 64;
+
+	private int numberOfProcessors = Runtime.getRuntime().availableProcessors();
 
 	private Ontology graph;
 	private AssociationContainer goAssociations;
 
-	private StudySet allGenesStudy;
+	private PopulationSet allGenesStudy;
 	private TermEnumerator enumerator;
 	private int totalAnnotated;
 
-	/** Similarity cache (indexed by term) */
-	private IntHashMapForDoubles [] cache;
+	/** The ontology with the ancestor closures of the terms */
+	private SlimDirectedGraphView<TermID> slim;
+
+	/** Probability of a term, i.e., fraction of genes annotated to it (indexed by slim index) */
+	private double [] termP;
 
-	private ReentrantReadWriteLock cacheLock;
-	private ReadLock readLock;
-	private WriteLock writeLock;
+	/** Information content of a term, i.e., -log(termP) (indexed by slim index) */
+	private double [] termIC;
+
+	/** Similarity cache (indexed by the slim indices of both terms, see termSim()) */
+	private ConcurrentLongDoubleCache cache = new ConcurrentLongDoubleCache();
 
 	/**
 	 * Non-redundant associations (indexed by genes).
-	 * Objects is an array of terms
+	 * Each entry is an array of slim indices of the terms.
 	 */
-	private Object [] associations;
+	private int [][] associations;
 
-	private HashMap<ByteString,Integer> gene2index = new HashMap<ByteString,Integer>();
+	private ObjectIntHashMap<ByteString> gene2index = new ObjectIntHashMap<ByteString>();
 
 	public SemanticCalculation(Ontology g, AssociationContainer assoc)
 	{
 		this.graph = g;
 		this.goAssociations = assoc;
 
-		allGenesStudy = new StudySet("population");
+		allGenesStudy = new PopulationSet("population");
 		for (ByteString gene : goAssociations.getAllAnnotatedGenes())
 			allGenesStudy.addGene(gene,"");
 
-		enumerator = allGenesStudy.enumerateTerms(graph, goAssociations);
+		enumerator = allGenesStudy.getContext(graph, goAssociations).getEnumerator();
 		totalAnnotated = enumerator.getAnnotatedGenes(graph.getRootTerm().getID()).totalAnnotated.size();
 
-		cache = new IntHashMapForDoubles[g.maximumTermID()];
+		slim = graph.getTermIDSlimGraphView();
+		termP = new double[slim.getNumberOfVertices()];
+		termIC = new double[slim.getNumberOfVertices()];
+		for (int t = 0; t < termP.length; t++)
+		{
+			termP[t] = (double)enumerator.getAnnotatedGenes(slim.getVertex(t)).totalAnnotatedCount() / totalAnnotated;
+			termIC[t] = -Math.log(termP[t]);
+		}
 
 		/* Making associations non-redundant */
-		associations = new Object[allGenesStudy.getGeneCount()];
+		associations = new int[allGenesStudy.getGeneCount()][];
 		int i = 0;
 		for (ByteString gene : allGenesStudy)
 		{
@@ -464,22 +115,32 @@ public class SemanticCalculation
 				nonRedundantTerms.add(tid);
 			}
 
-			TermID terms[] = new TermID[nonRedundantTerms.size()];
-			int j=0;
-			for (TermID t : nonRedundantTerms)
-				terms[j++]=t;
-
 			/* TODO: Sort terms according to their information content */
-			associations[i] = terms;
+			associations[i] = termIndices(nonRedundantTerms);
 			i++;
 		}
+	}
 
-		if (numberOfProcessors > 1)
-		{
-			cacheLock = new ReentrantReadWriteLock();
-			readLock = cacheLock.readLock();
-			writeLock = cacheLock.writeLock();
-		}
+	/**
+	 * Sets the number of threads that are used to calculate the similarity
+	 * matrix. Defaults to the number of available processors.
+	 *
+	 * @param numberOfThreads
+	 */
+	public void setNumberOfThreads(int numberOfThreads)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		this.numberOfProcessors = numberOfThreads;
+	}
+
+	/**
+	 * @return the number of threads that are used to calculate the similarity
+	 *  matrix.
+	 */
+	public int getNumberOfThreads()
+	{
+		return numberOfProcessors;
 	}
 
 	/**
@@ -490,84 +151,125 @@ public class SemanticCalculation
 	 */
 	public double p(TermID id)
 	{
-		return (double)enumerator.getAnnotatedGenes(id).totalAnnotatedCount() / totalAnnotated;
+		int t = slim.getVertexIndex(id);
+		if (t == -1)
+			return (double)enumerator.getAnnotatedGenes(id).totalAnnotatedCount() / totalAnnotated;
+		return termP[t];
 	}
 
 	/**
-	 * Returns the shared information content of two given terms
+	 * Returns the most informative common ancestor of the two given terms,
+	 * i.e., the shared parent with the smallest probability.
 	 *
 	 * @param t1
 	 * @param t2
-	 * @return
+	 * @return the most informative common ancestor or null if the terms
+	 *  don't share a parent.
 	 */
-	private double p(TermID t1, TermID t2)
+	public TermID getMostInformativeCommonAncestor(TermID t1, TermID t2)
 	{
-		Collection<TermID> sharedParents = graph.getSharedParents(t1, t2);
-		double p = 1.0;
+		int i1 = slim.getVertexIndex(t1);
+		int i2 = slim.getVertexIndex(t2);
+		if (i1 == -1 || i2 == -1)
+			return null;
+
+		int mica = mica(i1, i2);
+		if (mica == -1)
+			return null;
+		return slim.getVertex(mica);
+	}
 
-		/* The information content of two terms is defined as the minimum of
-		 * the information content of the shared parents.
-		 */
-		for (TermID t : sharedParents)
+	/**
+	 * Returns the most informative common ancestor of the terms with the
+	 * given slim indices. The sorted ancestor arrays of both terms are merged
+	 * and the common ancestor with the highest information content is kept.
+	 *
+	 * @param t1
+	 * @param t2
+	 * @return the slim index of the most informative common ancestor or -1
+	 *  if the terms don't share a parent.
+	 */
+	private int mica(int t1, int t2)
+	{
+		int [] a = slim.vertexAncestors[t1];
+		int [] b = slim.vertexAncestors[t2];
+		int mica = -1;
+		double maxIC = Double.NEGATIVE_INFINITY;
+
+		int k = 0, l = 0;
+		while (k < a.length && l < b.length)
 		{
-			double newP = p(t);
-			if (newP < p) p = newP;
+			int ak = a[k];
+			int bl = b[l];
+			if (ak < bl) k++;
+			else if (ak > bl) l++;
+			else
+			{
+				if (termIC[ak] > maxIC)
+				{
+					maxIC = termIC[ak];
+					mica = ak;
+				}
+				k++;
+				l++;
+			}
 		}
-		return p;
+		return mica;
 	}
 
 	/**
-	 * Returns the similarity of the two given terms.
+	 * Returns the similarity of the two terms with the given slim indices,
+	 * i.e., the information content of their most informative common
+	 * ancestor.
 	 *
 	 * @param t1
 	 * @param t2
 	 * @return
 	 */
-	private double sim(TermID t1, TermID t2)
+	private double termSim(int t1, int t2)
 	{
 		/* Similarity of terms is symmetric */
-		if (t1.id > t2.id)
+		if (t1 > t2)
 		{
-			TermID s = t2;
+			int s = t2;
 			t2 = t1;
 			t1 = s;
 		}
 
-		if (cacheLock != null)
-			readLock.lock();
+		long key = ((long)t1 << 32) | t2;
+		double val = cache.get(key);
+		if (!Double.isNaN(val))
+			return val;
 
-		IntHashMapForDoubles map2 = cache[t1.id];
-		if (map2 != null)
-		{
-			double val = map2.get(t2.id);
-			if (!Double.isNaN(val))
-			{
-				if (cacheLock != null) cacheLock.readLock().unlock();
-				return val;
-			}
-		}
+		/* The information content of two terms is defined as the maximum of
+		 * the information content of the shared parents.
+		 */
+		int mica = mica(t1, t2);
+		double ic = mica == -1 ? 0 : Math.max(0, termIC[mica]);
 
-		if (cacheLock != null)
-		{
-			/* Upgrade lock, must unlock the read lock manually before */
-			readLock.unlock();
-			writeLock.lock();
-		}
+		/* Two threads may calculate the same value concurrently, which is harmless */
+		cache.put(key,ic);
+		return ic;
+	}
 
-		/* Create HashMap when needed, but the value is definitively not there */
-		if (map2 == null)
+	/**
+	 * Returns the slim indices of the given terms. Terms that are not part
+	 * of the ontology are skipped.
+	 *
+	 * @param terms
+	 * @return the indices
+	 */
+	private int [] termIndices(Collection<TermID> terms)
+	{
+		int [] indices = new int[terms.size()];
+		int n = 0;
+		for (TermID tid : terms)
 		{
-			map2 = new IntHashMapForDoubles();
-			cache[t1.id] = map2;
+			int t = slim.getVertexIndex(tid);
+			if (t != -1)
+				indices[n++] = t;
 		}
-
-		double p = -Math.log(p(t1,t2));
-		map2.put(t2.id,p);
-
-		if (cacheLock != null)
-			writeLock.unlock();
-
-		return p;
+		return n == indices.length ? indices : Arrays.copyOf(indices, n);
 	}
 
 	/**
@@ -585,17 +287,17 @@ public class SemanticCalculation
 
 		sim = 0.0;
 
-		TermID [] tl1 = (TermID[])associations[g1];
-		TermID [] tl2 = (TermID[])associations[g2];
+		int [] tl1 = associations[g1];
+		int [] tl2 = associations[g2];
 
 		/* TODO: Research if we can employ sorting omit some or many of
 		 * the pairs.
 		 */
-		for (TermID t1 : tl1)
+		for (int i = 0; i < tl1.length; i++)
 		{
-			for (TermID t2 : tl2)
+			for (int j = 0; j < tl2.length; j++)
 			{
-				double newSim = sim(t1,t2);
+				double newSim = termSim(tl1[i],tl2[j]);
 				if (newSim > sim) sim = newSim;
 			}
 		}
@@ -616,14 +318,14 @@ public class SemanticCalculation
 		if (!(goAssociations.containsGene(g1))) return 0;
 		if (!(goAssociations.containsGene(g2))) return 0;
 
-		List<TermID> tl1 = goAssociations.get(g1).getAssociations();
-		List<TermID> tl2 = goAssociations.get(g2).getAssociations();
+		int [] tl1 = termIndices(goAssociations.get(g1).getAssociations());
+		int [] tl2 = termIndices(goAssociations.get(g2).getAssociations());
 
-		for (TermID t1 : tl1)
+		for (int i = 0; i < tl1.length; i++)
 		{
-			for (TermID t2 : tl2)
+			for (int j = 0; j < tl2.length; j++)
 			{
-				double newSim = sim(t1,t2);
+				double newSim = termSim(tl1[i],tl2[j]);
 				if (newSim > sim) sim = newSim;
 			}
 		}
@@ -695,7 +397,7 @@ public class SemanticCalculation
 							int i2 = indices[work[i+1]];
 
 							if (i1 >= 0 || i2 >=0)
-								mat[work[i]][work[i+1]] = sim(i1,i2);
+								mat[work[i]][work[i+1]] = mat[work[i+1]][work[i]] = sim(i1,i2);
 						}
 
 						pairsDone = addPairCount / 2;
@@ -759,28 +461,13 @@ public class SemanticCalculation
 		int i=0,counter=0;
 
 		if (progress != null)
-			progress.init(entries * (entries + 1) / 2);
+			progress.init(toProgressValue(PackedSymmetricMatrix.getNumberOfEntries(entries)));
 
 		long millis = System.currentTimeMillis();
 
 		/* Create the association mapping, i.e, which gene maps to which entry in the array
 		 * of non-redundant association  */
-		int [] indices = new int[study.getGeneCount()];
-		int k=0;
-		for (ByteString g : study)
-		{
-			Integer idx = gene2index.get(g);
-			if (idx == null)
-			{
-				/* Maybe we can find the gene via a mapping */
-				Gene2Associations o2a = goAssociations.get(g);
-				if (o2a != null)
-					idx = gene2index.get(o2a.name());
-			}
-			if (idx != null) indices[k] = idx;
-			else indices[k] = -1;
-			k++;
-		}
+		int [] indices = getIndices(study);
 
 		if (numberOfProcessors > 1)
 		{
@@ -800,7 +487,7 @@ public class SemanticCalculation
 
 				for (i=0;i<indices.length;i++)
 				{
-					for (int j=0;j<indices.length;j++)
+					for (int j=i;j<indices.length;j++)
 					{
 						if (!currentWorker.addPairForWork(i,j))
 						{
@@ -812,7 +499,7 @@ public class SemanticCalculation
 							currentWorker.pairsDone = 0;
 
 							long newMillis = System.currentTimeMillis();
-							if (newMillis - millis > 200)
+							if (progress != null && newMillis - millis > 200)
 							{
 								millis = newMillis;
 								progress.update(counter);
@@ -821,12 +508,19 @@ public class SemanticCalculation
 					}
 				}
 
+				/* Process the remaining pairs */
+				currentWorker.fire();
+
 				for (int j=0;j<numberOfProcessors;j++)
 				{
 					wt[j].finish();
 					wt[j].join();
+					counter += wt[j].pairsDone;
 				}
 
+				if (progress != null)
+					progress.update(counter);
+
 			} catch(InterruptedException e)
 			{
 				e.printStackTrace();
@@ -874,6 +568,210 @@ public class SemanticCalculation
 		return sr;
 	}
 
+	/**
+	 * Calculates the similarity of genes of the study set using a tiled
+	 * schedule. The upper triangle of the matrix is split into square tiles
+	 * of TILE_SIZE genes, which are processed by a fork-join pool, such that
+	 * the non-redundant associations of a tile stay in the cache. The
+	 * similarities are written into a packed triangular matrix of the
+	 * result (see SemanticResult.packedMat) instead of a full matrix.
+	 *
+	 * @param study the study set
+	 * @param mat the matrix that receives the similarities. Its dimension
+	 *  must match the number of genes of the study. The storage of the
+	 *  matrix can be chosen to hold matrices that exceed the heap.
+	 * @param progress the progress or null
+	 * @return the similarity result
+	 */
+	public SemanticResult calculateTiled(StudySet study, final PackedSymmetricMatrix mat, ISemanticCalculationProgress progress)
+	{
+		if (mat.getDimension() != study.getGeneCount())
+			throw new IllegalArgumentException("The dimension of the matrix doesn't match the size of the study set");
+
+		long start = System.currentTimeMillis();
+
+		int entries = study.getGeneCount();
+		final int [] indices = getIndices(study);
+		final AtomicLong counter = new AtomicLong();
+
+		/* Tiles of the upper triangle, tile (r, c) covers rows r and columns c */
+		int numberOfTileRows = (entries + TILE_SIZE - 1) / TILE_SIZE;
+		int numberOfTiles = numberOfTileRows * (numberOfTileRows + 1) / 2;
+		final int [] tileRows = new int[numberOfTiles];
+		final int [] tileColumns = new int[numberOfTiles];
+		int t = 0;
+		for (int r = 0; r < numberOfTileRows; r++)
+		{
+			for (int c = r; c < numberOfTileRows; c++)
+			{
+				tileRows[t] = r * TILE_SIZE;
+				tileColumns[t] = c * TILE_SIZE;
+				t++;
+			}
+		}
+
+		if (progress != null)
+			progress.init(toProgressValue(PackedSymmetricMatrix.getNumberOfEntries(entries)));
+
+		ForkJoinPool pool = new ForkJoinPool(numberOfProcessors);
+		try
+		{
+			ForkJoinTask<Void> task = pool.submit(new TileTask(mat, indices, tileRows, tileColumns, 0, numberOfTiles, counter));
+			while (true)
+			{
+				try
+				{
+					task.get(200, TimeUnit.MILLISECONDS);
+					break;
+				} catch (TimeoutException e)
+				{
+					if (progress != null)
+						progress.update(toProgressValue(counter.get()));
+				}
+			}
+			if (progress != null)
+				progress.update(toProgressValue(counter.get()));
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation has been interrupted", e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		} finally
+		{
+			pool.shutdownNow();
+		}
+
+		SemanticResult sr = new SemanticResult();
+		sr.packedMat = mat;
+		sr.names = study.getGenes();
+		sr.name = study.getName();
+		sr.assoc = goAssociations;
+		sr.g = graph;
+		sr.calculation = this;
+
+		long end = System.currentTimeMillis();
+
+		logger.info("Took " + ((end - start) / 1000.0f) + "s for the analysis");
+
+		return sr;
+	}
+
+	/**
+	 * Calculates the similarity of genes of the study set using a tiled
+	 * schedule and a packed matrix on the heap.
+	 *
+	 * @param study the study set
+	 * @param progress the progress or null
+	 * @return the similarity result
+	 * @see #calculateTiled(StudySet, PackedSymmetricMatrix, ISemanticCalculationProgress)
+	 */
+	public SemanticResult calculateTiled(StudySet study, ISemanticCalculationProgress progress)
+	{
+		return calculateTiled(study, PackedSymmetricMatrix.create(study.getGeneCount()), progress);
+	}
+
+	/**
+	 * Processes a range of tiles, splitting it until a single tile is left.
+	 */
+	private class TileTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final PackedSymmetricMatrix mat;
+		private final int [] indices;
+		private final int [] tileRows;
+		private final int [] tileColumns;
+		private final int from;
+		private final int to;
+		private final AtomicLong counter;
+
+		TileTask(PackedSymmetricMatrix mat, int [] indices, int [] tileRows, int [] tileColumns, int from, int to, AtomicLong counter)
+		{
+			this.mat = mat;
+			this.indices = indices;
+			this.tileRows = tileRows;
+			this.tileColumns = tileColumns;
+			this.from = from;
+			this.to = to;
+			this.counter = counter;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > 1)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new TileTask(mat, indices, tileRows, tileColumns, from, mid, counter),
+						new TileTask(mat, indices, tileRows, tileColumns, mid, to, counter));
+				return;
+			}
+
+			int rowFrom = tileRows[from];
+			int rowTo = Math.min(rowFrom + TILE_SIZE, indices.length);
+			int columnFrom = tileColumns[from];
+			int columnTo = Math.min(columnFrom + TILE_SIZE, indices.length);
+			int pairs = 0;
+
+			for (int i = rowFrom; i < rowTo; i++)
+			{
+				/* On diagonal tiles, only the upper triangle is calculated */
+				for (int j = Math.max(i, columnFrom); j < columnTo; j++)
+				{
+					mat.set(i, j, (float)sim(indices[i], indices[j]));
+					pairs++;
+				}
+			}
+			counter.addAndGet(pairs);
+		}
+	}
+
+	/**
+	 * Converts a number of pairs to a value that can be reported to the
+	 * progress, which counts in ints. The number of pairs of large study
+	 * sets exceeds the int range, in which case the value is clamped.
+	 *
+	 * @param pairs the number of pairs
+	 * @return the value for the progress
+	 */
+	private static int toProgressValue(long pairs)
+	{
+		return (int)Math.min(pairs, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Maps the genes of the study set to the indices of their non-redundant
+	 * associations.
+	 *
+	 * @param study
+	 * @return the indices in the order of the study set, -1 for genes
+	 *  without associations.
+	 */
+	private int [] getIndices(StudySet study)
+	{
+		int [] indices = new int[study.getGeneCount()];
+		int k=0;
+		for (ByteString g : study)
+		{
+			int idx = gene2index.getIfAbsent(g, -1);
+			if (idx == -1)
+			{
+				/* Maybe we can find the gene via a mapping */
+				Gene2Associations o2a = goAssociations.get(g);
+				if (o2a != null)
+					idx = gene2index.getIfAbsent(o2a.name(), -1);
+			}
+			indices[k] = idx;
+			k++;
+		}
+		return indices;
+	}
+
 	public void calculate()
 	{
 		long millis = System.currentTimeMillis();
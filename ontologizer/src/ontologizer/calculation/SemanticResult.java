@@ -8,6 +8,7 @@ import java.util.logging.Logger;
 import ontologizer.association.AssociationContainer;
 import ontologizer.ontology.Ontology;
 import ontologizer.types.ByteString;
+import sonumina.collections.PackedSymmetricMatrix;
 
 public class SemanticResult
 {
@@ -17,11 +18,32 @@ public class SemanticResult
 	public AssociationContainer assoc;
 
 	public ByteString [] names;
+
+	/** The full matrix, null if the result has been calculated in the tiled mode */
 	public double [][] mat;
+
+	/** The packed matrix, only set if the result has been calculated in the tiled mode */
+	public PackedSymmetricMatrix packedMat;
+
 	public String name;
 
 	public SemanticCalculation calculation;
 
+	/**
+	 * Returns the similarity of the genes with the given indices regardless
+	 * of how the matrix is stored.
+	 *
+	 * @param i the index of the first gene
+	 * @param j the index of the second gene
+	 * @return the similarity
+	 */
+	public double get(int i, int j)
+	{
+		if (packedMat != null)
+			return packedMat.get(i, j);
+		return mat[i][j];
+	}
+
 	public void writeTable(File file)
 	{
 		try
@@ -48,7 +70,7 @@ public class SemanticResult
 					for (int j=0;j<names.length;j++)
 					{
 						out.print("\t");
-						out.print(mat[i][j]);
+						out.print(get(i, j));
 					}
 
 					out.println();
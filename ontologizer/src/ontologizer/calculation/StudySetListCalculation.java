@@ -0,0 +1,188 @@
+package ontologizer.calculation;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.Ontology;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.set.StudySetList;
+import ontologizer.statistics.AbstractTestCorrection;
+
+/**
+ * Evaluates all study sets of a study set list against a single population,
+ * possibly using several threads.
+ *
+ * The population context is created once before the study sets are
+ * distributed, thus all study sets share the same enumeration of the
+ * population. Everything else that is specific to a study set, e.g., its own
+ * enumeration and the p-value calculation, lives only within the task that
+ * processes the study set. The calculation and the test correction are shared
+ * among the tasks and hence must support concurrent calls. This is the case
+ * for the calculations derived from AbstractPValueBasedCalculation and for
+ * the test corrections that keep no state or that cache their samples in
+ * concurrent maps, e.g., WestfallYoungSingleStep, WestfallYoungStepDownCached
+ * and FDRBySteffenCached.
+ * WestfallYoungSingleStepApproximate, WestfallYoungStepDownCachedOld and
+ * WestfallYoungStepDownCachedSecondVersion must not be used here.
+ *
+ * The results are handed over to the handler within the calling thread in the
+ * order in which they are completed.
+ */
+public final class StudySetListCalculation
+{
+	/**
+	 * Receives the results of the study sets.
+	 */
+	public interface IResultHandler
+	{
+		/**
+		 * Called for each study set once its result is available.
+		 *
+		 * @param studySet the study set
+		 * @param result the result of the study set
+		 */
+		void result(StudySet studySet, EnrichedGOTermsResult result);
+	}
+
+	private final Ontology graph;
+	private final AssociationContainer associations;
+	private final PopulationSet populationSet;
+
+	/**
+	 * Constructs a new batch calculation.
+	 *
+	 * @param graph the ontology
+	 * @param associations the associations
+	 * @param populationSet the population against which all study sets are evaluated
+	 */
+	public StudySetListCalculation(Ontology graph, AssociationContainer associations, PopulationSet populationSet)
+	{
+		this.graph = graph;
+		this.associations = associations;
+		this.populationSet = populationSet;
+	}
+
+	/**
+	 * Calculates the results of all study sets using a pool with the given
+	 * number of threads.
+	 *
+	 * @param studySetList the study sets
+	 * @param calculation the calculation method
+	 * @param testCorrection the test correction
+	 * @param numberOfThreads the number of threads to use
+	 * @param handler receives the results
+	 */
+	public void calculate(StudySetList studySetList, ICalculation calculation, AbstractTestCorrection testCorrection, int numberOfThreads, IResultHandler handler)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try
+		{
+			calculate(studySetList, calculation, testCorrection, executor, handler);
+		} finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Calculates the results of all study sets using the given executor. The
+	 * method returns once all results have been handed over to the handler.
+	 * If the calculation of a study set fails, all pending calculations are
+	 * cancelled and the failure is rethrown.
+	 *
+	 * @param studySetList the study sets
+	 * @param calculation the calculation method
+	 * @param testCorrection the test correction
+	 * @param executor the executor that runs the calculations
+	 * @param handler receives the results
+	 */
+	public void calculate(StudySetList studySetList, final ICalculation calculation, final AbstractTestCorrection testCorrection, Executor executor, IResultHandler handler)
+	{
+		/* Enumerate the population before the tasks would compete for it */
+		populationSet.getContext(graph, associations);
+
+		CompletionService<Result> completion = new ExecutorCompletionService<Result>(executor);
+		ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>(studySetList.size());
+		try
+		{
+			for (final StudySet studySet : studySetList)
+			{
+				futures.add(completion.submit(new Callable<Result>()
+				{
+					@Override
+					public Result call()
+					{
+						return new Result(studySet, calculation.calculateStudySet(graph, associations, populationSet, studySet, testCorrection));
+					}
+				}));
+			}
+
+			for (int i = 0; i < futures.size(); i++)
+			{
+				Result r = get(take(completion));
+				handler.result(r.studySet, r.result);
+			}
+		} finally
+		{
+			for (Future<Result> f : futures)
+				f.cancel(true);
+		}
+	}
+
+	private static class Result
+	{
+		final StudySet studySet;
+		final EnrichedGOTermsResult result;
+
+		Result(StudySet studySet, EnrichedGOTermsResult result)
+		{
+			this.studySet = studySet;
+			this.result = result;
+		}
+	}
+
+	private static Future<Result> take(CompletionService<Result> completion)
+	{
+		try
+		{
+			return completion.take();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation has been interrupted", e);
+		}
+	}
+
+	/**
+	 * Wait for the given future and rethrow any failure of the task.
+	 */
+	private static Result get(Future<Result> future)
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation has been interrupted", e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -8,7 +8,6 @@ import ontologizer.set.StudySet;
 import ontologizer.statistics.Hypergeometric;
 import ontologizer.statistics.IPValueCalculationProgress;
 import ontologizer.statistics.PValue;
-import ontologizer.util.Util;
 
 /**
  * A specific term-for-term p-value calculation.
@@ -26,7 +25,7 @@ public class TermForTermPValueCalculation extends AbstractPValueCalculation
 
 	protected PValue [] calculatePValues(StudySet studySet, IPValueCalculationProgress progress)
 	{
-		int[] studyIds = getUniqueIDs(studySet);
+		long [] studyIdBits = getUniqueIDBits(getUniqueIDs(studySet));
 
 		PValue p [] = new PValue[getTotalNumberOfAnnotatedTerms()];
 
@@ -41,7 +40,7 @@ public class TermForTermPValueCalculation extends AbstractPValueCalculation
 			int goidAnnotatedPopGeneCount = term2Items[i].length;
 			int popGeneCount = populationSet.getGeneCount();
 			int studyGeneCount = studySet.getGeneCount();
-			int goidAnnotatedStudyGeneCount = Util.commonInts(studyIds, term2Items[i]);
+			int goidAnnotatedStudyGeneCount = countCommonItems(i, studyIdBits);
 
 			TermForTermGOTermProperties myP = new TermForTermGOTermProperties();
 			myP.term = term;
@@ -0,0 +1,207 @@
+package ontologizer.calculation;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermID;
+import ontologizer.set.PopulationSet;
+import ontologizer.set.StudySet;
+import ontologizer.statistics.Hypergeometric;
+import ontologizer.statistics.IPValueCalculationProgress;
+import ontologizer.statistics.PValue;
+
+/**
+ * The p-value calculation of the elim algorithm of topGO.
+ *
+ * The terms are processed bottom-up, i.e., a term is processed after all of
+ * its descendants. Study genes that are annotated to a significant term are
+ * marked and no longer considered for the ancestors of that term. The marked
+ * genes are represented as bitsets over the positions of the genes within
+ * the (sorted) study set, so a bitset needs only a few words per term and the
+ * number of unmarked genes is determined by counting bits.
+ */
+public class TopPValueCalculation extends AbstractPValueCalculation
+{
+	/** The annotated children of the terms (indexed by term) */
+	private final int [][] children;
+
+	/** The indices of the terms in the order in which they are processed */
+	private final int [] order;
+
+	public TopPValueCalculation(Ontology graph,
+			AssociationContainer associations, PopulationSet populationSet,
+			StudySet studySet, Hypergeometric hyperg)
+	{
+		super(graph, associations, populationSet, studySet, hyperg);
+
+		children = new int[termIds.length][];
+		for (int i = 0; i < termIds.length; i++)
+		{
+			Set<TermID> d = graph.getTermChildren(termIds[i]);
+			int [] annotatedChildren = new int[d != null ? d.size() : 0];
+			int n = 0;
+			if (d != null)
+			{
+				for (TermID c : d)
+				{
+					int ci = getIndex(c);
+					if (ci != Integer.MAX_VALUE)
+						annotatedChildren[n++] = ci;
+				}
+			}
+			children[i] = Arrays.copyOf(annotatedChildren, n);
+		}
+
+		int [] postOrder = new int[termIds.length];
+		int n = addInPostOrder(graph, graph.getRootTerm().getID(), new HashSet<TermID>(), postOrder, 0);
+		order = Arrays.copyOf(postOrder, n);
+	}
+
+	/**
+	 * Adds the indices of the given term and all its descendants in post
+	 * order, i.e., each term after its descendants. Terms to which no item of
+	 * the population is annotated are skipped.
+	 *
+	 * @return the number of indices in postOrder
+	 */
+	private int addInPostOrder(Ontology graph, TermID term, Set<TermID> visited, int [] postOrder, int n)
+	{
+		if (!visited.add(term))
+			return n;
+
+		Set<TermID> d = graph.getTermChildren(term);
+		if (d != null)
+		{
+			for (TermID c : d)
+				n = addInPostOrder(graph, c, visited, postOrder, n);
+		}
+
+		int i = getIndex(term);
+		if (i != Integer.MAX_VALUE)
+			postOrder[n++] = i;
+		return n;
+	}
+
+	protected PValue [] calculatePValues(StudySet studySet, IPValueCalculationProgress progress)
+	{
+		int [] studyIds = getUniqueIDs(studySet);
+		long [] studyIdBits = getUniqueIDBits(studyIds);
+
+		/* Position of the items within studyIds, only valid for study items */
+		int [] studyPos = new int[populationContext.getNumberOfItems()];
+		for (int s = 0; s < studyIds.length; s++)
+			studyPos[studyIds[s]] = s;
+
+		/* The genes that are marked for the ancestors of the term, i.e., the
+		 * marked genes of the term plus its annotated genes if it is
+		 * significant (indexed by term, words consecutive) */
+		int words = (studyIds.length + 63) >>> 6;
+		long [] marked = new long[termIds.length * words];
+
+		/* Study genes annotated to the current term */
+		long [] annotated = new long[words];
+
+		int popGeneCount = populationSet.getGeneCount();
+		int studyGeneCount = studySet.getGeneCount();
+
+		PValue p [] = new PValue[order.length];
+
+		for (int k = 0; k < order.length; k++)
+		{
+			if (progress != null && (k % 256) == 0)
+			{
+				progress.update(k);
+			}
+
+			int i = order[k];
+			int base = i * words;
+
+			/* Determine genes that are marked */
+			for (int c : children[i])
+			{
+				int childBase = c * words;
+				for (int w = 0; w < words; w++)
+					marked[base + w] |= marked[childBase + w];
+			}
+
+			/* Determine the annotated study genes */
+			for (int w = 0; w < words; w++)
+				annotated[w] = 0;
+			int [] termItems = term2Items[i];
+			long [] termBits = term2ItemBits[i];
+			if (termBits != null && studyIds.length < termItems.length)
+			{
+				for (int s = 0; s < studyIds.length; s++)
+				{
+					int item = studyIds[s];
+					if ((termBits[item >>> 6] & (1L << item)) != 0)
+						annotated[s >>> 6] |= 1L << s;
+				}
+			} else
+			{
+				for (int item : termItems)
+				{
+					if ((studyIdBits[item >>> 6] & (1L << item)) != 0)
+					{
+						int s = studyPos[item];
+						annotated[s >>> 6] |= 1L << s;
+					}
+				}
+			}
+
+			int annotatedStudyGeneCount = 0;
+			int markedStudyGeneCount = 0;
+			for (int w = 0; w < words; w++)
+			{
+				annotatedStudyGeneCount += Long.bitCount(annotated[w]);
+				markedStudyGeneCount += Long.bitCount(annotated[w] & marked[base + w]);
+			}
+
+			/* Marked genes are no longer considered */
+			int goidAnnotatedPopGeneCount = termItems.length - markedStudyGeneCount;
+			int goidAnnotatedStudyGeneCount = annotatedStudyGeneCount - markedStudyGeneCount;
+
+			TopGOTermProperties myP = new TopGOTermProperties();
+			myP.term = termIds[i];
+			myP.annotatedStudyGenes = annotatedStudyGeneCount;
+			myP.annotatedPopulationGenes = termItems.length;
+
+			if (goidAnnotatedStudyGeneCount != 0)
+			{
+				/* Imagine the following...
+				 *
+				 * In an urn you put popGeneCount number of balls where a color of a
+				 * ball can be white or black. The number of balls having white color
+				 * is goidAnnontatedPopGeneCount (all genes of the population which
+				 * are annotated by the current GOID).
+				 *
+				 * You choose to draw studyGeneCount number of balls without replacement.
+				 * How big is the probability, that you got goidAnnotatedStudyGeneCount
+				 * white balls after the whole drawing process?
+				 */
+
+				myP.p = hyperg.phypergeometric(popGeneCount, (double)goidAnnotatedPopGeneCount / (double)popGeneCount, studyGeneCount, goidAnnotatedStudyGeneCount);
+				myP.p_min = hyperg.dhyper(goidAnnotatedPopGeneCount,popGeneCount,goidAnnotatedPopGeneCount,goidAnnotatedPopGeneCount);
+
+				/* Mark the genes of significant terms for the ancestors */
+				if (myP.p < TopCalculation.SIGNIFICANCE_LEVEL)
+				{
+					for (int w = 0; w < words; w++)
+						marked[base + w] |= annotated[w];
+				}
+			} else
+			{
+				/* Mark this p value as irrelevant so it isn't considered in an mtc */
+				myP.p = 1.0;
+				myP.ignoreAtMTC = true;
+				myP.p_min = 1.0;
+			}
+			myP.p_adjusted = myP.p;
+			p[k] = myP;
+		}
+		return p;
+	}
+}
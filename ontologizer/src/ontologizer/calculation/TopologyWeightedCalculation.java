@@ -1,177 +1,422 @@
 package ontologizer.calculation;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ontologizer.association.AssociationContainer;
-import ontologizer.enumeration.TermEnumerator;
-import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
+import ontologizer.association.ItemAssociations;
 import ontologizer.ontology.Ontology;
+import ontologizer.ontology.Ontology.TermLevels;
 import ontologizer.ontology.TermID;
-import ontologizer.ontology.Ontology.GOLevels;
+import ontologizer.set.PopulationContext;
 import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.AbstractTestCorrection;
 import ontologizer.types.ByteString;
+import ontologizer.util.Util;
 
 public class TopologyWeightedCalculation extends AbstractHypergeometricCalculation implements IProgressFeedback
 {
 	static final double SIGNIFICANCE_LEVEL = 0.01;
 
+	/** Minimal number of terms of a level for which the level is processed concurrently */
+	private static final int MIN_CONCURRENT_TERMS = 64;
+
 	private ICalculationProgress calculationProgress;
 
-	private void computeTermSig(PopulationSet populationSet, StudySet studySet, Ontology graph, TermID u, Set<TermID> children, EnrichedGOTermsResult studySetResult, TermEnumerator studyTermEnumerator, TermEnumerator populationTermEnumerator)
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Sets the number of threads that are used to calculate the initial
+	 * significance of the terms of a level.
+	 *
+	 * @param numberOfThreads the number of threads, defaults to the number of processors.
+	 */
+	public void setNumberOfThreads(int numberOfThreads)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * The state of the weight algorithm for a single study set. Terms and
+	 * items are referred to by their indices within the population context.
+	 *
+	 * The weight of an item with respect to a term defaults to 1. Weights of
+	 * the items annotated to a term are stored in a row that is aligned with
+	 * the sorted items of the term and that is allocated once a weight of the
+	 * term changes. Weights of other items change only if a parent of the
+	 * term readjusts all of its items (case 1 below). These readjustments are
+	 * recorded as factors, which are applied when the significance of the
+	 * term is recalculated.
+	 */
+	private class Weights
 	{
-		if (graph.isArtificialRootTerm(u)) return;
+		private final Ontology graph;
+		private final PopulationContext context;
+		private final EnrichedGOTermsResult studySetResult;
 
-		/* Execute Fisher */
-		TopologyWeightGOTermProperties prop = wFisher(populationSet, studySet, graph, u, studySetResult, studyTermEnumerator, populationTermEnumerator);
+		private final int [][] term2Items;
+		private final int numberOfItems;
 
-		if (children == null || children.size() == 0) return;
+		/** The study set as bitset of item indices */
+		private final long [] studyIdBits;
+		private final int numberOfStudyItems;
 
-		HashMap<TermID,Double> weights = new HashMap<TermID,Double>();
-		HashSet<TermID> sigChildren = new HashSet<TermID>();
-		for (TermID child : children)
+		/** Number of study items annotated to a term (indexed by term) */
+		private final int [] studyCounts;
+
+		/** The weights of the items of a term or null if all are 1 (indexed by term) */
+		private final double [][] rows;
+
+		/** The parents that readjusted all of their items with the given factor (indexed by term) */
+		private final int [][] factorTerms;
+		private final double [][] factors;
+		private final int [] numberOfFactors;
+
+		private final TopologyWeightGOTermProperties [] props;
+
+		/* Scratch space for applying the factors, only used within the calling thread */
+		private final double [] itemWeights;
+		private final int [] itemStamps;
+		private int stamp;
+
+		Weights(Ontology graph, AssociationContainer associations, PopulationSet populationSet, StudySet studySet, EnrichedGOTermsResult studySetResult)
 		{
-			TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
-			double w = sigRatio(childProp.p, prop.p);
-			weights.put(child,w);
-			if (w > 1) sigChildren.add(child);
+			this.graph = graph;
+			this.studySetResult = studySetResult;
+
+			context = populationSet.getContext(graph, associations);
+			term2Items = context.getTerm2Items();
+			numberOfItems = context.getNumberOfItems();
+			hyperg.ensureCapacity(numberOfItems);
+
+			/* The term enumerator contains normalized item names, hence also try the synonyms */
+			int [] studyIds = new int[studySet.getGeneCount()];
+			int n = 0;
+			for (ByteString item : studySet)
+			{
+				int index = context.getItemIndex(item);
+				if (index == Integer.MAX_VALUE)
+				{
+					ItemAssociations ia = associations.get(item);
+					if (ia != null)
+						index = context.getItemIndex(ia.name());
+				}
+				if (index != Integer.MAX_VALUE)
+					studyIds[n++] = index;
+			}
+			studyIds = Arrays.copyOf(studyIds, n);
+			Arrays.sort(studyIds);
+			studyIdBits = Util.toBitSet(studyIds, numberOfItems);
+			numberOfStudyItems = n;
+
+			int numberOfTerms = context.getNumberOfTerms();
+			studyCounts = new int[numberOfTerms];
+			long [][] term2ItemBits = context.getTerm2ItemBits();
+			for (int t = 0; t < numberOfTerms; t++)
+			{
+				if (term2ItemBits[t] != null)
+					studyCounts[t] = Util.commonBits(term2ItemBits[t], studyIdBits);
+				else
+					studyCounts[t] = Util.commonInts(term2Items[t], studyIdBits);
+			}
+
+			rows = new double[numberOfTerms][];
+			factorTerms = new int[numberOfTerms][];
+			factors = new double[numberOfTerms][];
+			numberOfFactors = new int[numberOfTerms];
+			props = new TopologyWeightGOTermProperties[numberOfTerms];
+			itemWeights = new double[numberOfItems];
+			itemStamps = new int[numberOfItems];
 		}
 
-		if (sigChildren.size() == 0)
+		/**
+		 * @return the terms to which at least one item of the study set is annotated.
+		 */
+		Set<TermID> getAnnotatedTerms()
 		{
-			/* Case 1: U is the most significant term in the family */
-			for (TermID child : children)
+			TermID [] termIds = context.getTermIds();
+			HashSet<TermID> annotated = new HashSet<TermID>();
+			for (int t = 0; t < termIds.length; t++)
 			{
-				TopologyWeightGOTermProperties childProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(child);
-				double w = weights.get(child);
+				if (studyCounts[t] != 0)
+					annotated.add(termIds[t]);
+			}
+			return annotated;
+		}
 
-				/* Readjust the weight for every gene annotated to the child */
-				TermAnnotatedGenes childAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-				for (ByteString gene : childAnnotatedGenes.totalAnnotated)
-					childProp.setWeight(gene, childProp.getWeight(gene) * w);
+		int getIndex(TermID tid)
+		{
+			return context.getTermIndex(tid);
+		}
 
-				/* Recalculate the child's significance */
-				wFisher(populationSet, studySet, graph, child, studySetResult, studyTermEnumerator, populationTermEnumerator);
+		private boolean isStudyItem(int item)
+		{
+			return (studyIdBits[item >>> 6] & (1L << item)) != 0;
+		}
+
+		private double [] row(int t)
+		{
+			double [] row = rows[t];
+			if (row == null)
+			{
+				row = new double[term2Items[t].length];
+				Arrays.fill(row, 1);
+				rows[t] = row;
 			}
-			return;
+			return row;
 		}
 
-		/* Case 2: At least one child is more significant than u */
-		for (TermID child : sigChildren)
+		TopologyWeightGOTermProperties ensureGOTermPropertiesExistence(int t)
 		{
-			double w = weights.get(child);
+			TopologyWeightGOTermProperties prop = props[t];
+			if (prop == null)
+			{
+				prop = new TopologyWeightGOTermProperties();
+				prop.term = context.getTermIds()[t];
+				prop.annotatedStudyGenes = studyCounts[t];
+				prop.annotatedPopulationGenes = term2Items[t].length;
+				studySetResult.addGOTermProperties(prop);
+				props[t] = prop;
+			}
+			return prop;
+		}
 
-			Set<TermID> upper = graph.getTermsOfInducedGraph(graph.getRootTerm().getID(), u);
-			upper.remove(u);
-			upper.remove(graph.getRootTerm().getID());
+		/**
+		 * Perform the weighted fisher test. Terms with factors may only be
+		 * tested from the calling thread.
+		 *
+		 * @param t the term
+		 * @return the properties of the term
+		 */
+		TopologyWeightGOTermProperties wFisher(int t)
+		{
+			TopologyWeightGOTermProperties prop = props[t];
+			int [] items = term2Items[t];
+			double [] row = rows[t];
 
-			for (TermID up : upper)
+			double goidAnnotatedPopGeneCount = 0;
+			double goidAnnotatedStudyGeneCount = 0;
+
+			if (row == null)
+			{
+				goidAnnotatedPopGeneCount = items.length;
+				goidAnnotatedStudyGeneCount = studyCounts[t];
+			} else
 			{
-				ensureGOTermPropertiesExistence(graph, up, studySetResult, studyTermEnumerator, populationTermEnumerator);
+				for (int i = 0; i < items.length; i++)
+				{
+					goidAnnotatedPopGeneCount += row[i];
+					if (isStudyItem(items[i]))
+						goidAnnotatedStudyGeneCount += row[i];
+				}
+			}
 
-				TopologyWeightGOTermProperties upProp = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(up);
+			/* All other items have weight 1 unless a parent readjusted them */
+			double popGeneCount = goidAnnotatedPopGeneCount + (numberOfItems - items.length);
+			double studyGeneCount = goidAnnotatedStudyGeneCount + (numberOfStudyItems - studyCounts[t]);
 
-				TermAnnotatedGenes upAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(up);
+			int nf = numberOfFactors[t];
+			if (nf != 0)
+			{
+				int s = ++stamp;
+				for (int item : items)
+					itemStamps[item] = s;
 
-				for (ByteString gene : upAnnotatedGenes.totalAnnotated)
-					upProp.setWeight(gene, upProp.getWeight(gene) / w);
+				for (int f = 0; f < nf; f++)
+				{
+					for (int item : term2Items[factorTerms[t][f]])
+						if (itemStamps[item] != s) itemWeights[item] = 1;
+				}
+				for (int f = 0; f < nf; f++)
+				{
+					double w = factors[t][f];
+					for (int item : term2Items[factorTerms[t][f]])
+						if (itemStamps[item] != s) itemWeights[item] *= w;
+				}
+				for (int f = 0; f < nf; f++)
+				{
+					for (int item : term2Items[factorTerms[t][f]])
+					{
+						if (itemStamps[item] != s)
+						{
+							itemStamps[item] = s;
+							double delta = itemWeights[item] - 1;
+							popGeneCount += delta;
+							if (isStudyItem(item))
+								studyGeneCount += delta;
+						}
+					}
+				}
 			}
+
+			if (goidAnnotatedStudyGeneCount != 0)
+			{
+				prop.p = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
+						(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
+			} else
+			{
+				prop.p = 1;
+				prop.p_min = 1.0;
+			}
+			prop.p_adjusted = prop.p;
+			return prop;
+		}
+
+		/**
+		 * Multiplies the weights of all items annotated to the parent with
+		 * the given factor for the child.
+		 */
+		void readjust(int child, int parent, double w)
+		{
+			/* The items of the child are a subset of the ones of the parent */
+			double [] row = row(child);
+			for (int i = 0; i < row.length; i++)
+				row[i] *= w;
+
+			int nf = numberOfFactors[child];
+			if (factorTerms[child] == null)
+			{
+				factorTerms[child] = new int[2];
+				factors[child] = new double[2];
+			} else if (nf == factorTerms[child].length)
+			{
+				factorTerms[child] = Arrays.copyOf(factorTerms[child], nf * 2);
+				factors[child] = Arrays.copyOf(factors[child], nf * 2);
+			}
+			factorTerms[child][nf] = parent;
+			factors[child][nf] = w;
+			numberOfFactors[child] = nf + 1;
 		}
 
-		HashSet<TermID> newChildren = new HashSet<TermID>();
-		for (TermID t : children)
+		/**
+		 * Divides the weights of all items of all ancestors of the given term
+		 * except for the root by the given factor.
+		 */
+		void downweightAncestors(int u, double w)
 		{
-			if (!sigChildren.contains(t))
-				newChildren.add(t);
+			int root = context.getTermIndex(graph.getRootTerm().getID());
+			for (int up : context.getTermAncestors()[u])
+			{
+				if (up == root)
+					continue;
+
+				ensureGOTermPropertiesExistence(up);
+
+				double [] row = row(up);
+				for (int i = 0; i < row.length; i++)
+					row[i] /= w;
+			}
 		}
 	}
 
-	/**
-	 * Perform the weighted fisher test.
-	 *
-	 * @param populationSet
-	 * @param studySet
-	 * @param graph
-	 * @param u
-	 * @param studySetResult
-	 * @param studyTermEnumerator
-	 * @param populationTermEnumerator
-	 * @return
-	 */
-	private TopologyWeightGOTermProperties wFisher(PopulationSet populationSet,
-			StudySet studySet, Ontology graph, TermID u,
-			EnrichedGOTermsResult studySetResult,
-			TermEnumerator studyTermEnumerator,
-			TermEnumerator populationTermEnumerator)
+	private void computeTermSig(Weights weights, TermID u, Set<TermID> children)
 	{
+		if (weights.graph.isArtificialRootTerm(u)) return;
 
-		TopologyWeightGOTermProperties prop = ensureGOTermPropertiesExistence(
-				graph, u, studySetResult, studyTermEnumerator,
-				populationTermEnumerator);
-
-		TermAnnotatedGenes populationAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-		TermAnnotatedGenes studyAnnotatedGenes = studyTermEnumerator.getAnnotatedGenes(u);
+		TopologyWeightGOTermProperties prop = weights.props[weights.getIndex(u)];
 
-		double goidAnnotatedPopGeneCount = 0;
-		double goidAnnotatedStudyGeneCount = 0;
-		double popGeneCount = 0;
-		double studyGeneCount = 0;
+		if (children == null || children.size() == 0) return;
 
-		for (ByteString gene : populationAnnotatedGenes.totalAnnotated)
-			goidAnnotatedPopGeneCount += prop.getWeight(gene);
+		double [] w = new double[children.size()];
+		HashSet<TermID> sigChildren = new HashSet<TermID>();
+		int c = 0;
+		for (TermID child : children)
+		{
+			TopologyWeightGOTermProperties childProp = weights.props[weights.getIndex(child)];
+			w[c] = sigRatio(childProp.p, prop.p);
+			if (w[c] > 1) sigChildren.add(child);
+			c++;
+		}
 
-		for (ByteString gene : studyAnnotatedGenes.totalAnnotated)
-			goidAnnotatedStudyGeneCount += prop.getWeight(gene);
+		if (sigChildren.size() == 0)
+		{
+			/* Case 1: U is the most significant term in the family */
+			c = 0;
+			for (TermID child : children)
+			{
+				int ci = weights.getIndex(child);
 
-		/* Cannot use the population set items directly here as there could be synonyms. The term enumerator
-		 * will contain normalized item names.
-		 */
-		for (ByteString gene : populationTermEnumerator.getGenesAsList())
-			popGeneCount += prop.getWeight(gene);
+				/* Readjust the weight for every gene annotated to u */
+				weights.readjust(ci, weights.getIndex(u), w[c++]);
 
-		/* Same as above */
-		for (ByteString gene : studyTermEnumerator.getGenesAsList())
-			studyGeneCount += prop.getWeight(gene);
+				/* Recalculate the child's significance */
+				weights.wFisher(ci);
+			}
+			return;
+		}
 
-		if (goidAnnotatedStudyGeneCount != 0)
-		{
-			prop.p = hyperg.phypergeometric((int)Math.ceil(popGeneCount), Math.ceil(goidAnnotatedPopGeneCount) / Math.ceil(popGeneCount),
-					(int)studyGeneCount, (int)goidAnnotatedStudyGeneCount);
-		} else
+		/* Case 2: At least one child is more significant than u */
+		for (TermID child : sigChildren)
 		{
-			prop.p = 1;
-			prop.p_min = 1.0;
+			TopologyWeightGOTermProperties childProp = weights.props[weights.getIndex(child)];
+			weights.downweightAncestors(weights.getIndex(u), sigRatio(childProp.p, prop.p));
 		}
-		prop.p_adjusted = prop.p;
-		return prop;
 	}
 
-	private TopologyWeightGOTermProperties ensureGOTermPropertiesExistence(
-			Ontology graph, TermID u, EnrichedGOTermsResult studySetResult,
-			TermEnumerator studyTermEnumerator,
-			TermEnumerator populationTermEnumerator)
+	private double sigRatio(double a, double b)
+	{
+		return b/a;
+	}
+
+	/**
+	 * Performs the weighted fisher test for the given terms, using several
+	 * threads if worthwhile. This is possible as the significance of terms
+	 * of the same level depends only on the weights that were established by
+	 * processing the lower levels.
+	 */
+	private void wFisher(final Weights weights, final int [] terms, ExecutorService executor)
 	{
-		TopologyWeightGOTermProperties prop = (TopologyWeightGOTermProperties)studySetResult.getGOTermProperties(u);
-		if (prop == null)
+		if (executor == null || terms.length < MIN_CONCURRENT_TERMS)
 		{
-			TermAnnotatedGenes populationAnnotatedGenes = populationTermEnumerator.getAnnotatedGenes(u);
-			TermAnnotatedGenes studyAnnotatedGenes = studyTermEnumerator.getAnnotatedGenes(u);
+			for (int t : terms)
+				weights.wFisher(t);
+			return;
+		}
 
-			prop = new TopologyWeightGOTermProperties();
-			prop.term = u;
-			prop.annotatedStudyGenes = studyAnnotatedGenes.totalAnnotatedCount();
-			prop.annotatedPopulationGenes = populationAnnotatedGenes.totalAnnotatedCount();
-			studySetResult.addGOTermProperties(prop);
+		int chunks = Math.min(numberOfThreads, terms.length);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for (int c = 0; c < chunks; c++)
+		{
+			final int from = (int)((long)terms.length * c / chunks);
+			final int to = (int)((long)terms.length * (c + 1) / chunks);
+			tasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					for (int i = from; i < to; i++)
+						weights.wFisher(terms[i]);
+					return null;
+				}
+			});
 		}
-		return prop;
-	}
 
-	private double sigRatio(double a, double b)
-	{
-		return b/a;
+		try
+		{
+			for (Future<Void> f : executor.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation has been interrupted", e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
 	}
 
 	public EnrichedGOTermsResult calculateStudySet(Ontology graph,
@@ -182,36 +427,58 @@ public class TopologyWeightedCalculation extends AbstractHypergeometricCalculati
 		studySetResult.setCalculationName(this.getName());
 		studySetResult.setCorrectionName(testCorrection.getName());
 
-		TermEnumerator studyTermEnumerator = studySet.enumerateTerms(graph,goAssociations);
-		TermEnumerator populationTermEnumerator = populationSet.enumerateTerms(graph,goAssociations);
+		Weights weights = new Weights(graph, goAssociations, populationSet, studySet, studySetResult);
 
-		Set<TermID> allAnnotatedTerms = studyTermEnumerator.getAllAnnotatedTermsAsSet();
-		GOLevels levels = graph.getGOLevels(allAnnotatedTerms);
+		Set<TermID> allAnnotatedTerms = weights.getAnnotatedTerms();
+		TermLevels levels = graph.getTermLevels(allAnnotatedTerms);
 
 		int maxLevel = levels.getMaxLevel();
 
 		if (calculationProgress != null)
 			calculationProgress.init(maxLevel);
 
-		for (int i=maxLevel;i>=0;i--)
+		ExecutorService executor = numberOfThreads > 1 ? Executors.newFixedThreadPool(numberOfThreads) : null;
+		try
 		{
-			if (calculationProgress != null)
-				calculationProgress.update(maxLevel - i + 1);
+			for (int i=maxLevel;i>=0;i--)
+			{
+				if (calculationProgress != null)
+					calculationProgress.update(maxLevel - i + 1);
 
-			Set<TermID> terms = levels.getLevelTermSet(i);
+				Set<TermID> terms = levels.getLevelTermSet(i);
+				if (terms == null)
+					continue;
 
-			for (TermID t : terms)
-			{
-				Set<TermID> descs = graph.getTermChildren(t);
-				Set<TermID> annotatedDescs = new HashSet<TermID>();
-				for (TermID d : descs)
+				/* Children are on lower levels, so they have been processed already */
+				int [] levelTerms = new int[terms.size()];
+				int n = 0;
+				for (TermID t : terms)
 				{
-					if (allAnnotatedTerms.contains(d))
-						annotatedDescs.add(d);
+					if (graph.isArtificialRootTerm(t))
+						continue;
+					levelTerms[n] = weights.getIndex(t);
+					weights.ensureGOTermPropertiesExistence(levelTerms[n]);
+					n++;
 				}
+				wFisher(weights, Arrays.copyOf(levelTerms, n), executor);
 
-				computeTermSig(populationSet, studySet, graph, t, annotatedDescs, studySetResult, studyTermEnumerator, populationTermEnumerator);
+				for (TermID t : terms)
+				{
+					Set<TermID> descs = graph.getTermChildren(t);
+					Set<TermID> annotatedDescs = new HashSet<TermID>();
+					for (TermID d : descs)
+					{
+						if (allAnnotatedTerms.contains(d))
+							annotatedDescs.add(d);
+					}
+
+					computeTermSig(weights, t, annotatedDescs);
+				}
 			}
+		} finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
 		}
 
 		return studySetResult;
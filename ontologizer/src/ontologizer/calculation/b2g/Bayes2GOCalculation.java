@@ -3,6 +3,11 @@ package ontologizer.calculation.b2g;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,6 +23,7 @@ import ontologizer.ontology.TermID;
 import ontologizer.set.PopulationSet;
 import ontologizer.set.StudySet;
 import ontologizer.statistics.AbstractTestCorrection;
+import ontologizer.statistics.ParallelResampler;
 import ontologizer.types.ByteString;
 import sonumina.collections.IntMapper;
 
@@ -50,6 +56,25 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 	private int mcmcSteps = 1020000;
 	private int updateReportTime = 1000; /* Update report time in ms */
 
+	/** Number of steps after which the chains are synchronized */
+	private static final int SEGMENT_STEPS = 1000;
+
+	/** Number of steps after which convergence is checked in the adaptive mode */
+	private static final int CHECKPOINT_STEPS = 10000;
+
+	/** Number of consecutive checkpoints that must meet the tolerance */
+	private static final int STABLE_CHECKPOINTS = 3;
+
+	/** Maximal R-hat of several chains that is accepted as converged */
+	private static final double MAX_RHAT = 1.1;
+
+	private int burnin = 20000;
+	private double convergenceTolerance = 0;
+
+	private int numberOfChains = 1;
+	private double maxTemperature = 1;
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
 	private Bayes2GOCalculationProgress bayes2GOCalculationProgress;
 
 	/**
@@ -60,6 +85,21 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 	public static interface Bayes2GOCalculationProgress
 	{
 		void update(int iterationNumber, int step, double acceptProb, int numAccept, double score);
+
+		/**
+		 * Called at each checkpoint of the adaptive mode.
+		 *
+		 * @param iterationNumber the number of the current iteration
+		 * @param step the current step
+		 * @param burnin the number of steps of the burn-in or -1 if it
+		 *  is still in progress
+		 * @param maxMarginalChange the maximal change of a term marginal since
+		 *  the last checkpoint or NaN if not yet available
+		 * @param acceptRate the acceptance rate since the last checkpoint
+		 * @param rHat the R-hat of the scores of several chains or NaN
+		 * @param converged whether sampling is stopped as it has converged
+		 */
+		void checkpoint(int iterationNumber, int step, int burnin, double maxMarginalChange, double acceptRate, double rHat, boolean converged);
 	}
 
 
@@ -77,6 +117,11 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		this.calculationProgress = calc.calculationProgress;
 		this.takePopulationAsReference = calc.takePopulationAsReference;
 		this.mcmcSteps = calc.mcmcSteps;
+		this.numberOfChains = calc.numberOfChains;
+		this.maxTemperature = calc.maxTemperature;
+		this.numberOfThreads = calc.numberOfThreads;
+		this.burnin = calc.burnin;
+		this.convergenceTolerance = calc.convergenceTolerance;
 	}
 
 	/**
@@ -204,6 +249,81 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		this.mcmcSteps = mcmcSteps;
 	}
 
+	/**
+	 * Sets the number of chains that are run concurrently. The records of
+	 * all chains that sample the posterior are pooled. For more than a single
+	 * chain, the R-hat convergence diagnostic is reported.
+	 *
+	 * @param numberOfChains the number of chains, defaults to 1.
+	 */
+	public void setNumberOfChains(int numberOfChains)
+	{
+		if (numberOfChains < 1)
+			throw new IllegalArgumentException("The number of chains must be positive");
+		this.numberOfChains = numberOfChains;
+	}
+
+	/**
+	 * Sets the temperature of the hottest chain. If it is larger than 1,
+	 * the chains are run at geometrically spaced temperatures between 1 and
+	 * the given temperature and exchange their states via replica exchange
+	 * (parallel tempering). Only the states of the chain at temperature 1
+	 * are recorded then. Otherwise, all chains are independent.
+	 *
+	 * @param maxTemperature the maximal temperature, defaults to 1.
+	 */
+	public void setMaxTemperature(double maxTemperature)
+	{
+		if (!(maxTemperature >= 1))
+			throw new IllegalArgumentException("The maximal temperature must not be smaller than 1");
+		this.maxTemperature = maxTemperature;
+	}
+
+	/**
+	 * Sets the number of threads that are used to run the chains.
+	 *
+	 * @param numberOfThreads the number of threads, defaults to the number of processors.
+	 */
+	public void setNumberOfThreads(int numberOfThreads)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * Sets the number of steps whose states are not recorded. Ignored in
+	 * the adaptive mode, which detects the burn-in automatically.
+	 *
+	 * @param burnin the number of burn-in steps, defaults to 20000.
+	 */
+	public void setBurnin(int burnin)
+	{
+		if (burnin < 0)
+			throw new IllegalArgumentException("The burn-in must not be negative");
+		this.burnin = burnin;
+	}
+
+	/**
+	 * Enables the adaptive mode if the given tolerance is positive. In this
+	 * mode, the chains are checked every 10000 steps. The burn-in ends at the
+	 * first checkpoint at which the mean score no longer increases and the
+	 * acceptance rate changed by less than 10 percent. Afterwards, sampling
+	 * stops as soon as no term marginal has changed by more than the
+	 * tolerance for three consecutive checkpoints and, for several chains,
+	 * the R-hat of the scores is at most 1.1. The number of mcmc steps is
+	 * an upper bound then.
+	 *
+	 * @param convergenceTolerance the tolerance, 0 (the default) disables
+	 *  the adaptive mode.
+	 */
+	public void setConvergenceTolerance(double convergenceTolerance)
+	{
+		if (!(convergenceTolerance >= 0))
+			throw new IllegalArgumentException("The tolerance must not be negative");
+		this.convergenceTolerance = convergenceTolerance;
+	}
+
 	/**
 	 * Sets whether a random start should be used.
 	 *
@@ -246,7 +366,7 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		Bayes2GOEnrichedGOTermsResult result = new Bayes2GOEnrichedGOTermsResult(graph,goAssociations,studySet,populationSet.getGeneCount());
 		result.setCalculationName(this.getName());
 
-		TermEnumerator populationEnumerator = populationSet.enumerateTerms(graph, goAssociations);
+		TermEnumerator populationEnumerator = populationSet.getContext(graph, goAssociations).getEnumerator();
 		TermEnumerator studyEnumerator = studySet.enumerateTerms(graph, goAssociations);
 
 		if (valuedCalculation)
@@ -350,138 +470,121 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 
 		for (int i=0;i<maxIter;i++)
 		{
-			Bayes2GOScore bayes2GOScore;
-
-			FixedAlphaBetaScore fixedAlphaBetaScore = null;
-			ValuedGOScore valuedScore = null;
-
 			if (!valuedCalculation)
 			{
-				fixedAlphaBetaScore = new FixedAlphaBetaScore(rnd, termLinks, geneMapper.getDense(studyEnumerator.getGenes()));
-				fixedAlphaBetaScore.setIntegrateParams(integrateParams);
-
 				if (doEm)
 				{
 					System.out.println("EM-Iter("+i+")" + alpha + "  " + beta + "  " + expectedNumberOfTerms);
 				} else
 				{
 					System.out.println("MCMC only: " + alpha + "  " + beta + "  " + expectedNumberOfTerms);
-
 				}
+			}
 
-				fixedAlphaBetaScore.setAlpha(alpha);
-				if (this.alpha.hasMax())
-					fixedAlphaBetaScore.setMaxAlpha(this.alpha.getMax());
-				fixedAlphaBetaScore.setBeta(beta);
-				if (this.beta.hasMax())
-					fixedAlphaBetaScore.setMaxBeta(this.beta.getMax());
-				fixedAlphaBetaScore.setExpectedNumberOfTerms(expectedNumberOfTerms);
-				fixedAlphaBetaScore.setUsePrior(usePrior);
-
-				logger.log(Level.INFO, "Score of empty set: " + fixedAlphaBetaScore.getScore());
+			/* Each chain gets its own random source, a single chain uses the main one */
+			long chainSeed = numberOfChains > 1 ? rnd.nextLong() : 0;
+			McmcChain [] chains = new McmcChain[numberOfChains];
+			for (int c = 0; c < numberOfChains; c++)
+			{
+				Random chainRnd = numberOfChains > 1 ? ParallelResampler.createRandom(chainSeed, c) : rnd;
+				Bayes2GOScore chainScore;
 
-				/* Provide a starting point */
-				if (randomStart)
+				if (!valuedCalculation)
 				{
-					int numberOfTerms = fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS[rnd.nextInt(fixedAlphaBetaScore.EXPECTED_NUMBER_OF_TERMS.length)];
-					double pForStart = ((double)numberOfTerms) / allTerms.size();
+					FixedAlphaBetaScore fabs = new FixedAlphaBetaScore(chainRnd, termLinks, geneMapper.getDense(studyEnumerator.getGenes()));
+					fabs.setIntegrateParams(integrateParams);
+					fabs.setAlpha(alpha);
+					if (this.alpha.hasMax())
+						fabs.setMaxAlpha(this.alpha.getMax());
+					fabs.setBeta(beta);
+					if (this.beta.hasMax())
+						fabs.setMaxBeta(this.beta.getMax());
+					fabs.setExpectedNumberOfTerms(expectedNumberOfTerms);
+					fabs.setUsePrior(usePrior);
+
+					if (c == 0)
+						logger.log(Level.INFO, "Score of empty set: " + fabs.getScore());
+
+					/* Provide a starting point */
+					if (randomStart)
+					{
+						int numberOfTerms = fabs.EXPECTED_NUMBER_OF_TERMS[chainRnd.nextInt(fabs.EXPECTED_NUMBER_OF_TERMS.length)];
+						double pForStart = ((double)numberOfTerms) / allTerms.size();
+
+						for (int j=0;j<allTerms.size();j++)
+							if (chainRnd.nextDouble() < pForStart) fabs.switchState(j);
 
-					for (int j=0;j<allTerms.size();j++)
-						if (rnd.nextDouble() < pForStart) fixedAlphaBetaScore.switchState(j);
+						logger.log(Level.INFO, "Starting with " + fabs.getActiveTerms().length + " terms (p=" + pForStart + ")");
+					}
 
-					logger.log(Level.INFO, "Starting with " + fixedAlphaBetaScore.getActiveTerms().length + " terms (p=" + pForStart + ")");
+					chainScore = fabs;
+				} else
+				{
+					chainScore = new ValuedGOScore(chainRnd, termLinks, termMapper, geneMapper, studySet);
 				}
 
-				bayes2GOScore = fixedAlphaBetaScore;
-			} else
+				chains[c] = new McmcChain(chainScore, chainRnd);
+				if (numberOfChains > 1)
+					chains[c].temperature = Math.pow(maxTemperature, (double)c / (numberOfChains - 1));
+			}
+			if (bayes2GOCalculationProgress != null)
 			{
-				valuedScore = new ValuedGOScore(rnd, termLinks, termMapper, geneMapper, studySet);
-				bayes2GOScore = valuedScore;
+				final int iteration = i;
+				chains[0].listener = new McmcChain.IStepListener()
+				{
+					@Override
+					public void step(int step, double acceptProb, int numAccepts, double score)
+					{
+						bayes2GOCalculationProgress.update(iteration, step, acceptProb, numAccepts, score);
+					}
+				};
 			}
 
+			Bayes2GOScore bayes2GOScore = chains[0].score;
+			FixedAlphaBetaScore fixedAlphaBetaScore = chains[0].fixedAlphaBetaScore;
+
 			result.setScore(bayes2GOScore);
 
-			double score = bayes2GOScore.getScore();
-			logger.log(Level.INFO, "Score of initial set: " + score);
+			logger.log(Level.INFO, "Score of initial set: " + chains[0].currentScore);
 
 			int maxSteps = mcmcSteps;
-			int burnin = 20000;
-			int numAccepts = 0;
-			int numRejects = 0;
 
 			if (calculationProgress != null)
 				calculationProgress.init(maxSteps);
 
-			double maxScore = score;
-			int [] maxScoredTerms = bayes2GOScore.getActiveTerms();
-			double maxScoredAlpha = Double.NaN;
-			double maxScoredBeta = Double.NaN;
-			double maxScoredP = Double.NaN;
-			int maxWhenSeen = -1;
-
-			long start = System.currentTimeMillis();
+			int steps = runChains(chains, maxSteps, rnd, i);
+			if (steps < maxSteps)
+				logger.log(Level.INFO, "Converged after " + steps + " of " + maxSteps + " steps");
 
-			for (int t=0;t<maxSteps;t++)
+			/* Pool the records of all chains into the first one */
+			McmcChain best = chains[0];
+			int numAccepts = 0;
+			int numRejects = 0;
+			for (int c = 0; c < numberOfChains; c++)
 			{
-				/* Remember maximum score and terms */
-				if (score > maxScore)
-				{
-					maxScore = score;
-					maxScoredTerms = bayes2GOScore.getActiveTerms();
-					if (fixedAlphaBetaScore != null)
-					{
-						maxScoredAlpha = fixedAlphaBetaScore.getAlpha();
-						maxScoredBeta = fixedAlphaBetaScore.getBeta();
-						maxScoredP = fixedAlphaBetaScore.getP();
-					}
-					maxWhenSeen = t;
-				}
-
-				long now = System.currentTimeMillis();
-				if (now - start > updateReportTime)
-				{
-					logger.log(Level.INFO, (t*100/maxSteps) + "% (score=" + score +" maxScore=" + maxScore + " #terms="+bayes2GOScore.getActiveTerms().length+
-										" accept/reject=" + Double.toString((double)numAccepts / (double)numRejects) +
-										" accept/steps=" + Double.toString((double)numAccepts / (double)t) +
-										" exp=" + expectedNumberOfTerms + " usePrior=" + usePrior + ")");
-					start = now;
-
-					if (calculationProgress != null)
-						calculationProgress.update(t);
-				}
-
-				long oldPossibilities = bayes2GOScore.getNeighborhoodSize();
-				long r = rnd.nextLong();
-				bayes2GOScore.proposeNewState(r);
-				double newScore = bayes2GOScore.getScore();
-				long newPossibilities = bayes2GOScore.getNeighborhoodSize();
-
-				double acceptProb = Math.exp(newScore - score)*(double)oldPossibilities/(double)newPossibilities; /* last quotient is the hasting ratio */
-
-				boolean DEBUG = false;
-
-				if (DEBUG) System.out.print(bayes2GOScore.getActiveTerms().length + "  score=" + score + " newScore="+newScore + " maxScore=" + maxScore + " a=" + acceptProb);
-
-				double u = rnd.nextDouble();
-				if (u >= acceptProb)
-				{
-					bayes2GOScore.undoProposal();
-					numRejects++;
-				} else
-				{
-					score = newScore;
-					numAccepts++;
-				}
-				if (DEBUG) System.out.println();
-
-				if (t>burnin)
-					bayes2GOScore.record();
+				if (c != 0)
+					bayes2GOScore.addRecords(chains[c].score);
+				if (chains[c].maxScore > best.maxScore)
+					best = chains[c];
+				numAccepts += chains[c].numAccepts;
+				numRejects += chains[c].numRejects;
+			}
 
+			double maxScore = best.maxScore;
+			int [] maxScoredTerms = best.getMaxScoredTerms();
+			double maxScoredAlpha = best.maxScoredAlpha;
+			double maxScoredBeta = best.maxScoredBeta;
+			double maxScoredP = best.maxScoredP;
+			int maxWhenSeen = best.maxWhenSeen;
 
-				if (bayes2GOCalculationProgress != null)
-					bayes2GOCalculationProgress.update(i, t, acceptProb, numAccepts, score);
+			if (numberOfChains > 1)
+			{
+				double scoreRHat = McmcChain.scoreRHat(chains);
+				double activeTermsRHat = McmcChain.activeTermsRHat(chains);
+				result.setScoreRHat(scoreRHat);
+				result.setActiveTermsRHat(activeTermsRHat);
+				logger.log(Level.INFO, "R-hat of " + numberOfChains + " chains: score=" + scoreRHat + " #terms=" + activeTermsRHat);
 			}
-
 			if (fixedAlphaBetaScore != null)
 			{
 				if (doAlphaEm)
@@ -564,6 +667,241 @@ public class Bayes2GOCalculation implements ICalculation, IProgressFeedback
 		}
 	}
 
+	/**
+	 * Performs the given number of steps on all chains. The chains are
+	 * advanced concurrently in segments. After each segment, chains of
+	 * neighboured temperatures may exchange their temperatures.
+	 *
+	 * In the adaptive mode, the run may be stopped early.
+	 *
+	 * @param chains the chains to run
+	 * @param maxSteps the number of steps
+	 * @param rnd the random source for the exchanges
+	 * @param iteration the current iteration
+	 * @return the number of steps that have been performed.
+	 */
+	private int runChains(McmcChain [] chains, int maxSteps, Random rnd, int iteration)
+	{
+		ConvergenceMonitor monitor = convergenceTolerance > 0 ? new ConvergenceMonitor(iteration, maxSteps, chains[0].score.getNumberOfTerms()) : null;
+
+		int threads = Math.min(numberOfThreads, chains.length);
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+
+		try
+		{
+			/* The chains ordered by their temperature */
+			McmcChain [] ladder = chains.clone();
+			int parity = 0;
+			int numExchanges = 0;
+
+			long start = System.currentTimeMillis();
+
+			for (int from = 0; from < maxSteps; from += SEGMENT_STEPS)
+			{
+				final int segmentFrom = from;
+				final int segmentTo = (int)Math.min(maxSteps, (long)from + SEGMENT_STEPS);
+				final int burnin = monitor != null ? monitor.burnin : this.burnin;
+
+				if (executor == null)
+				{
+					for (McmcChain chain : chains)
+						chain.run(segmentFrom, segmentTo, burnin);
+				} else
+				{
+					ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chains.length);
+					for (final McmcChain chain : chains)
+					{
+						tasks.add(new Callable<Void>()
+						{
+							@Override
+							public Void call()
+							{
+								chain.run(segmentFrom, segmentTo, burnin);
+								return null;
+							}
+						});
+					}
+					invokeAll(executor, tasks);
+				}
+
+				if (maxTemperature > 1)
+				{
+					numExchanges += exchangeTemperatures(ladder, parity, rnd);
+					parity ^= 1;
+				}
+
+				long now = System.currentTimeMillis();
+				if (now - start > updateReportTime)
+				{
+					McmcChain cold = ladder[0];
+					logger.log(Level.INFO, ((long)segmentTo*100/maxSteps) + "% (score=" + cold.currentScore +" maxScore=" + cold.maxScore + " #terms="+cold.score.getNumberOfActiveTerms()+
+										" accept/reject=" + Double.toString((double)cold.numAccepts / (double)cold.numRejects) +
+										" accept/steps=" + Double.toString((double)cold.numAccepts / (double)segmentTo) +
+										" exchanges=" + numExchanges + " usePrior=" + usePrior + ")");
+					start = now;
+
+					if (calculationProgress != null)
+						calculationProgress.update(segmentTo);
+				}
+
+				if (monitor != null && segmentTo % CHECKPOINT_STEPS == 0 && monitor.checkpoint(chains, segmentTo))
+					return segmentTo;
+			}
+			return maxSteps;
+		} finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Monitors the chains at the checkpoints of the adaptive mode.
+	 */
+	private class ConvergenceMonitor
+	{
+		private final int iteration;
+		private final int maxSteps;
+
+		/** The last step that is not recorded */
+		int burnin = Integer.MAX_VALUE;
+
+		private double [] marginals;
+		private double [] previousMarginals;
+		private boolean hasPreviousMarginals;
+
+		private double previousMeanScore = Double.NaN;
+		private double previousAcceptRate = Double.NaN;
+		private int stableCheckpoints;
+
+		ConvergenceMonitor(int iteration, int maxSteps, int numberOfTerms)
+		{
+			this.iteration = iteration;
+			this.maxSteps = maxSteps;
+			this.marginals = new double[numberOfTerms];
+			this.previousMarginals = new double[numberOfTerms];
+		}
+
+		/**
+		 * Checks the chains at the given step.
+		 *
+		 * @param chains the chains
+		 * @param step the number of steps performed so far
+		 * @return whether the sampling has converged
+		 */
+		boolean checkpoint(McmcChain [] chains, int step)
+		{
+			double acceptRate = McmcChain.intervalAcceptRate(chains);
+			double meanScore = 0;
+			for (McmcChain c : chains)
+			{
+				c.endInterval();
+				meanScore += c.lastIntervalMeanScore;
+			}
+			meanScore /= chains.length;
+
+			double maxMarginalChange = Double.NaN;
+			double rHat = Double.NaN;
+			boolean converged = false;
+
+			if (burnin == Integer.MAX_VALUE)
+			{
+				boolean settled = meanScore <= previousMeanScore && Math.abs(acceptRate - previousAcceptRate) <= 0.1 * previousAcceptRate;
+				if (settled || step >= maxSteps / 2)
+				{
+					/* Record from the next step on */
+					burnin = step - 1;
+					logger.log(Level.INFO, "Burn-in detected after " + step + " steps");
+				}
+			} else if (McmcChain.marginals(chains, marginals))
+			{
+				if (hasPreviousMarginals)
+				{
+					maxMarginalChange = 0;
+					for (int i = 0; i < marginals.length; i++)
+						maxMarginalChange = Math.max(maxMarginalChange, Math.abs(marginals[i] - previousMarginals[i]));
+				}
+
+				if (chains.length > 1)
+					rHat = McmcChain.scoreRHat(chains);
+
+				if (maxMarginalChange < convergenceTolerance && !(rHat > MAX_RHAT))
+					stableCheckpoints++;
+				else
+					stableCheckpoints = 0;
+				converged = stableCheckpoints >= STABLE_CHECKPOINTS;
+
+				double [] t = previousMarginals;
+				previousMarginals = marginals;
+				marginals = t;
+				hasPreviousMarginals = true;
+			}
+
+			previousMeanScore = meanScore;
+			previousAcceptRate = acceptRate;
+
+			if (bayes2GOCalculationProgress != null)
+				bayes2GOCalculationProgress.checkpoint(iteration, step, burnin == Integer.MAX_VALUE ? -1 : burnin + 1, maxMarginalChange, acceptRate, rHat, converged);
+
+			return converged;
+		}
+	}
+
+	/**
+	 * Proposes to exchange the temperatures of neighboured chains of the
+	 * ladder. Depending on the parity, either the pairs starting at even or
+	 * at odd positions are considered.
+	 *
+	 * @param ladder the chains ordered by their temperature
+	 * @param parity 0 or 1
+	 * @param rnd the random source
+	 * @return the number of accepted exchanges
+	 */
+	private static int exchangeTemperatures(McmcChain [] ladder, int parity, Random rnd)
+	{
+		int accepted = 0;
+		for (int k = parity; k + 1 < ladder.length; k += 2)
+		{
+			McmcChain a = ladder[k];
+			McmcChain b = ladder[k + 1];
+
+			double logAcceptProb = (b.currentScore - a.currentScore) * (1 / a.temperature - 1 / b.temperature);
+			if (logAcceptProb >= 0 || rnd.nextDouble() < Math.exp(logAcceptProb))
+			{
+				double t = a.temperature;
+				a.temperature = b.temperature;
+				b.temperature = t;
+
+				ladder[k] = b;
+				ladder[k + 1] = a;
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+
+	/**
+	 * Runs the given tasks and rethrows any failure of a task.
+	 */
+	private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks)
+	{
+		try
+		{
+			for (Future<Void> f : executor.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Calculation has been interrupted", e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
 	/**
 	 * Set the callback interface for notifications about a special Bayes2GO progress
 	 *
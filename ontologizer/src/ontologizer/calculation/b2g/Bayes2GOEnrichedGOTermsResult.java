@@ -20,6 +20,12 @@ public class Bayes2GOEnrichedGOTermsResult extends EnrichedGOTermsResult
 	/* FIXME: Remove this */
 	private IntMapper<TermID> termMapper;
 
+	/** R-hat of the scores of several chains */
+	private double scoreRHat = Double.NaN;
+
+	/** R-hat of the number of active terms of several chains */
+	private double activeTermsRHat = Double.NaN;
+
 	public Bayes2GOEnrichedGOTermsResult(Ontology go,
 			AssociationContainer associations, StudySet studySet,
 			int populationGeneCount)
@@ -46,4 +52,32 @@ public class Bayes2GOEnrichedGOTermsResult extends EnrichedGOTermsResult
 	{
 		return termMapper;
 	}
+
+	public void setScoreRHat(double scoreRHat)
+	{
+		this.scoreRHat = scoreRHat;
+	}
+
+	/**
+	 * @return the potential scale reduction factor (R-hat) of the scores of
+	 *  the chains or NaN if only a single chain was run.
+	 */
+	public double getScoreRHat()
+	{
+		return scoreRHat;
+	}
+
+	public void setActiveTermsRHat(double activeTermsRHat)
+	{
+		this.activeTermsRHat = activeTermsRHat;
+	}
+
+	/**
+	 * @return the potential scale reduction factor (R-hat) of the number of
+	 *  active terms of the chains or NaN if only a single chain was run.
+	 */
+	public double getActiveTermsRHat()
+	{
+		return activeTermsRHat;
+	}
 }
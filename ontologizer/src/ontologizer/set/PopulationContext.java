@@ -0,0 +1,318 @@
+package ontologizer.set;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.association.CompactAssociationContainer;
+import ontologizer.enumeration.TermAnnotations;
+import ontologizer.enumeration.TermEnumerator;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+import ontologizer.util.Util;
+import sonumina.collections.ObjectIntHashMap;
+import sonumina.math.graph.SlimDirectedGraphView;
+
+/**
+ * An immutable snapshot of the enumeration of a population with respect to
+ * an ontology, the associations and an optional evidence filter.
+ *
+ * Besides the term enumerator, the context holds the index based
+ * representation that is used by the calculations, i.e., the mapping of
+ * items and terms to dense indices and the (sorted) item indices of each
+ * annotated term.
+ *
+ * A context is created once and may then be shared among all study sets and
+ * calculations that refer to the same population. It is safe to use it from
+ * several threads concurrently as long as the returned arrays and objects are
+ * not modified. Data that only some calculations need, e.g., the ancestors
+ * of the terms, is created on demand. Contexts are usually obtained via
+ * {@link PopulationSet#getContext(Ontology, AssociationContainer, Set)}, which
+ * caches them.
+ */
+public final class PopulationContext
+{
+	private final Ontology ontology;
+	private final AssociationContainer associations;
+	private final Set<ByteString> evidences;
+
+	private final TermEnumerator enumerator;
+
+	/** The items of the population, i.e., all items with at least one annotation */
+	private final ByteString [] items;
+	private final ObjectIntHashMap<ByteString> item2Index;
+
+	/** The annotated terms in the order of the enumerator */
+	private final TermID [] termIds;
+	private final ObjectIntHashMap<TermID> termId2Index;
+
+	/** The sorted item indices of all items annotated to a term (indexed by term) */
+	private final int [][] term2Items;
+
+	/**
+	 * The items of the terms as bitsets. Only dense terms, for which a bitset
+	 * needs no more space than the sorted array, have one. The entries of all
+	 * other terms are null.
+	 */
+	private final long [][] term2ItemBits;
+
+	/** The sorted indices of the ancestors of a term (indexed by term), created on demand */
+	private volatile int [][] termAncestors;
+
+	private PopulationContext(Ontology ontology, AssociationContainer associations, Set<ByteString> evidences, StudySet population)
+	{
+		this.ontology = ontology;
+		this.associations = associations;
+		this.evidences = evidences == null ? null : Collections.unmodifiableSet(new HashSet<ByteString>(evidences));
+
+		enumerator = new TermEnumerator(ontology);
+		CompactAssociationContainer compact = associations.getCompactContainer(ontology.getTermMap().getTermIDInterner()).filter(this.evidences);
+		for (ByteString item : population)
+		{
+			int index = compact.getItemIndex(item);
+			if (index != -1)
+				enumerator.push(compact, index);
+		}
+
+		List<ByteString> itemList = enumerator.getGenesAsList();
+		items = itemList.toArray(new ByteString[itemList.size()]);
+		item2Index = new ObjectIntHashMap<ByteString>(items.length * 3 / 2);
+		for (int i = 0; i < items.length; i++)
+			item2Index.put(items[i], i);
+
+		int numberOfTerms = enumerator.getTotalNumberOfAnnotatedTerms();
+		termIds = new TermID[numberOfTerms];
+		termId2Index = new ObjectIntHashMap<TermID>(numberOfTerms);
+		term2Items = new int[numberOfTerms][];
+		term2ItemBits = new long[numberOfTerms][];
+
+		int i = 0;
+		for (TermID term : enumerator)
+		{
+			TermAnnotations tag = enumerator.getAnnotatedGenes(term);
+			int [] termItems = new int[tag.totalAnnotated.size()];
+			int j = 0;
+			for (ByteString item : tag.totalAnnotated)
+				termItems[j++] = item2Index.get(item);
+			Arrays.sort(termItems);
+
+			termIds[i] = term;
+			termId2Index.put(term, i);
+			term2Items[i] = termItems;
+			if (isDense(termItems.length, items.length))
+				term2ItemBits[i] = Util.toBitSet(termItems, items.length);
+			i++;
+		}
+	}
+
+	/**
+	 * Creates a new context. Note that the context is a snapshot, i.e., it
+	 * doesn't reflect later changes of the population.
+	 *
+	 * @param ontology the ontology
+	 * @param associations the associations
+	 * @param population the population
+	 * @param evidences consider only annotations of the given evidence codes or
+	 *  null to consider all annotations.
+	 * @return the new context
+	 */
+	public static PopulationContext create(Ontology ontology, AssociationContainer associations, StudySet population, Set<ByteString> evidences)
+	{
+		return new PopulationContext(ontology, associations, evidences, population);
+	}
+
+	/**
+	 * Decides whether a term with the given number of items is dense, i.e.,
+	 * whether its items are worth to be stored as a bitset. This is the case
+	 * if the bitset doesn't need more words than the sorted array.
+	 *
+	 * @param nTermItems number of items annotated to the term
+	 * @param numberOfItems number of items of the population
+	 * @return whether the term is dense.
+	 */
+	private static boolean isDense(int nTermItems, int numberOfItems)
+	{
+		return nTermItems >= numberOfItems / 32;
+	}
+
+	/**
+	 * Returns whether this context has been created for the given parameters.
+	 * Ontology and associations are compared by identity, the evidences by
+	 * equality.
+	 *
+	 * @param ontology the ontology
+	 * @param associations the associations
+	 * @param evidences the evidences, may be null.
+	 * @return whether the context matches.
+	 */
+	public boolean matches(Ontology ontology, AssociationContainer associations, Set<ByteString> evidences)
+	{
+		if (this.ontology != ontology || this.associations != associations)
+			return false;
+		if (this.evidences == null)
+			return evidences == null;
+		return this.evidences.equals(evidences);
+	}
+
+	public Ontology getOntology()
+	{
+		return ontology;
+	}
+
+	public AssociationContainer getAssociations()
+	{
+		return associations;
+	}
+
+	/**
+	 * @return the evidences or null, if annotations were not filtered.
+	 */
+	public Set<ByteString> getEvidences()
+	{
+		return evidences;
+	}
+
+	/**
+	 * Returns the term enumerator of the population. The enumerator is shared
+	 * and must not be modified.
+	 *
+	 * @return the enumerator
+	 */
+	public TermEnumerator getEnumerator()
+	{
+		return enumerator;
+	}
+
+	/**
+	 * @return the number of items of the population, i.e., the size of the
+	 *  item bitsets.
+	 */
+	public int getNumberOfItems()
+	{
+		return items.length;
+	}
+
+	/**
+	 * @param i the index of the item
+	 * @return the item with the given index
+	 */
+	public ByteString getItem(int i)
+	{
+		return items[i];
+	}
+
+	/**
+	 * @param item the item
+	 * @return the index of the item or Integer.MAX_VALUE if the item is not
+	 *  part of the population.
+	 */
+	public int getItemIndex(ByteString item)
+	{
+		return item2Index.getIfAbsent(item, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of terms to which at least a single item has been annotated.
+	 */
+	public int getNumberOfTerms()
+	{
+		return termIds.length;
+	}
+
+	/**
+	 * Returns the annotated terms. The index of a term within the array
+	 * corresponds to its term index. The array must not be modified.
+	 *
+	 * @return the terms
+	 */
+	public TermID [] getTermIds()
+	{
+		return termIds;
+	}
+
+	/**
+	 * @param tid the term
+	 * @return the index of the term or Integer.MAX_VALUE if no item of the
+	 *  population is annotated to it.
+	 */
+	public int getTermIndex(TermID tid)
+	{
+		return termId2Index.getIfAbsent(tid, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the sorted item indices of all terms. The arrays must not be
+	 * modified.
+	 *
+	 * @return the item indices indexed by term
+	 */
+	public int [][] getTerm2Items()
+	{
+		return term2Items;
+	}
+
+	/**
+	 * Returns the bitsets of the dense terms. The entries of all other terms
+	 * are null. The arrays must not be modified.
+	 *
+	 * @return the item bitsets indexed by term
+	 */
+	public long [][] getTerm2ItemBits()
+	{
+		return term2ItemBits;
+	}
+
+	/**
+	 * Returns the ancestors of all terms with respect to all relations. The
+	 * ancestors of a term don't include the term itself. They are derived
+	 * from the closure of the slim graph view of the ontology when they are
+	 * requested for the first time. The arrays must not be modified.
+	 *
+	 * @return the sorted term indices of the ancestors indexed by term
+	 */
+	public int [][] getTermAncestors()
+	{
+		int [][] a = termAncestors;
+		if (a == null)
+		{
+			synchronized (this)
+			{
+				a = termAncestors;
+				if (a == null)
+					termAncestors = a = createTermAncestors();
+			}
+		}
+		return a;
+	}
+
+	private int [][] createTermAncestors()
+	{
+		SlimDirectedGraphView<TermID> slim = ontology.getTermIDSlimGraphView();
+		int [][] ancestors = new int[termIds.length][];
+		for (int i = 0; i < termIds.length; i++)
+		{
+			int v = slim.getVertexIndex(termIds[i]);
+			int [] slimAncestors = v != -1 ? slim.getAncestorIndices(v) : new int[0];
+			int [] a = new int[slimAncestors.length];
+			int n = 0;
+			for (int sa : slimAncestors)
+			{
+				if (sa == v)
+					continue;
+
+				/* Ancestors of annotated terms are annotated as well, but be defensive */
+				int t = getTermIndex(slim.getVertex(sa));
+				if (t != Integer.MAX_VALUE)
+					a[n++] = t;
+			}
+			a = Arrays.copyOf(a, n);
+			Arrays.sort(a);
+			ancestors[i] = a;
+		}
+		return ancestors;
+	}
+}
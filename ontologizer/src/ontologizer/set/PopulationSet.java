@@ -6,7 +6,12 @@
  */
 package ontologizer.set;
 
+import java.util.ArrayList;
+import java.util.Set;
+
 import ontologizer.association.AssociationContainer;
+import ontologizer.ontology.Ontology;
+import ontologizer.types.ByteString;
 
 /**
  * This class represents the whole population. It inherits from
@@ -16,6 +21,9 @@ import ontologizer.association.AssociationContainer;
  */
 public class PopulationSet extends StudySet
 {
+	/** Cached contexts, dropped whenever the population changes */
+	private ArrayList<PopulationContext> contexts = new ArrayList<PopulationContext>(2);
+
 	/**
 	 * Constructs the population set.
 	 */
@@ -58,5 +66,49 @@ public class PopulationSet extends StudySet
 		return this;
 	}
 
+	@Override
+	public synchronized void resetCounterAndEnumerator()
+	{
+		super.resetCounterAndEnumerator();
+		contexts.clear();
+	}
 
+	/**
+	 * Returns the context of this population with respect to the given
+	 * ontology and associations. See
+	 * {@link #getContext(Ontology, AssociationContainer, Set)}.
+	 *
+	 * @param ontology the ontology
+	 * @param associations the associations
+	 * @return the context
+	 */
+	public PopulationContext getContext(Ontology ontology, AssociationContainer associations)
+	{
+		return getContext(ontology, associations, null);
+	}
+
+	/**
+	 * Returns the context of this population with respect to the given
+	 * ontology, associations and evidences. The context is created on
+	 * demand and cached until the population is changed, thus it is shared
+	 * among all calculations that are performed on the same population.
+	 *
+	 * @param ontology the ontology
+	 * @param associations the associations
+	 * @param evidences consider only annotations of the given evidence codes or
+	 *  null to consider all annotations.
+	 * @return the context
+	 */
+	public synchronized PopulationContext getContext(Ontology ontology, AssociationContainer associations, Set<ByteString> evidences)
+	{
+		for (PopulationContext context : contexts)
+		{
+			if (context.matches(ontology, associations, evidences))
+				return context;
+		}
+
+		PopulationContext context = PopulationContext.create(ontology, associations, this, evidences);
+		contexts.add(context);
+		return context;
+	}
 }
@@ -11,12 +11,14 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import ontologizer.association.Association;
 import ontologizer.association.AssociationContainer;
+import ontologizer.association.CompactAssociationContainer;
 import ontologizer.association.Gene2Associations;
 import ontologizer.enumeration.TermEnumerator;
 import ontologizer.enumeration.TermEnumerator.TermAnnotatedGenes;
@@ -347,11 +349,12 @@ public class StudySet implements Iterable<ByteString>
 		termEnumerator =  new TermEnumerator(graph);
 
 		/* Iterate over all gene names and add their annotations to the goTermCounter */
+		CompactAssociationContainer associations = associationContainer.getCompactContainer(graph.getTermMap().getTermIDInterner()).filter(evidences);
 		for (ByteString geneName : gene2Attribute.keySet())
 		{
-			Gene2Associations geneAssociations = associationContainer.get(geneName);
-			if (geneAssociations != null)
-				termEnumerator.push(geneAssociations,evidences);
+			int item = associations.getItemIndex(geneName);
+			if (item != -1)
+				termEnumerator.push(associations, item);
 		}
 
 		if (remover != null)
@@ -385,6 +388,23 @@ public class StudySet implements Iterable<ByteString>
 		return sampler.sampleRandomStudySet(desiredSize);
 	}
 
+	/**
+	 * Generate a studyset which contains desiredSize random
+	 * selected genes of the population.
+	 *
+	 * @param desiredSize specifies the desired size of
+	 *        the studyset.
+	 * @param rnd the random source used for selecting the genes.
+	 *
+	 * @return the generated random studyset.
+	 */
+	public StudySet generateRandomStudySet(int desiredSize, Random rnd)
+	{
+		StudySetSampler sampler = new StudySetSampler(this, rnd);
+
+		return sampler.sampleRandomStudySet(desiredSize);
+	}
+
 	public void setName(String newStudySetName)
 	{
 		name = newStudySetName;
@@ -695,12 +715,14 @@ public class StudySet implements Iterable<ByteString>
 	{
 		for (ByteString g : toBeRemoved)
 			gene2Attribute.remove(g);
+		resetCounterAndEnumerator();
 	}
 
 	public void addGenes(Collection<ByteString> toBeAdded)
 	{
 		for (ByteString g : toBeAdded)
 			gene2Attribute.put(g,new ItemAttribute());
+		resetCounterAndEnumerator();
 	}
 
 
@@ -1,5 +1,7 @@
 package ontologizer.statistics;
 
+import java.util.Random;
+
 public abstract class AbstractResamplingTestCorrection extends AbstractTestCorrection
 	implements IResampling
 {
@@ -9,6 +11,12 @@ public abstract class AbstractResamplingTestCorrection extends AbstractTestCorre
 	/** Used for progress update */
 	private IResamplingProgress progress;
 
+	/** The number of threads used for resampling */
+	private int numberOfThreads = 1;
+
+	/** The seed used for resampling, null if a random one shall be chosen */
+	private Long seed;
+
 	/**
 	 * Set the number of resampling steps.
 	 */
@@ -50,4 +58,69 @@ public abstract class AbstractResamplingTestCorrection extends AbstractTestCorre
 	{
 		if (progress != null) progress.update(c);
 	}
+
+	/**
+	 * Set the number of threads that are used to draw the random
+	 * p-values.
+	 *
+	 * @param n the number of threads
+	 */
+	public void setNumberOfThreads(int n)
+	{
+		if (n < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+		numberOfThreads = n;
+	}
+
+	/**
+	 * Returns the number of threads that are used to draw the random
+	 * p-values.
+	 */
+	public int getNumberOfThreads()
+	{
+		return numberOfThreads;
+	}
+
+	/**
+	 * Set the seed of the resampling. For a given seed, the resampling
+	 * is reproducible regardless of the number of threads.
+	 *
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed)
+	{
+		this.seed = seed;
+	}
+
+	/**
+	 * Performs the resampling steps and reports the progress to both,
+	 * the given progress and the one set via setProgressUpdate().
+	 *
+	 * @param calc the calculation from which the random p-values are drawn.
+	 * @param consumer receives the random p-values of each step in order.
+	 * @param testCorrectionProgress the progress, may be null.
+	 */
+	protected void resample(IPValueCalculation calc, ParallelResampler.ISampleConsumer consumer, final ITestCorrectionProgress testCorrectionProgress)
+	{
+		long currentSeed = seed != null ? seed : new Random().nextLong();
+
+		ITestCorrectionProgress resampleProgress = new ITestCorrectionProgress()
+		{
+			@Override
+			public void init(int max)
+			{
+				initProgress(max);
+				if (testCorrectionProgress != null) testCorrectionProgress.init(max);
+			}
+
+			@Override
+			public void update(int current)
+			{
+				updateProgress(current);
+				if (testCorrectionProgress != null) testCorrectionProgress.update(current);
+			}
+		};
+
+		new ParallelResampler(numberOfThreads, currentSeed).resample(calc, numberOfResamplingSteps, consumer, resampleProgress);
+	}
 }
@@ -1,7 +1,7 @@
 package ontologizer.statistics;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -13,7 +13,7 @@ public class FDRBySteffenCached extends AbstractTestCorrection
 {
 	/** Specifies the number of resampling steps */
 	private int numberOfResamplingSteps = 1000;
-	private HashMap<Integer,PvalueSetStore> sampledPValuesPerSize = new HashMap<Integer,PvalueSetStore>();
+	private ConcurrentHashMap<Integer,PvalueSetStore> sampledPValuesPerSize = new ConcurrentHashMap<Integer,PvalueSetStore>();
 
 	public String getDescription()
 	{
@@ -153,7 +153,7 @@ public class FDRBySteffenCached extends AbstractTestCorrection
 
 	public void resetCache()
 	{
-		sampledPValuesPerSize = new HashMap<Integer,PvalueSetStore>();
+		sampledPValuesPerSize = new ConcurrentHashMap<Integer,PvalueSetStore>();
 	}
 
 	public int getSizeTolerance()
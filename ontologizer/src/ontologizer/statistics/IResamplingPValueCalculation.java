@@ -0,0 +1,23 @@
+package ontologizer.statistics;
+
+import java.util.Random;
+
+/**
+ * A p-value calculation whose random p-values can be calculated from a
+ * given source of randomness. Implementations must allow concurrent calls
+ * of calculateRandomPValues(IPValueCalculationProgress, Random), which is
+ * exploited by resampling based test corrections.
+ */
+public interface IResamplingPValueCalculation extends IPValueCalculation
+{
+	/**
+	 * Calculate the p values using a random dataset that is drawn using the
+	 * given random source. See {@link IPValueCalculation#calculateRandomPValues(IPValueCalculationProgress)}
+	 * for further details.
+	 *
+	 * @param progress the interface for updating the progress
+	 * @param rnd the random source used to draw the dataset
+	 * @return the calculated random p-values
+	 */
+	PValue[] calculateRandomPValues(IPValueCalculationProgress progress, Random rnd);
+}
@@ -0,0 +1,127 @@
+package ontologizer.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the counts of the Westfall-Young min-P step-down procedure.
+ * The resampled p-value sets are processed one after another as soon as
+ * they are available, so they don't need to be stored.
+ */
+final class MinPStepDown
+{
+	/**
+	 * Class models a double value entry and its index of
+	 * a source array.
+	 */
+	private static class Entry implements Comparable<Entry>
+	{
+		public double value;
+		public int index;
+
+		public int compareTo(Entry o)
+		{
+			if (value < o.value) return -1;
+			if (value == o.value) return 0;
+			return 1;
+		}
+	};
+
+	private final PValue [] rawP;
+
+	/** The indices of the raw p-values in ascending order of the p-values */
+	private final int [] r;
+
+	/** The sorted raw p-values, i.e., rawP[r[i]].p */
+	private final double [] sortedP;
+
+	/** Counts for the sorted raw p-values */
+	private final int [] count;
+
+	/** The number of sets that have been added */
+	private int numberOfSets;
+
+	public MinPStepDown(PValue [] rawP)
+	{
+		int m = rawP.length;
+
+		/* Sort the raw P-values and remember their original index */
+		Entry [] sortedRawPValues = new Entry[m];
+		for (int i=0;i<m;i++)
+		{
+			sortedRawPValues[i] = new Entry();
+			sortedRawPValues[i].value = rawP[i].p;
+			sortedRawPValues[i].index = i;
+		}
+		Arrays.sort(sortedRawPValues);
+
+		this.rawP = rawP;
+		this.r = new int[m];
+		this.sortedP = new double[m];
+		this.count = new int[m];
+		for (int i=0;i<m;i++)
+		{
+			r[i] = sortedRawPValues[i].index;
+			sortedP[i] = sortedRawPValues[i].value;
+		}
+	}
+
+	/**
+	 * Add the given resampled p-values.
+	 *
+	 * @param randomRawP the p-values of the "permuted" data
+	 */
+	public void add(PValue [] randomRawP)
+	{
+		assert(randomRawP.length == rawP.length);
+
+		/* Compute the successive minima of raw p values and count up */
+		double q = Double.POSITIVE_INFINITY;
+		for (int i=r.length-1;i>=0;i--)
+		{
+			q = Math.min(q,randomRawP[r[i]].p);
+			if (q <= sortedP[i])
+				count[i]++;
+		}
+		numberOfSets++;
+	}
+
+	/**
+	 * Add the given stored resampled p-values.
+	 *
+	 * @param store the store containing the p-values of the "permuted" data
+	 * @param set the index of the set within the store
+	 */
+	public void add(PvalueSetStore store, int set)
+	{
+		double q = Double.POSITIVE_INFINITY;
+		for (int i=r.length-1;i>=0;i--)
+		{
+			q = Math.min(q,store.getP(set, r[i]));
+			if (q <= sortedP[i])
+				count[i]++;
+		}
+		numberOfSets++;
+	}
+
+	/**
+	 * Calculate the adjusted p-values from the counts.
+	 *
+	 * @return the raw p-values with the adjusted p-values set.
+	 */
+	public PValue [] adjust()
+	{
+		int m = r.length;
+		if (m == 0)
+			return rawP;
+
+		/* Enforce monotony contraints */
+		int c = count[0];
+		for (int i=1;i<m;i++)
+			c = count[i] = Math.max(1,Math.max(c,count[i]));
+
+		/* Calculate the adjusted p values */
+		for (int i=0;i<m;i++)
+			rawP[r[i]].p_adjusted = ((double)count[i])/numberOfSets;
+		return rawP;
+	}
+}
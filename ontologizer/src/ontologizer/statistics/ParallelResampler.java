@@ -0,0 +1,159 @@
+package ontologizer.statistics;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Draws the random p-values of a resampling based test correction, possibly
+ * using several threads.
+ *
+ * Each resampling step gets its own random source that is derived from the
+ * seed and the index of the step. The random p-values are handed over to the
+ * consumer in the order of the steps and within the calling thread. Thus, for
+ * a given seed, the result doesn't depend on the number of threads.
+ *
+ * Only calculations that implement IResamplingPValueCalculation are sampled
+ * concurrently and reproducibly. For all others, the steps are performed in
+ * sequence using the calculation's own random source.
+ */
+public final class ParallelResampler
+{
+	/**
+	 * Receives the random p-values of the resampling steps.
+	 */
+	public interface ISampleConsumer
+	{
+		/**
+		 * Called for each step in the order of the steps.
+		 *
+		 * @param step the index of the resampling step
+		 * @param randomP the random p-values of this step
+		 */
+		void sample(int step, PValue [] randomP);
+	}
+
+	private final int numberOfThreads;
+	private final long seed;
+
+	/**
+	 * Constructs a new resampler.
+	 *
+	 * @param numberOfThreads the number of threads to use.
+	 * @param seed the seed from which the random sources of all steps are derived.
+	 */
+	public ParallelResampler(int numberOfThreads, long seed)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+
+		this.numberOfThreads = numberOfThreads;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the random source for the given step.
+	 *
+	 * @param seed the seed
+	 * @param step the index of the step
+	 * @return the random source.
+	 */
+	public static Random createRandom(long seed, int step)
+	{
+		/* Scramble, so random sources of neighboured steps are not correlated */
+		long z = seed + (step + 1) * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return new Random(z ^ (z >>> 31));
+	}
+
+	private PValue [] calculateRandomPValues(IPValueCalculation calc, int step)
+	{
+		if (calc instanceof IResamplingPValueCalculation)
+			return ((IResamplingPValueCalculation)calc).calculateRandomPValues(null, createRandom(seed, step));
+		return calc.calculateRandomPValues(null);
+	}
+
+	/**
+	 * Performs the given number of resampling steps.
+	 *
+	 * @param calc the calculation from which random p-values are drawn.
+	 * @param numberOfSteps the number of resampling steps.
+	 * @param consumer receives the random p-values of each step.
+	 * @param progress the progress, may be null.
+	 */
+	public void resample(final IPValueCalculation calc, int numberOfSteps, ISampleConsumer consumer, ITestCorrectionProgress progress)
+	{
+		if (progress != null)
+			progress.init(numberOfSteps);
+
+		if (numberOfThreads == 1 || !(calc instanceof IResamplingPValueCalculation))
+		{
+			for (int b = 0; b < numberOfSteps; b++)
+			{
+				consumer.sample(b, calculateRandomPValues(calc, b));
+				if (progress != null)
+					progress.update(b + 1);
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try
+		{
+			/* Keep the number of steps whose p-values are held in memory bounded */
+			ArrayDeque<Future<PValue[]>> pending = new ArrayDeque<Future<PValue[]>>();
+			int submitted = 0;
+			int consumed = 0;
+
+			while (consumed < numberOfSteps)
+			{
+				while (submitted < numberOfSteps && pending.size() < numberOfThreads * 2)
+				{
+					final int step = submitted++;
+					pending.add(executor.submit(new Callable<PValue[]>()
+					{
+						@Override
+						public PValue[] call()
+						{
+							return calculateRandomPValues(calc, step);
+						}
+					}));
+				}
+
+				consumer.sample(consumed, get(pending.poll()));
+				consumed++;
+				if (progress != null)
+					progress.update(consumed);
+			}
+		} finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Wait for the given future and rethrow any failure of the task.
+	 */
+	private static PValue [] get(Future<PValue[]> future)
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Resampling has been interrupted", e);
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -1,17 +1,21 @@
 package ontologizer.statistics;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  *
- * A class providing memory efficient storage of PValue arrays. The idea is to
- * deflate the arrays by storing only the pvalues which are not marked by
- * "ignoreAtMTC". The PValue sets to be stored are assumed to all have the same
- * size which has to be set at creation. Furthermore, apart from the
- * "ignoreAtMTC" attributes and the "p" value itself, nothing else gets stored.
- * Especially, the "p_min" and "p_adjusted" entries get lost.
+ * A class providing memory efficient storage of PValue arrays. The PValue
+ * sets to be stored are assumed to all have the same size which has to be
+ * set at creation. Apart from the "ignoreAtMTC" attributes and the "p" value
+ * itself, nothing else gets stored. Especially, the "p_min" and "p_adjusted"
+ * entries get lost.
+ *
+ * The p values of all sets are stored consecutively in a single primitive
+ * array, p values that are marked by "ignoreAtMTC" are stored as NaN. Thus,
+ * a set of m p values needs 8m bytes, and single p values can be accessed
+ * via getP() without inflating the whole set.
  *
  * @author grossman
  *
@@ -28,26 +32,40 @@ public class PvalueSetStore implements Iterable<PValue[]>
 	 */
 	public class PValueSetStoreIterator implements Iterator<PValue[]>
 	{
-		private Iterator<HashMap<Integer, Double>> reducedIterator = reducedStoredSets.iterator();
+		private int set;
+
+		/** The set returned by the last call to next() or -1 */
+		private int lastSet = -1;
 
 		public boolean hasNext()
 		{
-			return reducedIterator.hasNext();
+			return set < numberOfSets;
 		}
 
 		public PValue[] next()
 		{
-			return inflate_pvals(reducedIterator.next());
+			if (!hasNext())
+				throw new NoSuchElementException();
+			lastSet = set;
+			return inflate_pvals(set++);
 		}
 
 		public void remove()
 		{
-			reducedIterator.remove();
+			if (lastSet == -1)
+				throw new IllegalStateException();
+			removeSet(lastSet);
+			set = lastSet;
+			lastSet = -1;
 		}
 
 	}
 
-	private ArrayList<HashMap<Integer, Double>> reducedStoredSets;
+	/** The p values of all sets */
+	private double [] pvals;
+
+	/** The number of sets added so far */
+	private int numberOfSets;
 
 	private int setSize;
 
@@ -58,45 +76,90 @@ public class PvalueSetStore implements Iterable<PValue[]>
 	 */
 	public PvalueSetStore(int numberOfResamplingSteps, int setSize)
 	{
-		reducedStoredSets = new ArrayList<HashMap<Integer, Double>>(numberOfResamplingSteps);
+		long size = (long)numberOfResamplingSteps * setSize;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many p values to store");
+
+		this.pvals = new double[(int)size];
 		this.setSize = setSize;
 	}
 
 	public void add(PValue[] values)
 	{
-		reducedStoredSets.add(deflate_pvals(values));
-	}
+		int offset = numberOfSets * setSize;
+		if (offset + setSize > pvals.length)
+		{
+			/* More sets than announced */
+			long newSize = Math.max((long)offset + setSize, (long)pvals.length * 2);
+			if ((long)offset + setSize > Integer.MAX_VALUE)
+				throw new IllegalStateException("Too many p values to store");
+			pvals = Arrays.copyOf(pvals, (int)Math.min(newSize, Integer.MAX_VALUE));
+		}
 
-	private HashMap<Integer, Double> deflate_pvals(PValue[] values)
-	{
-		HashMap<Integer, Double> reducedSet = new HashMap<Integer, Double>();
-		for (int i = 0; i < values.length; i++)
+		for (int i = 0; i < setSize; i++)
 		{
-			if (!values[i].ignoreAtMTC)
-			{
-				reducedSet.put(i, values[i].p);
-			}
+			if (values[i].ignoreAtMTC)
+				pvals[offset + i] = Double.NaN;
+			else
+				pvals[offset + i] = values[i].p;
 		}
-		return reducedSet;
+		numberOfSets++;
 	}
 
-	private PValue[] inflate_pvals(HashMap<Integer, Double> reducedSet)
+	/**
+	 * @return the number of sets that have been added.
+	 */
+	public int size()
+	{
+		return numberOfSets;
+	}
+
+	/**
+	 * Returns the p value of the given set and index. P values that were
+	 * marked by "ignoreAtMTC" are returned as 1.0.
+	 *
+	 * @param set the index of the set
+	 * @param index the index of the p value within the set
+	 * @return the p value
+	 */
+	public double getP(int set, int index)
+	{
+		double p = pvals[set * setSize + index];
+		if (Double.isNaN(p)) return 1.0;
+		return p;
+	}
+
+	/**
+	 * Removes the given set. The following sets are moved up.
+	 *
+	 * @param set the index of the set
+	 */
+	private void removeSet(int set)
+	{
+		int offset = set * setSize;
+		int end = numberOfSets * setSize;
+		System.arraycopy(pvals, offset + setSize, pvals, offset, end - offset - setSize);
+		numberOfSets--;
+	}
+
+	private PValue[] inflate_pvals(int set)
 	{
 		PValue[] pvals = new PValue[setSize];
 
-		// initialize array
+		int offset = set * setSize;
 		for (int i = 0; i < setSize; i++)
 		{
-			pvals[i] = new PValue();
-			pvals[i].ignoreAtMTC = true;
-			pvals[i].p = 1.0;
-		}
+			double p = this.pvals[offset + i];
 
-		// set old values
-		for (int k : reducedSet.keySet())
-		{
-			pvals[k].ignoreAtMTC = false;
-			pvals[k].p = reducedSet.get(k);
+			pvals[i] = new PValue();
+			if (Double.isNaN(p))
+			{
+				pvals[i].ignoreAtMTC = true;
+				pvals[i].p = 1.0;
+			} else
+			{
+				pvals[i].p = p;
+			}
 		}
 
 		return pvals;
@@ -1,11 +1,11 @@
 package ontologizer.statistics;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 {
-	private HashMap<Integer,double[]> sampledMinPPerSize = new HashMap<Integer,double[]>();
+	private ConcurrentHashMap<Integer,double[]> sampledMinPPerSize = new ConcurrentHashMap<Integer,double[]>();
 
 	public String getDescription()
 	{
@@ -57,40 +57,39 @@ public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 		}
 		Arrays.sort(sortedRawPValues);
 
-		/* this will hold the minima of the sampled p-values */
-		double [] sampledMinP = new double[numberOfResamplingSteps];
-
 		int studySetSize = pvalues.currentStudySetSize();
 
-		if (sampledMinPPerSize.containsKey(studySetSize)) {  // we have samples
-			System.out.println("Using available samples for study set size " + studySetSize);
-			sampledMinP = sampledMinPPerSize.get(studySetSize);
-		} else {        // we have to sample
-			System.out.println("Sampling for study set size " + studySetSize + "\nThis may take a while...");
-
-			initProgress(numberOfResamplingSteps);
+		/* this will hold the minima of the sampled p-values */
+		double [] sampledMinP = sampledMinPPerSize.get(studySetSize);
 
-			for (int b=0; b < numberOfResamplingSteps; b++) {
-				/* create random sample */
-				PValue [] randomRawP = pvalues.calculateRandomPValues(null);
+		if (sampledMinP == null)
+		{
+			/* we have to sample */
+			final double [] minPs = new double[numberOfResamplingSteps];
 
-				if (randomRawP.length > 0)
+			resample(pvalues, new ParallelResampler.ISampleConsumer()
+			{
+				@Override
+				public void sample(int b, PValue [] randomRawP)
 				{
-					/* determine minimal p-value in sample */
-					double minP = randomRawP[0].p;
-					for (i=1; i < randomRawP.length; i++) {
-						minP = Math.min(minP,randomRawP[i].p);
+					if (randomRawP.length > 0)
+					{
+						/* determine minimal p-value in sample */
+						double minP = randomRawP[0].p;
+						for (int j=1; j < randomRawP.length; j++)
+							minP = Math.min(minP,randomRawP[j].p);
+						minPs[b] = minP;
 					}
-					sampledMinP[b] = minP;
 				}
+			}, progress);
 
-				updateProgress(b);
-				System.out.print("created " + b + " samples out of " + numberOfResamplingSteps + "\r");
-			}
 			/* sort sampled minimal p-values according to size */
-			Arrays.sort(sampledMinP);
+			Arrays.sort(minPs);
 
-			sampledMinPPerSize.put(studySetSize,sampledMinP);
+			/* Another thread may have sampled the same size concurrently, keep the first one */
+			sampledMinP = sampledMinPPerSize.putIfAbsent(studySetSize,minPs);
+			if (sampledMinP == null)
+				sampledMinP = minPs;
 		}
 
 		/*
@@ -122,7 +121,7 @@ public class WestfallYoungSingleStep extends AbstractResamplingTestCorrection
 
 	public void resetCache()
 	{
-		sampledMinPPerSize = new HashMap<Integer,double[]>();
+		sampledMinPPerSize = new ConcurrentHashMap<Integer,double[]>();
 	}
 
 	public int getSizeTolerance()
@@ -0,0 +1,80 @@
+package ontologizer.calculation.b2g;
+
+import static ontologizer.ontology.TermID.tid;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ontologizer.enumeration.IndexedTermEnumerator;
+import ontologizer.io.obo.InternalOntology;
+
+/**
+ * Measures the number of MCMC steps per second of the Bayes2GO sampler on
+ * the bundled test ontology, i.e., the hot path of proposing a new state,
+ * scoring it, deciding about the acceptance and recording the state.
+ *
+ * The observed genes are the ones annotated to two terms, perturbed by
+ * false positives and false negatives.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class McmcChainBenchmark
+{
+	private static final int STEPS = 10000;
+
+	@Param({"false", "true"})
+	public boolean integrateParams;
+
+	private McmcChain chain;
+	private int step;
+
+	@Setup
+	public void setup()
+	{
+		InternalOntology internal = new InternalOntology();
+		IndexedTermEnumerator e = IndexedTermEnumerator.create(internal.graph, internal.assoc);
+
+		int [][] termLinks = new int[e.getNumberOfTerms()][];
+		for (int t = 0; t < termLinks.length; t++)
+			termLinks[t] = e.getTotalAnnotatedItems(t);
+
+		Random rnd = new Random(1);
+		boolean [] hidden = new boolean[e.getNumberOfItems()];
+		for (String active : new String[]{"GO:0000010", "GO:0000004"})
+		{
+			for (int i : e.getTotalAnnotatedItems(e.getTermIndex(tid(active))))
+				hidden[i] = true;
+		}
+
+		boolean [] observed = new boolean[hidden.length];
+		for (int i = 0; i < observed.length; i++)
+			observed[i] = hidden[i] ? rnd.nextDouble() > 0.25 : rnd.nextDouble() < 0.1;
+
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(rnd, termLinks, observed);
+		score.setIntegrateParams(integrateParams);
+		score.setExpectedNumberOfTerms(Double.NaN);
+		chain = new McmcChain(score, rnd);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STEPS)
+	public double steps()
+	{
+		if (step > 1000000000)
+			step = 0;
+		chain.run(step, step + STEPS, 0);
+		step += STEPS;
+		return chain.currentScore;
+	}
+}
@@ -0,0 +1,129 @@
+package ontologizer.statistics;
+
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the hypergeometric upper tail as used by the term-for-term
+ * calculation, i.e., phypergeometric(), against the previous implementation
+ * that summed the probabilities with an exp() per term and kept the log
+ * factorials in a vector of boxed values.
+ *
+ * The tuples resemble the ones of a resampling run with a fixed study set
+ * size over a population of the size of a typical genome.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HypergeometricBenchmark
+{
+	private static final int POPULATION = 20000;
+	private static final int STUDY = 500;
+	private static final int TUPLES = 1000;
+
+	/**
+	 * The previous implementation.
+	 */
+	private static class VectorHypergeometric
+	{
+		private Vector<Double> lfactorial = new Vector<Double>();
+
+		VectorHypergeometric()
+		{
+			lfactorial.add(0.0);
+			lfactorial.add(0.0);
+		}
+
+		private synchronized double logfact(int i)
+		{
+			for (int j = lfactorial.size(); j <= i; j++)
+				lfactorial.add(lfactorial.get(j - 1) + Math.log(j));
+			return lfactorial.get(i);
+		}
+
+		private double lNchooseK(int n, int k)
+		{
+			return logfact(n) - logfact(k) - logfact(n - k);
+		}
+
+		double phypergeometric(int n, double p, int k, int r)
+		{
+			if (k >= n || r < 1)
+				return 1.0;
+
+			int np = (int) Math.round(n * p);
+			int nq = (int) Math.round(n * (1.0 - p));
+
+			double log_n_choose_k = lNchooseK(n, k);
+			int top = Math.min(k, np);
+
+			double lfoo = lNchooseK(np, top) + lNchooseK(nq, k - top);
+			double sum = 0.0;
+			for (int i = top; i >= r; --i)
+			{
+				sum += Math.exp(lfoo - log_n_choose_k);
+				if (i > r)
+					lfoo = lfoo + Math.log((double) i / (double) (np - i + 1)) + Math.log((double) (nq - k + i) / (double) (k - i + 1));
+			}
+			return sum;
+		}
+	}
+
+	private int [] termPopCount = new int[TUPLES];
+	private int [] studyHits = new int[TUPLES];
+
+	private VectorHypergeometric vectorHyperg;
+	private Hypergeometric hyperg;
+
+	@Setup
+	public void setup()
+	{
+		Random rnd = new Random(1);
+		for (int i = 0; i < TUPLES; i++)
+		{
+			/* Few terms annotate many genes */
+			termPopCount[i] = 1 + (int)(Math.pow(rnd.nextDouble(), 3) * POPULATION / 4);
+			int expected = termPopCount[i] * STUDY / POPULATION;
+			studyHits[i] = 1 + Math.min(termPopCount[i] - 1, expected + rnd.nextInt(5));
+		}
+
+		vectorHyperg = new VectorHypergeometric();
+		hyperg = new Hypergeometric(POPULATION);
+	}
+
+	@Benchmark
+	public double benchmarkVector()
+	{
+		double sum = 0;
+		for (int i = 0; i < TUPLES; i++)
+			sum += vectorHyperg.phypergeometric(POPULATION, termPopCount[i] / (double)POPULATION, STUDY, studyHits[i]);
+		return sum;
+	}
+
+	@Benchmark
+	public double benchmarkUpperTail()
+	{
+		double sum = 0;
+		for (int i = 0; i < TUPLES; i++)
+			sum += hyperg.upperTail(POPULATION, termPopCount[i], STUDY, studyHits[i]);
+		return sum;
+	}
+
+	@Benchmark
+	public double benchmarkMemoized()
+	{
+		double sum = 0;
+		for (int i = 0; i < TUPLES; i++)
+			sum += hyperg.phypergeometric(POPULATION, termPopCount[i] / (double)POPULATION, STUDY, studyHits[i]);
+		return sum;
+	}
+}
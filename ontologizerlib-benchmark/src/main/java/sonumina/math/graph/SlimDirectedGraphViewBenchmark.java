@@ -0,0 +1,85 @@
+package sonumina.math.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ontologizer.io.obo.OBOOntologyCreator;
+import ontologizer.io.obo.OBOParserException;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.RelationType;
+import ontologizer.ontology.TermID;
+import sonumina.math.graph.SlimDirectedGraphView.ClosureStorage;
+
+/**
+ * Measures how long it takes to build the slim view of the bundled Gene Ontology.
+ */
+@State(Scope.Benchmark)
+public class SlimDirectedGraphViewBenchmark
+{
+	private static final String OBO_NAME = "gene_ontology.1_2.obo.gz";
+
+	@Param({"ARRAYS", "COMPRESSED_BITMAPS"})
+	public ClosureStorage storage;
+
+	@Param({"false", "true"})
+	public boolean parallel;
+
+	private DirectedGraph<TermID, RelationType> graph;
+
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setup() throws IOException, OBOParserException
+	{
+		/* The requested file may be inside an archive, copy the contents to a temporary file */
+		ClassLoader cl = SlimDirectedGraphViewBenchmark.class.getClassLoader();
+		File tmpFile = File.createTempFile("obofile", ".obo.gz");
+		tmpFile.deleteOnExit();
+		try (InputStream is = cl.getResourceAsStream(OBO_NAME))
+		{
+			Files.copy(is, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		Ontology ontology = OBOOntologyCreator.create(tmpFile);
+		graph = ontology.getGraph();
+
+		if (parallel)
+			pool = new ForkJoinPool();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		if (pool != null)
+			pool.shutdown();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations=5)
+	@Fork(value=1)
+	@Measurement(time=2,timeUnit=TimeUnit.SECONDS)
+	public SlimDirectedGraphView<TermID> benchmarkCreate()
+	{
+		return SlimDirectedGraphView.create(graph, storage, pool);
+	}
+}
@@ -1,6 +1,7 @@
 package ontologizer.association;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,6 +10,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 import sonumina.collections.ObjectIntHashMap;
 import sonumina.collections.ObjectIntHashMap.ObjectIntProcedure;
 
@@ -31,7 +33,95 @@ public class AnnotationContext implements Serializable
 	/** Maps synonyms to item indices within the items list */
 	private ObjectIntHashMap<ByteString> synonymMap;
 
+	/** The arena containing the names, may be null */
+	private transient ByteStringArena strings;
+
+	/** Used for looking up byte ranges, created on demand */
+	private transient volatile ByteRangeIndex byteRangeIndex;
+
+	/**
+	 * Maps names given as byte ranges to item indices. The names are looked
+	 * up in an arena, whose handles index the item indices.
+	 */
+	private static class ByteRangeIndex
+	{
+		final ByteStringArena names;
+		int [] symbolItems;
+		int [] objectIdItems;
+		int [] synonymItems;
+
+		ByteRangeIndex(AnnotationContext context, ByteStringArena names)
+		{
+			this.names = names;
+			symbolItems = new int[0];
+			objectIdItems = new int[0];
+			synonymItems = new int[0];
+
+			for (int i = 0; i < context.symbols.length; i++)
+				symbolItems = put(context.symbols[i], i, symbolItems);
+			context.objectIdMap.forEachKeyValue(new ObjectIntProcedure<ByteString>()
+			{
+				@Override
+				public void keyValue(ByteString key, int value)
+				{
+					objectIdItems = put(key, value, objectIdItems);
+				}
+			});
+			context.synonymMap.forEachKeyValue(new ObjectIntProcedure<ByteString>()
+			{
+				@Override
+				public void keyValue(ByteString key, int value)
+				{
+					synonymItems = put(key, value, synonymItems);
+				}
+			});
+		}
+
+		/**
+		 * Puts the given name into the given items array.
+		 *
+		 * @return the items array, which is reallocated if needed.
+		 */
+		private int [] put(ByteString name, int item, int [] items)
+		{
+			int handle = names.add(name);
+			if (handle >= items.length)
+			{
+				int oldLength = items.length;
+				items = Arrays.copyOf(items, Math.max(handle + 1, oldLength * 2));
+				Arrays.fill(items, oldLength, items.length, Integer.MAX_VALUE);
+			}
+			items[handle] = item;
+			return items;
+		}
+
+		int get(int [] items, byte [] buf, int off, int len)
+		{
+			int handle = names.find(buf, off, len);
+			if (handle == ByteStringArena.NOT_FOUND || handle >= items.length)
+				return Integer.MAX_VALUE;
+			return items[handle];
+		}
+	}
+
 	public AnnotationContext(Collection<ByteString> symbols, List<ByteString> objectIds, ObjectIntHashMap<ByteString> objectSymbolMap, ObjectIntHashMap<ByteString> objectIdMap, ObjectIntHashMap<ByteString> synonymMap)
+	{
+		this(symbols, objectIds, objectSymbolMap, objectIdMap, synonymMap, null);
+	}
+
+	/**
+	 * Constructs the context.
+	 *
+	 * @param symbols the symbols
+	 * @param objectIds the object ids corresponding to the symbols
+	 * @param objectSymbolMap maps the symbols to item indices
+	 * @param objectIdMap maps the object ids to item indices
+	 * @param synonymMap maps the synonyms to item indices
+	 * @param strings the arena from which the names were taken or null. It
+	 *  is used to look up byte ranges, so the names don't have to be copied
+	 *  into another arena.
+	 */
+	public AnnotationContext(Collection<ByteString> symbols, List<ByteString> objectIds, ObjectIntHashMap<ByteString> objectSymbolMap, ObjectIntHashMap<ByteString> objectIdMap, ObjectIntHashMap<ByteString> synonymMap, ByteStringArena strings)
 	{
 		if (symbols.size() != objectIds.size()) throw new IllegalArgumentException("Symbols and object ids size must match");
 
@@ -44,6 +134,7 @@ public class AnnotationContext implements Serializable
 		this.objectSymbolMap = objectSymbolMap;
 		this.objectIdMap = objectIdMap;
 		this.synonymMap = synonymMap;
+		this.strings = strings;
 	}
 
 	/**
@@ -191,8 +282,94 @@ public class AnnotationContext implements Serializable
 		return synonymMap.getIfAbsent(synonym, Integer.MAX_VALUE);
 	}
 
+	private ByteRangeIndex getByteRangeIndex()
+	{
+		ByteRangeIndex index = byteRangeIndex;
+		if (index == null)
+		{
+			synchronized (this)
+			{
+				index = byteRangeIndex;
+				if (index == null)
+				{
+					index = new ByteRangeIndex(this, strings != null ? strings : new ByteStringArena());
+					byteRangeIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Map the symbol given by a range of bytes to the unique id. Unlike
+	 * mapSymbol(ByteString), no objects are created for the lookup.
+	 *
+	 * @param buf the buffer containing the symbol
+	 * @param off the offset of the first byte of the symbol
+	 * @param len the length of the symbol
+	 * @return the id or Integer.MAX if mapping was not successful.
+	 */
+	public int mapSymbol(byte [] buf, int off, int len)
+	{
+		ByteRangeIndex index = getByteRangeIndex();
+		return index.get(index.symbolItems, buf, off, len);
+	}
+
+	/**
+	 * Map the object id given by a range of bytes to the unique id. Unlike
+	 * mapObjectID(ByteString), no objects are created for the lookup.
+	 *
+	 * @param buf the buffer containing the object id
+	 * @param off the offset of the first byte of the object id
+	 * @param len the length of the object id
+	 * @return the id or Integer.MAX if mapping was not successful.
+	 */
+	public int mapObjectID(byte [] buf, int off, int len)
+	{
+		ByteRangeIndex index = getByteRangeIndex();
+		return index.get(index.objectIdItems, buf, off, len);
+	}
+
+	/**
+	 * Map the synonym given by a range of bytes to the unique id. Unlike
+	 * mapSynonym(ByteString), no objects are created for the lookup.
+	 *
+	 * @param buf the buffer containing the synonym
+	 * @param off the offset of the first byte of the synonym
+	 * @param len the length of the synonym
+	 * @return the id or Integer.MAX if mapping was not successful.
+	 */
+	public int mapSynonym(byte [] buf, int off, int len)
+	{
+		ByteRangeIndex index = getByteRangeIndex();
+		return index.get(index.synonymItems, buf, off, len);
+	}
+
 	public int getNumberOfSynonyms()
 	{
 		return synonymMap.size();
 	}
+
+	/**
+	 * @return the object ids corresponding to the symbols.
+	 */
+	ByteString [] getObjectIds()
+	{
+		return objectIds;
+	}
+
+	ObjectIntHashMap<ByteString> getObjectSymbolMap()
+	{
+		return objectSymbolMap;
+	}
+
+	ObjectIntHashMap<ByteString> getObjectIdMap()
+	{
+		return objectIdMap;
+	}
+
+	ObjectIntHashMap<ByteString> getSynonymMap()
+	{
+		return synonymMap;
+	}
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 import sonumina.collections.ObjectIntHashMap;
 
 /**
@@ -38,14 +39,30 @@ public class AnnotationMapBuilder
 
 	private WarningCallback warningCallback;
 
+	/** The arena from which the names are taken, may be null */
+	private ByteStringArena strings;
+
 	public AnnotationMapBuilder()
 	{
 		this(null);
 	}
 
 	public AnnotationMapBuilder(WarningCallback warningCallback)
+	{
+		this(warningCallback, null);
+	}
+
+	/**
+	 * Constructs the builder.
+	 *
+	 * @param warningCallback the callback receiving the warnings, may be null.
+	 * @param strings the arena from which the names of the associations are
+	 *  taken, may be null. The built context uses it to look up byte ranges.
+	 */
+	public AnnotationMapBuilder(WarningCallback warningCallback, ByteStringArena strings)
 	{
 		this.warningCallback = warningCallback;
+		this.strings = strings;
 	}
 
 	/**
@@ -119,6 +136,6 @@ public class AnnotationMapBuilder
 	 */
 	public AnnotationContext build()
 	{
-		return new AnnotationContext(items, objectIds, objectSymbolMap, objectIdMap, synonymMap);
+		return new AnnotationContext(items, objectIds, objectSymbolMap, objectIdMap, synonymMap, strings);
 	}
 }
@@ -9,6 +9,7 @@ import java.util.regex.*;
 import ontologizer.ontology.PrefixPool;
 import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 
 /**
  * Objects of this class represent individual associations as defined by GO
@@ -173,6 +174,21 @@ public class Association implements Serializable
 		this(db_object_symbol, new TermID(term));
 	}
 
+	/**
+	 * Constructs a new association object with all fields given. Used
+	 * to restore associations from snapshots.
+	 */
+	Association(ByteString dbObject, ByteString dbObjectSymbol, ByteString evidence, ByteString aspect, TermID termID, boolean notQualifier, ByteString [] synonyms)
+	{
+		this.DB_Object = dbObject;
+		this.DB_Object_Symbol = dbObjectSymbol;
+		this.evidence = evidence;
+		this.aspect = aspect;
+		this.termID = termID;
+		this.notQualifier = notQualifier;
+		this.synonyms = synonyms;
+	}
+
 	private Association() {};
 
 	/**
@@ -358,6 +374,29 @@ public class Association implements Serializable
 	 */
 	public static Association createFromGAFLine(byte[] byteBuf, int offset, int len, PrefixPool prefixPool)
 	{
+		return createFromGAFLine(byteBuf, offset, len, prefixPool, null);
+	}
+
+	/**
+	 * Create an association from a byte array. The strings of the
+	 * association are added to the given arena, so the association holds
+	 * the views of the arena and no further objects are created for strings
+	 * that were seen before.
+	 *
+	 * @param byteBuf the byteBuf
+	 * @param offset the offset of the first byte to be considered
+	 * @param len number of bytes to be considered
+	 * @param prefixPool the prefix pool that should be used.
+	 * @param strings the arena receiving the strings or null if each
+	 *  association shall get its own strings. The pages of the arena must be
+	 *  located on the heap.
+	 * @return the created association
+	 */
+	public static Association createFromGAFLine(byte[] byteBuf, int offset, int len, PrefixPool prefixPool, ByteStringArena strings)
+	{
+		if (strings != null && strings.isDirect())
+			throw new IllegalArgumentException("The strings of associations cannot be stored outside of the heap");
+
 		Association a = new Association();
 		a.DB_Object = a.DB_Object_Symbol = EMPTY;
 		a.synonyms = EMPTY_BYTESTRING_ARRAY;
@@ -373,12 +412,12 @@ public class Association implements Serializable
 				/* New field */
 				switch (fieldNo)
 				{
-					case 	DBOBJECTFIELD: 	a.DB_Object = new ByteString(byteBuf,fieldOffset,p); break;
-					case	DBOBJECTSYMBOLFIELD:	a.DB_Object_Symbol = new ByteString(byteBuf,fieldOffset,p); break;
-					case	EVIDENCEFIELD:	a.evidence = new ByteString(byteBuf,fieldOffset,p); break;
-					case	ASPECTFIELD:	a.aspect = new ByteString(byteBuf,fieldOffset,p); break;
-					case	QUALIFIERFIELD: a.notQualifier = new ByteString(byteBuf,fieldOffset,p).indexOf(notString) != -1; break;
-					case	SYNONYMFIELD:	if (fieldOffset + 1 < p) a.synonyms = new ByteString(byteBuf,fieldOffset,p).split(PIPE); break;
+					case 	DBOBJECTFIELD: 	a.DB_Object = byteString(byteBuf,fieldOffset,p,strings); break;
+					case	DBOBJECTSYMBOLFIELD:	a.DB_Object_Symbol = byteString(byteBuf,fieldOffset,p,strings); break;
+					case	EVIDENCEFIELD:	a.evidence = byteString(byteBuf,fieldOffset,p,strings); break;
+					case	ASPECTFIELD:	a.aspect = byteString(byteBuf,fieldOffset,p,strings); break;
+					case	QUALIFIERFIELD: a.notQualifier = strings != null ? containsNot(byteBuf,fieldOffset,p) : new ByteString(byteBuf,fieldOffset,p).indexOf(notString) != -1; break;
+					case	SYNONYMFIELD:	if (fieldOffset + 1 < p) a.synonyms = strings != null ? split(byteBuf,fieldOffset,p,strings) : new ByteString(byteBuf,fieldOffset,p).split(PIPE); break;
 					case	GOFIELD:		a.termID = new TermID(new ByteString(byteBuf,fieldOffset,p),prefixPool); break;
 				}
 
@@ -389,4 +428,59 @@ public class Association implements Serializable
 		}
 		return a;
 	}
+
+	/**
+	 * Returns the byte string of the given range, taken from the arena if
+	 * one is given.
+	 *
+	 * @param from this position in inclusive
+	 * @param to this position is exclusive
+	 */
+	private static ByteString byteString(byte [] byteBuf, int from, int to, ByteStringArena strings)
+	{
+		if (strings == null)
+			return new ByteString(byteBuf, from, to);
+		return strings.intern(byteBuf, from, to - from);
+	}
+
+	/**
+	 * Splits the given range at pipe characters into strings taken from the
+	 * arena.
+	 */
+	private static ByteString [] split(byte [] byteBuf, int from, int to, ByteStringArena strings)
+	{
+		int n = 1;
+		for (int i = from; i < to; i++)
+		{
+			if (byteBuf[i] == PIPE)
+				n++;
+		}
+
+		ByteString [] synonyms = new ByteString[n];
+		int start = from;
+		n = 0;
+		for (int i = from; i < to; i++)
+		{
+			if (byteBuf[i] == PIPE)
+			{
+				synonyms[n++] = strings.intern(byteBuf, start, i - start);
+				start = i + 1;
+			}
+		}
+		synonyms[n] = strings.intern(byteBuf, start, to - start);
+		return synonyms;
+	}
+
+	/**
+	 * @return whether the given range contains the NOT qualifier.
+	 */
+	private static boolean containsNot(byte [] byteBuf, int from, int to)
+	{
+		for (int i = from; i + 3 <= to; i++)
+		{
+			if (byteBuf[i] == 'N' && byteBuf[i + 1] == 'O' && byteBuf[i + 2] == 'T')
+				return true;
+		}
+		return false;
+	}
 }
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import ontologizer.ontology.TermIDInterner;
 import ontologizer.types.ByteString;
 
 /**
@@ -24,6 +25,25 @@ public class AssociationContainer implements Iterable<ItemAssociations>, Seriali
 	/** Mapping */
 	private AnnotationContext annotationMapping;
 
+	/** The columnar representation, created on demand */
+	private transient volatile CompactContainer compactContainer;
+
+	/**
+	 * A columnar representation together with the pool of term ids that
+	 * provided its term ordinals.
+	 */
+	private static class CompactContainer
+	{
+		final TermIDInterner terms;
+		final CompactAssociationContainer container;
+
+		CompactContainer(TermIDInterner terms, CompactAssociationContainer container)
+		{
+			this.terms = terms;
+			this.container = container;
+		}
+	}
+
 	/**
 	 * Constructs the container using a list of association and an annotation mapping created from it.
 	 *
@@ -209,4 +229,32 @@ public class AssociationContainer implements Iterable<ItemAssociations>, Seriali
 	{
 		return annotationMapping;
 	}
+
+	/**
+	 * Returns the columnar representation of this container whose term
+	 * ordinals are the ones of the given pool, usually the one of the term
+	 * map of the ontology (see TermMap.getTermIDInterner()). The
+	 * representation is created when it is requested for the first time and
+	 * shared afterwards, as long as the same pool is given.
+	 *
+	 * @param terms the pool that provides the term ordinals.
+	 * @return the columnar representation, which accepts all evidence codes.
+	 */
+	public CompactAssociationContainer getCompactContainer(TermIDInterner terms)
+	{
+		CompactContainer compact = compactContainer;
+		if (compact == null || compact.terms != terms)
+		{
+			synchronized (this)
+			{
+				compact = compactContainer;
+				if (compact == null || compact.terms != terms)
+				{
+					compact = new CompactContainer(terms, CompactAssociationContainer.create(this, terms));
+					compactContainer = compact;
+				}
+			}
+		}
+		return compact.container;
+	}
 }
@@ -0,0 +1,321 @@
+package ontologizer.association;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import ontologizer.ontology.Prefix;
+import ontologizer.ontology.PrefixPool;
+import ontologizer.ontology.Term;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermMap;
+import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringTable;
+import sonumina.collections.ObjectIntHashMap;
+import sonumina.collections.ObjectIntHashMap.ObjectIntProcedure;
+
+/**
+ * Writes and reads association containers in a compact and versioned binary
+ * format. All strings are stored in a single interned string table, term ids
+ * in a separate table, and all other references as plain int indices. The
+ * annotation context is stored as is, so the mappings don't need to be
+ * rebuilt when reading a snapshot.
+ *
+ * @see ontologizer.ontology.OntologySnapshot
+ */
+public final class AssociationSnapshot
+{
+	/** Identifies association snapshots */
+	static final int MAGIC = 0x41534e53; /* "ASNS" */
+
+	/** The current version of the format */
+	static final int VERSION = 1;
+
+	private AssociationSnapshot()
+	{
+	}
+
+	/**
+	 * Write the snapshot of the given associations to the given file.
+	 *
+	 * @param assocs the associations to write
+	 * @param file the destination
+	 * @throws IOException
+	 */
+	public static void write(AssociationContainer assocs, File file) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			write(assocs, out);
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the snapshot of the given associations to the given stream.
+	 *
+	 * @param assocs the associations to write
+	 * @param os the destination. The stream is not closed.
+	 * @throws IOException
+	 */
+	public static void write(AssociationContainer assocs, OutputStream os) throws IOException
+	{
+		final ByteStringTable strings = new ByteStringTable();
+		HashMap<TermID,Integer> termIDs = new HashMap<TermID,Integer>();
+		List<TermID> termIDList = new ArrayList<TermID>();
+
+		/* The body refers to the tables, which are complete only after the body has been built */
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		AnnotationContext context = assocs.getMapping();
+		ByteString [] symbols = context.getSymbols();
+		ByteString [] objectIds = context.getObjectIds();
+		body.writeInt(symbols.length);
+		for (int i = 0; i < symbols.length; i++)
+		{
+			body.writeInt(strings.intern(symbols[i]));
+			body.writeInt(strings.intern(objectIds[i]));
+		}
+		writeMap(body, strings, context.getObjectSymbolMap());
+		writeMap(body, strings, context.getObjectIdMap());
+		writeMap(body, strings, context.getSynonymMap());
+
+		int numAssociations = 0;
+		for (ItemAssociations ia : assocs)
+			numAssociations += ia.getAssociations().size();
+
+		body.writeInt(numAssociations);
+		for (ItemAssociations ia : assocs)
+		{
+			for (Association a : ia)
+			{
+				TermID tid = a.getTermID();
+				Integer tidIdx = termIDs.get(tid);
+				if (tidIdx == null)
+				{
+					tidIdx = termIDList.size();
+					termIDs.put(tid, tidIdx);
+					termIDList.add(tid);
+				}
+
+				body.writeInt(strings.intern(a.getDB_Object()));
+				body.writeInt(strings.intern(a.getObjectSymbol()));
+				body.writeInt(strings.intern(a.getEvidence()));
+				body.writeInt(strings.intern(a.getAspect()));
+				body.writeInt(tidIdx);
+				body.writeBoolean(a.hasNotQualifier());
+
+				ByteString [] synonyms = a.getSynonyms();
+				body.writeInt(synonyms != null ? synonyms.length : -1);
+				if (synonyms != null)
+					for (ByteString s : synonyms)
+						body.writeInt(strings.intern(s));
+			}
+		}
+		body.flush();
+
+		int [] termIDPrefixes = new int[termIDList.size()];
+		for (int i = 0; i < termIDPrefixes.length; i++)
+			termIDPrefixes[i] = strings.intern(termIDList.get(i).getPrefix().toString());
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		strings.write(out);
+		out.writeInt(termIDPrefixes.length);
+		for (int i = 0; i < termIDPrefixes.length; i++)
+		{
+			out.writeInt(termIDPrefixes[i]);
+			out.writeInt(termIDList.get(i).id);
+		}
+		bodyBytes.writeTo(out);
+		out.flush();
+	}
+
+	private static void writeMap(final DataOutputStream out, final ByteStringTable strings, ObjectIntHashMap<ByteString> map) throws IOException
+	{
+		out.writeInt(map.size());
+
+		final int [] keys = new int[map.size()];
+		final int [] values = new int[map.size()];
+		map.forEachKeyValue(new ObjectIntProcedure<ByteString>()
+		{
+			private int i;
+
+			@Override
+			public void keyValue(ByteString key, int value)
+			{
+				keys[i] = strings.intern(key);
+				values[i] = value;
+				i++;
+			}
+		});
+
+		for (int i = 0; i < keys.length; i++)
+		{
+			out.writeInt(keys[i]);
+			out.writeInt(values[i]);
+		}
+	}
+
+	/**
+	 * Read the snapshot stored in the given file. The file is mapped into memory.
+	 *
+	 * @param file the file containing the snapshot
+	 * @return the restored associations
+	 * @throws IOException if the file could not be read or doesn't contain a
+	 *  snapshot of a supported version.
+	 */
+	public static AssociationContainer read(File file) throws IOException
+	{
+		return read(file, null);
+	}
+
+	/**
+	 * Read the snapshot stored in the given file. The file is mapped into memory.
+	 *
+	 * @param file the file containing the snapshot
+	 * @param terms if not null, the term ids of the associations are replaced
+	 *  by the ones of the corresponding terms.
+	 * @return the restored associations
+	 * @throws IOException if the file could not be read or doesn't contain a
+	 *  snapshot of a supported version.
+	 */
+	public static AssociationContainer read(File file, TermMap terms) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel fc = raf.getChannel();
+			return read(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()), terms);
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read the snapshot from the given buffer starting at its current position.
+	 *
+	 * @param buf the buffer containing the snapshot
+	 * @return the restored associations
+	 * @throws IOException if the buffer doesn't contain a snapshot of a supported
+	 *  version or is truncated.
+	 */
+	public static AssociationContainer read(ByteBuffer buf) throws IOException
+	{
+		return read(buf, null);
+	}
+
+	/**
+	 * Read the snapshot from the given buffer starting at its current position.
+	 * Afterwards, the position of the buffer is behind the snapshot.
+	 *
+	 * @param buf the buffer containing the snapshot
+	 * @param terms if not null, the term ids of the associations are replaced
+	 *  by the ones of the corresponding terms such that they can be compared
+	 *  by identity.
+	 * @return the restored associations
+	 * @throws IOException if the buffer doesn't contain a snapshot of a supported
+	 *  version or is truncated.
+	 */
+	public static AssociationContainer read(ByteBuffer buf, TermMap terms) throws IOException
+	{
+		if (buf.remaining() < 8 || buf.getInt() != MAGIC)
+			throw new IOException("Input is not an association snapshot");
+		int version = buf.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported association snapshot version " + version);
+
+		try
+		{
+			return readBody(buf, terms);
+		} catch (BufferUnderflowException e)
+		{
+			throw new IOException("Association snapshot is truncated");
+		}
+	}
+
+	private static AssociationContainer readBody(ByteBuffer buf, TermMap terms)
+	{
+		ByteString [] strings = ByteStringTable.read(buf);
+
+		PrefixPool prefixPool = new PrefixPool();
+		TermID [] termIDs = new TermID[buf.getInt()];
+		for (int i = 0; i < termIDs.length; i++)
+		{
+			Prefix prefix = prefixPool.map(new Prefix(strings[buf.getInt()]));
+			TermID tid = new TermID(prefix, buf.getInt());
+			if (terms != null)
+			{
+				Term t = terms.get(tid);
+				if (t != null)
+					tid = t.getID();
+			}
+			termIDs[i] = tid;
+		}
+
+		ByteString [] symbols = new ByteString[buf.getInt()];
+		ByteString [] objectIds = new ByteString[symbols.length];
+		for (int i = 0; i < symbols.length; i++)
+		{
+			symbols[i] = ByteStringTable.get(strings, buf.getInt());
+			objectIds[i] = ByteStringTable.get(strings, buf.getInt());
+		}
+		ObjectIntHashMap<ByteString> objectSymbolMap = readMap(buf, strings);
+		ObjectIntHashMap<ByteString> objectIdMap = readMap(buf, strings);
+		ObjectIntHashMap<ByteString> synonymMap = readMap(buf, strings);
+		AnnotationContext context = new AnnotationContext(Arrays.asList(symbols), Arrays.asList(objectIds), objectSymbolMap, objectIdMap, synonymMap);
+
+		int numAssociations = buf.getInt();
+		List<Association> associations = new ArrayList<Association>(numAssociations);
+		for (int i = 0; i < numAssociations; i++)
+		{
+			ByteString dbObject = ByteStringTable.get(strings, buf.getInt());
+			ByteString symbol = ByteStringTable.get(strings, buf.getInt());
+			ByteString evidence = ByteStringTable.get(strings, buf.getInt());
+			ByteString aspect = ByteStringTable.get(strings, buf.getInt());
+			TermID tid = termIDs[buf.getInt()];
+			boolean notQualifier = buf.get() != 0;
+
+			ByteString [] synonyms = null;
+			int numSynonyms = buf.getInt();
+			if (numSynonyms != -1)
+			{
+				synonyms = new ByteString[numSynonyms];
+				for (int j = 0; j < numSynonyms; j++)
+					synonyms[j] = strings[buf.getInt()];
+			}
+			associations.add(new Association(dbObject, symbol, evidence, aspect, tid, notQualifier, synonyms));
+		}
+		return new AssociationContainer(associations, context);
+	}
+
+	private static ObjectIntHashMap<ByteString> readMap(ByteBuffer buf, ByteString [] strings)
+	{
+		int n = buf.getInt();
+		ObjectIntHashMap<ByteString> map = new ObjectIntHashMap<ByteString>(n);
+		for (int i = 0; i < n; i++)
+		{
+			ByteString key = strings[buf.getInt()];
+			map.put(key, buf.getInt());
+		}
+		return map;
+	}
+}
@@ -0,0 +1,385 @@
+package ontologizer.association;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermIDInterner;
+import ontologizer.types.ByteString;
+import sonumina.collections.ObjectIntHashMap;
+
+/**
+ * A read-only, columnar representation of the associations of an
+ * AssociationContainer. Rather than one object per association, the
+ * associations are stored in parallel columns (term ordinal, evidence code,
+ * aspect and qualifier flags). The associations of an item are consecutive,
+ * an offset array refers to the first association of each item.
+ *
+ * Term ids and evidence codes are stored once in tables, the columns refer
+ * to them by their ordinals. The evidence column uses one byte per
+ * association unless there are more than 256 distinct evidence codes. An
+ * instance can be restricted to some evidence codes via filter(), which
+ * returns a view that shares all columns with this instance.
+ */
+public final class CompactAssociationContainer implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The flag denoting a NOT qualifier */
+	public static final byte NOT_QUALIFIER = 1;
+
+	/** The mapping of names to items */
+	private final AnnotationContext mapping;
+
+	/** The offsets of the first association of each item, one additional for the end */
+	private final int [] itemOffsets;
+
+	/** The term ids referred to by the ordinals */
+	private final TermID [] termIDs;
+
+	/** The ordinal of the term of each association */
+	private final int [] termOrdinal;
+
+	/** The evidence codes referred to by the codes, may contain null */
+	private final ByteString [] evidences;
+
+	/** The evidence code of each association, an unsigned index into evidences, or null if wideEvidenceCode is used */
+	private final byte [] evidenceCode;
+
+	/** The evidence code of each association if there are too many evidence codes for evidenceCode */
+	private final int [] wideEvidenceCode;
+
+	/** The aspect of each association, i.e., its first character or 0 */
+	private final byte [] aspect;
+
+	/** The qualifier flags of each association */
+	private final byte [] qualifiers;
+
+	/** Whether an evidence code is accepted by this view (indexed by code) */
+	private final boolean [] acceptedEvidences;
+
+	private CompactAssociationContainer(AnnotationContext mapping, int [] itemOffsets, TermID [] termIDs, int [] termOrdinal,
+			ByteString [] evidences, byte [] evidenceCode, int [] wideEvidenceCode, byte [] aspect, byte [] qualifiers, boolean [] acceptedEvidences)
+	{
+		this.mapping = mapping;
+		this.itemOffsets = itemOffsets;
+		this.termIDs = termIDs;
+		this.termOrdinal = termOrdinal;
+		this.evidences = evidences;
+		this.evidenceCode = evidenceCode;
+		this.wideEvidenceCode = wideEvidenceCode;
+		this.aspect = aspect;
+		this.qualifiers = qualifiers;
+		this.acceptedEvidences = acceptedEvidences;
+	}
+
+	/**
+	 * Creates the columnar representation of the given container. The items
+	 * have the same indices as in the container, i.e., the ones of the
+	 * annotation mapping. The term ordinals are private to the new instance.
+	 *
+	 * @param container the container to convert.
+	 * @return the columnar representation, which accepts all evidence codes.
+	 */
+	public static CompactAssociationContainer create(AssociationContainer container)
+	{
+		return create(container, new TermIDInterner());
+	}
+
+	/**
+	 * Creates the columnar representation of the given container. The items
+	 * have the same indices as in the container, i.e., the ones of the
+	 * annotation mapping. The term ordinals are the ones of the given pool,
+	 * e.g., the one of a term map, so they can be shared with other users of
+	 * the pool. Term ids that are not within the pool are added to it.
+	 *
+	 * @param container the container to convert.
+	 * @param terms the pool that provides the term ordinals.
+	 * @return the columnar representation, which accepts all evidence codes.
+	 */
+	public static CompactAssociationContainer create(AssociationContainer container, TermIDInterner terms)
+	{
+		AnnotationContext mapping = container.getMapping();
+		int numberOfItems = mapping.getSymbols().length;
+
+		int [] itemOffsets = new int[numberOfItems + 1];
+		for (int i = 0; i < numberOfItems; i++)
+		{
+			ItemAssociations ia = container.getItemAssociations(i);
+			itemOffsets[i + 1] = itemOffsets[i] + (ia != null ? ia.size() : 0);
+		}
+
+		int numberOfAssociations = itemOffsets[numberOfItems];
+		int [] termOrdinal = new int[numberOfAssociations];
+		byte [] evidenceCode = new byte[numberOfAssociations];
+		int [] wideEvidenceCode = null;
+		byte [] aspect = new byte[numberOfAssociations];
+		byte [] qualifiers = new byte[numberOfAssociations];
+
+		ObjectIntHashMap<ByteString> evidence2Code = new ObjectIntHashMap<ByteString>();
+		ByteString [] evidences = new ByteString[16];
+		int numberOfEvidences = 0;
+		byte [] firstByte = new byte[1];
+
+		int row = 0;
+		for (int i = 0; i < numberOfItems; i++)
+		{
+			ItemAssociations ia = container.getItemAssociations(i);
+			if (ia == null)
+				continue;
+
+			for (Association a : ia)
+			{
+				termOrdinal[row] = terms.internOrdinal(a.getTermID());
+
+				int code = evidence2Code.getIfAbsentPut(a.getEvidence(), numberOfEvidences);
+				if (code == numberOfEvidences)
+				{
+					if (code == evidences.length)
+						evidences = Arrays.copyOf(evidences, code * 2);
+					evidences[numberOfEvidences++] = a.getEvidence();
+
+					if (code == 256)
+					{
+						/* Codes no longer fit into a byte, switch to the wide column */
+						wideEvidenceCode = new int[numberOfAssociations];
+						for (int r = 0; r < row; r++)
+							wideEvidenceCode[r] = evidenceCode[r] & 0xff;
+						evidenceCode = null;
+					}
+				}
+				if (wideEvidenceCode != null)
+					wideEvidenceCode[row] = code;
+				else
+					evidenceCode[row] = (byte)code;
+
+				ByteString asp = a.getAspect();
+				if (asp != null && asp.length() > 0)
+				{
+					asp.copyTo(0, 1, firstByte, 0);
+					aspect[row] = firstByte[0];
+				}
+
+				if (a.hasNotQualifier())
+					qualifiers[row] |= NOT_QUALIFIER;
+				row++;
+			}
+		}
+
+		/* All ordinals used so far are below the current size of the pool */
+		TermID [] termIDs = new TermID[terms.size()];
+		for (int o = 0; o < termIDs.length; o++)
+			termIDs[o] = terms.get(o);
+
+		boolean [] acceptedEvidences = new boolean[numberOfEvidences];
+		Arrays.fill(acceptedEvidences, true);
+
+		return new CompactAssociationContainer(mapping, itemOffsets, termIDs, termOrdinal,
+				Arrays.copyOf(evidences, numberOfEvidences), evidenceCode, wideEvidenceCode, aspect, qualifiers, acceptedEvidences);
+	}
+
+	/**
+	 * Returns a view of this container that accepts only associations with
+	 * the given evidence codes. No columns are copied.
+	 *
+	 * @param evidences the evidence codes to accept or null to accept the
+	 *  same associations as this container.
+	 * @return the view
+	 */
+	public CompactAssociationContainer filter(Set<ByteString> evidences)
+	{
+		if (evidences == null)
+			return this;
+
+		boolean [] accepted = new boolean[this.evidences.length];
+		for (int code = 0; code < accepted.length; code++)
+			accepted[code] = acceptedEvidences[code] && evidences.contains(this.evidences[code]);
+
+		return new CompactAssociationContainer(mapping, itemOffsets, termIDs, termOrdinal,
+				this.evidences, evidenceCode, wideEvidenceCode, aspect, qualifiers, accepted);
+	}
+
+	/**
+	 * @return the mapping of names to items.
+	 */
+	public AnnotationContext getMapping()
+	{
+		return mapping;
+	}
+
+	/**
+	 * @return the number of items.
+	 */
+	public int getNumberOfItems()
+	{
+		return itemOffsets.length - 1;
+	}
+
+	/**
+	 * @param item the index of the item
+	 * @return the symbol of the item.
+	 */
+	public ByteString getItem(int item)
+	{
+		return mapping.getSymbols()[item];
+	}
+
+	/**
+	 * Returns the index of the item with the given name. Like
+	 * AssociationContainer.get(), the name is looked up among the object
+	 * symbols, then among the object ids and finally among the synonyms.
+	 *
+	 * @param name the name of the item
+	 * @return the index of the item or -1 if the item is unknown.
+	 */
+	public int getItemIndex(ByteString name)
+	{
+		int index = mapping.mapSymbol(name);
+		if (index == Integer.MAX_VALUE)
+		{
+			index = mapping.mapObjectID(name);
+			if (index == Integer.MAX_VALUE)
+				index = mapping.mapSynonym(name);
+		}
+		if (index == Integer.MAX_VALUE)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Returns the first association of the given item. The associations of
+	 * the item are the ones from getStart(item) (inclusive) to getEnd(item)
+	 * (exclusive). Note that they include associations that are not accepted
+	 * by this view.
+	 *
+	 * @param item the index of the item
+	 * @return the index of the first association of the item.
+	 */
+	public int getStart(int item)
+	{
+		return itemOffsets[item];
+	}
+
+	/**
+	 * @param item the index of the item
+	 * @return the index after the last association of the item.
+	 */
+	public int getEnd(int item)
+	{
+		return itemOffsets[item + 1];
+	}
+
+	/**
+	 * @return the number of associations, including the ones that are not
+	 *  accepted by this view.
+	 */
+	public int getNumberOfAssociations()
+	{
+		return termOrdinal.length;
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return whether the association is accepted by this view.
+	 */
+	public boolean isAccepted(int association)
+	{
+		return acceptedEvidences[getEvidenceCode(association)];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return the ordinal of the term of the association.
+	 */
+	public int getTermOrdinal(int association)
+	{
+		return termOrdinal[association];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return the id of the term of the association.
+	 */
+	public TermID getTermID(int association)
+	{
+		return termIDs[termOrdinal[association]];
+	}
+
+	/**
+	 * @return the number of distinct terms, i.e., the ordinals range from 0
+	 *  (inclusive) to this number (exclusive).
+	 */
+	public int getNumberOfTerms()
+	{
+		return termIDs.length;
+	}
+
+	/**
+	 * @param ordinal the ordinal of a term
+	 * @return the id of the term.
+	 */
+	public TermID getTermIDOfOrdinal(int ordinal)
+	{
+		return termIDs[ordinal];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return the evidence of the association.
+	 */
+	public ByteString getEvidence(int association)
+	{
+		return evidences[getEvidenceCode(association)];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return the code of the evidence of the association.
+	 */
+	private int getEvidenceCode(int association)
+	{
+		if (evidenceCode != null)
+			return evidenceCode[association] & 0xff;
+		return wideEvidenceCode[association];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return the aspect of the association, i.e., P, F, C or 0 if it is unknown.
+	 */
+	public byte getAspect(int association)
+	{
+		return aspect[association];
+	}
+
+	/**
+	 * @param association the index of the association
+	 * @return whether the association has a NOT qualifier.
+	 */
+	public boolean hasNotQualifier(int association)
+	{
+		return (qualifiers[association] & NOT_QUALIFIER) != 0;
+	}
+
+	/**
+	 * @return all evidence codes of the accepted associations and their
+	 *  occurrence count.
+	 */
+	public Map<String,Integer> getAllEvidenceCodes()
+	{
+		int [] counts = new int[evidences.length];
+		for (int a = 0; a < termOrdinal.length; a++)
+			counts[getEvidenceCode(a)]++;
+
+		Map<String,Integer> evidenceCounts = new HashMap<String, Integer>();
+		for (int code = 0; code < counts.length; code++)
+		{
+			if (acceptedEvidences[code] && counts[code] != 0)
+				evidenceCounts.put(ByteString.toString(evidences[code]), counts[code]);
+		}
+		return evidenceCounts;
+	}
+}
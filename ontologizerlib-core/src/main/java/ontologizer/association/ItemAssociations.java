@@ -60,6 +60,14 @@ public class ItemAssociations implements Iterable<Association>, Serializable
 		return gene;
 	}
 
+	/**
+	 * @return the number of associations of the gene.
+	 */
+	public int size()
+	{
+		return associations.size();
+	}
+
 	/**
 	 * Get an arraylist of all GO Ids to which this gene is directly
 	 * annotated by extracting the information from the Association object(s)
@@ -119,7 +119,7 @@ abstract public class Bayes2GOScore extends Bayes2GOScoreBase
 
 	public void setExpectedNumberOfTerms(double terms)
 	{
-		p = (double)terms / numTerms;
+		p = terms / numTerms;
 	}
 
 	/**
@@ -192,14 +192,57 @@ abstract public class Bayes2GOScore extends Bayes2GOScoreBase
 		numRecords++;
 	}
 
+	/**
+	 * Adds the records of the given score to the records of this score.
+	 * Both scores must refer to the same terms. This is used to pool the
+	 * records of several chains.
+	 *
+	 * @param other the score whose records shall be added
+	 */
+	public void addRecords(Bayes2GOScore other)
+	{
+		for (int i = 0; i < numTerms; i++)
+			termActivationCounts[i] += other.termActivationCounts[i];
+
+		numRecords += other.numRecords;
+	}
+
 	/**
 	 * @return the terms that are currently activated
 	 */
 	public int [] getActiveTerms()
 	{
 		int [] list = new int[numTerms - numInactiveTerms];
-		for (int i = numInactiveTerms; i < numTerms; i++)
-			list[i-numInactiveTerms] = termPartition[i];
+		getActiveTerms(list);
 		return list;
 	}
+
+	/**
+	 * Copies the terms that are currently activated into the given array.
+	 *
+	 * @param dest the destination, must be able to hold all active terms.
+	 * @return the number of active terms
+	 */
+	public int getActiveTerms(int [] dest)
+	{
+		int n = numTerms - numInactiveTerms;
+		System.arraycopy(termPartition, numInactiveTerms, dest, 0, n);
+		return n;
+	}
+
+	/**
+	 * @return the number of terms that are currently activated
+	 */
+	public int getNumberOfActiveTerms()
+	{
+		return numTerms - numInactiveTerms;
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	public int getNumberOfTerms()
+	{
+		return numTerms;
+	}
 }
@@ -2,8 +2,6 @@ package ontologizer.calculation.b2g;
 
 import java.util.Random;
 
-import ontologizer.calculation.util.Gamma;
-
 /**
  * Score of a setting in which alpha and beta are not known.
  *
@@ -38,6 +36,22 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	protected double alpha = Double.NaN;
 	protected double beta = Double.NaN;
 
+	/*
+	 * The logarithms of the parameters (and their complements) that are
+	 * needed by getScore(), indexed like ALPHA, BETA, and
+	 * EXPECTED_NUMBER_OF_TERMS. For fixed parameters, all entries hold the
+	 * logarithm of the fixed value.
+	 */
+	private double [] logAlpha;
+	private double [] log1mAlpha;
+	private double [] logBeta;
+	private double [] log1mBeta;
+	private double [] logP;
+	private double [] log1mP;
+
+	/** Table of log gamma values, only present if parameters are integrated */
+	private double [] logGammaTable;
+
 	/** True negative count */
 	private int n00;
 
@@ -65,6 +79,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		this.alpha = alpha;
 		doAlphaMCMC = Double.isNaN(alpha);
+		updateLogAlpha();
 	}
 
 	/**
@@ -76,6 +91,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		this.beta = beta;
 		doBetaMCMC = Double.isNaN(beta);
+		updateLogBeta();
 	}
 
 	@Override
@@ -83,6 +99,43 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	{
 		super.setExpectedNumberOfTerms(terms);
 		doExpMCMC = Double.isNaN(terms);
+		updateLogP();
+	}
+
+	private void updateLogAlpha()
+	{
+		logAlpha = new double[ALPHA.length];
+		log1mAlpha = new double[ALPHA.length];
+		for (int i = 0; i < ALPHA.length; i++)
+		{
+			double a = Double.isNaN(alpha) ? ALPHA[i] : alpha;
+			logAlpha[i] = Math.log(a);
+			log1mAlpha[i] = Math.log(1 - a);
+		}
+	}
+
+	private void updateLogBeta()
+	{
+		logBeta = new double[BETA.length];
+		log1mBeta = new double[BETA.length];
+		for (int i = 0; i < BETA.length; i++)
+		{
+			double b = Double.isNaN(beta) ? BETA[i] : beta;
+			logBeta[i] = Math.log(b);
+			log1mBeta[i] = Math.log(1 - b);
+		}
+	}
+
+	private void updateLogP()
+	{
+		logP = new double[EXPECTED_NUMBER_OF_TERMS.length];
+		log1mP = new double[EXPECTED_NUMBER_OF_TERMS.length];
+		for (int i = 0; i < EXPECTED_NUMBER_OF_TERMS.length; i++)
+		{
+			double p = Double.isNaN(this.p) ? (double)EXPECTED_NUMBER_OF_TERMS[i] / numTerms : this.p;
+			logP[i] = Math.log(p);
+			log1mP[i] = Math.log(1 - p);
+		}
 	}
 
 	public void setMaxAlpha(double maxAlpha)
@@ -101,6 +154,8 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		ALPHA[0] = 0.0000001;
 		for (int i=1;i<20;i++)
 			ALPHA[i] = i * maxAlpha / span;
+
+		updateLogAlpha();
 	}
 
 	public void setMaxBeta(double maxBeta)
@@ -120,6 +175,7 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		for (int i=1;i<20;i++)
 			BETA[i] = i * maxBeta / span;
 
+		updateLogBeta();
 	}
 
 	/**
@@ -131,6 +187,15 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 	public void setIntegrateParams(boolean integrateParams)
 	{
 		this.integrateParams = integrateParams;
+
+		if (integrateParams && logGammaTable == null)
+		{
+			/* The arguments of logGamma() never exceed the number of genes or terms plus two */
+			int n = Math.max(observedGenes.length, numTerms) + 3;
+			logGammaTable = new double[n];
+			for (int a = 3; a < n; a++)
+				logGammaTable[a] = logGammaTable[a - 1] + Math.log(a - 1);
+		}
 	}
 
 	public FixedAlphaBetaScore(Random rnd,  int [][] termLinks, boolean [] observedGenes)
@@ -148,6 +213,8 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		}
 
 		n00 = observedGenes.length - n10;
+
+		updateLogP();
 	}
 
 	@Override
@@ -298,23 +365,9 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		return p;
 	}
 
-	private final double [] lGamma = new double[20000];
-
 	private double logGamma(int a)
 	{
-		if (a == 1 || a == 2) return 0.0;
-
-		if (a < lGamma.length)
-		{
-			double lg = lGamma[a];
-			if (lg == 0.0)
-			{
-				lg = Gamma.lgamma(a);
-				lGamma[a] = lg;
-			}
-			return lg;
-		}
-		return Gamma.lgamma(a);
+		return logGammaTable[a];
 	}
 
 	private double logBeta(int a, int b)
@@ -329,18 +382,10 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 
 		if (!integrateParams)
 		{
-			double alpha;
-			double beta;
-			double p;
-
-			alpha = getAlpha();
-			beta = getBeta();
-			p = getP();
-
-			newScore2 = Math.log(alpha) * n10 + Math.log(1-alpha)*n00 + Math.log(1-beta)*n11 + Math.log(beta)*n01;
+			newScore2 = logAlpha[alphaIdx] * n10 + log1mAlpha[alphaIdx]*n00 + log1mBeta[betaIdx]*n11 + logBeta[betaIdx]*n01;
 
 			if (usePrior)
-				newScore2 += Math.log(p)*(numTerms - numInactiveTerms) + Math.log(1-p)*numInactiveTerms;
+				newScore2 += logP[expIdx]*(numTerms - numInactiveTerms) + log1mP[expIdx]*numInactiveTerms;
 		} else
 		{
 			/* Prior */
@@ -396,6 +441,26 @@ public class FixedAlphaBetaScore extends Bayes2GOScore
 		totalT += (numTerms - numInactiveTerms);
 	}
 
+	@Override
+	public void addRecords(Bayes2GOScore other)
+	{
+		super.addRecords(other);
+
+		FixedAlphaBetaScore o = (FixedAlphaBetaScore)other;
+		totalN00 += o.totalN00;
+		totalN01 += o.totalN01;
+		totalN10 += o.totalN10;
+		totalN11 += o.totalN11;
+
+		for (int i = 0; i < totalAlpha.length; i++)
+			totalAlpha[i] += o.totalAlpha[i];
+		for (int i = 0; i < totalBeta.length; i++)
+			totalBeta[i] += o.totalBeta[i];
+		for (int i = 0; i < totalExp.length; i++)
+			totalExp[i] += o.totalExp[i];
+		totalT += o.totalT;
+	}
+
 	public double getAvgN00()
 	{
 		return (double)totalN00 / numRecords;
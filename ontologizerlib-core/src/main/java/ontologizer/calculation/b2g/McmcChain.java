@@ -0,0 +1,311 @@
+package ontologizer.calculation.b2g;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A single Markov chain of the Bayes2GO sampler. Each chain owns its score
+ * and its random source, hence different chains can be advanced in
+ * different threads.
+ *
+ * The stationary distribution of a chain is the posterior raised to the
+ * power of 1/temperature. Only chains whose temperature is 1 record their
+ * states. The recorded scores and numbers of active terms are summarized,
+ * so that the convergence of several chains can be assessed.
+ *
+ * Steps don't allocate any memory, the acceptance is decided in log space.
+ */
+final class McmcChain
+{
+	/**
+	 * Receives the outcome of each step.
+	 */
+	interface IStepListener
+	{
+		void step(int step, double acceptProb, int numAccepts, double score);
+	}
+
+	final Bayes2GOScore score;
+
+	/** The same as score, if it is a FixedAlphaBetaScore, null otherwise */
+	final FixedAlphaBetaScore fixedAlphaBetaScore;
+
+	private final Random rnd;
+
+	/** The temperature of the chain, 1 for the chain that samples the posterior */
+	double temperature = 1;
+
+	/** The current score */
+	double currentScore;
+
+	int numAccepts;
+	int numRejects;
+
+	double maxScore;
+	private final int [] maxScoredTerms;
+	private int numMaxScoredTerms;
+	double maxScoredAlpha = Double.NaN;
+	double maxScoredBeta = Double.NaN;
+	double maxScoredP = Double.NaN;
+	int maxWhenSeen = -1;
+
+	/** Receives the outcome of each step, may be null */
+	IStepListener listener;
+
+	/* Statistics of all steps since the last call of endInterval() */
+	private double intervalScoreSum;
+	private int intervalSteps;
+	private int intervalAccepts;
+
+	/** Mean score of the steps of the last completed interval */
+	double lastIntervalMeanScore = Double.NaN;
+
+	/* Running means and sums of squared deviations of the recorded samples */
+	private long numSamples;
+	private double scoreMean;
+	private double scoreM2;
+	private double activeTermsMean;
+	private double activeTermsM2;
+
+	McmcChain(Bayes2GOScore score, Random rnd)
+	{
+		this.score = score;
+		this.fixedAlphaBetaScore = score instanceof FixedAlphaBetaScore ? (FixedAlphaBetaScore)score : null;
+		this.rnd = rnd;
+
+		currentScore = score.getScore();
+		maxScore = currentScore;
+		maxScoredTerms = new int[score.getNumberOfTerms()];
+		numMaxScoredTerms = score.getActiveTerms(maxScoredTerms);
+	}
+
+	/**
+	 * @return the terms that were active when the maximum score was seen.
+	 */
+	int [] getMaxScoredTerms()
+	{
+		return Arrays.copyOf(maxScoredTerms, numMaxScoredTerms);
+	}
+
+	/**
+	 * Performs the steps from (inclusive) to (exclusive). The state is
+	 * recorded after each step beyond the burnin.
+	 *
+	 * @param from the index of the first step
+	 * @param to the index of the last step plus one
+	 * @param burnin the number of steps whose states are not recorded
+	 */
+	void run(int from, int to, int burnin)
+	{
+		for (int t = from; t < to; t++)
+			step(t, burnin);
+	}
+
+	private void step(int t, int burnin)
+	{
+		/* Remember maximum score and terms */
+		if (currentScore > maxScore)
+		{
+			maxScore = currentScore;
+			numMaxScoredTerms = score.getActiveTerms(maxScoredTerms);
+			if (fixedAlphaBetaScore != null)
+			{
+				maxScoredAlpha = fixedAlphaBetaScore.getAlpha();
+				maxScoredBeta = fixedAlphaBetaScore.getBeta();
+				maxScoredP = fixedAlphaBetaScore.getP();
+			}
+			maxWhenSeen = t;
+		}
+
+		long oldPossibilities = score.getNeighborhoodSize();
+		long r = rnd.nextLong();
+		score.proposeNewState(r);
+		double newScore = score.getScore();
+		long newPossibilities = score.getNeighborhoodSize();
+
+		/* The last summand is the log of the hastings ratio */
+		double logAcceptProb = (newScore - currentScore) / temperature;
+		if (oldPossibilities != newPossibilities)
+			logAcceptProb += Math.log((double)oldPossibilities / (double)newPossibilities);
+
+		double u = rnd.nextDouble();
+		if (logAcceptProb < 0 && Math.log(u) >= logAcceptProb)
+		{
+			score.undoProposal();
+			numRejects++;
+		} else
+		{
+			currentScore = newScore;
+			numAccepts++;
+			intervalAccepts++;
+		}
+
+		intervalScoreSum += currentScore;
+		intervalSteps++;
+
+		if (t > burnin && temperature == 1)
+		{
+			score.record();
+			addSample(currentScore, score.getNumberOfActiveTerms());
+		}
+
+		if (listener != null)
+			listener.step(t, Math.exp(logAcceptProb), numAccepts, currentScore);
+	}
+
+	/**
+	 * Completes the current interval of steps, see lastIntervalMeanScore.
+	 */
+	void endInterval()
+	{
+		lastIntervalMeanScore = intervalSteps > 0 ? intervalScoreSum / intervalSteps : Double.NaN;
+		intervalScoreSum = 0;
+		intervalSteps = 0;
+		intervalAccepts = 0;
+	}
+
+	/**
+	 * Determines the acceptance rate of the current interval over all given
+	 * chains. Must be called before endInterval().
+	 *
+	 * @param chains the chains
+	 * @return the acceptance rate
+	 */
+	static double intervalAcceptRate(McmcChain [] chains)
+	{
+		long accepts = 0;
+		long steps = 0;
+		for (McmcChain c : chains)
+		{
+			accepts += c.intervalAccepts;
+			steps += c.intervalSteps;
+		}
+		return steps > 0 ? (double)accepts / steps : Double.NaN;
+	}
+
+	/**
+	 * Determines the marginal probabilities of all terms being active using
+	 * the pooled records of the given chains.
+	 *
+	 * @param chains the chains
+	 * @param dest receives the marginals
+	 * @return whether any state has been recorded at all.
+	 */
+	static boolean marginals(McmcChain [] chains, double [] dest)
+	{
+		long records = 0;
+		for (McmcChain c : chains)
+			records += c.score.numRecords;
+		if (records == 0)
+			return false;
+
+		for (int i = 0; i < dest.length; i++)
+		{
+			long counts = 0;
+			for (McmcChain c : chains)
+				counts += c.score.termActivationCounts[i];
+			dest[i] = (double)counts / records;
+		}
+		return true;
+	}
+
+	private void addSample(double s, int activeTerms)
+	{
+		numSamples++;
+
+		double d = s - scoreMean;
+		scoreMean += d / numSamples;
+		scoreM2 += d * (s - scoreMean);
+
+		d = activeTerms - activeTermsMean;
+		activeTermsMean += d / numSamples;
+		activeTermsM2 += d * (activeTerms - activeTermsMean);
+	}
+
+	/**
+	 * Computes the potential scale reduction factor (R-hat) of Gelman and
+	 * Rubin for the recorded scores of the given chains.
+	 *
+	 * @param chains the chains
+	 * @return R-hat or NaN if it is not defined.
+	 */
+	static double scoreRHat(McmcChain [] chains)
+	{
+		double [] means = new double[chains.length];
+		double [] m2 = new double[chains.length];
+		long [] n = new long[chains.length];
+		for (int i = 0; i < chains.length; i++)
+		{
+			means[i] = chains[i].scoreMean;
+			m2[i] = chains[i].scoreM2;
+			n[i] = chains[i].numSamples;
+		}
+		return rHat(means, m2, n);
+	}
+
+	/**
+	 * Computes the potential scale reduction factor (R-hat) of Gelman and
+	 * Rubin for the recorded numbers of active terms of the given chains.
+	 *
+	 * @param chains the chains
+	 * @return R-hat or NaN if it is not defined.
+	 */
+	static double activeTermsRHat(McmcChain [] chains)
+	{
+		double [] means = new double[chains.length];
+		double [] m2 = new double[chains.length];
+		long [] n = new long[chains.length];
+		for (int i = 0; i < chains.length; i++)
+		{
+			means[i] = chains[i].activeTermsMean;
+			m2[i] = chains[i].activeTermsM2;
+			n[i] = chains[i].numSamples;
+		}
+		return rHat(means, m2, n);
+	}
+
+	/**
+	 * Computes the potential scale reduction factor of Gelman and Rubin.
+	 * Chains with less samples than the others are accounted with the
+	 * smallest common number of samples.
+	 *
+	 * @param means the sample means of the chains
+	 * @param m2 the sums of the squared deviations from the means
+	 * @param n the number of samples of the chains
+	 * @return R-hat or NaN if it is not defined, e.g., for less than two chains.
+	 */
+	static double rHat(double [] means, double [] m2, long [] n)
+	{
+		int m = means.length;
+		if (m < 2)
+			return Double.NaN;
+
+		long minN = Long.MAX_VALUE;
+		for (long ni : n)
+			minN = Math.min(minN, ni);
+		if (minN < 2)
+			return Double.NaN;
+
+		double grandMean = 0;
+		double w = 0;
+		for (int i = 0; i < m; i++)
+		{
+			grandMean += means[i];
+			w += m2[i] / (n[i] - 1);
+		}
+		grandMean /= m;
+		w /= m;
+
+		/* Between chain variance divided by the number of samples */
+		double bn = 0;
+		for (int i = 0; i < m; i++)
+			bn += (means[i] - grandMean) * (means[i] - grandMean);
+		bn /= m - 1;
+
+		if (w == 0)
+			return bn == 0 ? 1 : Double.POSITIVE_INFINITY;
+
+		double var = (minN - 1) * w / minN + bn;
+		return Math.sqrt(var / w);
+	}
+}
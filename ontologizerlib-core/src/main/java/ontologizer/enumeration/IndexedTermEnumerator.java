@@ -0,0 +1,373 @@
+package ontologizer.enumeration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ontologizer.association.AssociationContainer;
+import ontologizer.association.CompactAssociationContainer;
+import ontologizer.association.ItemAssociations;
+import ontologizer.ontology.Ontology;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+import ontologizer.util.Util;
+import sonumina.collections.IntMapper;
+import sonumina.math.graph.SlimDirectedGraphView;
+
+/**
+ * A compact variant of the TermEnumerator. Terms and items are referred to
+ * by dense indices, the terms by their index within a slim graph view of
+ * the ontology and the items by their index within an IntMapper.
+ *
+ * Annotations are propagated using the precomputed ancestor closure of
+ * the slim graph view, i.e., via all relations. The items that are
+ * annotated to a term are stored as a sorted array of item indices, each
+ * item occurs only once per term.
+ *
+ * The enumerator is immutable once it is created and can be shared among
+ * threads.
+ */
+public final class IndexedTermEnumerator implements Iterable<TermID>
+{
+	private static final int [] EMPTY = new int[0];
+
+	private final SlimDirectedGraphView<TermID> slim;
+	private final IntMapper<ByteString> items;
+
+	/** The sorted indices of the items directly annotated to a term (indexed by term) */
+	private final int [][] directItems;
+
+	/** The sorted indices of the items annotated to a term or its descendants (indexed by term) */
+	private final int [][] totalItems;
+
+	/** The number of terms with at least a single annotated item */
+	private final int numberOfAnnotatedTerms;
+
+	private IndexedTermEnumerator(SlimDirectedGraphView<TermID> slim, IntMapper<ByteString> items, int [][] directItems, int [][] totalItems)
+	{
+		this.slim = slim;
+		this.items = items;
+		this.directItems = directItems;
+		this.totalItems = totalItems;
+
+		int n = 0;
+		for (int [] t : totalItems)
+		{
+			if (t.length != 0)
+				n++;
+		}
+		this.numberOfAnnotatedTerms = n;
+	}
+
+	/**
+	 * Creates the enumerator for all items of the given container.
+	 *
+	 * @param ontology the ontology to work on
+	 * @param container the annotations
+	 * @return the enumerator
+	 */
+	public static IndexedTermEnumerator create(Ontology ontology, AssociationContainer container)
+	{
+		List<ByteString> names = new ArrayList<ByteString>();
+		for (ItemAssociations ia : container)
+			names.add(ia.name());
+		CompactAssociationContainer compact = container.getCompactContainer(ontology.getTermMap().getTermIDInterner());
+		return create(ontology.getTermIDSlimGraphView(), compact, IntMapper.create(names));
+	}
+
+	/**
+	 * Creates the enumerator for the given items.
+	 *
+	 * @param slim the slim graph view of the ontology. It can be shared among
+	 *  several enumerators.
+	 * @param container the annotations
+	 * @param items the items to consider. Items without annotations are
+	 *  not annotated to any term.
+	 * @param evidences consider only annotation entries that correspond to
+	 *  the given evidence codes or null to consider all entries.
+	 * @return the enumerator
+	 */
+	public static IndexedTermEnumerator create(SlimDirectedGraphView<TermID> slim, AssociationContainer container, IntMapper<ByteString> items, Set<ByteString> evidences)
+	{
+		return create(slim, CompactAssociationContainer.create(container).filter(evidences), items);
+	}
+
+	/**
+	 * Creates the enumerator for the given items.
+	 *
+	 * @param slim the slim graph view of the ontology. It can be shared among
+	 *  several enumerators.
+	 * @param container the annotations. Only the associations accepted by the
+	 *  container are considered.
+	 * @param items the items to consider. Items without annotations are
+	 *  not annotated to any term.
+	 * @return the enumerator
+	 */
+	public static IndexedTermEnumerator create(SlimDirectedGraphView<TermID> slim, CompactAssociationContainer container, IntMapper<ByteString> items)
+	{
+		int numberOfTerms = slim.getNumberOfVertices();
+		int numberOfItems = items.getSize();
+
+		/* The index of each item within the container, -1 for unknown items */
+		int [] containerItems = new int[numberOfItems];
+		for (int i = 0; i < numberOfItems; i++)
+			containerItems[i] = container.getItemIndex(items.get(i));
+
+		/* The vertex of each term ordinal of the container, -1 for unknown terms */
+		int [] ordinal2Vertex = new int[container.getNumberOfTerms()];
+		for (int o = 0; o < ordinal2Vertex.length; o++)
+			ordinal2Vertex[o] = slim.getVertexIndex(container.getTermIDOfOrdinal(o));
+
+		/* Number of annotated items per term, first pass counts, second pass fills */
+		int [] directCount = new int[numberOfTerms];
+		int [] totalCount = new int[numberOfTerms];
+		int [][] directItems = null;
+		int [][] totalItems = null;
+
+		/* Last item (plus one) that has been added to the term */
+		int [] directStamp = new int[numberOfTerms];
+		int [] totalStamp = new int[numberOfTerms];
+
+		for (int pass = 0; pass < 2; pass++)
+		{
+			if (pass == 1)
+			{
+				directItems = allocate(directCount);
+				totalItems = allocate(totalCount);
+				Arrays.fill(directCount, 0);
+				Arrays.fill(totalCount, 0);
+				Arrays.fill(directStamp, 0);
+				Arrays.fill(totalStamp, 0);
+			}
+
+			/* Items are processed in the order of their indices, hence the arrays are sorted */
+			for (int i = 0; i < numberOfItems; i++)
+			{
+				int item = containerItems[i];
+				if (item == -1)
+					continue;
+
+				int stamp = i + 1;
+				for (int a = container.getStart(item); a < container.getEnd(item); a++)
+				{
+					if (!container.isAccepted(a))
+						continue;
+
+					int t = ordinal2Vertex[container.getTermOrdinal(a)];
+					if (t == -1)
+						continue;
+
+					if (directStamp[t] != stamp)
+					{
+						directStamp[t] = stamp;
+						if (pass == 1) directItems[t][directCount[t]] = i;
+						directCount[t]++;
+					}
+
+					for (int anc : slim.getAncestorIndices(t))
+					{
+						if (totalStamp[anc] != stamp)
+						{
+							totalStamp[anc] = stamp;
+							if (pass == 1) totalItems[anc][totalCount[anc]] = i;
+							totalCount[anc]++;
+						}
+					}
+				}
+			}
+		}
+
+		return new IndexedTermEnumerator(slim, items, directItems, totalItems);
+	}
+
+	private static int [][] allocate(int [] counts)
+	{
+		int [][] a = new int[counts.length][];
+		for (int i = 0; i < counts.length; i++)
+			a[i] = counts[i] == 0 ? EMPTY : new int[counts[i]];
+		return a;
+	}
+
+	/**
+	 * @return the number of terms, i.e., the number of vertices of the slim
+	 *  graph view.
+	 */
+	public int getNumberOfTerms()
+	{
+		return totalItems.length;
+	}
+
+	/**
+	 * @return the number of items.
+	 */
+	public int getNumberOfItems()
+	{
+		return items.getSize();
+	}
+
+	/**
+	 * @param t the term
+	 * @return the index of the term or -1 if the term is unknown.
+	 */
+	public int getTermIndex(TermID t)
+	{
+		return slim.getVertexIndex(t);
+	}
+
+	/**
+	 * @param t the index of the term
+	 * @return the term with the given index
+	 */
+	public TermID getTerm(int t)
+	{
+		return slim.getVertex(t);
+	}
+
+	/**
+	 * @param item the item
+	 * @return the index of the item or -1 if the item is unknown.
+	 */
+	public int getItemIndex(ByteString item)
+	{
+		return items.getIndex(item);
+	}
+
+	/**
+	 * @param i the index of the item
+	 * @return the item with the given index
+	 */
+	public ByteString getItem(int i)
+	{
+		return items.get(i);
+	}
+
+	/**
+	 * Returns the items directly annotated to the term with the given index.
+	 * The returned array must not be modified.
+	 *
+	 * @param t the index of the term
+	 * @return the sorted indices of the items.
+	 */
+	public int [] getDirectAnnotatedItems(int t)
+	{
+		return directItems[t];
+	}
+
+	/**
+	 * Returns the items annotated to the term with the given index or to
+	 * one of its descendants. The returned array must not be modified.
+	 *
+	 * @param t the index of the term
+	 * @return the sorted indices of the items.
+	 */
+	public int [] getTotalAnnotatedItems(int t)
+	{
+		return totalItems[t];
+	}
+
+	/**
+	 * @param t the index of the term
+	 * @return the number of items annotated to the term or to one of its descendants.
+	 */
+	public int getTotalAnnotatedCount(int t)
+	{
+		return totalItems[t].length;
+	}
+
+	/**
+	 * Returns the items annotated to the term with the given index or to
+	 * one of its descendants as a bitset.
+	 *
+	 * @param t the index of the term
+	 * @return the bitset in which bit i is set if the item with index i is annotated.
+	 */
+	public long [] getTotalAnnotatedItemBits(int t)
+	{
+		return Util.toBitSet(totalItems[t], items.getSize());
+	}
+
+	/**
+	 * @return the total number of terms to which at least a single item has been annotated.
+	 */
+	public int getTotalNumberOfAnnotatedTerms()
+	{
+		return numberOfAnnotatedTerms;
+	}
+
+	/**
+	 * Return items directly or indirectly annotated to the given term in
+	 * the representation of the TermEnumerator.
+	 *
+	 * @param tid
+	 * @return the annotated items
+	 */
+	public TermAnnotations getAnnotatedGenes(TermID tid)
+	{
+		TermAnnotations ta = new TermAnnotations();
+		int t = slim.getVertexIndex(tid);
+		if (t != -1)
+		{
+			for (int i : directItems[t])
+				ta.directAnnotated.add(items.get(i));
+			for (int i : totalItems[t])
+				ta.totalAnnotated.add(items.get(i));
+		}
+		return ta;
+	}
+
+	/**
+	 * @return the currently annotated terms as a list.
+	 */
+	public List<TermID> getAllAnnotatedTermsAsList()
+	{
+		ArrayList<TermID> at = new ArrayList<TermID>(numberOfAnnotatedTerms);
+		for (TermID t : this)
+			at.add(t);
+		return at;
+	}
+
+	/**
+	 * Iterates over all terms with at least a single annotated item in the
+	 * order of their indices.
+	 */
+	@Override
+	public Iterator<TermID> iterator()
+	{
+		return new Iterator<TermID>()
+		{
+			private int next = advance(0);
+
+			private int advance(int t)
+			{
+				while (t < totalItems.length && totalItems[t].length == 0)
+					t++;
+				return t;
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < totalItems.length;
+			}
+
+			@Override
+			public TermID next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException();
+				TermID tid = slim.getVertex(next);
+				next = advance(next + 1);
+				return tid;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
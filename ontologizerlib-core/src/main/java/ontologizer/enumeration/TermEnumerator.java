@@ -2,26 +2,27 @@ package ontologizer.enumeration;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import ontologizer.association.Association;
 import ontologizer.association.AssociationContainer;
+import ontologizer.association.CompactAssociationContainer;
 import ontologizer.association.ItemAssociations;
 import ontologizer.ontology.Ontology;
-import ontologizer.ontology.Ontology.ITermIDVisitor;
+import ontologizer.ontology.RelationType;
 import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
-import sonumina.math.graph.Algorithms;
-import sonumina.math.graph.Grabbers;
-import sonumina.math.graph.INeighbourGrabber;
+import sonumina.collections.IntHashSet;
+import sonumina.collections.IntIntHashMap;
+import sonumina.math.graph.FrozenDirectedGraph;
+import sonumina.math.graph.IEdgeFilter;
+import sonumina.math.graph.IIntVisitor;
 
 /**
  * This class encapsulates the enumeration of explicit and implicit
@@ -35,10 +36,20 @@ public class TermEnumerator implements Iterable<TermID>
 	/** The GO graph */
 	private Ontology graph;
 
-	private HashMap<TermID,TermAnnotations> map;
+	/**
+	 * Maps the index of an annotated term within the frozen graph to the
+	 * slot of the term within terms and annotations.
+	 */
+	private IntIntHashMap vertex2Slot;
+
+	/** The annotated terms in the order in which they have been encountered */
+	private ArrayList<TermID> terms;
+
+	/** The annotations of the terms */
+	private ArrayList<TermAnnotations> annotations;
 
-	/** The grabber that is used to propagate annotations */
-	private INeighbourGrabber<TermID> grabber;
+	/** Whether annotations are propagated only via propagating relations */
+	private boolean respectAnnotationPropagationRules;
 
 	/** Holds the number of suspicious annotations */
 //	private int suspiciousCount;
@@ -63,38 +74,28 @@ public class TermEnumerator implements Iterable<TermID>
 	public TermEnumerator(Ontology ont, boolean respectAnnotationPropagationRules)
 	{
 		this.graph = ont;
+		this.respectAnnotationPropagationRules = respectAnnotationPropagationRules;
 
-		map = new HashMap<TermID,TermAnnotations>();
-
-		/* Construct different grabber depending whether the propagation
-		 * property shall be respected or not.
-		 */
+		vertex2Slot = new IntIntHashMap();
+		terms = new ArrayList<TermID>();
+		annotations = new ArrayList<TermAnnotations>();
+	}
 
-		if (!respectAnnotationPropagationRules)
-		{
-			grabber = Grabbers.inGrabber(graph);
-		} else
+	/**
+	 * Returns the annotations of the term with the given index within the
+	 * frozen graph. Creates an entry if it doesn't exist.
+	 */
+	private TermAnnotations getOrCreateAnnotations(FrozenDirectedGraph<TermID, RelationType> frozenGraph, int vertex)
+	{
+		int slot = vertex2Slot.getIfAbsent(vertex, -1);
+		if (slot == -1)
 		{
-			/* Java 8 would be handy here, but not yet */
-			grabber = new INeighbourGrabber<TermID>()
-			{
-				@Override
-				public Iterator<TermID> grabNeighbours(TermID v)
-				{
-					List<TermID> parents = new ArrayList<TermID>();
-
-					for (TermID p : graph.getParentNodes(v))
-					{
-						if (graph.getDirectRelation(p,v).isPropagating())
-						{
-							parents.add(p);
-						}
-					}
-					return parents.iterator();
-				}
-			};
+			slot = terms.size();
+			vertex2Slot.put(vertex, slot);
+			terms.add(frozenGraph.getVertex(vertex));
+			annotations.add(new TermAnnotations());
 		}
-
+		return annotations.get(slot);
 	}
 
 
@@ -117,7 +118,7 @@ public class TermEnumerator implements Iterable<TermID>
 	 */
 	public void push(ItemAssociations geneAssociations, Set<ByteString> evidences)
 	{
-		ByteString geneName = geneAssociations.name();
+		final ByteString geneName = geneAssociations.name();
 
 		/* Check for suspicious annotations. An annotation i is suspicious
 		 * if there exists a more specialized annotation orgininating from
@@ -151,14 +152,15 @@ public class TermEnumerator implements Iterable<TermID>
 		 * completely.
 		 */
 
-		HashSet<TermID> termIDSet = new HashSet<TermID>();
+		final FrozenDirectedGraph<TermID, RelationType> frozenGraph = graph.getFrozenGraph();
+		IntHashSet termIDSet = new IntHashSet();
 
 		/* At first add the direct counts and remember the terms */
 		for (Association association : geneAssociations)
 		{
-			TermID termID = association.getTermID();
+			int vertex = frozenGraph.getVertexIndex(association.getTermID());
 
-			if (!graph.termExists(termID))
+			if (vertex == -1)
 				continue;
 
 			if (evidences != null)
@@ -167,58 +169,85 @@ public class TermEnumerator implements Iterable<TermID>
 					continue;
 			}
 
-			TermAnnotations termGenes = map.get(termID);
-
-			/* Create an entry if it doesn't exist */
-			if (termGenes == null)
-			{
-				termGenes = new TermAnnotations();
-				map.put(termID,termGenes);
-			}
-
+			TermAnnotations termGenes = getOrCreateAnnotations(frozenGraph, vertex);
 			termGenes.directAnnotated.add(geneName);
 
 			/* This term is annotated */
-			termIDSet.add(association.getTermID());
+			termIDSet.add(vertex);
 		}
 
-		/* Then add the total counts */
+		propagate(frozenGraph, geneName, termIDSet);
+	}
 
-		/**
-		 * The term visitor: To all visited terms (which here
-		 * all terms up from the goTerms of the set) add the
-		 * given gene.
-		 *
-		 * @author Sebastian Bauer
-		 */
-		class VisitingGOVertex implements ITermIDVisitor
+	/**
+	 * Pushes the given item of the given container into the enumerator, i.e.,
+	 * adds the item to all terms annotating that item. Only the associations
+	 * that are accepted by the container are considered, so filtering by
+	 * evidence is done via CompactAssociationContainer.filter().
+	 *
+	 * @param container the associations
+	 * @param item the index of the item within the container
+	 */
+	public void push(CompactAssociationContainer container, int item)
+	{
+		final ByteString geneName = container.getItem(item);
+		final FrozenDirectedGraph<TermID, RelationType> frozenGraph = graph.getFrozenGraph();
+		IntHashSet termIDSet = new IntHashSet();
+
+		for (int a = container.getStart(item); a < container.getEnd(item); a++)
 		{
-			private ByteString geneName;
+			if (!container.isAccepted(a))
+				continue;
 
-			public VisitingGOVertex(ByteString geneName)
-			{
-				this.geneName = geneName;
-			}
+			int vertex = frozenGraph.getVertexIndex(container.getTermID(a));
+			if (vertex == -1)
+				continue;
 
-			public boolean visited(TermID tid)
-			{
-				TermAnnotations termGenes = map.get(tid);
+			getOrCreateAnnotations(frozenGraph, vertex).directAnnotated.add(geneName);
+			termIDSet.add(vertex);
+		}
+
+		propagate(frozenGraph, geneName, termIDSet);
+	}
+
+	/**
+	 * Adds the given gene to the total annotations of the given terms and
+	 * all their ancestors.
+	 *
+	 * @param frozenGraph the frozen graph of the ontology
+	 * @param geneName the gene
+	 * @param termIDSet the vertices of the terms to which the gene is directly annotated
+	 */
+	private void propagate(final FrozenDirectedGraph<TermID, RelationType> frozenGraph, final ByteString geneName, IntHashSet termIDSet)
+	{
+		/* Then add the total counts */
 
-				if (termGenes == null)
+		/* Start propagation. All terms are known to exist so we can use
+		 * the frozen graph directly. Depending whether the propagation property
+		 * shall be respected or not, non-propagating relations are left out.
+		 * To all visited terms (which here all terms up from the terms of the
+		 * set) the given gene is added. */
+		boolean [] leaveOut = null;
+		if (respectAnnotationPropagationRules)
+		{
+			leaveOut = frozenGraph.getLeftOutEdgeTypes(new IEdgeFilter<RelationType>()
+			{
+				@Override
+				public boolean leaveOut(RelationType ed)
 				{
-					termGenes = new TermAnnotations();
-					map.put(tid,termGenes);
+					return !ed.isPropagating();
 				}
-				termGenes.totalAnnotated.add(geneName);
+			});
+		}
+		frozenGraph.bfs(termIDSet.toArray(), true, leaveOut, new IIntVisitor()
+		{
+			@Override
+			public boolean visited(int v)
+			{
+				getOrCreateAnnotations(frozenGraph, v).totalAnnotated.add(geneName);
 				return true;
 			}
-		};
-
-		/* Create the visting */
-		VisitingGOVertex vistingGOVertex = new VisitingGOVertex(geneName);
-
-		/* Start propagation */
-		Algorithms.bfs(termIDSet, grabber, vistingGOVertex);
+		});
 	}
 
 	/**
@@ -230,10 +259,14 @@ public class TermEnumerator implements Iterable<TermID>
 	 */
 	public TermAnnotations getAnnotatedGenes(TermID goTermID)
 	{
-		if (map.containsKey(goTermID))
-			return map.get(goTermID);
-		else
-			return new TermAnnotations();
+		int vertex = graph.getFrozenGraph().getVertexIndex(goTermID);
+		if (vertex != -1)
+		{
+			int slot = vertex2Slot.getIfAbsent(vertex, -1);
+			if (slot != -1)
+				return annotations.get(slot);
+		}
+		return new TermAnnotations();
 	}
 
 
@@ -264,12 +297,16 @@ public class TermEnumerator implements Iterable<TermID>
 	{
 		ArrayList<GOTermOftenAnnotatedCount> list = new ArrayList<GOTermOftenAnnotatedCount>();
 
-		TermAnnotations goTermIDAnnotated = map.get(goTermID);
-		if (goTermIDAnnotated == null) return null;
+		int goTermIDVertex = graph.getFrozenGraph().getVertexIndex(goTermID);
+		int goTermIDSlot = goTermIDVertex == -1 ? -1 : vertex2Slot.getIfAbsent(goTermIDVertex, -1);
+		if (goTermIDSlot == -1) return null;
+		TermAnnotations goTermIDAnnotated = annotations.get(goTermIDSlot);
 
 		/* For every term genes are annotated to */
-		for (TermID curTerm : map.keySet())
+		for (int slot = 0; slot < terms.size(); slot++)
 		{
+			TermID curTerm = terms.get(slot);
+
 			/* Ignore terms on the same path */
 			if (graph.isRootTerm(curTerm)) continue;
 			if (curTerm.equals(goTermID)) continue;
@@ -278,7 +315,7 @@ public class TermEnumerator implements Iterable<TermID>
 
 			/* Find out the number of genes which are annotated to both terms */
 			int count = 0;
-			TermAnnotations curTermAnnotated = map.get(curTerm);
+			TermAnnotations curTermAnnotated = annotations.get(slot);
 			for (ByteString gene : curTermAnnotated.totalAnnotated)
 			{
 				if (goTermIDAnnotated.totalAnnotated.contains(gene))
@@ -303,7 +340,7 @@ public class TermEnumerator implements Iterable<TermID>
 
 	public Iterator<TermID> iterator()
 	{
-		return map.keySet().iterator();
+		return Collections.unmodifiableList(terms).iterator();
 	}
 
 	/**
@@ -311,7 +348,7 @@ public class TermEnumerator implements Iterable<TermID>
 	 */
 	public int getTotalNumberOfAnnotatedTerms()
 	{
-		return map.size();
+		return terms.size();
 	}
 
 
@@ -373,14 +410,26 @@ public class TermEnumerator implements Iterable<TermID>
 	 */
 	public void removeTerms(IRemover remove)
 	{
-		ArrayList<TermID> toBeRemoved = new ArrayList<TermID>();
-		for (Entry<TermID, TermAnnotations> entry : map.entrySet())
+		FrozenDirectedGraph<TermID, RelationType> frozenGraph = graph.getFrozenGraph();
+		ArrayList<TermID> oldTerms = terms;
+		ArrayList<TermAnnotations> oldAnnotations = annotations;
+
+		vertex2Slot.clear();
+		terms = new ArrayList<TermID>(oldTerms.size());
+		annotations = new ArrayList<TermAnnotations>(oldAnnotations.size());
+
+		/* Keep the remaining terms in their order */
+		for (int slot = 0; slot < oldTerms.size(); slot++)
 		{
-			if (remove.remove(entry.getKey(),entry.getValue()))
-					toBeRemoved.add(entry.getKey());
+			TermID tid = oldTerms.get(slot);
+			TermAnnotations tag = oldAnnotations.get(slot);
+			if (remove.remove(tid,tag))
+				continue;
+
+			vertex2Slot.put(frozenGraph.getVertexIndex(tid), terms.size());
+			terms.add(tid);
+			annotations.add(tag);
 		}
-		for (TermID tid : toBeRemoved)
-			map.remove(tid);
 	}
 
 	public static interface Optional
@@ -2,6 +2,8 @@ package ontologizer.ontology;
 
 import static sonumina.math.graph.Algorithms.bfs;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,11 +20,14 @@ import sonumina.collections.Map;
 import sonumina.math.graph.Algorithms;
 import sonumina.math.graph.DirectedGraph;
 import sonumina.math.graph.Edge;
+import sonumina.math.graph.FrozenDirectedGraph;
 import sonumina.math.graph.IDirectedGraph;
 import sonumina.math.graph.IDistanceVisitor;
+import sonumina.math.graph.IEdgeFilter;
 import sonumina.math.graph.INeighbourGrabber;
 import sonumina.math.graph.IVisitor;
 import sonumina.math.graph.SlimDirectedGraphView;
+import sonumina.math.graph.SlimDirectedGraphView.ClosureStorage;
 
 /**
  * Represents the whole ontology. Note that the terms "parents" and "children" are
@@ -42,6 +47,9 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	/** The graph */
 	private DirectedGraph<TermID, RelationType> graph; /* FIXME: Edge type should a list of relations */
 
+	/** Immutable index-based snapshot of the graph that is used for fast traversals */
+	private FrozenDirectedGraph<TermID, RelationType> frozenGraph;
+
 	/** We also pack a TermContainer */
 	private TermContainer termContainer;
 
@@ -95,10 +103,74 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		subgraph.availableSubsets 	= availableSubsets;
 
 		subgraph.assignLevel1TermsAndFixRoot();
+		subgraph.freeze();
 
 		return subgraph;
 	}
 
+	/**
+	 * Creates the frozen snapshot of the graph that is used for fast traversals.
+	 * Must be called whenever the graph has been changed.
+	 */
+	private void freeze()
+	{
+		frozenGraph = FrozenDirectedGraph.create(graph);
+	}
+
+	/**
+	 * Returns the index of the given term within the frozen graph.
+	 *
+	 * @param id the term id
+	 * @return the index or -1 if the term is not contained or the
+	 *  frozen graph is not available.
+	 */
+	private int frozenIndex(TermID id)
+	{
+		if (frozenGraph == null)
+			return -1;
+		return frozenGraph.getVertexIndex(id);
+	}
+
+	/**
+	 * Returns whether the frozen graph can be used for a traversal starting at
+	 * the given terms.
+	 *
+	 * @param ids the term ids
+	 * @return whether all terms are contained in the frozen graph.
+	 */
+	private boolean frozenContainsAll(Collection<TermID> ids)
+	{
+		if (frozenGraph == null)
+			return false;
+		for (TermID id : ids)
+		{
+			if (!frozenGraph.containsVertex(id))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the immutable index-based snapshot of the ontology graph. Use it
+	 * for traversals that are performed very often, e.g., during annotation
+	 * propagation.
+	 *
+	 * @return the frozen graph.
+	 */
+	public FrozenDirectedGraph<TermID, RelationType> getFrozenGraph()
+	{
+		return frozenGraph;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+
+		/* Instances that were serialized before the frozen graph was introduced */
+		if (frozenGraph == null)
+			freeze();
+	}
+
 	/**
 	 * @return terms that have no descendants.
 	 */
@@ -141,6 +213,15 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 * @return a slim representation of the ontology.
 	 */
 	public SlimDirectedGraphView<Term> getSlimGraphView()
+	{
+		return getSlimGraphView(ClosureStorage.ARRAYS);
+	}
+
+	/**
+	 * @param storage defines how the ancestors and descendants of the terms are stored.
+	 * @return a slim representation of the ontology.
+	 */
+	public SlimDirectedGraphView<Term> getSlimGraphView(ClosureStorage storage)
 	{
 		return SlimDirectedGraphView.create(graph, new Map<TermID,Term>()
 		{
@@ -149,7 +230,7 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 			{
 				return getTerm(key);
 			}
-		});
+		}, storage);
 	}
 
 	/**
@@ -157,7 +238,16 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public SlimDirectedGraphView<TermID> getTermIDSlimGraphView()
 	{
-		return SlimDirectedGraphView.create(graph);
+		return getTermIDSlimGraphView(ClosureStorage.ARRAYS);
+	}
+
+	/**
+	 * @param storage defines how the ancestors and descendants of the terms are stored.
+	 * @return a slim representation with TermIDs as underlying type.
+	 */
+	public SlimDirectedGraphView<TermID> getTermIDSlimGraphView(ClosureStorage storage)
+	{
+		return SlimDirectedGraphView.create(graph, storage);
 	}
 
 	/**
@@ -280,6 +370,15 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public Set<TermID> getTermChildren(TermID termID)
 	{
+		int idx = frozenIndex(termID);
+		if (idx != -1)
+		{
+			HashSet<TermID> terms = new HashSet<TermID>();
+			for (int e = frozenGraph.getFirstOutEdge(idx); e < frozenGraph.getEndOutEdge(idx); e++)
+				terms.add(frozenGraph.getVertex(frozenGraph.getOutEdgeTarget(e)));
+			return terms;
+		}
+
 		Term goTerm;
 		if (rootTerm.getID().id == termID.id)
 			goTerm = rootTerm;
@@ -301,6 +400,15 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public Set<Term> getTermChildren(Term term)
 	{
+		int idx = frozenIndex(term.getID());
+		if (idx != -1)
+		{
+			HashSet<Term> terms = new HashSet<Term>();
+			for (int e = frozenGraph.getFirstOutEdge(idx); e < frozenGraph.getEndOutEdge(idx); e++)
+				terms.add(getTerm(frozenGraph.getVertex(frozenGraph.getOutEdgeTarget(e))));
+			return terms;
+		}
+
 		Term goTerm;
 		if (rootTerm.getID().id == term.getID().id)
 			goTerm = rootTerm;
@@ -326,6 +434,14 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		if (rootTerm.getID().id == goTermID.id)
 			return terms;
 
+		int idx = frozenIndex(goTermID);
+		if (idx != -1)
+		{
+			for (int e = frozenGraph.getFirstInEdge(idx); e < frozenGraph.getEndInEdge(idx); e++)
+				terms.add(frozenGraph.getVertex(frozenGraph.getInEdgeSource(e)));
+			return terms;
+		}
+
 		Term goTerm;
 		if (goTermID.equals(rootTerm.getIDAsString()))
 			goTerm = rootTerm;
@@ -350,6 +466,14 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		if (rootTerm.getID().id == term.getID().id)
 			return terms;
 
+		int idx = frozenIndex(term.getID());
+		if (idx != -1)
+		{
+			for (int e = frozenGraph.getFirstInEdge(idx); e < frozenGraph.getEndInEdge(idx); e++)
+				terms.add(getTerm(frozenGraph.getVertex(frozenGraph.getInEdgeSource(e))));
+			return terms;
+		}
+
 		Term goTerm;
 		if (term.getID().equals(rootTerm.getIDAsString()))
 			goTerm = rootTerm;
@@ -375,6 +499,17 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		if (rootTerm.getID().id == goTermID.id)
 			return terms;
 
+		int idx = frozenIndex(goTermID);
+		if (idx != -1)
+		{
+			for (int e = frozenGraph.getFirstInEdge(idx); e < frozenGraph.getEndInEdge(idx); e++)
+			{
+				TermID source = frozenGraph.getVertex(frozenGraph.getInEdgeSource(e));
+				terms.add(new ParentTermID(source, frozenGraph.getEdgeData(frozenGraph.getInEdgeType(e))));
+			}
+			return terms;
+		}
+
 		Term goTerm = termContainer.get(goTermID);
 
 		Iterator<Edge<TermID,RelationType>> edgeIter = graph.getInEdges(goTerm.getID());
@@ -397,6 +532,15 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public RelationType getDirectRelation(TermID parent, TermID term)
 	{
+		int parentIdx = frozenIndex(parent);
+		int termIdx = frozenIndex(term);
+		if (parentIdx != -1 && termIdx != -1)
+		{
+			int e = frozenGraph.findInEdge(parentIdx, termIdx);
+			if (e == -1) return null;
+			return frozenGraph.getEdgeData(frozenGraph.getInEdgeType(e));
+		}
+
 		Set<ParentTermID> parents = getTermParentsWithRelation(term);
 		for (ParentTermID p : parents)
 			if (p.getRelated().equals(parent)) return p.getRelation();
@@ -437,6 +581,11 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 			return false;
 		}
 
+		int sourceIdx = frozenIndex(sourceID);
+		int destIdx = frozenIndex(destID);
+		if (sourceIdx != -1 && destIdx != -1)
+			return frozenGraph.existsPath(sourceIdx, destIdx);
+
 		/*
 		 * We walk from the destination to the source against the graph
 		 * direction. Basically a breadth-depth search is done.
@@ -522,7 +671,10 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public void walkToSource(Collection<TermID> termIDSet, ITermIDVisitor vistingVertex)
 	{
-		graph.bfs(termIDSet, true, vistingVertex);
+		if (frozenContainsAll(termIDSet))
+			frozenGraph.bfs(termIDSet, true, null, vistingVertex);
+		else
+			graph.bfs(termIDSet, true, vistingVertex);
 	}
 
 	/**
@@ -537,6 +689,20 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public void walkToSource(Collection<TermID>  termIDSet, ITermIDVisitor vistingVertex, final Set<RelationMeaning> relationsToFollow)
 	{
+		if (frozenContainsAll(termIDSet))
+		{
+			boolean [] leaveOut = frozenGraph.getLeftOutEdgeTypes(new IEdgeFilter<RelationType>()
+			{
+				@Override
+				public boolean leaveOut(RelationType ed)
+				{
+					return !relationsToFollow.contains(ed.meaning());
+				}
+			});
+			frozenGraph.bfs(termIDSet, true, leaveOut, vistingVertex);
+			return;
+		}
+
 		bfs(termIDSet, new INeighbourGrabber<TermID>() {
 			public Iterator<TermID> grabNeighbours(TermID t)
 			{
@@ -585,7 +751,10 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public void walkToSinks(Collection<TermID> goTermIDSet, ITermIDVisitor vistingVertex)
 	{
-		graph.bfs(goTermIDSet, false, vistingVertex);
+		if (frozenContainsAll(goTermIDSet))
+			frozenGraph.bfs(goTermIDSet, false, null, vistingVertex);
+		else
+			graph.bfs(goTermIDSet, false, vistingVertex);
 	}
 
 	/**
@@ -715,6 +884,8 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	 */
 	public boolean termExists(TermID term)
 	{
+		if (frozenGraph != null)
+			return frozenGraph.containsVertex(term);
 		return graph.getOutDegree(term) != -1;
 	}
 
@@ -1234,6 +1405,7 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 			g.rootTerm = rootTerm;
 		}
 		g.assignLevel1TermsAndFixRoot();
+		g.freeze();
 
 		/* TODO: Fix edges */
 
@@ -1241,6 +1413,10 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 	}
 
 	/**
+	 * Returns the underlying graph. Note that changes to the returned graph
+	 * are not reflected by the traversal methods of the ontology, which work
+	 * on a frozen snapshot of the graph.
+	 *
 	 * @return the underlying graph.
 	 */
 	public DirectedGraph<TermID,RelationType> getGraph()
@@ -1270,17 +1446,22 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		}
 
 		this.graph.mergeVertices(t1.getID(), termIDList(eqTerms));
+		freeze();
 	}
 
 	@Override
 	public Iterable<TermID> getParentNodes(TermID v)
 	{
+		if (frozenIndex(v) != -1)
+			return frozenGraph.getParentNodes(v);
 		return graph.getParentNodes(v);
 	}
 
 	@Override
 	public Iterable<TermID> getChildNodes(TermID v)
 	{
+		if (frozenIndex(v) != -1)
+			return frozenGraph.getChildNodes(v);
 		return graph.getChildNodes(v);
 	}
 
@@ -1331,6 +1512,7 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		if (skippedEdges > 0)
 			logger.log(Level.INFO,"A total of " + skippedEdges + " edges were skipped.");
 		o.assignLevel1TermsAndFixRoot();
+		o.freeze();
 
 	}
 
@@ -1346,4 +1528,56 @@ public class Ontology implements Iterable<Term>, IDirectedGraph<TermID>, Seriali
 		init(o, tc);
 		return o;
 	}
+
+	/**
+	 * Create an ontology from its parts without deriving anything. Used when
+	 * restoring snapshots.
+	 *
+	 * @param tc the term container
+	 * @param graph the graph
+	 * @param rootTerm the (possibly artificial) root term
+	 * @param level1terms the level 1 terms
+	 * @param availableSubsets the available subsets
+	 * @param relevantSubset the relevant subset or null
+	 * @param relevantSubontology the relevant sub ontology or null
+	 * @return the ontology
+	 */
+	static Ontology create(TermContainer tc, DirectedGraph<TermID,RelationType> graph, Term rootTerm, List<TermID> level1terms,
+			Collection<Subset> availableSubsets, Subset relevantSubset, Term relevantSubontology)
+	{
+		Ontology o = new Ontology();
+		o.termContainer = tc;
+		o.graph = graph;
+		o.rootTerm = rootTerm;
+		o.level1terms = level1terms;
+		o.availableSubsets = new HashSet<Subset>(availableSubsets);
+		o.relevantSubset = relevantSubset;
+		o.relevantSubontology = relevantSubontology;
+		o.freeze();
+		return o;
+	}
+
+	/**
+	 * @return the term container of the ontology.
+	 */
+	TermContainer getTermContainerInternal()
+	{
+		return termContainer;
+	}
+
+	/**
+	 * @return the ids of the level 1 terms.
+	 */
+	List<TermID> getLevel1TermIDs()
+	{
+		return level1terms;
+	}
+
+	/**
+	 * @return the relevant sub ontology as it has been set.
+	 */
+	Term getRelevantSubontologyTerm()
+	{
+		return relevantSubontology;
+	}
 }
@@ -0,0 +1,638 @@
+package ontologizer.ontology;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringTable;
+import sonumina.math.graph.DirectedGraph;
+import sonumina.math.graph.Edge;
+
+/**
+ * Writes and reads ontologies in a compact and versioned binary format.
+ * Compared to parsing the OBO file or to the Java serialization, restoring
+ * a snapshot is fast as all strings are stored in a single interned string
+ * table and all references (term ids, relations, subsets, edges) are stored
+ * as plain int indices.
+ *
+ * The snapshot stores the full state of the ontology, i.e., the terms of
+ * the term container and the graph (including the possibly artificial root
+ * term), such that the restored ontology equals the written one. In
+ * particular, the order of the terms, vertices and edges is retained.
+ */
+public final class OntologySnapshot
+{
+	/** Identifies ontology snapshots */
+	static final int MAGIC = 0x4f4e5453; /* "ONTS" */
+
+	/** The current version of the format */
+	static final int VERSION = 1;
+
+	private OntologySnapshot()
+	{
+	}
+
+	/**
+	 * Assigns indices to the objects that are referred to by the snapshot.
+	 */
+	private static class Tables
+	{
+		final ByteStringTable strings = new ByteStringTable();
+		final HashMap<TermID,Integer> termIDs = new HashMap<TermID,Integer>();
+		final List<TermID> termIDList = new ArrayList<TermID>();
+		final IdentityHashMap<RelationType,Integer> relationTypes = new IdentityHashMap<RelationType,Integer>();
+		final List<RelationType> relationTypeList = new ArrayList<RelationType>();
+		final IdentityHashMap<Namespace,Integer> namespaces = new IdentityHashMap<Namespace,Integer>();
+		final List<Namespace> namespaceList = new ArrayList<Namespace>();
+		final IdentityHashMap<Subset,Integer> subsets = new IdentityHashMap<Subset,Integer>();
+		final List<Subset> subsetList = new ArrayList<Subset>();
+
+		int termID(TermID tid)
+		{
+			if (tid == null)
+				return -1;
+			Integer idx = termIDs.get(tid);
+			if (idx == null)
+			{
+				idx = termIDList.size();
+				termIDs.put(tid, idx);
+				termIDList.add(tid);
+			}
+			return idx;
+		}
+
+		int relationType(RelationType type)
+		{
+			if (type == null)
+				return -1;
+			Integer idx = relationTypes.get(type);
+			if (idx == null)
+			{
+				idx = relationTypeList.size();
+				relationTypes.put(type, idx);
+				relationTypeList.add(type);
+			}
+			return idx;
+		}
+
+		int namespace(Namespace namespace)
+		{
+			if (namespace == null || namespace == Namespace.UNKOWN_NAMESPACE)
+				return -1;
+			Integer idx = namespaces.get(namespace);
+			if (idx == null)
+			{
+				idx = namespaceList.size();
+				namespaces.put(namespace, idx);
+				namespaceList.add(namespace);
+			}
+			return idx;
+		}
+
+		int subset(Subset subset)
+		{
+			if (subset == null)
+				return -1;
+			Integer idx = subsets.get(subset);
+			if (idx == null)
+			{
+				idx = subsetList.size();
+				subsets.put(subset, idx);
+				subsetList.add(subset);
+			}
+			return idx;
+		}
+	}
+
+	/**
+	 * Write the snapshot of the given ontology to the given file.
+	 *
+	 * @param ontology the ontology to write
+	 * @param file the destination
+	 * @throws IOException
+	 */
+	public static void write(Ontology ontology, File file) throws IOException
+	{
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			write(ontology, out);
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the snapshot of the given ontology to the given stream.
+	 *
+	 * @param ontology the ontology to write
+	 * @param os the destination. The stream is not closed.
+	 * @throws IOException
+	 */
+	public static void write(Ontology ontology, OutputStream os) throws IOException
+	{
+		Tables tables = new Tables();
+
+		/* The body refers to the tables, which are complete only after the body has been built */
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		TermContainer tc = ontology.getTermContainerInternal();
+		body.writeInt(tables.strings.intern(tc.getFormatVersion()));
+		body.writeInt(tables.strings.intern(tc.getDate()));
+
+		body.writeInt(tc.termCount());
+		for (Term t : tc)
+			writeTerm(body, tables, t);
+
+		/* The graph */
+		DirectedGraph<TermID,RelationType> graph = ontology.getGraph();
+		HashMap<TermID,Integer> vertexIndices = new HashMap<TermID,Integer>();
+		body.writeInt(graph.getNumberOfVertices());
+		for (TermID v : graph)
+		{
+			vertexIndices.put(v, vertexIndices.size());
+			body.writeInt(tables.termID(v));
+		}
+		List<Edge<TermID,RelationType>> edges = edgesInInsertionOrder(graph);
+		body.writeInt(edges.size());
+		for (Edge<TermID,RelationType> e : edges)
+		{
+			body.writeInt(vertexIndices.get(e.getSource()));
+			body.writeInt(vertexIndices.get(e.getDest()));
+			body.writeInt(tables.relationType(e.getData()));
+		}
+
+		writeTermRef(body, tables, tc, ontology.getRootTerm());
+		writeTermIDs(body, tables, ontology.getLevel1TermIDs());
+		Collection<Subset> availableSubsets = ontology.getAvailableSubsets();
+		body.writeInt(availableSubsets.size());
+		for (Subset s : availableSubsets)
+			body.writeInt(tables.subset(s));
+		body.writeInt(tables.subset(ontology.getRelevantSubset()));
+		writeTermRef(body, tables, tc, ontology.getRelevantSubontologyTerm());
+		body.flush();
+
+		/* Intern the strings of the remaining tables */
+		int [] termIDPrefixes = new int[tables.termIDList.size()];
+		for (int i = 0; i < termIDPrefixes.length; i++)
+			termIDPrefixes[i] = tables.strings.intern(tables.termIDList.get(i).getPrefix().toString());
+		int [] relationNames = new int[tables.relationTypeList.size()];
+		for (int i = 0; i < relationNames.length; i++)
+			relationNames[i] = tables.strings.intern(tables.relationTypeList.get(i).name());
+		int [] namespaceNames = new int[tables.namespaceList.size()];
+		for (int i = 0; i < namespaceNames.length; i++)
+			namespaceNames[i] = tables.strings.intern(tables.namespaceList.get(i).getName());
+		int [] subsetNames = new int[tables.subsetList.size()];
+		int [] subsetDescs = new int[tables.subsetList.size()];
+		for (int i = 0; i < subsetNames.length; i++)
+		{
+			subsetNames[i] = tables.strings.intern(tables.subsetList.get(i).getName());
+			subsetDescs[i] = tables.strings.intern(tables.subsetList.get(i).getDescription());
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		tables.strings.write(out);
+
+		out.writeInt(termIDPrefixes.length);
+		for (int i = 0; i < termIDPrefixes.length; i++)
+		{
+			out.writeInt(termIDPrefixes[i]);
+			out.writeInt(tables.termIDList.get(i).id);
+		}
+		out.writeInt(relationNames.length);
+		for (int i = 0; i < relationNames.length; i++)
+		{
+			RelationType type = tables.relationTypeList.get(i);
+			out.writeInt(relationNames[i]);
+			out.writeInt(type.meaning().ordinal());
+			out.writeBoolean(type == RelationType.UNKNOWN);
+		}
+		out.writeInt(namespaceNames.length);
+		for (int i = 0; i < namespaceNames.length; i++)
+			out.writeInt(namespaceNames[i]);
+		out.writeInt(subsetNames.length);
+		for (int i = 0; i < subsetNames.length; i++)
+		{
+			out.writeInt(subsetNames[i]);
+			out.writeInt(subsetDescs[i]);
+		}
+
+		bodyBytes.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Returns the edges of the graph in an order in which they can be added to a new
+	 * graph such that both the in-edges and out-edges of all vertices appear in the
+	 * same order as in the given graph.
+	 */
+	private static List<Edge<TermID,RelationType>> edgesInInsertionOrder(DirectedGraph<TermID,RelationType> graph)
+	{
+		/* Number the edges according to the out edges */
+		List<Edge<TermID,RelationType>> edges = new ArrayList<Edge<TermID,RelationType>>();
+		IdentityHashMap<Edge<TermID,RelationType>,Integer> edgeIndices = new IdentityHashMap<Edge<TermID,RelationType>,Integer>();
+		boolean [] firstOut = new boolean[graph.getNumberEdges()];
+		for (TermID v : graph)
+		{
+			Iterator<Edge<TermID,RelationType>> iter = graph.getOutEdges(v);
+			boolean first = true;
+			while (iter.hasNext())
+			{
+				Edge<TermID,RelationType> e = iter.next();
+				firstOut[edges.size()] = first;
+				edgeIndices.put(e, edges.size());
+				edges.add(e);
+				first = false;
+			}
+		}
+
+		/* Each edge must follow its predecessor within the out edges and the in edges */
+		int [] numPredecessors = new int[edges.size()];
+		int [] inSuccessor = new int[edges.size()];
+		for (int i = 0; i < edges.size(); i++)
+		{
+			if (!firstOut[i])
+				numPredecessors[i]++;
+			inSuccessor[i] = -1;
+		}
+		for (TermID v : graph)
+		{
+			Iterator<Edge<TermID,RelationType>> iter = graph.getInEdges(v);
+			int prev = -1;
+			while (iter.hasNext())
+			{
+				int e = edgeIndices.get(iter.next());
+				if (prev != -1)
+				{
+					inSuccessor[prev] = e;
+					numPredecessors[e]++;
+				}
+				prev = e;
+			}
+		}
+
+		int [] queue = new int[edges.size()];
+		int head = 0, tail = 0;
+		for (int i = 0; i < edges.size(); i++)
+			if (numPredecessors[i] == 0)
+				queue[tail++] = i;
+
+		List<Edge<TermID,RelationType>> ordered = new ArrayList<Edge<TermID,RelationType>>(edges.size());
+		while (head < tail)
+		{
+			int e = queue[head++];
+			ordered.add(edges.get(e));
+
+			if (e + 1 < edges.size() && !firstOut[e + 1] && --numPredecessors[e + 1] == 0)
+				queue[tail++] = e + 1;
+			if (inSuccessor[e] != -1 && --numPredecessors[inSuccessor[e]] == 0)
+				queue[tail++] = inSuccessor[e];
+		}
+		return ordered;
+	}
+
+	private static void writeTermIDs(DataOutputStream out, Tables tables, TermID [] tids) throws IOException
+	{
+		if (tids == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(tids.length);
+		for (TermID tid : tids)
+			out.writeInt(tables.termID(tid));
+	}
+
+	private static void writeTermIDs(DataOutputStream out, Tables tables, List<TermID> tids) throws IOException
+	{
+		out.writeInt(tids.size());
+		for (TermID tid : tids)
+			out.writeInt(tables.termID(tid));
+	}
+
+	/**
+	 * Write a reference to the given term, which is either a term of the container
+	 * or a term on its own such as the artificial root term.
+	 */
+	private static void writeTermRef(DataOutputStream out, Tables tables, TermContainer tc, Term t) throws IOException
+	{
+		if (t == null)
+		{
+			out.writeByte(0);
+		} else if (tc.get(t.getID()) == t)
+		{
+			out.writeByte(1);
+			out.writeInt(tables.termID(t.getID()));
+		} else
+		{
+			out.writeByte(2);
+			writeTerm(out, tables, t);
+		}
+	}
+
+	private static void writeTerm(DataOutputStream out, Tables tables, Term t) throws IOException
+	{
+		out.writeInt(tables.termID(t.getID()));
+		out.writeInt(tables.strings.intern(t.getName()));
+		out.writeInt(tables.strings.intern(t.getDefinition()));
+		out.writeInt(tables.namespace(t.getNamespace()));
+		out.writeBoolean(t.isObsolete());
+
+		ParentTermID [] parents = t.getParents();
+		out.writeInt(parents.length);
+		for (ParentTermID p : parents)
+		{
+			out.writeInt(tables.termID(p.getRelated()));
+			out.writeInt(tables.relationType(p.getRelation()));
+		}
+
+		writeTermIDs(out, tables, t.getAlternatives());
+		writeTermIDs(out, tables, t.getEquivalents());
+
+		ByteString [] synonyms = t.getSynonyms();
+		out.writeInt(synonyms != null ? synonyms.length : -1);
+		if (synonyms != null)
+			for (ByteString s : synonyms)
+				out.writeInt(tables.strings.intern(s));
+
+		Subset [] subsets = t.getSubsets();
+		out.writeInt(subsets != null ? subsets.length : -1);
+		if (subsets != null)
+			for (Subset s : subsets)
+				out.writeInt(tables.subset(s));
+
+		TermXref [] xrefs = t.getXrefs();
+		out.writeInt(xrefs != null ? xrefs.length : -1);
+		if (xrefs != null)
+		{
+			for (TermXref x : xrefs)
+			{
+				out.writeInt(tables.strings.intern(x.getDatabase()));
+				out.writeInt(tables.strings.intern(x.getXrefId()));
+				out.writeInt(tables.strings.intern(x.getXrefName()));
+			}
+		}
+
+		String [] intersections = t.getIntersections();
+		out.writeInt(intersections != null ? intersections.length : -1);
+		if (intersections != null)
+			for (String s : intersections)
+				out.writeInt(tables.strings.intern(s));
+	}
+
+	/**
+	 * The tables of a snapshot that is read.
+	 */
+	private static class ReadTables
+	{
+		ByteString [] strings;
+		TermID [] termIDs;
+		RelationType [] relationTypes;
+		Namespace [] namespaces;
+		Subset [] subsets;
+
+		TermID termID(int idx)
+		{
+			return idx == -1 ? null : termIDs[idx];
+		}
+
+		RelationType relationType(int idx)
+		{
+			return idx == -1 ? null : relationTypes[idx];
+		}
+
+		Subset subset(int idx)
+		{
+			return idx == -1 ? null : subsets[idx];
+		}
+	}
+
+	/**
+	 * Read the snapshot stored in the given file. The file is mapped into memory.
+	 *
+	 * @param file the file containing the snapshot
+	 * @return the restored ontology
+	 * @throws IOException if the file could not be read or doesn't contain a
+	 *  snapshot of a supported version.
+	 */
+	public static Ontology read(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel fc = raf.getChannel();
+			return read(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+		} finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read the snapshot from the given buffer starting at its current position.
+	 * Afterwards, the position of the buffer is behind the snapshot.
+	 *
+	 * @param buf the buffer containing the snapshot
+	 * @return the restored ontology
+	 * @throws IOException if the buffer doesn't contain a snapshot of a supported
+	 *  version or is truncated.
+	 */
+	public static Ontology read(ByteBuffer buf) throws IOException
+	{
+		if (buf.remaining() < 8 || buf.getInt() != MAGIC)
+			throw new IOException("Input is not an ontology snapshot");
+		int version = buf.getInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported ontology snapshot version " + version);
+
+		try
+		{
+			return readBody(buf);
+		} catch (BufferUnderflowException e)
+		{
+			throw new IOException("Ontology snapshot is truncated");
+		}
+	}
+
+	private static Ontology readBody(ByteBuffer buf)
+	{
+		ReadTables tables = new ReadTables();
+		tables.strings = ByteStringTable.read(buf);
+
+		PrefixPool prefixPool = new PrefixPool();
+		tables.termIDs = new TermID[buf.getInt()];
+		for (int i = 0; i < tables.termIDs.length; i++)
+		{
+			Prefix prefix = prefixPool.map(new Prefix(tables.strings[buf.getInt()]));
+			tables.termIDs[i] = new TermID(prefix, buf.getInt());
+		}
+
+		RelationMeaning [] meanings = RelationMeaning.values();
+		tables.relationTypes = new RelationType[buf.getInt()];
+		for (int i = 0; i < tables.relationTypes.length; i++)
+		{
+			ByteString name = tables.strings[buf.getInt()];
+			RelationMeaning meaning = meanings[buf.getInt()];
+			if (buf.get() != 0) tables.relationTypes[i] = RelationType.UNKNOWN;
+			else tables.relationTypes[i] = new RelationType(name, meaning);
+		}
+
+		tables.namespaces = new Namespace[buf.getInt()];
+		for (int i = 0; i < tables.namespaces.length; i++)
+			tables.namespaces[i] = new Namespace(tables.strings[buf.getInt()]);
+
+		tables.subsets = new Subset[buf.getInt()];
+		for (int i = 0; i < tables.subsets.length; i++)
+		{
+			ByteString name = tables.strings[buf.getInt()];
+			ByteString desc = ByteStringTable.get(tables.strings, buf.getInt());
+			tables.subsets[i] = new Subset(name, desc);
+		}
+
+		ByteString formatVersion = ByteStringTable.get(tables.strings, buf.getInt());
+		ByteString date = ByteStringTable.get(tables.strings, buf.getInt());
+
+		int numTerms = buf.getInt();
+		List<Term> terms = new ArrayList<Term>(numTerms);
+		for (int i = 0; i < numTerms; i++)
+			terms.add(readTerm(buf, tables));
+		TermContainer tc = new TermContainer(terms, formatVersion, date);
+
+		DirectedGraph<TermID,RelationType> graph = new DirectedGraph<TermID,RelationType>();
+		TermID [] vertices = new TermID[buf.getInt()];
+		for (int i = 0; i < vertices.length; i++)
+		{
+			vertices[i] = tables.termIDs[buf.getInt()];
+			graph.addVertex(vertices[i]);
+		}
+		int numEdges = buf.getInt();
+		for (int i = 0; i < numEdges; i++)
+		{
+			TermID source = vertices[buf.getInt()];
+			TermID dest = vertices[buf.getInt()];
+			graph.addEdge(source, dest, tables.relationType(buf.getInt()));
+		}
+
+		Term rootTerm = readTermRef(buf, tables, tc);
+		List<TermID> level1terms = new ArrayList<TermID>(readTermIDs(buf, tables));
+		int numAvailableSubsets = buf.getInt();
+		List<Subset> availableSubsets = new ArrayList<Subset>(numAvailableSubsets);
+		for (int i = 0; i < numAvailableSubsets; i++)
+			availableSubsets.add(tables.subsets[buf.getInt()]);
+		Subset relevantSubset = tables.subset(buf.getInt());
+		Term relevantSubontology = readTermRef(buf, tables, tc);
+
+		return Ontology.create(tc, graph, rootTerm, level1terms, availableSubsets, relevantSubset, relevantSubontology);
+	}
+
+	private static List<TermID> readTermIDs(ByteBuffer buf, ReadTables tables)
+	{
+		int n = buf.getInt();
+		if (n == -1)
+			return null;
+		List<TermID> tids = new ArrayList<TermID>(n);
+		for (int i = 0; i < n; i++)
+			tids.add(tables.termIDs[buf.getInt()]);
+		return tids;
+	}
+
+	private static Term readTermRef(ByteBuffer buf, ReadTables tables, TermContainer tc)
+	{
+		switch (buf.get())
+		{
+			case	1: return tc.get(tables.termIDs[buf.getInt()]);
+			case	2: return readTerm(buf, tables);
+			default: return null;
+		}
+	}
+
+	private static Term readTerm(ByteBuffer buf, ReadTables tables)
+	{
+		TermID id = tables.termIDs[buf.getInt()];
+		ByteString name = ByteStringTable.get(tables.strings, buf.getInt());
+		ByteString definition = ByteStringTable.get(tables.strings, buf.getInt());
+		int namespaceIdx = buf.getInt();
+		Namespace namespace = namespaceIdx == -1 ? null : tables.namespaces[namespaceIdx];
+		boolean obsolete = buf.get() != 0;
+
+		ParentTermID [] parents = new ParentTermID[buf.getInt()];
+		for (int i = 0; i < parents.length; i++)
+		{
+			TermID related = tables.termIDs[buf.getInt()];
+			parents[i] = new ParentTermID(related, tables.relationType(buf.getInt()));
+		}
+
+		Term t = new Term(id, name, namespace, parents);
+		t.setDefinition(definition);
+		t.setObsolete(obsolete);
+
+		List<TermID> alternatives = readTermIDs(buf, tables);
+		if (alternatives != null && alternatives.size() > 0)
+			t.setAlternatives(alternatives);
+
+		List<TermID> equivalents = readTermIDs(buf, tables);
+		if (equivalents != null)
+			t.setEquivalents(new ArrayList<TermID>(equivalents));
+
+		int n = buf.getInt();
+		if (n != -1)
+		{
+			ArrayList<ByteString> synonyms = new ArrayList<ByteString>(n);
+			for (int i = 0; i < n; i++)
+				synonyms.add(tables.strings[buf.getInt()]);
+			t.setSynonyms(synonyms);
+		}
+
+		n = buf.getInt();
+		if (n != -1)
+		{
+			ArrayList<Subset> subsets = new ArrayList<Subset>(n);
+			for (int i = 0; i < n; i++)
+				subsets.add(tables.subsets[buf.getInt()]);
+			t.setSubsets(subsets);
+		}
+
+		n = buf.getInt();
+		if (n != -1)
+		{
+			ArrayList<TermXref> xrefs = new ArrayList<TermXref>(n);
+			for (int i = 0; i < n; i++)
+			{
+				String database = ByteStringTable.getString(tables.strings, buf.getInt());
+				String xrefId = ByteStringTable.getString(tables.strings, buf.getInt());
+				String xrefName = ByteStringTable.getString(tables.strings, buf.getInt());
+				xrefs.add(new TermXref(database, xrefId, xrefName));
+			}
+			t.setXrefs(xrefs);
+		}
+
+		n = buf.getInt();
+		if (n != -1)
+		{
+			ArrayList<String> intersections = new ArrayList<String>(n);
+			for (int i = 0; i < n; i++)
+				intersections.add(ByteStringTable.getString(tables.strings, buf.getInt()));
+			t.setIntersections(intersections);
+		}
+		return t;
+	}
+}
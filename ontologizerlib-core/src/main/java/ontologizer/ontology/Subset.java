@@ -32,6 +32,11 @@ public class Subset implements Serializable
 		return name;
 	}
 
+	public ByteString getDescription()
+	{
+		return desc;
+	}
+
 	@Override
 	public boolean equals(Object obj)
 	{
@@ -390,6 +390,13 @@ public class Term implements ITerm, Serializable
 
 	}
 
+	/**
+	 * @return the intersections tags of this term or null.
+	 */
+	String[] getIntersections() {
+		return intersections;
+	}
+
 	public void addAlternativeId(TermID id2) {
 		if (this.alternatives == null)
 			this.alternatives = new ArrayList<TermID>();
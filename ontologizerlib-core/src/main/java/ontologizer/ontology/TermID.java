@@ -1,7 +1,8 @@
 package ontologizer.ontology;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ontologizer.types.ByteString;
 import ontologizer.util.Util;
@@ -31,10 +32,10 @@ public class TermID implements Comparable<TermID>, Serializable
 	public final int id;
 
 	/** Map arbitrary ids to integer ids. Used for ontologies like Uberpheno */
-	private static final HashMap<String, Integer> string2id = new HashMap<String, Integer>();
+	private static final ConcurrentHashMap<String, Integer> string2id = new ConcurrentHashMap<String, Integer>();
 
-	/** The id to be used for the next string id. This is decreasing. */
-	private static int nextId = Integer.MAX_VALUE;
+	/** The last id used for a string id. This is decreasing. */
+	private static final AtomicInteger lastId = new AtomicInteger(Integer.MAX_VALUE);
 
 	/**
 	 * Constructs the TermID from a plain integer value. The prefix defaults
@@ -182,19 +183,25 @@ public class TermID implements Comparable<TermID>, Serializable
 	}
 
 	/**
-	 * Make an unique integer id from an arbitray string.
+	 * Make an unique integer id from an arbitray string. This is
+	 * thread-safe, i.e., the same string yields the same id even if
+	 * it is mapped by several threads concurrently.
 	 *
 	 * @param id
 	 * @return the id referencing the the id.
 	 */
-	private int makeIdFromString(String id)
+	private static int makeIdFromString(String id)
 	{
-		if (string2id.containsKey(id))
-			return string2id.get(id);
-
-		nextId--;
-		string2id.put(id, nextId);
-		return nextId;
+		Integer intId = string2id.get(id);
+		if (intId != null)
+			return intId;
+
+		/* Ids of losing threads are simply skipped */
+		Integer newId = lastId.decrementAndGet();
+		intId = string2id.putIfAbsent(id, newId);
+		if (intId != null)
+			return intId;
+		return newId;
 	}
 
 	/**
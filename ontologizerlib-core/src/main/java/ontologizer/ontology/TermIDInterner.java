@@ -0,0 +1,150 @@
+package ontologizer.ontology;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe pool of term ids. For each distinct term id, the pool hands
+ * out a canonical instance and a dense ordinal, i.e., the term ids get the
+ * ordinals 0, 1, 2, ... in the order in which they were interned first.
+ * Thus, the ordinals can be used to index arrays instead of hashing term ids.
+ *
+ * Looking up term ids that have been interned before requires no locking.
+ */
+public final class TermIDInterner
+{
+	/** Maps the term ids to their ordinals */
+	private final ConcurrentHashMap<TermID, Integer> ordinals;
+
+	/** The canonical term ids indexed by their ordinals */
+	private volatile TermID [] termIDs;
+
+	/** The number of interned term ids */
+	private volatile int size;
+
+	/**
+	 * Constructs an empty pool.
+	 */
+	public TermIDInterner()
+	{
+		this(16);
+	}
+
+	/**
+	 * Constructs an empty pool.
+	 *
+	 * @param expectedSize the number of term ids that are expected to be
+	 *  interned.
+	 */
+	public TermIDInterner(int expectedSize)
+	{
+		expectedSize = Math.max(expectedSize, 1);
+		ordinals = new ConcurrentHashMap<TermID, Integer>(expectedSize * 4 / 3 + 1);
+		termIDs = new TermID[expectedSize];
+	}
+
+	/**
+	 * Creates a pool that contains the ids of the given terms. The ordinal of
+	 * each id matches the index of the term within the map.
+	 *
+	 * @param terms the terms whose ids shall be interned.
+	 * @return the pool
+	 */
+	public static TermIDInterner create(TermMap terms)
+	{
+		TermIDInterner interner = new TermIDInterner(terms.size());
+		for (int i = 0; i < terms.size(); i++)
+			interner.intern(terms.get(i).getID());
+		return interner;
+	}
+
+	/**
+	 * Returns the canonical instance of the given term id. If the term id is
+	 * not known yet, it becomes the canonical instance.
+	 *
+	 * @param tid the term id to be interned.
+	 * @return the canonical instance that equals tid.
+	 */
+	public TermID intern(TermID tid)
+	{
+		Integer ordinal = ordinals.get(tid);
+		if (ordinal == null)
+			ordinal = add(tid);
+		return termIDs[ordinal];
+	}
+
+	/**
+	 * Returns the ordinal of the given term id. If the term id is not known
+	 * yet, it is interned.
+	 *
+	 * @param tid the term id whose ordinal shall be returned.
+	 * @return the ordinal.
+	 */
+	public int internOrdinal(TermID tid)
+	{
+		Integer ordinal = ordinals.get(tid);
+		if (ordinal != null)
+			return ordinal;
+		return add(tid);
+	}
+
+	/**
+	 * Adds the given term id unless it has been added before.
+	 *
+	 * @return the ordinal of the term id.
+	 */
+	private synchronized int add(TermID tid)
+	{
+		Integer ordinal = ordinals.get(tid);
+		if (ordinal != null)
+			return ordinal;
+
+		int newOrdinal = size;
+		TermID [] newTermIDs = termIDs;
+		if (newOrdinal == newTermIDs.length)
+			newTermIDs = Arrays.copyOf(newTermIDs, newOrdinal * 2);
+		newTermIDs[newOrdinal] = tid;
+
+		/* Publish the array before the ordinal, so any reader that sees
+		 * the ordinal also sees the term id */
+		termIDs = newTermIDs;
+		size = newOrdinal + 1;
+		ordinals.put(tid, newOrdinal);
+		return newOrdinal;
+	}
+
+	/**
+	 * Returns the ordinal of the given term id.
+	 *
+	 * @param tid the term id whose ordinal shall be returned.
+	 * @return the ordinal or -1 if the term id has not been interned.
+	 */
+	public int getOrdinal(TermID tid)
+	{
+		Integer ordinal = ordinals.get(tid);
+		if (ordinal == null)
+			return -1;
+		return ordinal;
+	}
+
+	/**
+	 * Returns the canonical term id of the given ordinal.
+	 *
+	 * @param ordinal the ordinal
+	 * @return the term id
+	 */
+	public TermID get(int ordinal)
+	{
+		if (ordinal < 0 || ordinal >= size)
+			throw new IndexOutOfBoundsException("Ordinal " + ordinal + " is not within [0," + size + ")");
+		return termIDs[ordinal];
+	}
+
+	/**
+	 * @return the number of term ids that have been interned.
+	 */
+	public int size()
+	{
+		return size;
+	}
+}
@@ -19,6 +19,9 @@ public class TermMap implements Iterable<Term>, Serializable
 	private IntMapper<TermID> termIDMapper;
 	private Term [] terms;
 
+	/** The interned ids of the terms, created on demand */
+	private transient volatile TermIDInterner termIDInterner;
+
 	private TermMap()
 	{
 	}
@@ -136,4 +139,29 @@ public class TermMap implements Iterable<Term>, Serializable
 	{
 		return termIDMapper;
 	}
+
+	/**
+	 * Returns the pool of term ids of this map. The pool initially contains
+	 * the ids of all terms, the ordinal of such an id matches the index of the
+	 * term. Other term ids that are interned later get larger ordinals.
+	 *
+	 * @return the pool of term ids that is shared by all users of this map.
+	 */
+	public TermIDInterner getTermIDInterner()
+	{
+		TermIDInterner interner = termIDInterner;
+		if (interner == null)
+		{
+			synchronized (this)
+			{
+				interner = termIDInterner;
+				if (interner == null)
+				{
+					interner = TermIDInterner.create(this);
+					termIDInterner = interner;
+				}
+			}
+		}
+		return interner;
+	}
 }
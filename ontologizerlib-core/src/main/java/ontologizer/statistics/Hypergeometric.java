@@ -0,0 +1,331 @@
+package ontologizer.statistics;
+
+import java.util.Arrays;
+
+import sonumina.collections.ConcurrentLongDoubleCache;
+
+/**
+ * Class with methods to calculate probabilities according to the
+ * hypergeometric distribution.
+ *
+ * Instances may be shared among threads.
+ *
+ * @author Peter N. Robinson, Sebastian Bauer
+ */
+
+public class Hypergeometric
+{
+
+	/**
+	 * This array contains log factorials for each index value and acts as a
+	 * cache. It is replaced by a larger one when needed, but never modified
+	 * after it has been published.
+	 */
+	private volatile double [] lfactorial;
+
+	/** Terms whose relative contribution is below this value are ignored */
+	private static final double NEGLIGIBLE = 1e-17;
+
+	/** The number of bits of each of the parameters within a cache key */
+	private static final int KEY_BITS = 21;
+
+	/**
+	 * Memoized upper tail probabilities of phypergeometric() for a single
+	 * population size.
+	 */
+	private static class UpperTailCache
+	{
+		final int n;
+		final ConcurrentLongDoubleCache cache = new ConcurrentLongDoubleCache();
+
+		UpperTailCache(int n)
+		{
+			this.n = n;
+		}
+	}
+
+	private volatile UpperTailCache upperTailCache;
+
+	/**
+	 * <P>
+	 * For the hypergeometric distribution note the following.
+	 * </P>
+	 * <UL>
+	 * <LI>We set up the problem as sampling a set of genes (study genes, for
+	 * instance, the set of upregulated genes in some microarray experiment)
+	 * from a larger set of genes (say, the set of all genes of a species). The
+	 * sampling is done without replacement. </LI>
+	 * <LI>For each GO term, we can conceive of the population as being divided
+	 * into genes annotated to this term and those genes that are not annotated
+	 * to the term.</LI>
+	 * <LI>The probability of having a certain number of terms annotated to the
+	 * term in the study set can then be calculated by the hypergeometric
+	 * distribution. See GeneMerge by Castillo-Davis et al (Bioinformatics).
+	 * </LI>
+	 * <LI>To do this, we need to divide the population into two groups, genes
+	 * with and without annotation. The arguments to the function supply us with
+	 * <B>n</B>, the total number of genes in the population group, and <B>p
+	 * </B>, the proportion of genes with annotation to the term in question.
+	 * We can then calculate the number of genes in the population annotated to
+	 * the term by <B>round(n*p)</B>, and the number of genes not annotated to
+	 * the term by <B>round(n*(1-p))</B>.</LI>
+	 * </UL>
+	 *
+	 *
+	 * @param n
+	 *            Number of population genes
+	 * @param p
+	 *            Proportion of population genes
+	 * @param k
+	 *            Number of study genes
+	 * @param r
+	 *            Number of study genes in group
+	 */
+	public double phypergeometric(int n, double p, int k, int r)
+	{
+		/*
+		 * Study group cannot be larger than population. If this happens there
+		 * is probably something wrong with the input data, but returning 1.0
+		 * prevents confusing and wrong output.
+		 */
+		if (k >= n)
+			return 1.0;
+
+		if (r < 1)
+		{
+			return 1.0; // Not valid for r < 2, less than 2 study genes.
+		}
+
+		int np = (int) java.lang.Math.round(n * p); // Round to nearest int
+
+		return cachedUpperTail(n, np, k, r);
+	}
+
+	/**
+	 * Returns upperTail(n, m, k, r), which is memoized as the same tuples
+	 * occur many times, e.g., during resampling with a fixed study set size.
+	 */
+	private double cachedUpperTail(int n, int m, int k, int r)
+	{
+		if (((m | k | r) >>> KEY_BITS) != 0)
+			return upperTail(n, m, k, r);
+
+		UpperTailCache c = upperTailCache;
+		if (c == null || c.n != n)
+			upperTailCache = c = new UpperTailCache(n);
+
+		long key = ((long)m << (2 * KEY_BITS)) | ((long)k << KEY_BITS) | r;
+		double p = c.cache.get(key);
+		if (Double.isNaN(p))
+		{
+			p = upperTail(n, m, k, r);
+			c.cache.put(key, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Calculates P(X &gt;= x) where X is the hypergeometric distribution
+	 * with indices N,M,n.
+	 *
+	 * Only the largest of the summed up probabilities is evaluated via the
+	 * log factorials, the others are derived from their neighbours by
+	 * multiplying with the ratio of consecutive probabilities. The
+	 * summation stops once the remaining terms become negligible.
+	 *
+	 * @param N number of balls in the urn
+	 * @param M number of white balls in the urn
+	 * @param n number of balls drawn from the urn
+	 * @param x minimal number of white balls drawn without replacement
+	 * @return the probability
+	 */
+	public double upperTail(int N, int M, int n, int x)
+	{
+		int lo = Math.max(0, n - (N - M));
+		int hi = Math.min(n, M);
+
+		if (x > hi || lo > hi) return 0;
+		if (x <= lo) return 1;
+
+		/* Start at the mode if it is part of the tail */
+		int mode = (int)((long)(n + 1) * (M + 1) / (N + 2));
+		int start = Math.max(x, Math.min(mode, hi));
+
+		double first = Math.exp(lNchooseK(M,start)+lNchooseK(N-M,n-start)-lNchooseK(N,n));
+		double sum = first;
+
+		/* The probabilities decrease towards both ends */
+		double t = first;
+		for (int i = start; i < hi; i++)
+		{
+			t *= (double)(M - i) * (n - i) / ((double)(i + 1) * (N - M - n + i + 1));
+			sum += t;
+			if (t <= sum * NEGLIGIBLE) break;
+		}
+
+		t = first;
+		for (int i = start; i > x; i--)
+		{
+			t *= (double)i * (N - M - n + i) / ((double)(M - i + 1) * (n - i + 1));
+			sum += t;
+			if (t <= sum * NEGLIGIBLE) break;
+		}
+
+		return Math.min(sum, 1.0);
+	}
+
+	/**
+	 * Calculates the probability that if you draw n balls from
+	 * an urn without replacement containing N balls where M among
+	 * them are white (and so N-M are black) you will get x white
+	 * balls.
+	 *
+	 * @param x number of white balls drawn without replacement
+	 * @param N number of balls in the urn
+	 * @param M number of white balls in the urn
+	 * @param n number of balls drawn from the urn
+	 *
+	 * @return the probability
+	 */
+	public double dhyper(int x, int N, int M, int n)
+	{
+		/* It is not possible to draw more white balls
+		 * from an urn containing M white balls. Hence
+		 * the probability is 0.
+		 */
+		if (x > M) return 0;
+
+		/* Of course it is also not possible to draw
+		 * more white balls than the number of drawings.
+		 * The probability is 0.
+		 */
+		if (x > n) return 0;
+
+		/* Last but not least, it is also not possible
+		 * to draw more black balls than there are within
+		 * the urn.
+		 */
+		if (n - x > N - M) return 0;
+
+		return Math.exp(lNchooseK(M,x)+lNchooseK(N-M,n-x)-lNchooseK(N,n));
+	}
+
+	/**
+	 * Calculates P(X &gt; x) where X is the hypergeometric distribution
+	 * with indices N,M,n. If lowerTail is set to true, then P(X &lt;= x)
+	 * is calculated.
+	 *
+	 * @param x number of white balls drawn without replacement
+	 * @param N number of balls in the urn
+	 * @param M number of white balls in the urn
+	 * @param n number of balls drawn from the urn
+	 * @param lowerTail defines if the lower tail should be calculated, i.e., if the
+	 *      parameter is set to true then P(X &lt;= x) is calculated, otherwise P(X &gt; x) is
+	 *      calculated.
+	 * @return the probability
+	 */
+	public double phyper(int x, int N, int M, int n, boolean lowerTail)
+	{
+		if (n > N || M > N) return lowerTail ? 1 : 0;
+
+		int mode = (int)((long)(n + 1) * (M + 1) / (N + 2));
+
+		/* Sum up the smaller tail, the other one is its complement */
+		if (x < mode)
+		{
+			/* P(X <= x) equals the probability to draw at least n - x black balls */
+			double p = upperTail(N,N-M,n,n-x);
+
+			if (lowerTail) return p;
+			else return 1 - p;
+		} else
+		{
+			double p = upperTail(N,M,n,x+1);
+
+			if (lowerTail) return 1 - p;
+			else return p;
+		}
+	}
+
+	public double lNchooseK(int n, int k)
+	{
+		double ans;
+		ans = logfact(n) - logfact(k) - logfact(n - k);
+		return ans;
+	}
+
+	/**
+	 * return the log factorial of i. Use a cache to avoid repeatedly
+	 * calculating this. If we have a cache miss, fill up all values from the
+	 * last valid cache value to the value we currently need.
+	 */
+	public double logfact(int i)
+	{
+		double [] lf = lfactorial;
+
+		/*
+		 * Make sure value is already in lfactorial. If not, calculate all
+		 * values up to that for i
+		 */
+		if (i >= lf.length)
+			lf = fillLogfact(i);
+
+		return lf[i];
+	}
+
+	/**
+	 * Makes sure that the log factorials of all values up to n are
+	 * available without further calculations, e.g., n can be the size of
+	 * the population.
+	 *
+	 * @param n
+	 */
+	public void ensureCapacity(int n)
+	{
+		if (n >= lfactorial.length)
+			fillLogfact(n);
+	}
+
+	/**
+	 * Fill up the cache up to at least the log factorial of i. Synchronized,
+	 * as the object may be shared among threads (e.g., during resampling).
+	 *
+	 * @return the new cache
+	 */
+	private synchronized double [] fillLogfact(int i)
+	{
+		double [] lf = lfactorial;
+		if (i < lf.length)
+			return lf;
+
+		/* Grow at least geometrically to avoid frequent copies */
+		int length = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(i + 1L, lf.length * 2L));
+		double [] newLf = Arrays.copyOf(lf, length);
+		for (int j = lf.length; j < length; j++)
+			newLf[j] = newLf[j - 1] + java.lang.Math.log(j);
+
+		lfactorial = newLf;
+		return newLf;
+	}
+
+	/**
+	 * Initialize the object lfactorial, which will act as a cache for log
+	 * factorial calculations.
+	 */
+	public Hypergeometric()
+	{
+		lfactorial = new double[]{0.0, 0.0}; /* 0! = 1, therefore let log(0)=0 */
+	}
+
+	/**
+	 * Initialize the object with a log factorial cache for all values up
+	 * to n.
+	 *
+	 * @param n
+	 */
+	public Hypergeometric(int n)
+	{
+		this();
+		ensureCapacity(n);
+	}
+}
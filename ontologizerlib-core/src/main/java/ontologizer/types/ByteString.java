@@ -1,5 +1,7 @@
 package ontologizer.types;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -14,6 +16,9 @@ import java.util.ArrayList;
  *
  * Like java's String class objects of this class are immutable.
  *
+ * A byte string usually owns its bytes. Byte strings handed out by a
+ * ByteStringArena are views of a range of a page of the arena instead.
+ *
  * @author Sebastian Bauer
  */
 public final class ByteString implements Serializable
@@ -27,9 +32,16 @@ public final class ByteString implements Serializable
 	private byte [] bytes;
 	private transient int hashVal;
 
+	/** The offset of the first byte within bytes */
+	private transient int offset;
+
+	/** The number of bytes */
+	private transient int length;
+
 	public ByteString(String str)
 	{
 		bytes = str.getBytes();
+		length = bytes.length;
 	}
 
 	public ByteString(String str, int length)
@@ -37,18 +49,21 @@ public final class ByteString implements Serializable
 		bytes = new byte[length];
 		for (int i=0;i<length;i++)
 			bytes[i] = (byte)str.charAt(i);
+		this.length = length;
 	}
 
 	public ByteString(byte [] bytes)
 	{
 		this.bytes = new byte[bytes.length];
 		System.arraycopy(bytes,0,this.bytes,0,bytes.length);
+		length = bytes.length;
 	}
 
 	public ByteString(byte [] bytes, int length)
 	{
 		this.bytes = new byte[length];
 		System.arraycopy(bytes,0,this.bytes,0,length);
+		this.length = length;
 	}
 
 	/**
@@ -61,6 +76,7 @@ public final class ByteString implements Serializable
 	{
 		this.bytes = new byte[to-from];
 		System.arraycopy(bytes,from,this.bytes,0,to-from);
+		length = to - from;
 	}
 
 
@@ -68,9 +84,28 @@ public final class ByteString implements Serializable
 	{
 	}
 
+	/**
+	 * Constructs a byte string that is a view of the given range of bytes,
+	 * i.e., the bytes are not copied. The range must not be modified
+	 * afterwards.
+	 *
+	 * @param bytes the array containing the bytes
+	 * @param offset the offset of the first byte
+	 * @param length the number of bytes
+	 * @return the view
+	 */
+	static ByteString view(byte [] bytes, int offset, int length)
+	{
+		ByteString bs = new ByteString();
+		bs.bytes = bytes;
+		bs.offset = offset;
+		bs.length = length;
+		return bs;
+	}
+
 	public int length()
 	{
-		return bytes.length;
+		return length;
 	}
 
 	/**
@@ -80,17 +115,17 @@ public final class ByteString implements Serializable
 	@Override
 	public String toString()
 	{
-		return new String(bytes, UTF8);
+		return new String(bytes, offset, length, UTF8);
 	}
 
 	public boolean startsWith(String string)
 	{
 		int l = string.length();
-		if (bytes.length < l)
+		if (length < l)
 			return false;
 		for (int i = 0; i < l; i++)
 		{
-			if ((byte)string.charAt(i) != bytes[i])
+			if ((byte)string.charAt(i) != bytes[offset + i])
 				return false;
 		}
 		return true;
@@ -99,14 +134,14 @@ public final class ByteString implements Serializable
 	public boolean startsWithIgnoreCase(String string)
 	{
 		int l = string.length();
-		if (bytes.length < l)
+		if (length < l)
 			return false;
 		for (int i = 0; i < l; i++)
 		{
 			char c = string.charAt(i);
 
-			if ((byte)c != bytes[i])
-				if (Character.toLowerCase(c) != Character.toLowerCase(bytes[i] & 0xff))
+			if ((byte)c != bytes[offset + i])
+				if (Character.toLowerCase(c) != Character.toLowerCase(bytes[offset + i] & 0xff))
 					return false;
 		}
 		return true;
@@ -122,10 +157,7 @@ public final class ByteString implements Serializable
 	 */
 	public ByteString substring(int beginIndex, int endIndex)
 	{
-		ByteString bs = new ByteString();
-		bs.bytes = new byte[endIndex - beginIndex];
-		System.arraycopy(bytes, beginIndex, bs.bytes, 0, endIndex - beginIndex);
-		return bs;
+		return new ByteString(bytes, offset + beginIndex, offset + endIndex);
 	}
 
 	/**
@@ -138,7 +170,7 @@ public final class ByteString implements Serializable
 	 */
 	public void copyTo(int beginIndex, int endIndex, byte [] dest, int offset)
 	{
-		System.arraycopy(bytes, beginIndex, dest, offset, endIndex - beginIndex);
+		System.arraycopy(bytes, this.offset + beginIndex, dest, offset, endIndex - beginIndex);
 	}
 
 	/**
@@ -149,12 +181,12 @@ public final class ByteString implements Serializable
 	 */
 	public boolean isPrefixOf(String string)
 	{
-		if (bytes.length > string.length())
+		if (length > string.length())
 			return false;
 
-		for (int i=0;i<bytes.length;i++)
+		for (int i=0;i<length;i++)
 		{
-			if (bytes[i] != string.charAt(i))
+			if (bytes[offset + i] != string.charAt(i))
 				return false;
 		}
 		return true;
@@ -171,7 +203,7 @@ public final class ByteString implements Serializable
 		int bytesW = 0;
 		for (int i = from; i < to; i++)
 		{
-			byte b = bytes[i];
+			byte b = bytes[offset + i];
 			if (b == ' ' || b == '\t' || b == '\n' || b == '\r')
 				continue;
 			sub[bytesW] = b;
@@ -180,51 +212,36 @@ public final class ByteString implements Serializable
 		if (to - from != bytesW)
 			return new ByteString(sub,bytesW);
 
-		ByteString bs = new ByteString();
-		bs.bytes = sub;
-		return bs;
+		return view(sub, 0, sub.length);
 	}
 
 	public int indexOf(ByteString string)
 	{
-		byte [] stringBytes = string.bytes;
-		for (int i = 0; i < bytes.length; i++)
-		{
-			if (i + stringBytes.length > bytes.length)
-				return -1;
-
-			if (stringBytes[0] == bytes[i])
-			{
-				int j;
-				for (j = 1; j < stringBytes.length; j++)
-				{
-					if (stringBytes[j] != bytes[j + i])
-						break;
-				}
-				if (j == stringBytes.length)
-					return i;
-			}
-		}
-		return -1;
+		return indexOf(string.bytes, string.offset, string.length);
 	}
 
 	public int indexOf(String string)
 	{
 		byte [] stringBytes = string.getBytes();
-		for (int i = 0; i < bytes.length; i++)
+		return indexOf(stringBytes, 0, stringBytes.length);
+	}
+
+	private int indexOf(byte [] stringBytes, int stringOffset, int stringLength)
+	{
+		for (int i = 0; i < length; i++)
 		{
-			if (i + stringBytes.length > bytes.length)
+			if (i + stringLength > length)
 				return -1;
 
-			if (stringBytes[0] == bytes[i])
+			if (stringBytes[stringOffset] == bytes[offset + i])
 			{
 				int j;
-				for (j = 1; j < stringBytes.length; j++)
+				for (j = 1; j < stringLength; j++)
 				{
-					if (stringBytes[j] != bytes[j + i])
+					if (stringBytes[stringOffset + j] != bytes[offset + j + i])
 						break;
 				}
-				if (j == stringBytes.length)
+				if (j == stringLength)
 					return i;
 			}
 		}
@@ -247,11 +264,24 @@ public final class ByteString implements Serializable
 
 	public boolean equals(ByteString bStr)
 	{
-		if (bStr.bytes.length != bytes.length)
+		return equals(bStr.bytes, bStr.offset, bStr.length);
+	}
+
+	/**
+	 * Returns whether this string consists of the given bytes.
+	 *
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return true if the contents are equal.
+	 */
+	boolean equals(byte [] buf, int off, int len)
+	{
+		if (len != length)
 			return false;
-		for (int i=0;i<bytes.length;i++)
+		for (int i=0;i<length;i++)
 		{
-			if (bytes[i] != bStr.bytes[i])
+			if (bytes[offset + i] != buf[off + i])
 				return false;
 		}
 		return true;
@@ -259,11 +289,11 @@ public final class ByteString implements Serializable
 
 	public boolean equals(String str)
 	{
-		if (str.length() != bytes.length)
+		if (str.length() != length)
 			return false;
-		for (int i=0;i<bytes.length;i++)
+		for (int i=0;i<length;i++)
 		{
-			if (str.charAt(i) != bytes[i])
+			if (str.charAt(i) != bytes[offset + i])
 				return false;
 		}
 		return true;
@@ -275,11 +305,46 @@ public final class ByteString implements Serializable
 		if (hashVal != 0)
 			return hashVal;
 
-		for (int i = 0; i < bytes.length; i++)
-			hashVal = 31*hashVal + bytes[i];
+		hashVal = hashCode(bytes, offset, length);
 		return hashVal;
 	}
 
+	/**
+	 * Returns the hash code of the byte string that consists of the given
+	 * bytes without constructing it.
+	 *
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return the hash code, which equals the one returned by hashCode().
+	 */
+	public static int hashCode(byte [] buf, int off, int len)
+	{
+		int h = 0;
+		for (int i = off; i < off + len; i++)
+			h = 31*h + buf[i];
+		return h;
+	}
+
+	/**
+	 * Provides the array containing the bytes of this string without
+	 * copying it. Callers must not modify the returned array.
+	 *
+	 * @return the array, the string starts at offset().
+	 */
+	byte [] array()
+	{
+		return bytes;
+	}
+
+	/**
+	 * @return the offset of the first byte of this string within array().
+	 */
+	int offset()
+	{
+		return offset;
+	}
+
 	/**
 	 * Splits this string by a single byte.
 	 *
@@ -288,12 +353,12 @@ public final class ByteString implements Serializable
 	 */
 	public ByteString[] split(byte c)
 	{
-		int from = 0;
+		int from = offset;
 		int to;
 
 		ArrayList<ByteString> bl = new ArrayList<ByteString>();
 
-		for (to = 0;to<bytes.length;to++)
+		for (to = offset;to<offset + length;to++)
 		{
 			if (bytes[to] == c)
 			{
@@ -350,7 +415,7 @@ public final class ByteString implements Serializable
 	 */
 	public static int parseFirstInt(ByteString byteString)
 	{
-		return parseFirstInt(byteString.bytes,0,byteString.length());
+		return parseFirstInt(byteString.bytes,byteString.offset,byteString.length);
 	}
 
 	public int compareTo(ByteString name)
@@ -368,8 +433,8 @@ public final class ByteString implements Serializable
 	 */
 	public ByteString replace(int oldChar, int newChar)
 	{
-		ByteString newStr = new ByteString(this.bytes);
-		for (int i=0; i<bytes.length; i++)
+		ByteString newStr = new ByteString(bytes, offset, offset + length);
+		for (int i=0; i<length; i++)
 		{
 			if (newStr.bytes[i] == oldChar)
 			{
@@ -379,6 +444,23 @@ public final class ByteString implements Serializable
 		return newStr;
 	}
 
+	/**
+	 * Views are written as strings that own their bytes, so the serialized
+	 * form doesn't contain the entire page of an arena.
+	 */
+	private Object writeReplace()
+	{
+		if (offset != 0 || length != bytes.length)
+			return new ByteString(bytes, offset, offset + length);
+		return this;
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		length = bytes.length;
+	}
+
 	/**
 	 * Return a ByteString representation from the given str.
 	 *
@@ -0,0 +1,452 @@
+package ontologizer.types;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An arena of distinct byte strings. The bytes of all strings are stored
+ * one after another in large pages, which are located on the heap or,
+ * optionally, in direct buffers outside of the heap. A string is referred
+ * to by its handle, which is the index of the string within the arena, i.e.,
+ * the handles are 0, 1, 2, ... in the order in which the strings were added.
+ * For each handle, the arena keeps the page and the int offset of the
+ * string within the page.
+ *
+ * Strings can be added and looked up directly from byte ranges, e.g., from
+ * fields of the line buffer of a parser, without constructing any objects.
+ * If the pages are located on the heap, get() provides a ByteString for
+ * each handle that is a view of the page, i.e., the bytes are not copied
+ * and equal strings share the same instance.
+ *
+ * The arena is thread-safe. Lookups can be done concurrently, while adding
+ * a string that is not within the arena locks the arena exclusively.
+ */
+public final class ByteStringArena
+{
+	/** Denotes that a string is not within the arena */
+	public static final int NOT_FOUND = -1;
+
+	/** The default number of bytes of a page */
+	private static final int PAGE_SIZE = 1 << 20;
+
+	/** Whether the pages are located outside of the heap */
+	private final boolean direct;
+
+	/** The number of bytes of a page, strings that are longer get their own page */
+	private final int pageSize;
+
+	private final Lock readLock;
+	private final Lock writeLock;
+
+	/** The pages holding the bytes of the strings */
+	private ByteBuffer [] pages = new ByteBuffer[4];
+
+	/** The number of pages */
+	private int numberOfPages;
+
+	/** The number of bytes used on the last page */
+	private int pagePosition;
+
+	/** The page of each string */
+	private int [] pageIndices = new int[16];
+
+	/** The offset of each string within its page */
+	private int [] offsets = new int[16];
+
+	/** The length of each string */
+	private int [] lengths = new int[16];
+
+	/** The hash codes of the strings */
+	private int [] hashes = new int[16];
+
+	/** The views of the strings, null if the pages are located outside of the heap */
+	private ByteString [] views;
+
+	/** Open addressing hash table containing handle + 1, or 0 for empty slots */
+	private int [] table = new int[32];
+
+	/** The number of strings */
+	private int size;
+
+	/** The number of bytes of all strings */
+	private long numberOfBytes;
+
+	/**
+	 * Constructs an arena whose strings are stored on the heap.
+	 */
+	public ByteStringArena()
+	{
+		this(false);
+	}
+
+	/**
+	 * Constructs an arena.
+	 *
+	 * @param direct whether the bytes should be stored outside of the heap.
+	 */
+	public ByteStringArena(boolean direct)
+	{
+		this(PAGE_SIZE, direct);
+	}
+
+	/**
+	 * Constructs an arena.
+	 *
+	 * @param pageSize the number of bytes of a page.
+	 * @param direct whether the bytes should be stored outside of the heap.
+	 */
+	public ByteStringArena(int pageSize, boolean direct)
+	{
+		if (pageSize < 1)
+			throw new IllegalArgumentException("The page size must be positive");
+
+		this.pageSize = pageSize;
+		this.direct = direct;
+		if (!direct)
+			views = new ByteString[16];
+
+		ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+	}
+
+	/**
+	 * @return whether the bytes are stored outside of the heap.
+	 */
+	public boolean isDirect()
+	{
+		return direct;
+	}
+
+	/**
+	 * @return the number of strings within the arena.
+	 */
+	public int size()
+	{
+		readLock.lock();
+		try
+		{
+			return size;
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of bytes of all strings within the arena.
+	 */
+	public long getNumberOfBytes()
+	{
+		readLock.lock();
+		try
+		{
+			return numberOfBytes;
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the handle of the string that consists of the given bytes.
+	 *
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return the handle or NOT_FOUND, if the string is not within the arena.
+	 */
+	public int find(byte [] buf, int off, int len)
+	{
+		int hash = ByteString.hashCode(buf, off, len);
+		readLock.lock();
+		try
+		{
+			int slot = findSlot(hash, buf, off, len);
+			return table[slot] - 1;
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the handle of the given string.
+	 *
+	 * @param str the string to look for
+	 * @return the handle or NOT_FOUND, if the string is not within the arena.
+	 */
+	public int find(ByteString str)
+	{
+		return find(str.array(), str.offset(), str.length());
+	}
+
+	/**
+	 * Adds the string that consists of the given bytes unless an equal
+	 * string has been added before.
+	 *
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return the handle of the string.
+	 */
+	public int add(byte [] buf, int off, int len)
+	{
+		int hash = ByteString.hashCode(buf, off, len);
+		readLock.lock();
+		try
+		{
+			int handle = table[findSlot(hash, buf, off, len)] - 1;
+			if (handle != NOT_FOUND)
+				return handle;
+		} finally
+		{
+			readLock.unlock();
+		}
+
+		writeLock.lock();
+		try
+		{
+			/* Another thread may have added the string in the meantime */
+			int slot = findSlot(hash, buf, off, len);
+			if (table[slot] != 0)
+				return table[slot] - 1;
+			return insert(slot, hash, buf, off, len);
+		} finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the given string unless an equal string has been added before.
+	 *
+	 * @param str the string to add
+	 * @return the handle of the string.
+	 */
+	public int add(ByteString str)
+	{
+		return add(str.array(), str.offset(), str.length());
+	}
+
+	/**
+	 * Returns the ByteString of the string that consists of the given bytes.
+	 * The string is added if it is not within the arena.
+	 *
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return the ByteString as returned by get().
+	 */
+	public ByteString intern(byte [] buf, int off, int len)
+	{
+		return get(add(buf, off, len));
+	}
+
+	/**
+	 * Returns the ByteString of the given string. If the pages are located
+	 * on the heap, this is the view of the string that is shared by all
+	 * callers. Otherwise, the bytes are copied into a new ByteString.
+	 *
+	 * @param handle the handle of the string
+	 * @return the ByteString
+	 */
+	public ByteString get(int handle)
+	{
+		readLock.lock();
+		try
+		{
+			checkHandle(handle);
+			if (views != null)
+				return views[handle];
+
+			ByteBuffer page = pages[pageIndices[handle]];
+			byte [] bytes = new byte[lengths[handle]];
+			for (int i = 0; i < bytes.length; i++)
+				bytes[i] = page.get(offsets[handle] + i);
+			return new ByteString(bytes);
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the length of the given string.
+	 *
+	 * @param handle the handle of the string
+	 * @return the number of bytes of the string.
+	 */
+	public int length(int handle)
+	{
+		readLock.lock();
+		try
+		{
+			checkHandle(handle);
+			return lengths[handle];
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the hash code of the given string.
+	 *
+	 * @param handle the handle of the string
+	 * @return the hash code, which equals the one of the corresponding
+	 *  ByteString.
+	 */
+	public int hashCode(int handle)
+	{
+		readLock.lock();
+		try
+		{
+			checkHandle(handle);
+			return hashes[handle];
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns whether the given string consists of the given bytes.
+	 *
+	 * @param handle the handle of the string
+	 * @param buf the buffer containing the bytes
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 * @return true if the contents are equal.
+	 */
+	public boolean equals(int handle, byte [] buf, int off, int len)
+	{
+		readLock.lock();
+		try
+		{
+			checkHandle(handle);
+			return equalsUnlocked(handle, buf, off, len);
+		} finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	private boolean equalsUnlocked(int handle, byte [] buf, int off, int len)
+	{
+		if (lengths[handle] != len)
+			return false;
+
+		if (views != null)
+			return views[handle].equals(buf, off, len);
+
+		int start = offsets[handle];
+		ByteBuffer page = pages[pageIndices[handle]];
+		for (int i = 0; i < len; i++)
+		{
+			if (page.get(start + i) != buf[off + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the slot of the table that contains the given string or the
+	 * empty slot at which the string would be inserted. Must be called with
+	 * a lock being held.
+	 */
+	private int findSlot(int hash, byte [] buf, int off, int len)
+	{
+		int mask = table.length - 1;
+		int slot;
+		for (slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int handle = table[slot] - 1;
+			if (hashes[handle] == hash && equalsUnlocked(handle, buf, off, len))
+				break;
+		}
+		return slot;
+	}
+
+	/**
+	 * Inserts the given string at the given empty slot. Must be called with
+	 * the write lock being held.
+	 *
+	 * @return the handle of the new string.
+	 */
+	private int insert(int slot, int hash, byte [] buf, int off, int len)
+	{
+		if (size == Integer.MAX_VALUE - 1)
+			throw new IllegalStateException("The arena cannot hold more strings");
+
+		/* Start a new page if the string doesn't fit on the current one */
+		if (numberOfPages == 0 || len > pages[numberOfPages - 1].capacity() - pagePosition)
+		{
+			if (numberOfPages == pages.length)
+				pages = Arrays.copyOf(pages, numberOfPages * 2);
+			int capacity = Math.max(pageSize, len);
+			pages[numberOfPages++] = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+			pagePosition = 0;
+		}
+
+		ByteBuffer page = pages[numberOfPages - 1];
+		ByteBuffer dest = page.duplicate();
+		dest.position(pagePosition);
+		dest.put(buf, off, len);
+
+		if (size == hashes.length)
+		{
+			int newLength = size * 2;
+			pageIndices = Arrays.copyOf(pageIndices, newLength);
+			offsets = Arrays.copyOf(offsets, newLength);
+			lengths = Arrays.copyOf(lengths, newLength);
+			hashes = Arrays.copyOf(hashes, newLength);
+			if (views != null)
+				views = Arrays.copyOf(views, newLength);
+		}
+
+		int handle = size++;
+		pageIndices[handle] = numberOfPages - 1;
+		offsets[handle] = pagePosition;
+		lengths[handle] = len;
+		hashes[handle] = hash;
+		if (views != null)
+			views[handle] = ByteString.view(page.array(), pagePosition, len);
+		table[slot] = handle + 1;
+
+		pagePosition += len;
+		numberOfBytes += len;
+
+		/* Keep the load factor at most 0.5 */
+		if (size * 2 > table.length)
+			rehash(table.length * 2);
+		return handle;
+	}
+
+	private void checkHandle(int handle)
+	{
+		if (handle < 0 || handle >= size)
+			throw new IndexOutOfBoundsException("Handle " + handle + " is not within [0," + size + ")");
+	}
+
+	private void rehash(int newLength)
+	{
+		int [] newTable = new int[newLength];
+		int mask = newLength - 1;
+		for (int handle = 0; handle < size; handle++)
+		{
+			int slot = spread(hashes[handle]) & mask;
+			while (newTable[slot] != 0)
+				slot = (slot + 1) & mask;
+			newTable[slot] = handle + 1;
+		}
+		table = newTable;
+	}
+
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+}
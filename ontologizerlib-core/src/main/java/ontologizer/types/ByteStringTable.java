@@ -0,0 +1,155 @@
+package ontologizer.types;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import sonumina.collections.ObjectIntHashMap;
+
+/**
+ * A table of interned byte strings as it is used by the binary snapshots.
+ * Each distinct string is stored only once and referred to by its index.
+ * The index -1 refers to null.
+ *
+ * The table is stored as the number of strings, followed by the end offsets
+ * of all strings within the data block and the data block itself.
+ */
+public final class ByteStringTable
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ObjectIntHashMap<ByteString> indices = new ObjectIntHashMap<ByteString>();
+	private List<ByteString> strings = new ArrayList<ByteString>();
+
+	/** The total number of bytes of all strings */
+	private int dataSize;
+
+	/**
+	 * Interns the given string.
+	 *
+	 * @param str the string, may be null.
+	 * @return the index of the string within the table.
+	 */
+	public int intern(ByteString str)
+	{
+		if (str == null)
+			return -1;
+
+		int potentialIndex = strings.size();
+		int index = indices.getIfAbsentPut(str, potentialIndex);
+		if (index == potentialIndex)
+		{
+			strings.add(str);
+			dataSize += str.length();
+		}
+		return index;
+	}
+
+	/**
+	 * Interns the given string, which is encoded as UTF-8.
+	 *
+	 * @param str the string, may be null.
+	 * @return the index of the string within the table.
+	 */
+	public int intern(String str)
+	{
+		if (str == null)
+			return -1;
+		return intern(new ByteString(str.getBytes(UTF8)));
+	}
+
+	/**
+	 * @return the number of strings in the table.
+	 */
+	public int size()
+	{
+		return strings.size();
+	}
+
+	/**
+	 * Writes the table.
+	 *
+	 * @param out where to write the table to.
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeInt(strings.size());
+
+		int end = 0;
+		for (ByteString str : strings)
+		{
+			end += str.length();
+			out.writeInt(end);
+		}
+
+		byte [] data = new byte[dataSize];
+		int offset = 0;
+		for (ByteString str : strings)
+		{
+			str.copyTo(0, str.length(), data, offset);
+			offset += str.length();
+		}
+		out.write(data);
+	}
+
+	/**
+	 * Reads a table that was written by write().
+	 *
+	 * @param buf the buffer from which the table is read.
+	 * @return the strings of the table.
+	 */
+	public static ByteString [] read(ByteBuffer buf)
+	{
+		int n = buf.getInt();
+		int [] ends = new int[n];
+		buf.asIntBuffer().get(ends);
+		buf.position(buf.position() + n * 4);
+
+		byte [] data = new byte[n > 0 ? ends[n - 1] : 0];
+		buf.get(data);
+
+		ByteString [] strings = new ByteString[n];
+		int start = 0;
+		for (int i = 0; i < n; i++)
+		{
+			strings[i] = new ByteString(data, start, ends[i]);
+			start = ends[i];
+		}
+		return strings;
+	}
+
+	/**
+	 * Returns the string of the given table at the given index.
+	 *
+	 * @param strings the table
+	 * @param index the index, may be -1.
+	 * @return the string or null, if index was -1.
+	 */
+	public static ByteString get(ByteString [] strings, int index)
+	{
+		if (index == -1)
+			return null;
+		return strings[index];
+	}
+
+	/**
+	 * Returns the string of the given table at the given index decoded as UTF-8.
+	 *
+	 * @param strings the table
+	 * @param index the index, may be -1.
+	 * @return the string or null, if index was -1.
+	 */
+	public static String getString(ByteString [] strings, int index)
+	{
+		if (index == -1)
+			return null;
+		ByteString str = strings[index];
+		byte [] bytes = new byte[str.length()];
+		str.copyTo(0, bytes.length, bytes, 0);
+		return new String(bytes, UTF8);
+	}
+}
@@ -299,6 +299,57 @@ public final class Util
 		return cis;
 	}
 
+	/**
+	 * Converts the given array of ints into a bitset.
+	 *
+	 * @param a the array, all elements must be in the range [0, size).
+	 * @param size the number of bits of the bitset.
+	 * @return the bitset in which bit i is set if i is contained in a.
+	 */
+	public static long [] toBitSet(int [] a, int size)
+	{
+		long [] bits = new long[(size + 63) >>> 6];
+		for (int i : a)
+			bits[i >>> 6] |= 1L << i;
+		return bits;
+	}
+
+	/**
+	 * Determine the number of bits that are set in both of the given bitsets.
+	 *
+	 * @param a bitset number one
+	 * @param b bitset number two
+	 * @return number of common bits.
+	 */
+	public static int commonBits(long [] a, long [] b)
+	{
+		int numCommon = 0;
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++)
+			numCommon += Long.bitCount(a[i] & b[i]);
+		return numCommon;
+	}
+
+	/**
+	 * Determine the number of integer values of the given array whose bits
+	 * are set in the given bitset.
+	 *
+	 * @param a array (not necessarily sorted) of non-negative ints
+	 * @param bits the bitset
+	 * @return number of ints that are common.
+	 */
+	public static int commonInts(int [] a, long [] bits)
+	{
+		int numCommon = 0;
+		for (int i : a)
+		{
+			int w = i >>> 6;
+			if (w < bits.length && (bits[w] & (1L << i)) != 0)
+				numCommon++;
+		}
+		return numCommon;
+	}
+
 	/**
 	 * Simple method that returns a default if the first argument is null.
 	 *
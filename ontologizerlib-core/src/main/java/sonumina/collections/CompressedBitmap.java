@@ -0,0 +1,387 @@
+package sonumina.collections;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An immutable set of non-negative ints that is stored in a compressed way.
+ * The layout follows the idea of roaring bitmaps: values are partitioned into
+ * chunks of 2^16 consecutive values according to their upper 16 bits. Each chunk
+ * stores the lower 16 bits of its values either as a sorted char array (sparse
+ * chunks) or as a plain bitmap (dense chunks), whatever needs less memory.
+ */
+public final class CompressedBitmap implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** The empty set */
+	public static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new char[0][], new long[0][], 0);
+
+	/** The upper 16 bits of the values of each chunk in ascending order */
+	private final char [] keys;
+
+	/** The sorted lower 16 bits of sparse chunks, null if the chunk is dense */
+	private final char [][] arrays;
+
+	/** The bitmaps of dense chunks, null if the chunk is sparse */
+	private final long [][] bitmaps;
+
+	/** The number of values */
+	private final int cardinality;
+
+	private CompressedBitmap(char [] keys, char [][] arrays, long [][] bitmaps, int cardinality)
+	{
+		this.keys = keys;
+		this.arrays = arrays;
+		this.bitmaps = bitmaps;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Create a compressed bitmap from the given values.
+	 *
+	 * @param values the values, which must be sorted in ascending order, non-negative
+	 *  and free of duplicates.
+	 * @return the bitmap.
+	 */
+	public static CompressedBitmap create(int [] values)
+	{
+		return create(values, values.length);
+	}
+
+	/**
+	 * Create a compressed bitmap from the first length values of the given array.
+	 *
+	 * @param values the values, which must be sorted in ascending order, non-negative
+	 *  and free of duplicates.
+	 * @param length the number of values to consider.
+	 * @return the bitmap.
+	 */
+	public static CompressedBitmap create(int [] values, int length)
+	{
+		if (length == 0)
+			return EMPTY;
+
+		/* Check the constraints and determine the number of chunks */
+		int numChunks = 0;
+		int lastKey = -1;
+		for (int i = 0; i < length; i++)
+		{
+			if (values[i] < 0)
+				throw new IllegalArgumentException("Negative values are not supported");
+			if (i > 0 && values[i] <= values[i-1])
+				throw new IllegalArgumentException("Values must be sorted and free of duplicates");
+			int key = values[i] >>> 16;
+			if (key != lastKey)
+			{
+				numChunks++;
+				lastKey = key;
+			}
+		}
+
+		char [] keys = new char[numChunks];
+		char [][] arrays = new char[numChunks][];
+		long [][] bitmaps = new long[numChunks][];
+
+		int chunk = 0;
+		int start = 0;
+		while (start < length)
+		{
+			int key = values[start] >>> 16;
+			int end = start + 1;
+			while (end < length && (values[end] >>> 16) == key)
+				end++;
+
+			int card = end - start;
+			int words = ((values[end - 1] & 0xffff) >>> 6) + 1;
+
+			keys[chunk] = (char)key;
+
+			/* Choose the representation that needs less memory */
+			if (2 * card <= 8 * words)
+			{
+				char [] a = new char[card];
+				for (int i = start; i < end; i++)
+					a[i - start] = (char)values[i];
+				arrays[chunk] = a;
+			} else
+			{
+				long [] b = new long[words];
+				for (int i = start; i < end; i++)
+				{
+					int low = values[i] & 0xffff;
+					b[low >>> 6] |= 1L << low;
+				}
+				bitmaps[chunk] = b;
+			}
+			chunk++;
+			start = end;
+		}
+		return new CompressedBitmap(keys, arrays, bitmaps, length);
+	}
+
+	/**
+	 * Returns the index of the chunk that corresponds to the given key.
+	 *
+	 * @param key the upper 16 bits of a value
+	 * @return the index or a negative value if there is no such chunk.
+	 */
+	private int chunkIndex(char key)
+	{
+		/* Most sets we deal with have a single chunk */
+		if (keys.length == 1)
+			return keys[0] == key ? 0 : -1;
+		return Arrays.binarySearch(keys, key);
+	}
+
+	/**
+	 * Determines whether the given value is contained in this set. This takes constant
+	 * time for dense chunks and logarithmic time in the size of sparse chunks.
+	 *
+	 * @param value the value to check
+	 * @return whether the value is contained.
+	 */
+	public boolean contains(int value)
+	{
+		if (value < 0)
+			return false;
+
+		int idx = chunkIndex((char)(value >>> 16));
+		if (idx < 0)
+			return false;
+
+		char low = (char)value;
+		long [] b = bitmaps[idx];
+		if (b != null)
+		{
+			int w = low >>> 6;
+			return w < b.length && (b[w] & (1L << low)) != 0;
+		}
+		return Arrays.binarySearch(arrays[idx], low) >= 0;
+	}
+
+	/**
+	 * @return the number of values contained in this set.
+	 */
+	public int cardinality()
+	{
+		return cardinality;
+	}
+
+	/**
+	 * @return whether the set is empty.
+	 */
+	public boolean isEmpty()
+	{
+		return cardinality == 0;
+	}
+
+	/**
+	 * Copies the values of this set into the given array.
+	 *
+	 * @param dest where to store the values. Must hold at least cardinality() values.
+	 * @return the number of values that were stored.
+	 */
+	public int toArray(int [] dest)
+	{
+		int n = 0;
+		for (int c = 0; c < keys.length; c++)
+		{
+			int high = keys[c] << 16;
+			long [] b = bitmaps[c];
+			if (b != null)
+			{
+				for (int w = 0; w < b.length; w++)
+				{
+					long word = b[w];
+					while (word != 0)
+					{
+						dest[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+			} else
+			{
+				char [] a = arrays[c];
+				for (int i = 0; i < a.length; i++)
+					dest[n++] = high | a[i];
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return the values of this set as sorted array.
+	 */
+	public int [] toArray()
+	{
+		int [] values = new int[cardinality];
+		toArray(values);
+		return values;
+	}
+
+	/**
+	 * Determines the number of values that this set shares with the other one.
+	 * The intersection itself is not materialized.
+	 *
+	 * @param other the other set
+	 * @return the size of the intersection.
+	 */
+	public int andCardinality(CompressedBitmap other)
+	{
+		int count = 0;
+		int i = 0, j = 0;
+		while (i < keys.length && j < other.keys.length)
+		{
+			if (keys[i] < other.keys[j]) i++;
+			else if (keys[i] > other.keys[j]) j++;
+			else
+			{
+				count += andCardinality(arrays[i], bitmaps[i], other.arrays[j], other.bitmaps[j]);
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	private static int andCardinality(char [] a1, long [] b1, char [] a2, long [] b2)
+	{
+		int count = 0;
+		if (b1 != null && b2 != null)
+		{
+			int words = Math.min(b1.length, b2.length);
+			for (int w = 0; w < words; w++)
+				count += Long.bitCount(b1[w] & b2[w]);
+		} else if (b1 != null)
+		{
+			count = countContained(a2, b1);
+		} else if (b2 != null)
+		{
+			count = countContained(a1, b2);
+		} else
+		{
+			for (int i = 0, j = 0; i < a1.length && j < a2.length;)
+			{
+				if (a1[i] < a2[j]) i++;
+				else if (a1[i] > a2[j]) j++;
+				else
+				{
+					count++;
+					i++;
+					j++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int countContained(char [] a, long [] b)
+	{
+		int count = 0;
+		for (int i = 0; i < a.length; i++)
+		{
+			int w = a[i] >>> 6;
+			if (w < b.length && (b[w] & (1L << a[i])) != 0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the intersection of this set and the given one.
+	 *
+	 * @param other the other set
+	 * @return the intersection as a new set.
+	 */
+	public CompressedBitmap and(CompressedBitmap other)
+	{
+		int [] values = new int[Math.min(cardinality, other.cardinality)];
+		int n = 0;
+
+		int i = 0, j = 0;
+		while (i < keys.length && j < other.keys.length)
+		{
+			if (keys[i] < other.keys[j]) i++;
+			else if (keys[i] > other.keys[j]) j++;
+			else
+			{
+				int high = keys[i] << 16;
+				long [] b1 = bitmaps[i];
+				long [] b2 = other.bitmaps[j];
+				char [] a1 = arrays[i];
+				char [] a2 = other.arrays[j];
+
+				if (b1 != null && b2 != null)
+				{
+					int words = Math.min(b1.length, b2.length);
+					for (int w = 0; w < words; w++)
+					{
+						long word = b1[w] & b2[w];
+						while (word != 0)
+						{
+							values[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+							word &= word - 1;
+						}
+					}
+				} else if (b1 != null || b2 != null)
+				{
+					char [] a = b1 != null ? a2 : a1;
+					long [] b = b1 != null ? b1 : b2;
+					for (int k = 0; k < a.length; k++)
+					{
+						int w = a[k] >>> 6;
+						if (w < b.length && (b[w] & (1L << a[k])) != 0)
+							values[n++] = high | a[k];
+					}
+				} else
+				{
+					for (int k = 0, l = 0; k < a1.length && l < a2.length;)
+					{
+						if (a1[k] < a2[l]) k++;
+						else if (a1[k] > a2[l]) l++;
+						else
+						{
+							values[n++] = high | a1[k];
+							k++;
+							l++;
+						}
+					}
+				}
+				i++;
+				j++;
+			}
+		}
+		return create(values, n);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int h = cardinality;
+		for (int c = 0; c < keys.length; c++)
+		{
+			h = 31 * h + keys[c];
+			h = 31 * h + (bitmaps[c] != null ? Arrays.hashCode(bitmaps[c]) : Arrays.hashCode(arrays[c]));
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) return true;
+		if (!(obj instanceof CompressedBitmap)) return false;
+
+		/* The representation of a chunk is fully determined by its values */
+		CompressedBitmap other = (CompressedBitmap)obj;
+		return cardinality == other.cardinality && Arrays.equals(keys, other.keys) &&
+			Arrays.deepEquals(arrays, other.arrays) && Arrays.deepEquals(bitmaps, other.bitmaps);
+	}
+
+	@Override
+	public String toString()
+	{
+		return Arrays.toString(toArray());
+	}
+}
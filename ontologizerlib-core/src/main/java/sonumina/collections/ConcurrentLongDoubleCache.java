@@ -0,0 +1,199 @@
+package sonumina.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent map from non-negative long keys to double values that is
+ * meant to be used as a cache, i.e., entries are never removed.
+ *
+ * The keys are distributed to a number of segments. Each segment is an
+ * open addressing hash table stored in primitive arrays. Lookups don't
+ * acquire any lock. Insertions lock only the affected segment, so they
+ * contend only if they happen to hit the same segment.
+ */
+public final class ConcurrentLongDoubleCache
+{
+	/** Stored in the key array for free slots, stored keys are offset by one */
+	private static final long FREE = 0;
+
+	private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+	/**
+	 * A table of a segment. Tables are never modified after they have been
+	 * replaced by a larger one.
+	 */
+	private static final class Table
+	{
+		/** The keys plus one, FREE for free slots */
+		final AtomicLongArray keys;
+
+		/** The raw long bits of the values */
+		final AtomicLongArray values;
+
+		final int mask;
+
+		Table(int capacity)
+		{
+			keys = new AtomicLongArray(capacity);
+			values = new AtomicLongArray(capacity);
+			mask = capacity - 1;
+		}
+	}
+
+	private static final class Segment
+	{
+		volatile Table table = new Table(INITIAL_SEGMENT_CAPACITY);
+
+		/** The number of entries, guarded by the segment's monitor */
+		int size;
+	}
+
+	private final Segment [] segments;
+	private final int segmentShift;
+
+	/**
+	 * Constructs a cache with a default number of segments that depends on
+	 * the number of available processors.
+	 */
+	public ConcurrentLongDoubleCache()
+	{
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * Constructs a cache with at least the given number of segments.
+	 *
+	 * @param concurrencyLevel the number of segments, rounded up to the
+	 *  next power of two.
+	 */
+	public ConcurrentLongDoubleCache(int concurrencyLevel)
+	{
+		int numberOfSegments = 1;
+		int bits = 0;
+		while (numberOfSegments < concurrencyLevel)
+		{
+			numberOfSegments <<= 1;
+			bits++;
+		}
+
+		segments = new Segment[numberOfSegments];
+		for (int i = 0; i < numberOfSegments; i++)
+			segments[i] = new Segment();
+		segmentShift = 64 - bits;
+	}
+
+	private static long hash(long key)
+	{
+		key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+		key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return key ^ (key >>> 33);
+	}
+
+	private Segment segmentFor(long hash)
+	{
+		if (segments.length == 1)
+			return segments[0];
+		return segments[(int)(hash >>> segmentShift)];
+	}
+
+	/**
+	 * Returns the value that is associated to the given key.
+	 *
+	 * @param key the key, must not be negative.
+	 * @return the value or NaN if there is no value for the key.
+	 */
+	public double get(long key)
+	{
+		long h = hash(key);
+		Table t = segmentFor(h).table;
+		long stored = key + 1;
+
+		for (int i = (int)h & t.mask;; i = (i + 1) & t.mask)
+		{
+			long k = t.keys.get(i);
+			if (k == stored)
+				return Double.longBitsToDouble(t.values.get(i));
+			if (k == FREE)
+				return Double.NaN;
+		}
+	}
+
+	/**
+	 * Associates the given value to the given key. An existing value is
+	 * replaced.
+	 *
+	 * @param key the key, must not be negative.
+	 * @param value the value
+	 */
+	public void put(long key, double value)
+	{
+		if (key < 0)
+			throw new IllegalArgumentException("Keys must not be negative");
+
+		long h = hash(key);
+		Segment s = segmentFor(h);
+		long stored = key + 1;
+		long bits = Double.doubleToRawLongBits(value);
+
+		synchronized (s)
+		{
+			Table t = s.table;
+			int i = (int)h & t.mask;
+			for (;; i = (i + 1) & t.mask)
+			{
+				long k = t.keys.get(i);
+				if (k == stored)
+				{
+					t.values.set(i, bits);
+					return;
+				}
+				if (k == FREE)
+					break;
+			}
+
+			/* The value must be visible before the key */
+			t.values.set(i, bits);
+			t.keys.set(i, stored);
+
+			if (++s.size * 4 > (t.mask + 1) * 3)
+				s.table = rehash(t);
+		}
+	}
+
+	/**
+	 * Returns a table of double capacity with all entries of the given table.
+	 */
+	private static Table rehash(Table t)
+	{
+		Table nt = new Table((t.mask + 1) * 2);
+		for (int j = 0; j <= t.mask; j++)
+		{
+			long k = t.keys.get(j);
+			if (k == FREE)
+				continue;
+
+			int i = (int)hash(k - 1) & nt.mask;
+			while (nt.keys.get(i) != FREE)
+				i = (i + 1) & nt.mask;
+			nt.values.set(i, t.values.get(j));
+			nt.keys.set(i, k);
+		}
+		return nt;
+	}
+
+	/**
+	 * @return the number of entries.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (Segment s : segments)
+		{
+			synchronized (s)
+			{
+				size += s.size;
+			}
+		}
+		return size;
+	}
+}
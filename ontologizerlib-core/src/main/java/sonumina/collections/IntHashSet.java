@@ -0,0 +1,258 @@
+package sonumina.collections;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints.
+ *
+ * The elements are stored in a primitive array using open addressing with
+ * linear probing, i.e., no objects are allocated per element and no values
+ * are boxed. The set is not thread-safe.
+ */
+public final class IntHashSet
+{
+	/** Marks free slots, whether this value is contained is stored separately */
+	private static final int FREE = 0;
+
+	private int [] keys;
+	private int mask;
+	private int maxFill;
+	private int size;
+
+	private boolean containsFreeKey;
+
+	public IntHashSet()
+	{
+		this(PrimitiveHashing.DEFAULT_EXPECTED_SIZE);
+	}
+
+	/**
+	 * Constructs an empty set that can hold the given number of elements
+	 * without growing.
+	 *
+	 * @param expectedSize
+	 */
+	public IntHashSet(int expectedSize)
+	{
+		allocate(PrimitiveHashing.tableSize(expectedSize));
+	}
+
+	/**
+	 * Constructs a set containing the given elements.
+	 *
+	 * @param elements
+	 * @return the new set
+	 */
+	public static IntHashSet newSetWith(int ... elements)
+	{
+		IntHashSet set = new IntHashSet(elements.length);
+		set.addAll(elements);
+		return set;
+	}
+
+	private void allocate(int tableSize)
+	{
+		keys = new int[tableSize];
+		mask = tableSize - 1;
+		maxFill = PrimitiveHashing.maxFill(tableSize);
+	}
+
+	private int slot(int key)
+	{
+		int pos = PrimitiveHashing.mix(key) & mask;
+		int k;
+		while ((k = keys[pos]) != FREE && k != key)
+			pos = (pos + 1) & mask;
+		return pos;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean contains(int key)
+	{
+		if (key == FREE)
+			return containsFreeKey;
+		return keys[slot(key)] != FREE;
+	}
+
+	/**
+	 * @param elements
+	 * @return whether all of the given elements are contained.
+	 */
+	public boolean containsAll(int ... elements)
+	{
+		for (int e : elements)
+		{
+			if (!contains(e))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the given element.
+	 *
+	 * @param key
+	 * @return whether the element was not contained before.
+	 */
+	public boolean add(int key)
+	{
+		if (key == FREE)
+		{
+			if (containsFreeKey)
+				return false;
+			containsFreeKey = true;
+			size++;
+			return true;
+		}
+
+		int pos = slot(key);
+		if (keys[pos] != FREE)
+			return false;
+
+		keys[pos] = key;
+		if (++size > maxFill)
+			rehash(keys.length * 2);
+		return true;
+	}
+
+	/**
+	 * Adds all of the given elements.
+	 *
+	 * @param elements
+	 */
+	public void addAll(int ... elements)
+	{
+		if (size + elements.length > maxFill)
+			rehash(PrimitiveHashing.tableSize(size + elements.length));
+		for (int e : elements)
+			add(e);
+	}
+
+	/**
+	 * Adds all elements of the given set.
+	 *
+	 * @param set
+	 */
+	public void addAll(IntHashSet set)
+	{
+		if (size + set.size > maxFill)
+			rehash(PrimitiveHashing.tableSize(size + set.size));
+		if (set.containsFreeKey)
+			add(FREE);
+		for (int k : set.keys)
+		{
+			if (k != FREE)
+				add(k);
+		}
+	}
+
+	/**
+	 * Removes the given element.
+	 *
+	 * @param key
+	 * @return whether the element was contained.
+	 */
+	public boolean remove(int key)
+	{
+		if (key == FREE)
+		{
+			if (!containsFreeKey)
+				return false;
+			containsFreeKey = false;
+			size--;
+			return true;
+		}
+
+		int pos = slot(key);
+		if (keys[pos] == FREE)
+			return false;
+		size--;
+		shiftKeys(pos);
+		return true;
+	}
+
+	/**
+	 * Removes all of the given elements.
+	 *
+	 * @param elements
+	 */
+	public void removeAll(int ... elements)
+	{
+		for (int e : elements)
+			remove(e);
+	}
+
+	/**
+	 * Closes the gap at the given position by moving elements of the same
+	 * probe sequence backwards.
+	 */
+	private void shiftKeys(int pos)
+	{
+		while (true)
+		{
+			int last = pos;
+			int k;
+			while (true)
+			{
+				pos = (pos + 1) & mask;
+				if ((k = keys[pos]) == FREE)
+				{
+					keys[last] = FREE;
+					return;
+				}
+				if (PrimitiveHashing.canShift(last, PrimitiveHashing.mix(k) & mask, pos))
+					break;
+			}
+			keys[last] = k;
+		}
+	}
+
+	public void clear()
+	{
+		Arrays.fill(keys, FREE);
+		containsFreeKey = false;
+		size = 0;
+	}
+
+	/**
+	 * @return the elements in no particular order.
+	 */
+	public int [] toArray()
+	{
+		int [] result = new int[size];
+		int j = 0;
+		if (containsFreeKey)
+			result[j++] = FREE;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != FREE)
+				result[j++] = keys[i];
+		}
+		return result;
+	}
+
+	private void rehash(int tableSize)
+	{
+		int [] oldKeys = keys;
+		allocate(tableSize);
+
+		for (int k : oldKeys)
+		{
+			if (k == FREE)
+				continue;
+			int pos = PrimitiveHashing.mix(k) & mask;
+			while (keys[pos] != FREE)
+				pos = (pos + 1) & mask;
+			keys[pos] = k;
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package sonumina.collections;
+
+import java.util.Arrays;
+
+/**
+ * A hashmap mapping ints to ints.
+ *
+ * Entries are stored in two primitive arrays using open addressing with
+ * linear probing, i.e., no objects are allocated per entry and no values
+ * are boxed. The map is not thread-safe.
+ */
+public final class IntIntHashMap
+{
+	/** The value that is returned by get() for keys that are not present */
+	public static final int EMPTY_VALUE = 0;
+
+	/** Marks free slots, the entry of this key is stored separately */
+	private static final int FREE = 0;
+
+	private int [] keys;
+	private int [] values;
+	private int mask;
+	private int maxFill;
+	private int size;
+
+	private boolean containsFreeKey;
+	private int freeKeyValue;
+
+	/**
+	 * Callback for forEachKeyValue().
+	 */
+	public static interface IntIntProcedure
+	{
+		public void keyValue(int key, int value);
+	}
+
+	public IntIntHashMap()
+	{
+		this(PrimitiveHashing.DEFAULT_EXPECTED_SIZE);
+	}
+
+	/**
+	 * Constructs an empty map that can hold the given number of entries
+	 * without growing.
+	 *
+	 * @param expectedSize
+	 */
+	public IntIntHashMap(int expectedSize)
+	{
+		allocate(PrimitiveHashing.tableSize(expectedSize));
+	}
+
+	private void allocate(int tableSize)
+	{
+		keys = new int[tableSize];
+		values = new int[tableSize];
+		mask = tableSize - 1;
+		maxFill = PrimitiveHashing.maxFill(tableSize);
+	}
+
+	/**
+	 * Returns the slot of the given key or the free slot where the key
+	 * would be placed.
+	 */
+	private int slot(int key)
+	{
+		int pos = PrimitiveHashing.mix(key) & mask;
+		int k;
+		while ((k = keys[pos]) != FREE && k != key)
+			pos = (pos + 1) & mask;
+		return pos;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean containsKey(int key)
+	{
+		if (key == FREE)
+			return containsFreeKey;
+		return keys[slot(key)] != FREE;
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the key or EMPTY_VALUE if the key is not present.
+	 */
+	public int get(int key)
+	{
+		return getIfAbsent(key, EMPTY_VALUE);
+	}
+
+	/**
+	 * @param key
+	 * @param ifAbsent
+	 * @return the value of the key or ifAbsent if the key is not present.
+	 */
+	public int getIfAbsent(int key, int ifAbsent)
+	{
+		if (key == FREE)
+			return containsFreeKey ? freeKeyValue : ifAbsent;
+
+		int pos = slot(key);
+		if (keys[pos] == FREE)
+			return ifAbsent;
+		return values[pos];
+	}
+
+	public void put(int key, int value)
+	{
+		if (key == FREE)
+		{
+			if (!containsFreeKey)
+			{
+				containsFreeKey = true;
+				size++;
+			}
+			freeKeyValue = value;
+			return;
+		}
+
+		int pos = slot(key);
+		values[pos] = value;
+		if (keys[pos] == FREE)
+		{
+			keys[pos] = key;
+			if (++size > maxFill)
+				rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Adds the given value to the value of the key. If the key is not
+	 * present, it is put with the given value.
+	 *
+	 * @param key
+	 * @param toBeAdded
+	 * @return the new value.
+	 */
+	public int addToValue(int key, int toBeAdded)
+	{
+		if (key == FREE)
+		{
+			put(key, (containsFreeKey ? freeKeyValue : 0) + toBeAdded);
+			return freeKeyValue;
+		}
+
+		int pos = slot(key);
+		if (keys[pos] != FREE)
+			return values[pos] += toBeAdded;
+
+		keys[pos] = key;
+		values[pos] = toBeAdded;
+		if (++size > maxFill)
+			rehash(keys.length * 2);
+		return toBeAdded;
+	}
+
+	/**
+	 * Removes the given key.
+	 *
+	 * @param key
+	 * @return whether the key was present.
+	 */
+	public boolean remove(int key)
+	{
+		if (key == FREE)
+		{
+			if (!containsFreeKey)
+				return false;
+			containsFreeKey = false;
+			size--;
+			return true;
+		}
+
+		int pos = slot(key);
+		if (keys[pos] == FREE)
+			return false;
+		size--;
+		shiftKeys(pos);
+		return true;
+	}
+
+	/**
+	 * Closes the gap at the given position by moving entries of the same
+	 * probe sequence backwards.
+	 */
+	private void shiftKeys(int pos)
+	{
+		while (true)
+		{
+			int last = pos;
+			int k;
+			while (true)
+			{
+				pos = (pos + 1) & mask;
+				if ((k = keys[pos]) == FREE)
+				{
+					keys[last] = FREE;
+					return;
+				}
+				if (PrimitiveHashing.canShift(last, PrimitiveHashing.mix(k) & mask, pos))
+					break;
+			}
+			keys[last] = k;
+			values[last] = values[pos];
+		}
+	}
+
+	public void clear()
+	{
+		Arrays.fill(keys, FREE);
+		containsFreeKey = false;
+		size = 0;
+	}
+
+	/**
+	 * Puts all entries of the given map into this map.
+	 *
+	 * @param map
+	 */
+	public void putAll(IntIntHashMap map)
+	{
+		if (size + map.size > maxFill)
+			rehash(PrimitiveHashing.tableSize(size + map.size));
+
+		if (map.containsFreeKey)
+			put(FREE, map.freeKeyValue);
+		for (int i = 0; i < map.keys.length; i++)
+		{
+			if (map.keys[i] != FREE)
+				put(map.keys[i], map.values[i]);
+		}
+	}
+
+	/**
+	 * @return the keys in no particular order.
+	 */
+	public int [] keys()
+	{
+		int [] result = new int[size];
+		int j = 0;
+		if (containsFreeKey)
+			result[j++] = FREE;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != FREE)
+				result[j++] = keys[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @return the values in the same order as returned by keys().
+	 */
+	public int [] values()
+	{
+		int [] result = new int[size];
+		int j = 0;
+		if (containsFreeKey)
+			result[j++] = freeKeyValue;
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != FREE)
+				result[j++] = values[i];
+		}
+		return result;
+	}
+
+	public void forEachKeyValue(IntIntProcedure procedure)
+	{
+		if (containsFreeKey)
+			procedure.keyValue(FREE, freeKeyValue);
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != FREE)
+				procedure.keyValue(keys[i], values[i]);
+		}
+	}
+
+	private void rehash(int tableSize)
+	{
+		int [] oldKeys = keys;
+		int [] oldValues = values;
+		allocate(tableSize);
+
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			int k = oldKeys[i];
+			if (k == FREE)
+				continue;
+			int pos = PrimitiveHashing.mix(k) & mask;
+			while (keys[pos] != FREE)
+				pos = (pos + 1) & mask;
+			keys[pos] = k;
+			values[pos] = oldValues[i];
+		}
+	}
+}
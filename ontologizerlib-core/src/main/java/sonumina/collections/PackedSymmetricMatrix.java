@@ -0,0 +1,251 @@
+package sonumina.collections;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A symmetric square matrix of floats of which only the upper triangle
+ * (including the diagonal) is stored. The rows of the triangle are packed
+ * one after another, i.e., the matrix needs n * (n + 1) / 2 entries.
+ *
+ * The entries can be stored on the heap, in direct buffers outside of the
+ * heap or in a memory mapped file. As a single buffer can't hold more than
+ * 2^31 bytes, the entries are distributed over several chunks, hence large
+ * matrices, e.g., with more than 20000 rows, are supported by all storages.
+ *
+ * Distinct entries may be written by several threads concurrently. Writes
+ * become visible to other threads only after a proper synchronization,
+ * e.g., after joining the writing threads.
+ */
+public final class PackedSymmetricMatrix
+{
+	/** Defines where the entries are stored */
+	public static enum Storage
+	{
+		/** Entries are stored in arrays on the heap */
+		HEAP,
+
+		/** Entries are stored in direct buffers outside of the heap */
+		DIRECT,
+
+		/** Entries are stored in a memory mapped file */
+		MAPPED
+	}
+
+	/** Default number of entries of a chunk, as power of two (1 GiB) */
+	private static final int CHUNK_BITS = 28;
+
+	private final int n;
+	private final Storage storage;
+	private final int chunkBits;
+	private final long chunkMask;
+	private final FloatBuffer [] chunks;
+	private final MappedByteBuffer [] mapped;
+
+	PackedSymmetricMatrix(int n, Storage storage, File file, int chunkBits) throws IOException
+	{
+		if (n < 0)
+			throw new IllegalArgumentException("The dimension must not be negative");
+
+		this.n = n;
+		this.storage = storage;
+		this.chunkBits = chunkBits;
+		this.chunkMask = (1L << chunkBits) - 1;
+
+		long size = getNumberOfEntries(n);
+		int numberOfChunks = (int)((size + chunkMask) >>> chunkBits);
+		chunks = new FloatBuffer[numberOfChunks];
+		mapped = storage == Storage.MAPPED ? new MappedByteBuffer[numberOfChunks] : null;
+
+		RandomAccessFile raf = null;
+		try
+		{
+			if (storage == Storage.MAPPED)
+			{
+				raf = new RandomAccessFile(file, "rw");
+				raf.setLength(size * 4);
+			}
+
+			for (int c = 0; c < numberOfChunks; c++)
+			{
+				long from = (long)c << chunkBits;
+				int length = (int)Math.min(size - from, 1L << chunkBits);
+
+				switch (storage)
+				{
+				case HEAP:
+					chunks[c] = FloatBuffer.allocate(length);
+					break;
+				case DIRECT:
+					chunks[c] = ByteBuffer.allocateDirect(length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+					break;
+				case MAPPED:
+					/* The mapping stays valid after the channel has been closed */
+					mapped[c] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, from * 4, length * 4L);
+					chunks[c] = mapped[c].order(ByteOrder.nativeOrder()).asFloatBuffer();
+					break;
+				}
+			}
+		} finally
+		{
+			if (raf != null)
+				raf.close();
+		}
+	}
+
+	/**
+	 * Creates a matrix whose entries are stored on the heap.
+	 *
+	 * @param n the number of rows and columns
+	 * @return the matrix with all entries set to 0.
+	 */
+	public static PackedSymmetricMatrix create(int n)
+	{
+		try
+		{
+			return new PackedSymmetricMatrix(n, Storage.HEAP, null, CHUNK_BITS);
+		} catch (IOException e)
+		{
+			/* Not possible */
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates a matrix whose entries are stored in direct buffers, i.e.,
+	 * outside of the heap.
+	 *
+	 * @param n the number of rows and columns
+	 * @return the matrix with all entries set to 0.
+	 */
+	public static PackedSymmetricMatrix createDirect(int n)
+	{
+		try
+		{
+			return new PackedSymmetricMatrix(n, Storage.DIRECT, null, CHUNK_BITS);
+		} catch (IOException e)
+		{
+			/* Not possible */
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates a matrix whose entries are stored in the given file, which is
+	 * mapped into memory. The file is created or resized as needed. Its
+	 * content is undefined unless it has been written by a matrix of the
+	 * same dimension before.
+	 *
+	 * @param n the number of rows and columns
+	 * @param file the file that backs the matrix.
+	 * @return the matrix
+	 * @throws IOException if the file couldn't be mapped.
+	 */
+	public static PackedSymmetricMatrix createMapped(int n, File file) throws IOException
+	{
+		return new PackedSymmetricMatrix(n, Storage.MAPPED, file, CHUNK_BITS);
+	}
+
+	/**
+	 * Returns the number of entries that a packed matrix of the given
+	 * dimension needs.
+	 *
+	 * @param n the number of rows and columns
+	 * @return the number of entries.
+	 */
+	public static long getNumberOfEntries(int n)
+	{
+		return (long)n * (n + 1) / 2;
+	}
+
+	/**
+	 * @return the number of rows and columns.
+	 */
+	public int getDimension()
+	{
+		return n;
+	}
+
+	/**
+	 * @return where the entries are stored.
+	 */
+	public Storage getStorage()
+	{
+		return storage;
+	}
+
+	/**
+	 * Returns the position of the given entry within the packed triangle.
+	 *
+	 * @param i the row, must not be larger than j.
+	 * @param j the column
+	 * @return the position
+	 */
+	private long index(int i, int j)
+	{
+		return (long)i * n - (long)i * (i - 1) / 2 + (j - i);
+	}
+
+	/**
+	 * Returns the entry at the given row and column.
+	 *
+	 * @param i the row
+	 * @param j the column
+	 * @return the value of the entry
+	 */
+	public float get(int i, int j)
+	{
+		if (i > j)
+		{
+			int t = i;
+			i = j;
+			j = t;
+		}
+		if (i < 0 || j >= n)
+			throw new IndexOutOfBoundsException("(" + i + "," + j + ") is outside of a " + n + "x" + n + " matrix");
+
+		long idx = index(i, j);
+		return chunks[(int)(idx >>> chunkBits)].get((int)(idx & chunkMask));
+	}
+
+	/**
+	 * Sets the entry at the given row and column and thus also the one at
+	 * the transposed position.
+	 *
+	 * @param i the row
+	 * @param j the column
+	 * @param value the new value of the entry
+	 */
+	public void set(int i, int j, float value)
+	{
+		if (i > j)
+		{
+			int t = i;
+			i = j;
+			j = t;
+		}
+		if (i < 0 || j >= n)
+			throw new IndexOutOfBoundsException("(" + i + "," + j + ") is outside of a " + n + "x" + n + " matrix");
+
+		long idx = index(i, j);
+		chunks[(int)(idx >>> chunkBits)].put((int)(idx & chunkMask), value);
+	}
+
+	/**
+	 * Writes all entries of a memory mapped matrix to its file. Does nothing
+	 * for the other storages.
+	 */
+	public void force()
+	{
+		if (mapped == null)
+			return;
+		for (MappedByteBuffer m : mapped)
+			m.force();
+	}
+}
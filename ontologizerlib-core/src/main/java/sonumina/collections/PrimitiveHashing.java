@@ -0,0 +1,68 @@
+package sonumina.collections;
+
+/**
+ * Common functions of the open addressing hash tables for primitive keys.
+ */
+final class PrimitiveHashing
+{
+	/** The maximal ratio of occupied slots */
+	static final float LOAD_FACTOR = 0.5f;
+
+	static final int DEFAULT_EXPECTED_SIZE = 8;
+
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	private PrimitiveHashing()
+	{
+	}
+
+	/**
+	 * Scrambles the bits of the given key, so that keys that differ only
+	 * in the high bits are distributed to different slots.
+	 */
+	static int mix(int key)
+	{
+		int h = key * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	static int mix(long key)
+	{
+		long h = key * 0x9e3779b97f4a7c15L;
+		h ^= h >>> 32;
+		return (int)(h ^ (h >>> 16));
+	}
+
+	/**
+	 * Returns the size of a table that is able to hold the given number of
+	 * entries without exceeding the load factor. The size is a power of two.
+	 */
+	static int tableSize(int expectedSize)
+	{
+		if (expectedSize < 0)
+			throw new IllegalArgumentException("The expected size must not be negative");
+
+		long needed = (long)Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+		if (needed > MAXIMUM_CAPACITY)
+			return MAXIMUM_CAPACITY;
+		return Math.max(2, Integer.highestOneBit((int)needed - 1) << 1);
+	}
+
+	/**
+	 * Returns the number of entries the table of the given size can hold.
+	 */
+	static int maxFill(int tableSize)
+	{
+		return Math.min(tableSize - 1, (int)(tableSize * LOAD_FACTOR));
+	}
+
+	/**
+	 * Returns whether the entry at pos, whose home slot is slot, may be
+	 * moved into the freed slot last. Used to close gaps after a removal
+	 * (linear probing).
+	 */
+	static boolean canShift(int last, int slot, int pos)
+	{
+		return last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos);
+	}
+}
@@ -1,6 +1,7 @@
 package sonumina.math.graph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -276,4 +277,44 @@ public class Algorithms
 
 		return order;
 	}
+
+	/**
+	 * Returns the vertices of a graph that is given by its adjacency arrays
+	 * in a topological order. Note that if the length of the returned array
+	 * differs from the number of vertices we have a cycle.
+	 *
+	 * @param vertexChildren the indices of the children of each vertex.
+	 * @return the indices of the vertices in a topological order.
+	 */
+	public static int [] topologicalOrder(int [][] vertexChildren)
+	{
+		int numOfVertices = vertexChildren.length;
+		int [] numParents = new int[numOfVertices];
+
+		for (int [] children : vertexChildren)
+			for (int c : children)
+				numParents[c]++;
+
+		/* The order array doubles as queue of the vertices with no
+		 * (remaining) parents */
+		int [] order = new int[numOfVertices];
+		int tail = 0;
+
+		for (int v = 0; v < numOfVertices; v++)
+			if (numParents[v] == 0)
+				order[tail++] = v;
+
+		for (int head = 0; head < tail; head++)
+		{
+			for (int c : vertexChildren[order[head]])
+			{
+				if (--numParents[c] == 0)
+					order[tail++] = c;
+			}
+		}
+
+		if (tail != numOfVertices)
+			return Arrays.copyOf(order, tail);
+		return order;
+	}
 }
@@ -0,0 +1,494 @@
+package sonumina.math.graph;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import sonumina.collections.IntMapper;
+import sonumina.collections.ObjectIntHashMap;
+
+/**
+ * An immutable snapshot of a directed graph in which vertices are addressed by
+ * dense int indices. The edges are stored in compressed sparse row format, i.e.,
+ * the edges of a vertex are stored consecutively in a targets array and an offsets
+ * array points to the first edge of each vertex. This is done for both directions.
+ * The data of an edge is stored as a byte that points into a small table of the
+ * distinct edge data objects, hence at most 256 distinct edge data objects are
+ * supported.
+ *
+ * Neighbours can be iterated without any allocation, e.g.,
+ * <pre>
+ * for (int e = g.getFirstOutEdge(v); e &lt; g.getEndOutEdge(v); e++)
+ *     visit(g.getOutEdgeTarget(e));
+ * </pre>
+ *
+ * @param <V> the type of the vertices
+ * @param <ED> the type of the data that can be associated with each edge.
+ */
+public final class FrozenDirectedGraph<V,ED> implements IDirectedGraph<V>, Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** Maps the vertices to their indices */
+	private IntMapper<V> mapper;
+
+	/** The index of the first out edge of each vertex, has one extra entry at the end */
+	private int [] outOffsets;
+
+	/** The destination vertices of the out edges */
+	private int [] outTargets;
+
+	/** The types of the out edges */
+	private byte [] outTypes;
+
+	/** The index of the first in edge of each vertex, has one extra entry at the end */
+	private int [] inOffsets;
+
+	/** The source vertices of the in edges */
+	private int [] inSources;
+
+	/** The types of the in edges */
+	private byte [] inTypes;
+
+	/** The distinct edge data objects, indexed by the edge types */
+	private Object [] edgeData;
+
+	private FrozenDirectedGraph()
+	{
+	}
+
+	/**
+	 * @return the number of vertices.
+	 */
+	public int getNumberOfVertices()
+	{
+		return mapper.getSize();
+	}
+
+	/**
+	 * @return the number of edges.
+	 */
+	public int getNumberOfEdges()
+	{
+		return outTargets.length;
+	}
+
+	/**
+	 * Returns the vertex at the given index.
+	 *
+	 * @param index
+	 * @return the vertex
+	 */
+	public V getVertex(int index)
+	{
+		return mapper.get(index);
+	}
+
+	/**
+	 * Returns the index of the given vertex.
+	 *
+	 * @param v
+	 * @return the index or -1 if the vertex is not part of the graph.
+	 */
+	public int getVertexIndex(V v)
+	{
+		return mapper.getIndex(v);
+	}
+
+	/**
+	 * @param v
+	 * @return whether the given vertex is part of the graph.
+	 */
+	public boolean containsVertex(V v)
+	{
+		return mapper.getIndex(v) != -1;
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the number of edges that point to the vertex.
+	 */
+	public int getInDegree(int v)
+	{
+		return inOffsets[v + 1] - inOffsets[v];
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the number of edges that start at the vertex.
+	 */
+	public int getOutDegree(int v)
+	{
+		return outOffsets[v + 1] - outOffsets[v];
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the index of the first out edge of the given vertex.
+	 */
+	public int getFirstOutEdge(int v)
+	{
+		return outOffsets[v];
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the index after the last out edge of the given vertex.
+	 */
+	public int getEndOutEdge(int v)
+	{
+		return outOffsets[v + 1];
+	}
+
+	/**
+	 * @param e the index of the out edge
+	 * @return the index of the vertex the out edge points to.
+	 */
+	public int getOutEdgeTarget(int e)
+	{
+		return outTargets[e];
+	}
+
+	/**
+	 * @param e the index of the out edge
+	 * @return the type of the out edge.
+	 */
+	public int getOutEdgeType(int e)
+	{
+		return outTypes[e] & 0xff;
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the index of the first in edge of the given vertex.
+	 */
+	public int getFirstInEdge(int v)
+	{
+		return inOffsets[v];
+	}
+
+	/**
+	 * @param v the index of the vertex
+	 * @return the index after the last in edge of the given vertex.
+	 */
+	public int getEndInEdge(int v)
+	{
+		return inOffsets[v + 1];
+	}
+
+	/**
+	 * @param e the index of the in edge
+	 * @return the index of the vertex the in edge starts at.
+	 */
+	public int getInEdgeSource(int e)
+	{
+		return inSources[e];
+	}
+
+	/**
+	 * @param e the index of the in edge
+	 * @return the type of the in edge.
+	 */
+	public int getInEdgeType(int e)
+	{
+		return inTypes[e] & 0xff;
+	}
+
+	/**
+	 * @return the number of distinct edge types.
+	 */
+	public int getNumberOfEdgeTypes()
+	{
+		return edgeData.length;
+	}
+
+	/**
+	 * Returns the edge data that corresponds to the given type.
+	 *
+	 * @param type
+	 * @return the edge data.
+	 */
+	@SuppressWarnings("unchecked")
+	public ED getEdgeData(int type)
+	{
+		return (ED)edgeData[type];
+	}
+
+	/**
+	 * Returns the index of the in edge that goes from source to dest.
+	 *
+	 * @param source the index of the source vertex
+	 * @param dest the index of the dest vertex
+	 * @return the index of the in edge or -1 if there is no such edge.
+	 */
+	public int findInEdge(int source, int dest)
+	{
+		for (int e = inOffsets[dest]; e < inOffsets[dest + 1]; e++)
+		{
+			if (inSources[e] == source)
+				return e;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns for each edge type whether edges of this type shall be left out
+	 * according to the given filter.
+	 *
+	 * @param filter
+	 * @return an array indexed by edge types.
+	 */
+	public boolean [] getLeftOutEdgeTypes(IEdgeFilter<ED> filter)
+	{
+		boolean [] leaveOut = new boolean[edgeData.length];
+		for (int t = 0; t < edgeData.length; t++)
+			leaveOut[t] = filter.leaveOut(getEdgeData(t));
+		return leaveOut;
+	}
+
+	/**
+	 * Performs a breadth-first search starting at the given vertex indices. Vertices
+	 * are visited in the same order as Algorithms.bfs() would visit them on the graph
+	 * from which this graph was created.
+	 *
+	 * @param initial the indices of the vertices to start with. The visitor is called for them, too.
+	 * @param againstFlow whether the search is done against the direction of the edges.
+	 * @param leaveOut defines for each edge type whether edges of this type are
+	 *  not followed or null if all edges shall be followed.
+	 * @param visitor the visitor that is called for every visited vertex.
+	 */
+	public void bfs(int [] initial, boolean againstFlow, boolean [] leaveOut, IIntVisitor visitor)
+	{
+		int [] offsets = againstFlow ? inOffsets : outOffsets;
+		int [] neighbours = againstFlow ? inSources : outTargets;
+		byte [] types = againstFlow ? inTypes : outTypes;
+
+		boolean [] visited = new boolean[mapper.getSize()];
+		int [] queue = new int[mapper.getSize() + initial.length];
+		int tail = 0;
+
+		for (int v : initial)
+		{
+			queue[tail++] = v;
+			visited[v] = true;
+			if (!visitor.visited(v))
+				return;
+		}
+
+		for (int head = 0; head < tail; head++)
+		{
+			int v = queue[head];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+			{
+				if (leaveOut != null && leaveOut[types[e] & 0xff])
+					continue;
+
+				int n = neighbours[e];
+				if (!visited[n])
+				{
+					queue[tail++] = n;
+					visited[n] = true;
+					if (!visitor.visited(n))
+						return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Performs a breadth-first search starting at the given vertices. See
+	 * bfs(int[], boolean, boolean[], IIntVisitor) for details.
+	 *
+	 * @param initial the vertices to start with. All of them must be part of the graph.
+	 * @param againstFlow whether the search is done against the direction of the edges.
+	 * @param leaveOut defines for each edge type whether edges of this type are
+	 *  not followed or null if all edges shall be followed.
+	 * @param visitor the visitor that is called for every visited vertex.
+	 */
+	public void bfs(Collection<V> initial, boolean againstFlow, boolean [] leaveOut, final IVisitor<V> visitor)
+	{
+		int [] initialIndices = new int[initial.size()];
+		int i = 0;
+		for (V v : initial)
+		{
+			int idx = mapper.getIndex(v);
+			if (idx == -1)
+				throw new IllegalArgumentException("Vertex " + v + " not in graph.");
+			initialIndices[i++] = idx;
+		}
+
+		bfs(initialIndices, againstFlow, leaveOut, new IIntVisitor()
+		{
+			@Override
+			public boolean visited(int v)
+			{
+				return visitor.visited(mapper.get(v));
+			}
+		});
+	}
+
+	/**
+	 * Returns whether there is a path from source to dest.
+	 *
+	 * @param source the index of the source vertex
+	 * @param dest the index of the destination vertex
+	 * @return whether there is a path from source to dest or not
+	 */
+	public boolean existsPath(int source, final int dest)
+	{
+		final boolean [] found = new boolean[1];
+		bfs(new int[]{source}, false, null, new IIntVisitor()
+		{
+			@Override
+			public boolean visited(int v)
+			{
+				if (v == dest)
+				{
+					found[0] = true;
+					return false;
+				}
+				return true;
+			}
+		});
+		return found[0];
+	}
+
+	/**
+	 * An iterable over a range of the given neighbour array.
+	 */
+	private final class NeighbourIterable implements Iterable<V>
+	{
+		private final int [] neighbours;
+		private final int from;
+		private final int to;
+
+		private NeighbourIterable(int [] neighbours, int from, int to)
+		{
+			this.neighbours = neighbours;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Iterator<V> iterator()
+		{
+			return new Iterator<V>()
+			{
+				private int e = from;
+
+				@Override
+				public boolean hasNext()
+				{
+					return e < to;
+				}
+
+				@Override
+				public V next()
+				{
+					if (e >= to)
+						throw new NoSuchElementException();
+					return mapper.get(neighbours[e++]);
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	@Override
+	public Iterable<V> getParentNodes(V v)
+	{
+		int idx = mapper.getIndex(v);
+		return new NeighbourIterable(inSources, inOffsets[idx], inOffsets[idx + 1]);
+	}
+
+	@Override
+	public Iterable<V> getChildNodes(V v)
+	{
+		int idx = mapper.getIndex(v);
+		return new NeighbourIterable(outTargets, outOffsets[idx], outOffsets[idx + 1]);
+	}
+
+	/**
+	 * Create a frozen graph from the given directed graph. The indices of the
+	 * vertices follow the iteration order of the vertices of the given graph.
+	 * The order of the in and out edges of each vertex is retained.
+	 *
+	 * @param graph the graph to freeze
+	 * @return the frozen graph.
+	 */
+	public static <V,ED> FrozenDirectedGraph<V,ED> create(DirectedGraph<V,ED> graph)
+	{
+		FrozenDirectedGraph<V,ED> g = new FrozenDirectedGraph<V,ED>();
+		IntMapper<V> mapper = g.mapper = IntMapper.create(graph.getVertices(), graph.getNumberOfVertices());
+		int n = mapper.getSize();
+		int m = graph.getNumberEdges();
+
+		ObjectIntHashMap<ED> edgeData2Type = new ObjectIntHashMap<ED>();
+		List<ED> edgeData = new ArrayList<ED>();
+
+		g.outOffsets = new int[n + 1];
+		g.outTargets = new int[m];
+		g.outTypes = new byte[m];
+		int e = 0;
+		for (int v = 0; v < n; v++)
+		{
+			g.outOffsets[v] = e;
+			Iterator<Edge<V,ED>> iter = graph.getOutEdges(mapper.get(v));
+			while (iter.hasNext())
+			{
+				Edge<V,ED> edge = iter.next();
+				g.outTargets[e] = mapper.getIndex(edge.getDest());
+				g.outTypes[e] = edgeType(edge.getData(), edgeData2Type, edgeData);
+				e++;
+			}
+		}
+		g.outOffsets[n] = e;
+
+		g.inOffsets = new int[n + 1];
+		g.inSources = new int[m];
+		g.inTypes = new byte[m];
+		e = 0;
+		for (int v = 0; v < n; v++)
+		{
+			g.inOffsets[v] = e;
+			Iterator<Edge<V,ED>> iter = graph.getInEdges(mapper.get(v));
+			while (iter.hasNext())
+			{
+				Edge<V,ED> edge = iter.next();
+				g.inSources[e] = mapper.getIndex(edge.getSource());
+				g.inTypes[e] = edgeType(edge.getData(), edgeData2Type, edgeData);
+				e++;
+			}
+		}
+		g.inOffsets[n] = e;
+
+		g.edgeData = edgeData.toArray();
+		return g;
+	}
+
+	/**
+	 * Returns the type of the given edge data. If the data hasn't been seen before,
+	 * a new type is allocated.
+	 */
+	private static <ED> byte edgeType(ED data, ObjectIntHashMap<ED> edgeData2Type, List<ED> edgeData)
+	{
+		int type = edgeData2Type.getIfAbsent(data, -1);
+		if (type == -1)
+		{
+			type = edgeData.size();
+			if (type > 255)
+				throw new IllegalArgumentException("Too many distinct edge data objects, at most 256 are supported");
+			edgeData.add(data);
+			edgeData2Type.put(data, type);
+		}
+		return (byte)type;
+	}
+}
@@ -0,0 +1,18 @@
+package sonumina.math.graph;
+
+/**
+ * This interface is used as a callback mechanism by search methods
+ * that work on vertex indices.
+ */
+public interface IIntVisitor
+{
+	/**
+	 * Called for every vertex visited by the algorithm.
+	 *
+	 * @param vertex the index of the vertex that has been just visited.
+	 *
+	 * @return false if algorithm should be stopped (i.e. no further
+	 *         calls to this method will be issued) otherwise true
+	 */
+	boolean visited(int vertex);
+}
@@ -6,7 +6,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import sonumina.collections.CompressedBitmap;
 import sonumina.collections.IntMapper;
 import sonumina.collections.Map;
 
@@ -20,10 +24,27 @@ public final class SlimDirectedGraphView<V> implements Serializable
 {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Defines how the transitive closures, i.e., the ancestors and descendants
+	 * of the vertices, are stored.
+	 */
+	public static enum ClosureStorage
+	{
+		/** Sorted int arrays that are accessible via vertexAncestors and vertexDescendants */
+		ARRAYS,
+
+		/**
+		 * Compressed bitmaps. Needs much less memory for large graphs but
+		 * vertexAncestors and vertexDescendants are not available.
+		 */
+		COMPRESSED_BITMAPS
+	}
+
 	private IntMapper<V> mapper;
 
 	/** Contains all the ancestors of the terms (and the terms itself).
-	 * Note that the array of ancestors is sorted. */
+	 * Note that the array of ancestors is sorted. This is null if the
+	 * closures are stored as compressed bitmaps. */
 	public int [][] vertexAncestors;
 
 	/** Contains the parents of the terms */
@@ -33,9 +54,16 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	public int [][] vertexChildren;
 
 	/** Contains the descendants of the (i.e., children, grand-children, etc. and the term itself).
-	 * Note that the array of descendants is sorted.*/
+	 * Note that the array of descendants is sorted. This is null if the
+	 * closures are stored as compressed bitmaps. */
 	public int [][] vertexDescendants;
 
+	/** The ancestors of the terms if closures are stored as compressed bitmaps */
+	private CompressedBitmap [] ancestorBitmaps;
+
+	/** The descendants of the terms if closures are stored as compressed bitmaps */
+	private CompressedBitmap [] descendantBitmaps;
+
 	/**
 	 * Default constructor.
 	 */
@@ -92,6 +120,118 @@ public final class SlimDirectedGraphView<V> implements Serializable
 		return vertexArray;
 	}
 
+	/**
+	 * @return how the transitive closures are stored.
+	 */
+	public ClosureStorage getClosureStorage()
+	{
+		return ancestorBitmaps != null ? ClosureStorage.COMPRESSED_BITMAPS : ClosureStorage.ARRAYS;
+	}
+
+	/**
+	 * Returns the sorted indices of the ancestors of the vertex with the given index
+	 * (including the vertex itself). Unlike accessing vertexAncestors directly, this works
+	 * for all closure storages. For compressed bitmaps, a new array is created.
+	 *
+	 * @param i
+	 * @return the sorted array of ancestor indices.
+	 */
+	public int [] getAncestorIndices(int i)
+	{
+		if (ancestorBitmaps != null)
+			return ancestorBitmaps[i].toArray();
+		return vertexAncestors[i];
+	}
+
+	/**
+	 * Returns the sorted indices of the descendants of the vertex with the given index
+	 * (including the vertex itself). Unlike accessing vertexDescendants directly, this works
+	 * for all closure storages. For compressed bitmaps, a new array is created.
+	 *
+	 * @param i
+	 * @return the sorted array of descendant indices.
+	 */
+	public int [] getDescendantIndices(int i)
+	{
+		if (descendantBitmaps != null)
+			return descendantBitmaps[i].toArray();
+		return vertexDescendants[i];
+	}
+
+	/**
+	 * Returns the number of ancestors of the vertex with the given index (including
+	 * the vertex itself).
+	 *
+	 * @param i
+	 * @return the number of ancestors.
+	 */
+	public int getNumberOfAncestors(int i)
+	{
+		if (ancestorBitmaps != null)
+			return ancestorBitmaps[i].cardinality();
+		return vertexAncestors[i].length;
+	}
+
+	/**
+	 * Returns the number of descendants of the vertex with the given index (including
+	 * the vertex itself).
+	 *
+	 * @param i
+	 * @return the number of descendants.
+	 */
+	public int getNumberOfDescendants(int i)
+	{
+		if (descendantBitmaps != null)
+			return descendantBitmaps[i].cardinality();
+		return vertexDescendants[i].length;
+	}
+
+	/**
+	 * Returns the sorted indices of the vertices that are ancestors of both
+	 * vertices with index i and j.
+	 *
+	 * @param i
+	 * @param j
+	 * @return the sorted array of common ancestor indices.
+	 */
+	public int [] getCommonAncestors(int i, int j)
+	{
+		if (ancestorBitmaps != null)
+			return ancestorBitmaps[i].and(ancestorBitmaps[j]).toArray();
+
+		int [] a = vertexAncestors[i];
+		int [] b = vertexAncestors[j];
+		int [] c = new int[Math.min(a.length, b.length)];
+		int n = 0;
+		for (int k = 0, l = 0; k < a.length && l < b.length;)
+		{
+			if (a[k] < b[l]) k++;
+			else if (a[k] > b[l]) l++;
+			else
+			{
+				c[n++] = a[k];
+				k++;
+				l++;
+			}
+		}
+		return Arrays.copyOf(c, n);
+	}
+
+	/**
+	 * Returns the number of vertices that are ancestors of both vertices with
+	 * index i and j.
+	 *
+	 * @param i
+	 * @param j
+	 * @return the number of common ancestors.
+	 */
+	public int getNumberOfCommonAncestors(int i, int j)
+	{
+		if (ancestorBitmaps != null)
+			return ancestorBitmaps[i].andCardinality(ancestorBitmaps[j]);
+		return getCommonAncestors(i, j).length;
+	}
+
 	/**
 	 * Determines whether node with the index i is an ancestor of node with index j.
 	 * Note that the ancestors of a given term include the given term itself.
@@ -103,6 +243,9 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	 */
 	public boolean isAncestor(int i, int j)
 	{
+		if (ancestorBitmaps != null)
+			return ancestorBitmaps[j].contains(i);
+
 		int [] ancs = vertexAncestors[j];
 		int r 		=  Arrays.binarySearch(ancs,i);
 		return r >= 0;
@@ -120,6 +263,9 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	 */
 	public boolean isDescendant(int i, int j)
 	{
+		if (descendantBitmaps != null)
+			return descendantBitmaps[j].contains(i);
+
 		int [] descs 	= vertexDescendants[j];
 		int r 			= Arrays.binarySearch(descs,i);
 		return r >= 0;
@@ -181,7 +327,7 @@ public final class SlimDirectedGraphView<V> implements Serializable
 		/* get the index of the vertex */
 		int indexOfTerm 						= getVertexIndex(t);
 		/* get all descendent indices of the vertex */
-		int[] descendantIndices					= vertexDescendants[indexOfTerm];
+		int[] descendantIndices					= getDescendantIndices(indexOfTerm);
 
 		/* init the return list of vertex-objects */
 		ArrayList<V> descendantObjects = new ArrayList<V>(descendantIndices.length);
@@ -206,7 +352,7 @@ public final class SlimDirectedGraphView<V> implements Serializable
 		/* get the index of the vertex */
 		int indexOfTerm 							= getVertexIndex(t);
 		/* get all descendent indices of the vertex */
-		int[] ancestorIndices					= vertexAncestors[indexOfTerm];
+		int[] ancestorIndices					= getAncestorIndices(indexOfTerm);
 
 		/* init the return list of vertex-objects */
 		ArrayList<V> ancestorObjects 	= new ArrayList<V>(ancestorIndices.length);
@@ -265,14 +411,247 @@ public final class SlimDirectedGraphView<V> implements Serializable
 		return childrenObjects;
 	}
 
+	/**
+	 * Builds the transitive closures of all vertices of a graph given as adjacency arrays.
+	 * The closure of a vertex is the union of the vertex itself and the closures of its
+	 * neighbours (the parents for ancestors, the children for descendants). Vertices are
+	 * processed level by level so that the closures of all neighbours are known when a
+	 * vertex is processed and its closure can be obtained by merging the sorted closures
+	 * of the neighbours. Vertices of the same level are independent and are processed in
+	 * parallel if a pool is available.
+	 *
+	 * If the closures are to be compressed, the array of a vertex is compressed and
+	 * released as soon as all vertices that depend on it have been processed. This keeps
+	 * the peak memory consumption low.
+	 */
+	private static final class ClosureBuilder
+	{
+		/** Number of vertices of a level that are processed by a single task */
+		private static final int TASK_SIZE = 256;
+
+		/** The neighbours whose closures make up the closure of a vertex */
+		private final int [][] neighbours;
+
+		/** The vertices that depend on the closure of a vertex, i.e., the reverse of neighbours */
+		private final int [][] dependents;
+
+		/** The closures as sorted arrays */
+		private final int [][] closures;
+
+		/** The compressed closures, or null if no compression is requested */
+		private final CompressedBitmap [] bitmaps;
+
+		/** Number of dependents of a vertex that still need to be processed */
+		private final AtomicIntegerArray remaining;
+
+		/** Temporary merge buffers for each thread */
+		private final ThreadLocal<int [][]> buffers;
+
+		private ClosureBuilder(int [][] neighbours, int [][] dependents, boolean compressed)
+		{
+			final int n = neighbours.length;
+
+			this.neighbours = neighbours;
+			this.dependents = dependents;
+			this.closures = new int[n][];
+
+			if (compressed)
+			{
+				bitmaps = new CompressedBitmap[n];
+				remaining = new AtomicIntegerArray(n);
+				for (int v = 0; v < n; v++)
+					remaining.set(v, dependents[v].length);
+			} else
+			{
+				bitmaps = null;
+				remaining = null;
+			}
+
+			buffers = new ThreadLocal<int [][]>()
+			{
+				@Override
+				protected int[][] initialValue()
+				{
+					return new int[2][n];
+				}
+			};
+		}
+
+		/**
+		 * Build the closure of the given vertex. The closures of all neighbours must
+		 * be available.
+		 *
+		 * @param v the index of the vertex
+		 */
+		private void build(int v)
+		{
+			int [][] buf = buffers.get();
+			int [] cur = buf[0];
+			int [] next = buf[1];
+			int len = 1;
+
+			cur[0] = v;
+			for (int nb : neighbours[v])
+			{
+				len = union(cur, len, closures[nb], next);
+				int [] tmp = cur;
+				cur = next;
+				next = tmp;
+			}
+			closures[v] = Arrays.copyOf(cur, len);
+
+			if (bitmaps != null)
+			{
+				/* Neighbours whose dependents are all done are no longer needed as array */
+				for (int nb : neighbours[v])
+				{
+					if (remaining.decrementAndGet(nb) == 0)
+						compress(nb);
+				}
+				if (dependents[v].length == 0)
+					compress(v);
+			}
+		}
+
+		private void compress(int v)
+		{
+			bitmaps[v] = CompressedBitmap.create(closures[v]);
+			closures[v] = null;
+		}
+
+		/**
+		 * Fork join task that builds the closures of a range of vertices of a single level.
+		 */
+		private final class LevelTask extends RecursiveAction
+		{
+			private static final long serialVersionUID = 1L;
+
+			private final int [] vertices;
+			private final int from;
+			private final int to;
+
+			private LevelTask(int [] vertices, int from, int to)
+			{
+				this.vertices = vertices;
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected void compute()
+			{
+				if (to - from <= TASK_SIZE)
+				{
+					for (int i = from; i < to; i++)
+						build(vertices[i]);
+				} else
+				{
+					int mid = (from + to) >>> 1;
+					invokeAll(new LevelTask(vertices, from, mid), new LevelTask(vertices, mid, to));
+				}
+			}
+		}
+
+		/**
+		 * Build the closures of all vertices.
+		 *
+		 * @param order the vertices in an order in which all neighbours of a vertex
+		 *  appear before the vertex itself.
+		 * @param pool the pool used for parallel processing or null.
+		 */
+		private void build(int [] order, ForkJoinPool pool)
+		{
+			if (pool == null)
+			{
+				for (int v : order)
+					build(v);
+				return;
+			}
+
+			for (int [] levelVertices : levels(order))
+			{
+				if (levelVertices.length <= TASK_SIZE)
+				{
+					for (int v : levelVertices)
+						build(v);
+				} else
+				{
+					pool.invoke(new LevelTask(levelVertices, 0, levelVertices.length));
+				}
+			}
+		}
+
+		/**
+		 * Partition the vertices into levels such that the neighbours of each vertex
+		 * are on lower levels than the vertex itself.
+		 *
+		 * @param order see build()
+		 * @return the vertices of each level.
+		 */
+		private int [][] levels(int [] order)
+		{
+			int [] level = new int[neighbours.length];
+			int numLevels = 0;
+
+			for (int v : order)
+			{
+				int l = 0;
+				for (int nb : neighbours[v])
+					l = Math.max(l, level[nb] + 1);
+				level[v] = l;
+				numLevels = Math.max(numLevels, l + 1);
+			}
+
+			int [] levelSize = new int[numLevels];
+			for (int v : order)
+				levelSize[level[v]]++;
+
+			int [][] levels = new int[numLevels][];
+			for (int l = 0; l < numLevels; l++)
+				levels[l] = new int[levelSize[l]];
+
+			int [] pos = new int[numLevels];
+			for (int v : order)
+				levels[level[v]][pos[level[v]]++] = v;
+
+			return levels;
+		}
+
+		/**
+		 * Computes the union of the sorted arrays a (with a given length) and b.
+		 *
+		 * @return the length of the union stored in c.
+		 */
+		private static int union(int [] a, int alen, int [] b, int [] c)
+		{
+			int i = 0, j = 0, k = 0;
+			while (i < alen && j < b.length)
+			{
+				if (a[i] < b[j]) c[k++] = a[i++];
+				else if (a[i] > b[j]) c[k++] = b[j++];
+				else
+				{
+					c[k++] = a[i++];
+					j++;
+				}
+			}
+			while (i < alen) c[k++] = a[i++];
+			while (j < b.length) c[k++] = b[j++];
+			return k;
+		}
+	}
+
 	/**
 	 * Initialize the slim graph view from a directed graph.
 	 *
 	 * @param slim
 	 * @param graph
+	 * @param storage defines how the closures are stored
+	 * @param pool the pool used to build the closures in parallel or null
 	 */
-	private static <V,ED> void init(SlimDirectedGraphView<V> slim, DirectedGraph<V,ED> graph)
+	private static <V,ED> void init(SlimDirectedGraphView<V> slim, DirectedGraph<V,ED> graph, ClosureStorage storage, ForkJoinPool pool)
 	{
+		boolean compressed = storage == ClosureStorage.COMPRESSED_BITMAPS;
 		int i;
 		IntMapper<V> mapper;
 
@@ -287,8 +666,61 @@ public final class SlimDirectedGraphView<V> implements Serializable
 			slim.vertexParents[i] = createIndexArray(mapper,graph.getParentNodes(v));
 		}
 
+		/* Term children stuff */
+		slim.vertexChildren = new int[mapper.getSize()][];
+		for (i=0;i<mapper.getSize();i++)
+		{
+			V v = mapper.get(i);
+			slim.vertexChildren[i] = createIndexArray(mapper,graph.getChildNodes(v));
+		}
+
+		int [] order = Algorithms.topologicalOrder(slim.vertexChildren);
+		if (order.length != mapper.getSize())
+		{
+			/* The graph contains a cycle, fall back to a bfs for each vertex */
+			initClosuresByBFS(slim, graph, compressed);
+			return;
+		}
+
+		/* Term ancestor stuff. Parents come before their children in the topological order */
+		ClosureBuilder ancestors = new ClosureBuilder(slim.vertexParents, slim.vertexChildren, compressed);
+		ancestors.build(order, pool);
+
+		/* Term descendants stuff. We need the reversed order here */
+		int [] reversedOrder = new int[order.length];
+		for (i=0;i<order.length;i++)
+			reversedOrder[i] = order[order.length - 1 - i];
+		ClosureBuilder descendants = new ClosureBuilder(slim.vertexChildren, slim.vertexParents, compressed);
+		descendants.build(reversedOrder, pool);
+
+		if (compressed)
+		{
+			slim.ancestorBitmaps = ancestors.bitmaps;
+			slim.descendantBitmaps = descendants.bitmaps;
+		} else
+		{
+			slim.vertexAncestors = ancestors.closures;
+			slim.vertexDescendants = descendants.closures;
+		}
+	}
+
+	/**
+	 * Initialize the closures by performing a bfs for each vertex. This works
+	 * also for graphs with cycles.
+	 *
+	 * @param slim
+	 * @param graph
+	 * @param compressed whether the closures shall be compressed
+	 */
+	private static <V,ED> void initClosuresByBFS(SlimDirectedGraphView<V> slim, DirectedGraph<V,ED> graph, boolean compressed)
+	{
+		int i;
+		IntMapper<V> mapper = slim.mapper;
+
 		/* Term ancestor stuff */
-		slim.vertexAncestors = new int[mapper.getSize()][];
+		int [][] vertexAncestors = new int[mapper.getSize()][];
+		if (compressed) slim.ancestorBitmaps = new CompressedBitmap[mapper.getSize()];
+		else slim.vertexAncestors = vertexAncestors;
 		for (i=0;i<slim.mapper.getSize();i++)
 		{
 			V v = mapper.get(i);
@@ -300,22 +732,22 @@ public final class SlimDirectedGraphView<V> implements Serializable
 					return true;
 				};
 			});
-			slim.vertexAncestors[i] = createIndexArray(mapper,ancestors);
+			vertexAncestors[i] = createIndexArray(mapper,ancestors);
 
 			/* Sort them, as we require this for binary search in isAncestor() */
-			Arrays.sort(slim.vertexAncestors[i]);
-		}
+			Arrays.sort(vertexAncestors[i]);
 
-		/* Term children stuff */
-		slim.vertexChildren = new int[mapper.getSize()][];
-		for (i=0;i<mapper.getSize();i++)
-		{
-			V v = mapper.get(i);
-			slim.vertexChildren[i] = createIndexArray(mapper,graph.getChildNodes(v));
+			if (compressed)
+			{
+				slim.ancestorBitmaps[i] = CompressedBitmap.create(vertexAncestors[i]);
+				vertexAncestors[i] = null;
+			}
 		}
 
 		/* Term descendants stuff */
-		slim.vertexDescendants = new int[mapper.getSize()][];
+		int [][] vertexDescendants = new int[mapper.getSize()][];
+		if (compressed) slim.descendantBitmaps = new CompressedBitmap[mapper.getSize()];
+		else slim.vertexDescendants = vertexDescendants;
 		for (i=0;i<mapper.getSize();i++)
 		{
 			V v = mapper.get(i);
@@ -327,10 +759,16 @@ public final class SlimDirectedGraphView<V> implements Serializable
 					return true;
 				};
 			});
-			slim.vertexDescendants[i] = createIndexArray(mapper, descendants);
+			vertexDescendants[i] = createIndexArray(mapper, descendants);
 
 			/* Sort them, as we require this for binary search in isDescendant() */
-			Arrays.sort(slim.vertexDescendants[i]);
+			Arrays.sort(vertexDescendants[i]);
+
+			if (compressed)
+			{
+				slim.descendantBitmaps[i] = CompressedBitmap.create(vertexDescendants[i]);
+				vertexDescendants[i] = null;
+			}
 		}
 	}
 
@@ -342,20 +780,21 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	 */
 	private static <V> int[] createIndexArray(IntMapper<V> vertex2Index, Iterable<V> iterable)
 	{
-		ArrayList<Integer> indicesList = new ArrayList<Integer>(10);
+		int [] indicesArray = new int[4];
+		int numIndices = 0;
 
 		for (V p : iterable)
 		{
 			int idx = vertex2Index.getIndex(p);
-			if (idx != -1)
-				indicesList.add(idx);
-		}
+			if (idx == -1)
+				continue;
 
-		int [] indicesArray = new int[indicesList.size()];
-		for (int i=0;i<indicesList.size();i++)
-			indicesArray[i] = indicesList.get(i);
+			if (numIndices == indicesArray.length)
+				indicesArray = Arrays.copyOf(indicesArray, numIndices * 2);
+			indicesArray[numIndices++] = idx;
+		}
 
-		return indicesArray;
+		return Arrays.copyOf(indicesArray, numIndices);
 	}
 
 	/**
@@ -365,9 +804,36 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	 * @return the slim graph corresponding to graph
 	 */
 	public static <V,ED> SlimDirectedGraphView<V> create(DirectedGraph<V,ED> graph)
+	{
+		return create(graph, ClosureStorage.ARRAYS);
+	}
+
+	/**
+	 * Create the slim view from the given directed graph.
+	 *
+	 * @param graph
+	 * @param storage defines how the ancestors and descendants are stored
+	 * @return the slim graph corresponding to graph
+	 */
+	public static <V,ED> SlimDirectedGraphView<V> create(DirectedGraph<V,ED> graph, ClosureStorage storage)
+	{
+		return create(graph, storage, null);
+	}
+
+	/**
+	 * Create the slim view from the given directed graph. The closures are
+	 * built in parallel using the given pool.
+	 *
+	 * @param graph
+	 * @param storage defines how the ancestors and descendants are stored
+	 * @param pool the pool that is used to build the closures in parallel.
+	 *  If null, the closures are built sequentially.
+	 * @return the slim graph corresponding to graph
+	 */
+	public static <V,ED> SlimDirectedGraphView<V> create(DirectedGraph<V,ED> graph, ClosureStorage storage, ForkJoinPool pool)
 	{
 		SlimDirectedGraphView<V> g = new SlimDirectedGraphView<V>();
-		init(g, graph);
+		init(g, graph, storage, pool);
 		return g;
 	}
 
@@ -381,13 +847,45 @@ public final class SlimDirectedGraphView<V> implements Serializable
 	 */
 	public static <K,ED, V> SlimDirectedGraphView<V> create(DirectedGraph<K,ED> graph, final Map<K,V> map)
 	{
-		final SlimDirectedGraphView<K> kg = create(graph);
+		return create(graph, map, ClosureStorage.ARRAYS);
+	}
+
+	/**
+	 * Create the slim view from the given directed graph but apply a mapping of the underlying
+	 * type.
+	 *
+	 * @param graph the graph from which a static mapping
+	 * @param map mapping
+	 * @param storage defines how the ancestors and descendants are stored
+	 * @return the slim graph view.
+	 */
+	public static <K,ED, V> SlimDirectedGraphView<V> create(DirectedGraph<K,ED> graph, final Map<K,V> map, ClosureStorage storage)
+	{
+		return create(graph, map, storage, null);
+	}
+
+	/**
+	 * Create the slim view from the given directed graph but apply a mapping of the underlying
+	 * type. The closures are built in parallel using the given pool.
+	 *
+	 * @param graph the graph from which a static mapping
+	 * @param map mapping
+	 * @param storage defines how the ancestors and descendants are stored
+	 * @param pool the pool that is used to build the closures in parallel.
+	 *  If null, the closures are built sequentially.
+	 * @return the slim graph view.
+	 */
+	public static <K,ED, V> SlimDirectedGraphView<V> create(DirectedGraph<K,ED> graph, final Map<K,V> map, ClosureStorage storage, ForkJoinPool pool)
+	{
+		final SlimDirectedGraphView<K> kg = create(graph, storage, pool);
 		SlimDirectedGraphView<V> vg = new SlimDirectedGraphView<V>();
 
 		vg.vertexAncestors = kg.vertexAncestors;
 		vg.vertexChildren = kg.vertexChildren;
 		vg.vertexDescendants = kg.vertexDescendants;
 		vg.vertexParents = kg.vertexParents;
+		vg.ancestorBitmaps = kg.ancestorBitmaps;
+		vg.descendantBitmaps = kg.descendantBitmaps;
 
 		vg.mapper = IntMapper.create(new Iterable<V>()
 		{
@@ -11,7 +11,9 @@ import java.util.List;
 import org.hamcrest.CustomMatcher;
 import org.junit.Test;
 
+import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 
 /**
  * Simple matcher checking if value is between two other ones (inclusive).
@@ -105,4 +107,44 @@ public class AnnotationContextTest
 		assertEquals(id1, ac.mapSynonym(SYN1_1));
 		assertEquals(id1, ac.mapSynonym(SYN1_2));
 	}
+
+	@Test
+	public void testAnnotationContextByteRanges()
+	{
+		List<ByteString> symbols = Arrays.asList(ITEM1, ITEM2, ITEM3);
+		HashMap<ByteString,ByteString> synonym2Item = new HashMap<ByteString,ByteString>();
+		synonym2Item.put(SYN1_1, ITEM1);
+		AnnotationContext ac = new AnnotationContext(symbols, synonym2Item, null);
+
+		byte [] line = "ITEM2\tSYN1_1\tITEM4".getBytes();
+		assertEquals(ac.mapSymbol(ITEM2), ac.mapSymbol(line, 0, 5));
+		assertEquals(ac.mapSymbol(ITEM1), ac.mapSynonym(line, 6, 6));
+		assertEquals(Integer.MAX_VALUE, ac.mapSymbol(line, 13, 5));
+		assertEquals(Integer.MAX_VALUE, ac.mapSynonym(line, 0, 5));
+		assertEquals(Integer.MAX_VALUE, ac.mapObjectID(line, 0, 5));
+	}
+
+	@Test
+	public void testAnnotationContextByteRangesOfArena()
+	{
+		ByteStringArena strings = new ByteStringArena();
+		byte [] line = "S1\tAAC1\tSYN1\tS2\tAAC2\tOTHER".getBytes();
+		Association a1 = new Association(strings.intern(line, 0, 2), strings.intern(line, 3, 4), null, null, new TermID("GO:0000001"), false, null);
+		Association a2 = new Association(strings.intern(line, 13, 2), strings.intern(line, 16, 4), null, null, new TermID("GO:0000002"), false, null);
+		strings.intern(line, 21, 5);
+
+		AnnotationMapBuilder builder = new AnnotationMapBuilder(null, strings);
+		builder.add(a1, new ByteString[]{strings.intern(line, 8, 4)}, 1);
+		builder.add(a2, null, 2);
+		AnnotationContext ac = builder.build();
+
+		/* The names are looked up in the given arena without adding them again */
+		assertEquals(ac.mapSymbol(a1.getObjectSymbol()), ac.mapSymbol(line, 3, 4));
+		assertEquals(ac.mapSymbol(a2.getObjectSymbol()), ac.mapSymbol(line, 16, 4));
+		assertEquals(ac.mapSymbol(a1.getObjectSymbol()), ac.mapSynonym(line, 8, 4));
+		assertEquals(Integer.MAX_VALUE, ac.mapSymbol(line, 21, 5));
+		assertEquals(Integer.MAX_VALUE, ac.mapSymbol(line, 0, 2));
+		assertEquals(ac.mapSymbol(a2.getObjectSymbol()), ac.mapObjectID(line, 13, 2));
+		assertEquals(6, strings.size());
+	}
 }
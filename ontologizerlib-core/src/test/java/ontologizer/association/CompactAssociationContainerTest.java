@@ -0,0 +1,168 @@
+package ontologizer.association;
+
+import static ontologizer.types.ByteString.b;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermIDInterner;
+import ontologizer.types.ByteString;
+
+public class CompactAssociationContainerTest
+{
+	private static Association gaf(String objectId, String symbol, String term, String evidence, String aspect)
+	{
+		return Association.createFromGAFLine("SGD\t" + objectId + "\t" + symbol + "\t\t" + term + "\tPMID:1\t" + evidence + "\t\t" + aspect + "\tname\t\tgene\ttaxon:4932\t20100308\tSGD");
+	}
+
+	private static CompactAssociationContainer create()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		assocs.add(gaf("S1", "AAC1", "GO:0000001", "IPI", "P"));
+		assocs.add(gaf("S1", "AAC1", "GO:0000002", "IEA", "F"));
+		assocs.add(gaf("S2", "AAC2", "GO:0000002", "IPI", "C"));
+		assocs.add(gaf("S3", "AAC3", "GO:0000003", "IEA", "P"));
+
+		AnnotationMapBuilder builder = new AnnotationMapBuilder();
+		for (int i = 0; i < assocs.size(); i++)
+			builder.add(assocs.get(i), null, i);
+		return CompactAssociationContainer.create(new AssociationContainer(assocs, builder.build()));
+	}
+
+	@Test
+	public void testColumns()
+	{
+		CompactAssociationContainer c = create();
+		assertEquals(3, c.getNumberOfItems());
+		assertEquals(4, c.getNumberOfAssociations());
+		assertEquals(3, c.getNumberOfTerms());
+
+		int aac1 = c.getItemIndex(b("AAC1"));
+		assertEquals(aac1, c.getItemIndex(b("S1")));
+		assertEquals(-1, c.getItemIndex(b("AAC4")));
+		assertEquals(b("AAC1"), c.getItem(aac1));
+		assertEquals(2, c.getEnd(aac1) - c.getStart(aac1));
+
+		int a = c.getStart(aac1);
+		assertEquals(new TermID("GO:0000001"), c.getTermID(a));
+		assertEquals(b("IPI"), c.getEvidence(a));
+		assertEquals('P', c.getAspect(a));
+		assertFalse(c.hasNotQualifier(a));
+		assertEquals(new TermID("GO:0000002"), c.getTermID(a + 1));
+		assertEquals('F', c.getAspect(a + 1));
+
+		/* Equal terms share the ordinal */
+		int aac2 = c.getItemIndex(b("AAC2"));
+		assertEquals(c.getTermOrdinal(a + 1), c.getTermOrdinal(c.getStart(aac2)));
+		assertSame(c.getTermID(a + 1), c.getTermIDOfOrdinal(c.getTermOrdinal(c.getStart(aac2))));
+	}
+
+	@Test
+	public void testFilter()
+	{
+		CompactAssociationContainer c = create();
+		Set<ByteString> evidences = new HashSet<ByteString>();
+		evidences.add(b("IPI"));
+		CompactAssociationContainer ipi = c.filter(evidences);
+
+		assertSame(c, c.filter(null));
+		assertEquals(c.getNumberOfAssociations(), ipi.getNumberOfAssociations());
+
+		int accepted = 0;
+		for (int a = 0; a < ipi.getNumberOfAssociations(); a++)
+		{
+			assertTrue(c.isAccepted(a));
+			if (ipi.isAccepted(a))
+			{
+				assertEquals(b("IPI"), ipi.getEvidence(a));
+				accepted++;
+			}
+		}
+		assertEquals(2, accepted);
+
+		Map<String,Integer> counts = c.getAllEvidenceCodes();
+		assertEquals(2, counts.get("IPI").intValue());
+		assertEquals(2, counts.get("IEA").intValue());
+		assertEquals(1, ipi.getAllEvidenceCodes().size());
+
+		/* Filters are combined */
+		evidences.clear();
+		evidences.add(b("IEA"));
+		assertTrue(ipi.filter(evidences).getAllEvidenceCodes().isEmpty());
+	}
+
+	@Test
+	public void testSharedByContainer()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		assocs.add(gaf("S1", "AAC1", "GO:0000001", "IPI", "P"));
+		AnnotationMapBuilder builder = new AnnotationMapBuilder();
+		builder.add(assocs.get(0), null, 0);
+		AssociationContainer container = new AssociationContainer(assocs, builder.build());
+
+		TermIDInterner terms = new TermIDInterner();
+		terms.intern(new TermID("GO:0000002"));
+		CompactAssociationContainer c = container.getCompactContainer(terms);
+		assertSame(c, container.getCompactContainer(terms));
+		assertEquals(1, c.getNumberOfAssociations());
+
+		/* The ordinals are the ones of the pool */
+		assertEquals(2, c.getNumberOfTerms());
+		assertEquals(1, c.getTermOrdinal(0));
+		assertEquals(terms.getOrdinal(new TermID("GO:0000001")), c.getTermOrdinal(0));
+		assertSame(terms.get(1), c.getTermID(0));
+
+		/* Another pool yields another representation */
+		TermIDInterner otherTerms = new TermIDInterner();
+		CompactAssociationContainer other = container.getCompactContainer(otherTerms);
+		assertEquals(0, other.getTermOrdinal(0));
+		assertSame(other, container.getCompactContainer(otherTerms));
+	}
+
+	@Test
+	public void testManyEvidenceCodes()
+	{
+		List<Association> assocs = new ArrayList<Association>();
+		for (int i = 0; i < 300; i++)
+			assocs.add(gaf("S" + (i % 7), "AAC" + (i % 7), String.format("GO:%07d", i), "E" + i, "P"));
+
+		AnnotationMapBuilder builder = new AnnotationMapBuilder();
+		for (int i = 0; i < assocs.size(); i++)
+			builder.add(assocs.get(i), null, i);
+		CompactAssociationContainer c = CompactAssociationContainer.create(new AssociationContainer(assocs, builder.build()));
+
+		assertEquals(300, c.getNumberOfAssociations());
+		assertEquals(300, c.getAllEvidenceCodes().size());
+
+		Set<ByteString> seen = new HashSet<ByteString>();
+		for (int a = 0; a < c.getNumberOfAssociations(); a++)
+			assertTrue(seen.add(c.getEvidence(a)));
+		assertTrue(seen.contains(b("E0")));
+		assertTrue(seen.contains(b("E299")));
+
+		Set<ByteString> evidences = new HashSet<ByteString>();
+		evidences.add(b("E3"));
+		evidences.add(b("E280"));
+		CompactAssociationContainer filtered = c.filter(evidences);
+		int accepted = 0;
+		for (int a = 0; a < filtered.getNumberOfAssociations(); a++)
+		{
+			if (filtered.isAccepted(a))
+			{
+				assertTrue(evidences.contains(filtered.getEvidence(a)));
+				accepted++;
+			}
+		}
+		assertEquals(2, accepted);
+	}
+}
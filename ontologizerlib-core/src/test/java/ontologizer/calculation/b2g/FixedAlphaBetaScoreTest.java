@@ -0,0 +1,150 @@
+package ontologizer.calculation.b2g;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FixedAlphaBetaScoreTest
+{
+	private static final int NUM_TERMS = 30;
+	private static final int NUM_GENES = 200;
+
+	private int [][] termLinks;
+	private boolean [] observedGenes;
+
+	public FixedAlphaBetaScoreTest()
+	{
+		Random rnd = new Random(11);
+
+		termLinks = new int[NUM_TERMS][];
+		for (int t = 0; t < NUM_TERMS; t++)
+		{
+			boolean [] annotated = new boolean[NUM_GENES];
+			int n = 0;
+			for (int g = 0; g < NUM_GENES; g++)
+			{
+				if (rnd.nextInt(8) == 0)
+				{
+					annotated[g] = true;
+					n++;
+				}
+			}
+			termLinks[t] = new int[n];
+			for (int g = 0, i = 0; g < NUM_GENES; g++)
+			{
+				if (annotated[g])
+					termLinks[t][i++] = g;
+			}
+		}
+
+		observedGenes = new boolean[NUM_GENES];
+		for (int g = 0; g < NUM_GENES; g++)
+			observedGenes[g] = rnd.nextInt(5) == 0;
+	}
+
+	/**
+	 * Determines the confusion counts n00, n01, n10 and n11 of the current
+	 * state from scratch.
+	 */
+	private int [] counts(Bayes2GOScore score)
+	{
+		boolean [] hidden = new boolean[NUM_GENES];
+		for (int t : score.getActiveTerms())
+		{
+			for (int g : termLinks[t])
+				hidden[g] = true;
+		}
+
+		int [] counts = new int[4];
+		for (int g = 0; g < NUM_GENES; g++)
+			counts[(observedGenes[g] ? 2 : 0) + (hidden[g] ? 1 : 0)]++;
+		return counts;
+	}
+
+	/**
+	 * The score for given alpha, beta and p as stated by the model.
+	 */
+	private double naiveScore(FixedAlphaBetaScore score)
+	{
+		int [] n = counts(score);
+		double alpha = score.getAlpha();
+		double beta = score.getBeta();
+		double p = score.getP();
+		int m1 = score.getNumberOfActiveTerms();
+		int m0 = NUM_TERMS - m1;
+
+		return Math.log(alpha) * n[2] + Math.log(1 - alpha) * n[0] + Math.log(1 - beta) * n[3] + Math.log(beta) * n[1] +
+			Math.log(p) * m1 + Math.log(1 - p) * m0;
+	}
+
+	private static double logGamma(int a)
+	{
+		double sum = 0;
+		for (int i = 2; i < a; i++)
+			sum += Math.log(i);
+		return sum;
+	}
+
+	private static double logBeta(int a, int b)
+	{
+		return logGamma(a) + logGamma(b) - logGamma(a + b);
+	}
+
+	/**
+	 * The score if alpha, beta and p are integrated out using uniform priors.
+	 */
+	private double naiveIntegratedScore(FixedAlphaBetaScore score)
+	{
+		int [] n = counts(score);
+		int m1 = score.getNumberOfActiveTerms();
+		int m0 = NUM_TERMS - m1;
+
+		return logBeta(1 + n[2], 1 + n[0]) + logBeta(1 + n[1], 1 + n[3]) + logBeta(1 + m1, 1 + m0);
+	}
+
+	/**
+	 * Walks randomly through the state space and compares the score of each
+	 * visited state with the naive one. Every other proposal is undone.
+	 */
+	private void checkRandomProposals(FixedAlphaBetaScore score, boolean integrated)
+	{
+		Random rnd = new Random(3);
+		for (int i = 0; i < 20000; i++)
+		{
+			score.proposeNewState(rnd.nextLong());
+			double expected = integrated ? naiveIntegratedScore(score) : naiveScore(score);
+			assertEquals(expected, score.getScore(), Math.max(1, Math.abs(expected)) * 1e-12);
+
+			if (rnd.nextBoolean())
+				score.undoProposal();
+		}
+	}
+
+	@Test
+	public void testWithFixedParameters()
+	{
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(new Random(1), termLinks, observedGenes);
+		score.setAlpha(0.15);
+		score.setBeta(0.3);
+		score.setExpectedNumberOfTerms(4);
+		checkRandomProposals(score, false);
+	}
+
+	@Test
+	public void testWithSampledParameters()
+	{
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(new Random(1), termLinks, observedGenes);
+		score.setMaxAlpha(0.8);
+		checkRandomProposals(score, false);
+	}
+
+	@Test
+	public void testWithIntegratedOutParameters()
+	{
+		FixedAlphaBetaScore score = new FixedAlphaBetaScore(new Random(1), termLinks, observedGenes);
+		score.setIntegrateParams(true);
+		checkRandomProposals(score, true);
+	}
+}
@@ -0,0 +1,42 @@
+package ontologizer.enumeration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import ontologizer.association.ItemAssociations;
+import ontologizer.ontology.TermID;
+import ontologizer.types.ByteString;
+
+public class IndexedTermEnumeratorTest
+{
+	@Test
+	public void testAgainstTermEnumerator()
+	{
+		InternalOntology internal = new InternalOntology();
+		TermEnumerator e = new TermEnumerator(internal.graph);
+		for (ItemAssociations g2a : internal.assoc)
+			e.push(g2a);
+
+		IndexedTermEnumerator ie = IndexedTermEnumerator.create(internal.graph, internal.assoc);
+		assertEquals(e.getTotalNumberOfAnnotatedTerms(), ie.getTotalNumberOfAnnotatedTerms());
+		assertEquals(e.getAllAnnotatedTermsAsSet(), new HashSet<TermID>(ie.getAllAnnotatedTermsAsList()));
+
+		for (TermID tid : e)
+		{
+			TermAnnotations expected = e.getAnnotatedGenes(tid);
+			TermAnnotations actual = ie.getAnnotatedGenes(tid);
+			assertEquals(new HashSet<ByteString>(expected.totalAnnotated), new HashSet<ByteString>(actual.totalAnnotated));
+			assertEquals(new HashSet<ByteString>(expected.directAnnotated), new HashSet<ByteString>(actual.directAnnotated));
+			assertEquals(expected.totalAnnotatedCount(), ie.getTotalAnnotatedCount(ie.getTermIndex(tid)));
+
+			/* Item indices are sorted */
+			int [] items = ie.getTotalAnnotatedItems(ie.getTermIndex(tid));
+			for (int i = 1; i < items.length; i++)
+				assertTrue(items[i - 1] < items[i]);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import java.util.HashSet;
 import org.junit.Test;
 
 import ontologizer.association.AssociationContainer;
+import ontologizer.association.CompactAssociationContainer;
 import ontologizer.association.ItemAssociations;
 import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
@@ -44,4 +45,21 @@ public class TermEnumeratorTest
 		TermEnumerator e = TermEnumerator.ontology(internal.graph).forAll(internal.assocList).build();
 		assertEnumerator(internal.assoc, e);
 	}
+
+	@Test
+	public void testEnumeratorOnInternalOntologyViaCompactContainer()
+	{
+		InternalOntology internal = new InternalOntology();
+		CompactAssociationContainer compact = CompactAssociationContainer.create(internal.assoc);
+		TermEnumerator e = new TermEnumerator(internal.graph);
+		for (int i = 0; i < compact.getNumberOfItems(); i++)
+			e.push(compact, i);
+		assertEnumerator(internal.assoc, e);
+
+		TermEnumerator expected = new TermEnumerator(internal.graph);
+		for (ItemAssociations g2a : internal.assoc)
+			expected.push(g2a);
+		for (TermID t : expected)
+			assertEquals(expected.getAnnotatedGenes(t).directAnnotated, e.getAnnotatedGenes(t).directAnnotated);
+	}
 }
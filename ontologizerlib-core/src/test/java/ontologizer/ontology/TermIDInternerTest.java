@@ -0,0 +1,102 @@
+package ontologizer.ontology;
+
+import static ontologizer.ontology.TermID.tid;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TermIDInternerTest
+{
+	@Test
+	public void testIntern()
+	{
+		TermIDInterner interner = new TermIDInterner(1);
+		TermID t1 = tid("GO:0000001");
+		TermID t2 = tid("GO:0000002");
+		TermID t1b = tid("GO:0000001");
+		assertNotSame(t1, t1b);
+
+		assertSame(t1, interner.intern(t1));
+		assertSame(t2, interner.intern(t2));
+		assertSame(t1, interner.intern(t1b));
+		assertEquals(0, interner.getOrdinal(t1b));
+		assertEquals(1, interner.internOrdinal(t2));
+		assertEquals(-1, interner.getOrdinal(tid("GO:0000003")));
+		assertEquals(2, interner.size());
+		assertSame(t2, interner.get(1));
+	}
+
+	@Test
+	public void testTermMap()
+	{
+		List<Term> terms = new ArrayList<Term>();
+		terms.add(new Term("GO:0000001", "root"));
+		terms.add(new Term("GO:0000002", "a"));
+		terms.add(new Term("GO:0000003", "b"));
+		TermMap map = TermMap.create(terms);
+
+		TermIDInterner interner = map.getTermIDInterner();
+		assertSame(interner, map.getTermIDInterner());
+		for (int i = 0; i < map.size(); i++)
+		{
+			assertEquals(i, interner.getOrdinal(map.get(i).getID()));
+			assertSame(map.get(i).getID(), interner.intern(tid(map.get(i).getID().toString())));
+		}
+		assertEquals(map.size(), interner.internOrdinal(tid("GO:0000004")));
+	}
+
+	@Test
+	public void testConcurrent() throws Exception
+	{
+		final int numberOfIds = 5000;
+		final TermIDInterner interner = new TermIDInterner();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<TermID[]>> results = new ArrayList<Future<TermID[]>>();
+			for (int t = 0; t < 4; t++)
+			{
+				final int offset = t * 1000;
+				results.add(executor.submit(new Callable<TermID[]>()
+				{
+					@Override
+					public TermID[] call()
+					{
+						TermID [] canonical = new TermID[numberOfIds];
+						for (int i = 0; i < numberOfIds; i++)
+						{
+							int id = (i + offset) % numberOfIds;
+							canonical[id] = interner.intern(new TermID("HP:nonnumeric" + id));
+						}
+						return canonical;
+					}
+				}));
+			}
+
+			TermID [] first = results.get(0).get();
+			for (Future<TermID[]> r : results)
+			{
+				TermID [] canonical = r.get();
+				for (int i = 0; i < numberOfIds; i++)
+				{
+					assertSame(first[i], canonical[i]);
+					assertSame(first[i], interner.get(interner.getOrdinal(first[i])));
+				}
+			}
+			assertEquals(numberOfIds, interner.size());
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+}
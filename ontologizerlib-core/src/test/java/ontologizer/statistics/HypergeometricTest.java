@@ -0,0 +1,78 @@
+package ontologizer.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HypergeometricTest
+{
+	private Hypergeometric hyper = new Hypergeometric();
+
+	/*
+	 * Test method for 'ontologizer.Hypergeometric.dhyper(int, int, int, int)'
+	 */
+	@Test
+	public void testDhyper()
+	{
+		assertEquals(0.268,hyper.dhyper(4,45,20,10),0.001);
+		assertEquals(1,hyper.dhyper(10,10,10,10),0.00001);
+	}
+
+	@Test
+	public void testPhyper()
+	{
+		double result = hyper.phyper(2,1526,4,190,false);
+
+		assertTrue(result > 0.0069 && result < 0.0070);
+		assertTrue((hyper.phyper(22,1526,40,190,false) + hyper.phyper(22,1526,40,190,true)) == 1);
+		assertTrue((hyper.phyper(3,1526,40,190,false) + hyper.phyper(3,1526,40,190,true)) == 1);
+
+		/*
+		 * checking unreasonable numbers
+		 */
+		// drawing more white than available
+		assertTrue(hyper.phyper(4,8,3,6,false) == 0);
+		// drawing more white than drawn in total
+		assertTrue(hyper.phyper(4,8,5,3,false) == 0);
+		// drawing more white than available in total
+		assertTrue(hyper.phyper(10,8,5,12,false) == 0);
+	}
+
+	@Test
+	public void testUpperTail()
+	{
+		int [][] params = new int[][]{{1526,40,190},{1526,4,190},{45,20,10},{10000,500,30},{10000,3,9000}};
+		for (int [] param : params)
+		{
+			int N = param[0], M = param[1], n = param[2];
+			for (int x = 0; x <= Math.min(n, M) + 1; x++)
+			{
+				double p = 0;
+				for (int i = x; i <= Math.min(n, M); i++)
+					p += hyper.dhyper(i,N,M,n);
+				assertEquals(Math.min(p,1),hyper.upperTail(N,M,n,x),1e-9 * p);
+			}
+		}
+	}
+
+	@Test
+	public void testPhypergeometric()
+	{
+		assertEquals(hyper.upperTail(1526,40,190,10),hyper.phypergeometric(1526,40/1526.0,190,10),0);
+		/* Second call is answered by the cache */
+		assertEquals(hyper.upperTail(1526,40,190,10),hyper.phypergeometric(1526,40/1526.0,190,10),0);
+		assertEquals(hyper.upperTail(1000,40,190,10),hyper.phypergeometric(1000,40/1000.0,190,10),0);
+		assertEquals(1.0,hyper.phypergeometric(1526,40/1526.0,190,0),0);
+		assertEquals(1.0,hyper.phypergeometric(100,40/100.0,100,3),0);
+	}
+
+	@Test
+	public void testLogfact()
+	{
+		Hypergeometric h = new Hypergeometric(100);
+		assertEquals(Math.log(120),h.logfact(5),1e-12);
+		assertEquals(hyper.logfact(5000),h.logfact(5000),0);
+		assertEquals(0,h.logfact(0),0);
+	}
+}
@@ -0,0 +1,130 @@
+package ontologizer.types;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ByteStringArenaTest
+{
+	private static void check(ByteStringArena arena)
+	{
+		byte [] line = "xxABC\tDEF\tABC\t\tx".getBytes();
+
+		int abc = arena.add(line, 2, 3);
+		int def = arena.add(line, 6, 3);
+		int empty = arena.add(line, 14, 0);
+		assertEquals(0, abc);
+		assertEquals(1, def);
+		assertEquals(2, empty);
+		assertEquals(abc, arena.add(line, 10, 3));
+		assertEquals(3, arena.size());
+		assertEquals(6, arena.getNumberOfBytes());
+
+		assertEquals(abc, arena.find(new ByteString("ABC")));
+		assertEquals(ByteStringArena.NOT_FOUND, arena.find(line, 2, 2));
+		assertEquals(new ByteString("DEF"), arena.get(def));
+		assertEquals(new ByteString("DEF").hashCode(), arena.hashCode(def));
+		assertEquals(0, arena.length(empty));
+		assertTrue(arena.equals(def, line, 6, 3));
+		assertFalse(arena.equals(def, line, 2, 3));
+		assertEquals(new ByteString("ABC"), arena.intern(line, 10, 3));
+
+		/* Fill several pages and grow the table */
+		for (int i = 0; i < 5000; i++)
+			assertEquals(i + 3, arena.add(new ByteString("item" + i)));
+		for (int i = 0; i < 5000; i++)
+			assertEquals(new ByteString("item" + i), arena.get(arena.find(new ByteString("item" + i))));
+		assertEquals(def, arena.find(new ByteString("DEF")));
+
+		/* Strings that exceed a page */
+		byte [] large = new byte[100];
+		for (int i = 0; i < large.length; i++)
+			large[i] = (byte)('a' + i % 26);
+		int l = arena.add(large, 0, large.length);
+		assertEquals(l, arena.find(large, 0, large.length));
+		assertEquals(new ByteString(large), arena.get(l));
+		assertEquals(new ByteString("item4999"), arena.get(arena.add(new ByteString("item4999"))));
+	}
+
+	@Test
+	public void testHeap()
+	{
+		ByteStringArena arena = new ByteStringArena(64, false);
+		assertFalse(arena.isDirect());
+		check(arena);
+
+		/* Strings are views of the pages that are shared */
+		byte [] line = "ABC".getBytes();
+		ByteString s = arena.intern(line, 0, 3);
+		assertSame(s, arena.intern(line, 0, 3));
+		assertSame(s, arena.get(arena.find(s)));
+		assertEquals(64, s.array().length);
+	}
+
+	@Test
+	public void testDirect()
+	{
+		ByteStringArena arena = new ByteStringArena(64, true);
+		assertTrue(arena.isDirect());
+		check(arena);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testInvalidHandle()
+	{
+		new ByteStringArena().get(0);
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception
+	{
+		final ByteStringArena arena = new ByteStringArena(256, false);
+		final int numberOfStrings = 2000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<int []>> futures = new ArrayList<Future<int []>>();
+			for (int t = 0; t < 4; t++)
+			{
+				final int shift = t * 500;
+				futures.add(executor.submit(new Callable<int []>()
+				{
+					@Override
+					public int [] call()
+					{
+						int [] handles = new int[numberOfStrings];
+						for (int i = 0; i < numberOfStrings; i++)
+						{
+							int k = (i + shift) % numberOfStrings;
+							byte [] str = ("str" + k).getBytes();
+							handles[k] = arena.add(str, 0, str.length);
+						}
+						return handles;
+					}
+				}));
+			}
+
+			int [] handles = futures.get(0).get();
+			for (Future<int []> f : futures)
+				assertArrayEquals(handles, f.get());
+			assertEquals(numberOfStrings, arena.size());
+			for (int k = 0; k < numberOfStrings; k++)
+				assertEquals(new ByteString("str" + k), arena.get(handles[k]));
+		} finally
+		{
+			executor.shutdown();
+		}
+	}
+}
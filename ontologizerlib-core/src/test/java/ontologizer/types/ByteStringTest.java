@@ -1,8 +1,14 @@
 package ontologizer.types;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -97,4 +103,41 @@ public class ByteStringTest
 		ByteString newStr = oldStr.replace('_', ' ');
 		Assert.assertEquals("positively regulates", newStr.toString());
 	}
+
+	@Test
+	public void testView() throws Exception
+	{
+		byte [] page = "xxTest|TEst|1234yy".getBytes();
+		ByteString view = ByteString.view(page, 2, 14);
+		ByteString str = new ByteString("Test|TEst|1234");
+
+		assertEquals(14, view.length());
+		assertEquals("Test|TEst|1234", view.toString());
+		assertEquals(str, view);
+		assertEquals(view, str);
+		assertEquals(str.hashCode(), view.hashCode());
+		assertFalse(view.equals(ByteString.view(page, 2, 13)));
+		assertTrue(view.startsWith("Test"));
+		assertTrue(view.isPrefixOf("Test|TEst|1234yy"));
+		assertEquals(5, view.indexOf("TEst"));
+		assertEquals(5, view.indexOf(ByteString.view(page, 7, 4)));
+		assertEquals(-1, view.indexOf("yy"));
+		assertEquals("TEst", view.substring(5, 9).toString());
+		assertEquals(1234, ByteString.parseFirstInt(view));
+		assertEquals("Test TEst 1234", view.replace('|', ' ').toString());
+
+		ByteString [] split = view.split(PIPE);
+		Assert.assertEquals(3,split.length);
+		Assert.assertEquals("Test", split[0].toString());
+		Assert.assertEquals("1234", split[2].toString());
+
+		/* Views are serialized with their own bytes */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(view);
+		out.close();
+		ByteString read = (ByteString)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals(str, read);
+		assertEquals(14, read.array().length);
+	}
 }
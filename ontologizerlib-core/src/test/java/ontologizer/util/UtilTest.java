@@ -68,4 +68,31 @@ public class UtilTest
 		assertEquals(6, Util.commonIntsWithUnion(unionCardinality, a, b1, b2, b3, new int[]{7,8}));
 		assertEquals(8, unionCardinality[0]);
 	}
+
+	@Test
+	public void testCommonBits()
+	{
+		int [] a = new int[]{1,2,3,4,5,6,64,130};
+		int [] b = new int[]{4,5,130};
+		int [] c = new int[]{4,5,6,7,63,64};
+		int [] d = new int[]{7,8,9};
+
+		long [] aBits = Util.toBitSet(a, 131);
+		long [] bBits = Util.toBitSet(b, 131);
+		long [] cBits = Util.toBitSet(c, 131);
+		long [] dBits = Util.toBitSet(d, 10);
+
+		assertEquals(3, aBits.length);
+		assertEquals(1, dBits.length);
+		assertEquals(a.length, Util.commonBits(aBits, aBits));
+		assertEquals(3, Util.commonBits(aBits, bBits));
+		assertEquals(4, Util.commonBits(aBits, cBits));
+		assertEquals(0, Util.commonBits(aBits, dBits));
+		assertEquals(1, Util.commonBits(cBits, dBits));
+
+		assertEquals(Util.commonInts(a, b), Util.commonInts(a, bBits));
+		assertEquals(Util.commonInts(a, c), Util.commonInts(a, cBits));
+		assertEquals(Util.commonInts(a, d), Util.commonInts(a, dBits));
+		assertEquals(Util.commonInts(c, d), Util.commonInts(c, dBits));
+	}
 }
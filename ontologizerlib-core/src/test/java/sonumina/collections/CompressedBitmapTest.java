@@ -0,0 +1,93 @@
+package sonumina.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class CompressedBitmapTest
+{
+	private static int [] randomSortedValues(Random rnd, int n, int max)
+	{
+		TreeSet<Integer> set = new TreeSet<Integer>();
+		while (set.size() < n)
+			set.add(rnd.nextInt(max));
+		int [] values = new int[n];
+		int i = 0;
+		for (int v : set)
+			values[i++] = v;
+		return values;
+	}
+
+	@Test
+	public void testSparseAndDense()
+	{
+		Random rnd = new Random(1);
+
+		/* Both sparse and dense chunks and more than a single chunk */
+		int [] sparse = randomSortedValues(rnd, 100, 200000);
+		int [] dense = randomSortedValues(rnd, 50000, 70000);
+
+		for (int [] values : new int[][]{sparse, dense})
+		{
+			CompressedBitmap b = CompressedBitmap.create(values);
+			assertEquals(values.length, b.cardinality());
+			assertArrayEquals(values, b.toArray());
+
+			TreeSet<Integer> set = new TreeSet<Integer>();
+			for (int v : values)
+				set.add(v);
+			for (int i = 0; i < 200000; i += 7)
+				assertEquals(set.contains(i), b.contains(i));
+			assertFalse(b.contains(-1));
+		}
+	}
+
+	@Test
+	public void testIntersection()
+	{
+		Random rnd = new Random(2);
+		int [] a = randomSortedValues(rnd, 40000, 100000);
+		int [] b = randomSortedValues(rnd, 3000, 100000);
+
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for (int v : a)
+			expected.add(v);
+		TreeSet<Integer> bs = new TreeSet<Integer>();
+		for (int v : b)
+			bs.add(v);
+		expected.retainAll(bs);
+
+		CompressedBitmap ca = CompressedBitmap.create(a);
+		CompressedBitmap cb = CompressedBitmap.create(b);
+		CompressedBitmap cab = ca.and(cb);
+
+		assertEquals(expected.size(), ca.andCardinality(cb));
+		assertEquals(expected.size(), cb.andCardinality(ca));
+		assertEquals(expected.size(), cab.cardinality());
+		for (int v : expected)
+			assertTrue(cab.contains(v));
+		assertEquals(cab, cb.and(ca));
+		assertEquals(ca, ca.and(ca));
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		CompressedBitmap b = CompressedBitmap.create(new int[0]);
+		assertTrue(b.isEmpty());
+		assertFalse(b.contains(0));
+		assertEquals(0, b.and(CompressedBitmap.create(new int[]{1,2,3})).cardinality());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsorted()
+	{
+		CompressedBitmap.create(new int[]{3,2});
+	}
+}
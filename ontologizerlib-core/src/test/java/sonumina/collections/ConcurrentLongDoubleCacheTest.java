@@ -0,0 +1,73 @@
+package sonumina.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentLongDoubleCacheTest
+{
+	@Test
+	public void testPutAndGet()
+	{
+		ConcurrentLongDoubleCache cache = new ConcurrentLongDoubleCache(4);
+		assertTrue(Double.isNaN(cache.get(10)));
+
+		for (long i = 0; i < 10000; i++)
+			cache.put(i << 32 | i, i / 2.0);
+		assertEquals(10000, cache.size());
+
+		for (long i = 0; i < 10000; i++)
+			assertEquals(i / 2.0, cache.get(i << 32 | i), 0);
+		assertTrue(Double.isNaN(cache.get(10001L << 32)));
+
+		cache.put(0, 3.0);
+		assertEquals(3.0, cache.get(0), 0);
+		assertEquals(10000, cache.size());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeKey()
+	{
+		new ConcurrentLongDoubleCache().put(-1, 0);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException
+	{
+		final ConcurrentLongDoubleCache cache = new ConcurrentLongDoubleCache(2);
+		final AtomicInteger errors = new AtomicInteger();
+		final int n = 20000;
+
+		Thread [] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			final int offset = t;
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < n; i++)
+					{
+						long key = (i * 7 + offset) % n;
+						double val = cache.get(key);
+						if (!Double.isNaN(val) && val != key)
+							errors.incrementAndGet();
+						cache.put(key, key);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+
+		assertEquals(0, errors.get());
+		assertEquals(n, cache.size());
+		for (long i = 0; i < n; i++)
+			assertEquals(i, cache.get(i), 0);
+	}
+}
@@ -0,0 +1,57 @@
+package sonumina.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IntHashSetTest
+{
+	@Test
+	public void testBulkOperations()
+	{
+		IntHashSet set = IntHashSet.newSetWith(0, 3, 5, 3, -1);
+		assertEquals(4, set.size());
+		assertTrue(set.containsAll(0, 3, 5, -1));
+		assertFalse(set.containsAll(0, 4));
+
+		set.removeAll(0, 5, 6);
+		int [] elements = set.toArray();
+		Arrays.sort(elements);
+		assertArrayEquals(new int[]{-1, 3}, elements);
+
+		IntHashSet other = new IntHashSet();
+		other.add(4);
+		other.addAll(set);
+		assertTrue(other.containsAll(-1, 3, 4));
+		assertEquals(3, other.size());
+	}
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random rnd = new Random(5);
+		IntHashSet set = new IntHashSet();
+		Set<Integer> reference = new HashSet<Integer>();
+
+		for (int i = 0; i < 100000; i++)
+		{
+			int key = rnd.nextInt(1000);
+			if (rnd.nextBoolean())
+				assertEquals(reference.add(key), set.add(key));
+			else
+				assertEquals(reference.remove(key), set.remove(key));
+		}
+
+		assertEquals(reference.size(), set.size());
+		for (int key = 0; key < 1000; key++)
+			assertEquals(reference.contains(key), set.contains(key));
+	}
+}
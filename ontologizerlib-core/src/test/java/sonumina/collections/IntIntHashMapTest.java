@@ -0,0 +1,83 @@
+package sonumina.collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntHashMapTest
+{
+	@Test
+	public void testPutGetRemove()
+	{
+		IntIntHashMap map = new IntIntHashMap();
+		map.put(0, 10);
+		map.put(-5, 20);
+		map.put(7, 30);
+		assertEquals(3, map.size());
+		assertEquals(10, map.get(0));
+		assertEquals(20, map.get(-5));
+		assertEquals(IntIntHashMap.EMPTY_VALUE, map.get(8));
+		assertEquals(-1, map.getIfAbsent(8, -1));
+
+		assertEquals(31, map.addToValue(7, 1));
+		assertEquals(2, map.addToValue(8, 2));
+		assertEquals(11, map.addToValue(0, 1));
+
+		assertTrue(map.remove(0));
+		assertFalse(map.remove(0));
+		assertFalse(map.containsKey(0));
+		assertEquals(3, map.size());
+
+		int [] keys = map.keys();
+		Arrays.sort(keys);
+		assertArrayEquals(new int[]{-5, 7, 8}, keys);
+	}
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random rnd = new Random(3);
+		IntIntHashMap map = new IntIntHashMap(4);
+		Map<Integer,Integer> reference = new HashMap<Integer,Integer>();
+
+		for (int i = 0; i < 100000; i++)
+		{
+			int key = rnd.nextInt(2000) - 1000;
+			int op = rnd.nextInt(3);
+			if (op == 0)
+			{
+				map.put(key, i);
+				reference.put(key, i);
+			} else if (op == 1)
+			{
+				assertEquals(reference.remove(key) != null, map.remove(key));
+			} else
+			{
+				assertEquals(reference.containsKey(key), map.containsKey(key));
+			}
+		}
+
+		assertEquals(reference.size(), map.size());
+		for (Map.Entry<Integer,Integer> e : reference.entrySet())
+			assertEquals(e.getValue().intValue(), map.get(e.getKey()));
+
+		IntIntHashMap copy = new IntIntHashMap();
+		copy.putAll(map);
+		assertEquals(map.size(), copy.size());
+		int [] keys = map.keys();
+		int [] values = map.values();
+		for (int i = 0; i < keys.length; i++)
+			assertEquals(values[i], copy.get(keys[i]));
+
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+}
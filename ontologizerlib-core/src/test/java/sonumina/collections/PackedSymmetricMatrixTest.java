@@ -0,0 +1,75 @@
+package sonumina.collections;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import sonumina.collections.PackedSymmetricMatrix.Storage;
+
+public class PackedSymmetricMatrixTest
+{
+	private static void fillAndCheck(PackedSymmetricMatrix m)
+	{
+		int n = m.getDimension();
+		for (int i = 0; i < n; i++)
+			for (int j = i; j < n; j++)
+				m.set(j, i, i * 1000 + j);
+
+		for (int i = 0; i < n; i++)
+		{
+			for (int j = 0; j < n; j++)
+			{
+				float expected = Math.min(i, j) * 1000 + Math.max(i, j);
+				assertEquals(expected, m.get(i, j), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testHeap()
+	{
+		PackedSymmetricMatrix m = PackedSymmetricMatrix.create(37);
+		assertEquals(Storage.HEAP, m.getStorage());
+		assertEquals(0, m.get(3, 5), 0);
+		fillAndCheck(m);
+	}
+
+	@Test
+	public void testDirect()
+	{
+		fillAndCheck(PackedSymmetricMatrix.createDirect(37));
+	}
+
+	@Test
+	public void testChunks() throws IOException
+	{
+		/* 703 entries distributed over chunks of 16 entries */
+		fillAndCheck(new PackedSymmetricMatrix(37, Storage.HEAP, null, 4));
+		fillAndCheck(new PackedSymmetricMatrix(37, Storage.DIRECT, null, 4));
+	}
+
+	@Test
+	public void testMapped() throws IOException
+	{
+		File file = File.createTempFile("matrix", ".bin");
+		file.deleteOnExit();
+
+		PackedSymmetricMatrix m = new PackedSymmetricMatrix(37, Storage.MAPPED, file, 5);
+		fillAndCheck(m);
+		m.force();
+		assertEquals(PackedSymmetricMatrix.getNumberOfEntries(37) * 4, file.length());
+
+		/* Entries are persistent */
+		PackedSymmetricMatrix m2 = PackedSymmetricMatrix.createMapped(37, file);
+		assertEquals(5 * 1000 + 7, m2.get(7, 5), 0);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testOutOfBounds()
+	{
+		PackedSymmetricMatrix.create(3).get(1, 3);
+	}
+}
@@ -0,0 +1,140 @@
+package sonumina.math.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrozenDirectedGraphTest
+{
+	private static <V> List<V> list(Iterable<V> iterable)
+	{
+		List<V> l = new ArrayList<V>();
+		for (V v : iterable)
+			l.add(v);
+		return l;
+	}
+
+	private static <V> List<V> bfsOrder(List<V> initial, final FrozenDirectedGraph<V,?> g, boolean againstFlow, boolean [] leaveOut)
+	{
+		final List<V> order = new ArrayList<V>();
+		g.bfs(initial, againstFlow, leaveOut, new IVisitor<V>()
+		{
+			@Override
+			public boolean visited(V vertex)
+			{
+				order.add(vertex);
+				return true;
+			}
+		});
+		return order;
+	}
+
+	@Test
+	public void testRandomGraph()
+	{
+		Random rnd = new Random(4);
+		DirectedGraph<Integer, Character> graph = new DirectedGraph<Integer, Character>();
+		for (int i = 0; i < 500; i++)
+			graph.addVertex(i);
+		for (int i = 1; i < 500; i++)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				int p = rnd.nextInt(i);
+				if (!graph.hasEdge(p, i))
+					graph.addEdge(p, i, (char)('a' + rnd.nextInt(3)));
+			}
+		}
+
+		FrozenDirectedGraph<Integer, Character> g = FrozenDirectedGraph.create(graph);
+		assertEquals(500, g.getNumberOfVertices());
+		assertEquals(graph.getNumberEdges(), g.getNumberOfEdges());
+		assertEquals(3, g.getNumberOfEdgeTypes());
+
+		for (int i = 0; i < 500; i++)
+		{
+			int v = g.getVertexIndex(i);
+			assertEquals(Integer.valueOf(i), g.getVertex(v));
+			assertEquals(list(graph.getParentNodes(i)), list(g.getParentNodes(i)));
+			assertEquals(list(graph.getChildNodes(i)), list(g.getChildNodes(i)));
+			assertEquals(graph.getInDegree(i), g.getInDegree(v));
+			assertEquals(graph.getOutDegree(i), g.getOutDegree(v));
+
+			Iterator<Edge<Integer,Character>> iter = graph.getOutEdges(i);
+			for (int e = g.getFirstOutEdge(v); e < g.getEndOutEdge(v); e++)
+			{
+				Edge<Integer,Character> edge = iter.next();
+				assertEquals(edge.getDest(), g.getVertex(g.getOutEdgeTarget(e)));
+				assertEquals(edge.getData(), g.getEdgeData(g.getOutEdgeType(e)));
+			}
+			assertFalse(iter.hasNext());
+
+			for (int e = g.getFirstInEdge(v); e < g.getEndInEdge(v); e++)
+			{
+				int s = g.getInEdgeSource(e);
+				assertEquals(e, g.findInEdge(s, v));
+				assertEquals(graph.getEdge(g.getVertex(s), i).getData(), g.getEdgeData(g.getInEdgeType(e)));
+			}
+		}
+
+		/* The bfs must visit the vertices in the very same order */
+		for (boolean againstFlow : new boolean[]{false, true})
+		{
+			List<Integer> initial = Arrays.asList(250, 17, 499);
+			List<Integer> expected = Algorithms.bfsOrder(initial, againstFlow ? Grabbers.inGrabber(graph) : Grabbers.outGrabber(graph));
+			assertEquals(expected, bfsOrder(initial, g, againstFlow, null));
+		}
+
+		/* Leave out edges of type 'b' */
+		boolean [] leaveOut = g.getLeftOutEdgeTypes(new IEdgeFilter<Character>()
+		{
+			@Override
+			public boolean leaveOut(Character ed)
+			{
+				return ed == 'b';
+			}
+		});
+		DirectedGraph<Integer, Character> withoutB = graph.subGraph(new HashSet<Integer>(list(graph.getVertices())), new IEdgeFilter<Character>()
+		{
+			@Override
+			public boolean leaveOut(Character ed)
+			{
+				return ed == 'b';
+			}
+		});
+		List<Integer> initial = Arrays.asList(499, 498);
+		assertEquals(Algorithms.bfsOrder(initial, Grabbers.inGrabber(withoutB)), bfsOrder(initial, g, true, leaveOut));
+	}
+
+	@Test
+	public void testExistsPath()
+	{
+		DirectedGraph<String, Void> graph = new DirectedGraph<String, Void>();
+		graph.addVertex("a");
+		graph.addVertex("b");
+		graph.addVertex("c");
+		graph.addVertex("d");
+		graph.addEdge("a", "b");
+		graph.addEdge("b", "c");
+
+		FrozenDirectedGraph<String, Void> g = FrozenDirectedGraph.create(graph);
+		int a = g.getVertexIndex("a");
+		int c = g.getVertexIndex("c");
+		int d = g.getVertexIndex("d");
+		assertTrue(g.existsPath(a, c));
+		assertTrue(g.existsPath(a, a));
+		assertFalse(g.existsPath(c, a));
+		assertFalse(g.existsPath(a, d));
+		assertEquals(-1, g.getVertexIndex("e"));
+		assertEquals(1, g.getNumberOfEdgeTypes());
+	}
+}
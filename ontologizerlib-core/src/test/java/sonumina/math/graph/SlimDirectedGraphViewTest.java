@@ -1,13 +1,22 @@
 package sonumina.math.graph;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import sonumina.math.graph.SlimDirectedGraphView.ClosureStorage;
+
 public class SlimDirectedGraphViewTest
 {
 	/**
@@ -34,8 +43,10 @@ public class SlimDirectedGraphViewTest
 		}
 	}
 
-	@Test
-	public void testCreateSlimGraph()
+	/**
+	 * @return the test graph.
+	 */
+	private DirectedGraph<TestData, Object> createGraph()
 	{
 		final DirectedGraph<TestData, Object> graph = new DirectedGraph<TestData,Object>();
 		final TestData root = new TestData("root");
@@ -79,6 +90,13 @@ public class SlimDirectedGraphViewTest
 		graph.addEdge(d,g);
 		graph.addEdge(e,f);
 		graph.addEdge(f,g);
+		return graph;
+	}
+
+	@Test
+	public void testCreateSlimGraph()
+	{
+		final DirectedGraph<TestData, Object> graph = createGraph();
 
 		SlimDirectedGraphView<TestData> sg = SlimDirectedGraphView.create(graph);
 		assertEquals(8, sg.getNumberOfVertices());
@@ -97,4 +115,123 @@ public class SlimDirectedGraphViewTest
 			checkNodes(graph.getParentNodes(sg.getVertex(i)), sg.vertexParents[i], map);
 		}
 	}
+
+	@Test
+	public void testCompressedClosure()
+	{
+		final DirectedGraph<TestData, Object> graph = createGraph();
+
+		SlimDirectedGraphView<TestData> ag = SlimDirectedGraphView.create(graph);
+		SlimDirectedGraphView<TestData> cg = SlimDirectedGraphView.create(graph, ClosureStorage.COMPRESSED_BITMAPS);
+		assertEquals(ClosureStorage.COMPRESSED_BITMAPS, cg.getClosureStorage());
+		assertNull(cg.vertexAncestors);
+		assertNull(cg.vertexDescendants);
+
+		int vs = ag.getNumberOfVertices();
+		for (int i=0; i<vs; i++)
+		{
+			assertArrayEquals(ag.vertexAncestors[i], cg.getAncestorIndices(i));
+			assertArrayEquals(ag.vertexDescendants[i], cg.getDescendantIndices(i));
+
+			for (int j=0; j<vs; j++)
+			{
+				assertEquals(ag.isAncestor(i, j), cg.isAncestor(i, j));
+				assertEquals(ag.isDescendant(i, j), cg.isDescendant(i, j));
+				assertArrayEquals(ag.getCommonAncestors(i, j), cg.getCommonAncestors(i, j));
+				assertEquals(ag.getNumberOfCommonAncestors(i, j), cg.getNumberOfCommonAncestors(i, j));
+			}
+		}
+
+		/* d and f share c and root */
+		int d = -1, f = -1;
+		for (int i=0; i<vs; i++)
+		{
+			if (cg.getVertex(i).id.equals("d")) d = i;
+			if (cg.getVertex(i).id.equals("f")) f = i;
+		}
+		assertEquals(2, cg.getNumberOfCommonAncestors(d, f));
+	}
+
+	/**
+	 * Returns the sorted indices of the vertices that are reached from the given vertex.
+	 */
+	private int [] reached(DirectedGraph<TestData, Object> graph, SlimDirectedGraphView<TestData> sg, TestData v, boolean againstFlow)
+	{
+		final List<TestData> vertices = new ArrayList<TestData>();
+		graph.bfs(v, againstFlow, new IVisitor<TestData>()
+		{
+			@Override
+			public boolean visited(TestData vertex)
+			{
+				vertices.add(vertex);
+				return true;
+			}
+		});
+		int [] indices = new int[vertices.size()];
+		for (int i=0; i<indices.length; i++)
+			indices[i] = sg.getVertexIndex(vertices.get(i));
+		Arrays.sort(indices);
+		return indices;
+	}
+
+	private void checkClosures(DirectedGraph<TestData, Object> graph, SlimDirectedGraphView<TestData> sg)
+	{
+		for (int i=0; i<sg.getNumberOfVertices(); i++)
+		{
+			assertArrayEquals(reached(graph, sg, sg.getVertex(i), true), sg.getAncestorIndices(i));
+			assertArrayEquals(reached(graph, sg, sg.getVertex(i), false), sg.getDescendantIndices(i));
+		}
+	}
+
+	@Test
+	public void testClosuresOfRandomDAG()
+	{
+		Random rnd = new Random(3);
+		DirectedGraph<TestData, Object> graph = new DirectedGraph<TestData,Object>();
+		TestData [] vertices = new TestData[2000];
+		for (int i=0; i<vertices.length; i++)
+		{
+			vertices[i] = new TestData("v" + i);
+			graph.addVertex(vertices[i]);
+		}
+		for (int i=1; i<vertices.length; i++)
+		{
+			int numParents = 1 + rnd.nextInt(3);
+			for (int j=0; j<numParents; j++)
+			{
+				TestData p = vertices[rnd.nextInt(i)];
+				if (!graph.hasEdge(p, vertices[i]))
+					graph.addEdge(p, vertices[i]);
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			for (ClosureStorage storage : ClosureStorage.values())
+			{
+				checkClosures(graph, SlimDirectedGraphView.create(graph, storage));
+				checkClosures(graph, SlimDirectedGraphView.create(graph, storage, pool));
+			}
+		} finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testClosuresOfCyclicGraph()
+	{
+		DirectedGraph<TestData, Object> graph = createGraph();
+		TestData a = null, g = null;
+		for (TestData v : graph)
+		{
+			if (v.id.equals("a")) a = v;
+			if (v.id.equals("g")) g = v;
+		}
+		graph.addEdge(g, a);
+
+		for (ClosureStorage storage : ClosureStorage.values())
+			checkClosures(graph, SlimDirectedGraphView.create(graph, storage));
+	}
 }
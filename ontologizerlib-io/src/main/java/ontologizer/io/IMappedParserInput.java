@@ -0,0 +1,20 @@
+package ontologizer.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An IParserInput whose contents can be accessed directly as byte buffers.
+ */
+public interface IMappedParserInput extends IParserInput
+{
+	/**
+	 * Returns the buffers that make up the contents of the input in order.
+	 * The buffers are shared with the input stream, i.e., their positions
+	 * reflect the bytes consumed so far and consumers of the buffers shall
+	 * advance the positions accordingly.
+	 *
+	 * @return the buffers or null if the contents cannot be accessed
+	 *  directly, e.g., because they are compressed.
+	 */
+	public ByteBuffer [] getBuffers();
+}
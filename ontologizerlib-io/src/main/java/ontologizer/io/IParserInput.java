@@ -23,12 +23,12 @@ public interface IParserInput
 	 * @return the size of the contents of the input stream or -1 if this
 	 *  information is not available.
 	 */
-	public int getSize();
+	public long getSize();
 
 	/**
 	 * @return the current position of the input.
 	 */
-	public int getPosition();
+	public long getPosition();
 
 	/**
 	 * @return the filename associated to the input or null if no filename is associated.
@@ -0,0 +1,28 @@
+package ontologizer.io;
+
+/**
+ * Converts positions within an input to int-based progress values. Inputs
+ * that are larger than what fits into an int are reported in coarser units.
+ */
+public final class InputProgress
+{
+	private InputProgress()
+	{
+	}
+
+	/**
+	 * Scales the given value such that the size of the input fits into an int.
+	 *
+	 * @param value the value to scale, e.g., a position or the size itself.
+	 * @param size the size of the input.
+	 * @return the scaled value, or -1 if the value was negative.
+	 */
+	public static int scale(long value, long size)
+	{
+		if (value < 0)
+			return -1;
+		if (size <= Integer.MAX_VALUE)
+			return (int)value;
+		return (int)(value / (size / Integer.MAX_VALUE + 1));
+	}
+}
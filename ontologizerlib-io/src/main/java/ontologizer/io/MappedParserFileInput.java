@@ -0,0 +1,170 @@
+package ontologizer.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An IParserInput for a local file that is mapped into memory. Uncompressed
+ * files can be scanned directly from the mapped buffers, which avoids
+ * copying the contents through an input stream. Gzip compressed files are
+ * supported as well but only through the input stream.
+ *
+ * Files larger than 2 GiB are mapped in several segments.
+ */
+public class MappedParserFileInput implements IMappedParserInput
+{
+	/** The maximum size of a single mapped segment */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private String filename;
+	private RandomAccessFile raf;
+	private FileChannel fc;
+	private long size;
+
+	/** The mapped segments of the file */
+	private ByteBuffer [] segments;
+
+	/** The stream on top of the segments */
+	private InputStream is;
+
+	/** Whether the contents are compressed */
+	private boolean compressed;
+
+	public MappedParserFileInput(String filename) throws IOException
+	{
+		this.filename = filename;
+
+		raf = new RandomAccessFile(filename, "r");
+		try
+		{
+			fc = raf.getChannel();
+			size = fc.size();
+
+			int numSegments = (int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			segments = new ByteBuffer[numSegments];
+			for (int i = 0; i < numSegments; i++)
+			{
+				long offset = (long)i * SEGMENT_SIZE;
+				segments[i] = fc.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset));
+			}
+		} catch (IOException e)
+		{
+			raf.close();
+			throw e;
+		}
+
+		is = new SegmentInputStream();
+
+		if (size >= 2 && (segments[0].get(0) & 0xff) == 0x1f && (segments[0].get(1) & 0xff) == 0x8b)
+		{
+			compressed = true;
+			is = new GZIPInputStream(is);
+		}
+	}
+
+	/**
+	 * An input stream that reads the segments and advances their positions.
+	 */
+	private class SegmentInputStream extends InputStream
+	{
+		private int current;
+
+		private ByteBuffer currentSegment()
+		{
+			while (current < segments.length && !segments[current].hasRemaining())
+				current++;
+			if (current == segments.length)
+				return null;
+			return segments[current];
+		}
+
+		@Override
+		public int read()
+		{
+			ByteBuffer seg = currentSegment();
+			if (seg == null)
+				return -1;
+			return seg.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len)
+		{
+			if (len == 0)
+				return 0;
+
+			ByteBuffer seg = currentSegment();
+			if (seg == null)
+				return -1;
+
+			int l = Math.min(len, seg.remaining());
+			seg.get(b, off, l);
+			return l;
+		}
+
+		@Override
+		public int available()
+		{
+			ByteBuffer seg = currentSegment();
+			return seg == null ? 0 : seg.remaining();
+		}
+	}
+
+	@Override
+	public InputStream inputStream()
+	{
+		return is;
+	}
+
+	@Override
+	public ByteBuffer [] getBuffers()
+	{
+		if (compressed)
+			return null;
+		return segments;
+	}
+
+	/**
+	 * Closes the file. Note that the mapping of the file stays valid until
+	 * the buffers are garbage collected.
+	 */
+	@Override
+	public void close()
+	{
+		try
+		{
+			raf.close();
+		} catch (IOException e)
+		{
+		}
+	}
+
+	@Override
+	public long getSize()
+	{
+		return size;
+	}
+
+	@Override
+	public long getPosition()
+	{
+		long position = 0;
+		for (int i = 0; i < segments.length; i++)
+		{
+			position += segments[i].position();
+			if (segments[i].hasRemaining())
+				break;
+		}
+		return position;
+	}
+
+	@Override
+	public String getFilename()
+	{
+		return filename;
+	}
+}
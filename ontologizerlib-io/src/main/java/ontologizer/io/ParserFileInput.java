@@ -53,11 +53,11 @@ public class ParserFileInput implements IParserInput
 	}
 
 	@Override
-	public int getSize()
+	public long getSize()
 	{
 		try
 		{
-			return (int)fc.size();
+			return fc.size();
 		} catch (IOException e)
 		{
 		}
@@ -65,11 +65,11 @@ public class ParserFileInput implements IParserInput
 	}
 
 	@Override
-	public int getPosition()
+	public long getPosition()
 	{
 		try
 		{
-			return (int)fc.position();
+			return fc.position();
 		} catch (IOException e)
 		{
 		}
@@ -16,6 +16,7 @@ import ontologizer.association.Association;
 import ontologizer.association.SwissProtAffyAnnotation;
 import ontologizer.association.SwissProtAffyAnnotationSet;
 import ontologizer.io.IParserInput;
+import ontologizer.io.InputProgress;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.TermMap;
 import ontologizer.types.ByteString;
@@ -92,7 +93,7 @@ public class AffyParser
 		};
 
 		if (progress != null)
-			progress.init(input.getSize());
+			progress.init(InputProgress.scale(input.getSize(), input.getSize()));
 
 		int skipped = 0;
 		long millis = 0;
@@ -144,7 +145,7 @@ public class AffyParser
 					long newMillis = System.currentTimeMillis();
 					if (newMillis - millis > 250)
 					{
-						progress.update(input.getPosition());
+						progress.update(InputProgress.scale(input.getPosition(), input.getSize()));
 						millis = newMillis;
 					}
 				}
@@ -14,10 +14,12 @@ import java.util.logging.Logger;
 import ontologizer.association.AnnotationContext;
 import ontologizer.association.Association;
 import ontologizer.io.IParserInput;
+import ontologizer.io.InputProgress;
 import ontologizer.io.linescanner.AbstractByteLineScanner;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.TermMap;
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 
 /**
  * This class is responsible for parsing GO association files. One object is
@@ -53,6 +55,12 @@ public class AssociationParser
 	private boolean iterative;
 	private boolean parsingFinished;
 
+	/** The number of threads used for parsing GAF files */
+	private int numberOfThreads = 1;
+
+	/** Receives the strings of the associations of GAF files */
+	private ByteStringArena strings = new ByteStringArena();
+
 	/** Mapping from gene (or gene product) names to Association objects */
 	private ArrayList<Association> associations;
 
@@ -162,12 +170,38 @@ public class AssociationParser
 	 */
 	public AssociationParser(IParserInput input, TermMap terms, HashSet<ByteString> names, Collection<String> evidences, IAssociationParserProgress progress, boolean iterative) throws IOException
 	{
+		this(input,terms,names,evidences,progress,iterative,1);
+	}
+
+	/**
+	 * Construct the association parser object. The given file name will
+	 * parsed.
+	 *
+	 * @param input specifies wrapping input that contains association of genes to GO terms.
+	 * @param terms the container of the GO terms
+	 * @param names list of genes from which the associations should be gathered.
+	 *        If null all associations are taken,
+	 * @param evidences keep only the annotation whose evidence match the given ones. If null, all annotations are used.
+	 *        Note that this field is currently used when the filenames referes to a GAF file.
+	 * @param progress
+	 * @param iterative set to true if no actual parsing should be done in the constructor.
+	 * @param numberOfThreads the number of threads used for parsing GAF files. The input
+	 *        is then split into chunks that are parsed concurrently. The result is the same
+	 *        as the one of the parsing with a single thread.
+	 * @throws IOException
+	 */
+	public AssociationParser(IParserInput input, TermMap terms, HashSet<ByteString> names, Collection<String> evidences, IAssociationParserProgress progress, boolean iterative, int numberOfThreads) throws IOException
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+
 		this.input = input;
 		this.terms = terms;
 		this.names = names;
 		this.evidences = evidences;
 		this.progress = progress;
 		this.iterative = iterative;
+		this.numberOfThreads = numberOfThreads;
 
 		associations = new ArrayList<Association>();
 
@@ -179,6 +213,30 @@ public class AssociationParser
 		parse();
 	}
 
+	/**
+	 * Sets the arena that receives the strings of the associations when
+	 * parsing GAF files. Equal strings of the associations are shared via
+	 * the arena, also across parsers that are given the same arena. This
+	 * needs to be called before parsing, i.e., the parser must have been
+	 * created with the iterative flag set to true.
+	 *
+	 * @param strings the arena, whose pages must be located on the heap.
+	 */
+	public void setStrings(ByteStringArena strings)
+	{
+		if (strings.isDirect())
+			throw new IllegalArgumentException("The strings of associations cannot be stored outside of the heap");
+		this.strings = strings;
+	}
+
+	/**
+	 * @return the arena that receives the strings of the associations.
+	 */
+	public ByteStringArena getStrings()
+	{
+		return strings;
+	}
+
 	/**
 	 * Start or continue to parse the associations. This needs only to be called when the
 	 * parser was created with the iterative flag set to true.
@@ -204,7 +262,7 @@ public class AssociationParser
 		{
 			/* First, skip headers */
 			final List<byte[]> lines = new ArrayList<byte[]>();
-			AbstractByteLineScanner abls = new AbstractByteLineScanner(input.inputStream()) {
+			AbstractByteLineScanner abls = new AbstractByteLineScanner(input) {
 				@Override
 				public boolean newLine(byte[] buf, int start, int len)
 				{
@@ -351,13 +409,29 @@ public class AssociationParser
 	private void importGAF(IParserInput input, byte [] head, HashSet<ByteString> names, TermMap terms, Collection<String> evidences, IAssociationParserProgress progress) throws IOException
 	{
 		if (progress != null)
-			progress.init(input.getSize());
+			progress.init(InputProgress.scale(input.getSize(), input.getSize()));
 
-		GAFByteLineScanner ls = new GAFByteLineScanner(input, head, names, terms,getByteStringSetFromStringCollection(evidences), progress);
-		ls.scan();
+		Set<ByteString> evidenceSet = getByteStringSetFromStringCollection(evidences);
+		GAFLineParser ls;
+
+		if (numberOfThreads > 1)
+		{
+			ParallelGAFParser pp = new ParallelGAFParser(input, head, names, terms, evidenceSet, strings, progress, numberOfThreads);
+			pp.parse();
+			ls = pp.getLineParser();
+			associations = pp.getAssociations();
+			annotationMapping = pp.getAnnotationContext();
+		} else
+		{
+			GAFByteLineScanner scanner = new GAFByteLineScanner(input, head, names, terms, evidenceSet, strings, progress);
+			scanner.scan();
+			ls = scanner.getLineParser();
+			associations = scanner.getAssociations();
+			annotationMapping = scanner.getAnnotationContext();
+		}
 
 		if (progress != null)
-			progress.update(input.getSize());
+			progress.update(InputProgress.scale(input.getSize(), input.getSize()));
 
 		logger.log(Level.INFO, ls.good + " associations parsed, " + ls.kept
 				+ " of which were kept while " + ls.bad
@@ -369,12 +443,9 @@ public class AssociationParser
 				+ ls.getEvidenceMismatchCount() + " didn't"
 				+ " match the requested evidence codes");
 		logger.log(Level.INFO, "A total of " + ls.getNumberOfUsedTerms()
-				+ " terms are directly associated to " + ls.getAnnotationContext().getSymbols().length
+				+ " terms are directly associated to " + annotationMapping.getSymbols().length
 				+ " items.");
 
-		associations = ls.getAssociations();
-		annotationMapping = ls.getAnnotationContext();
-
 		if (symbolWarnings >= 1000)
 			logger.warning("The symbols of a total of " + symbolWarnings + " entries mapped ambiguously");
 		if (dbObjectWarnings >= 1000)
@@ -0,0 +1,212 @@
+package ontologizer.io.annotation;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import ontologizer.association.Association;
+import ontologizer.association.AssociationResolver;
+import ontologizer.ontology.PrefixPool;
+import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermIDInterner;
+import ontologizer.ontology.TermMap;
+import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
+
+/**
+ * Parses and filters single GAF lines and keeps the statistics of all lines
+ * seen so far. An instance is not thread-safe, but independent instances can
+ * be used concurrently.
+ */
+class GAFLineParser
+{
+	/** Contains all items whose associations should gathered or null if all should be gathered */
+	private Set<ByteString> names;
+
+	public int good = 0;
+	public int bad = 0;
+	public int skipped = 0;
+	public int nots = 0;
+	public int kept = 0;
+
+	/** Number of obsolete term references of merged parsers */
+	private int obsolete;
+
+	/** Number of evidence mismatches of merged parsers */
+	private int evidenceMismatch;
+
+	/** Our prefix pool */
+	private PrefixPool prefixPool = new PrefixPool();
+
+	/** Receives the strings of the associations, so equal strings are shared */
+	private ByteStringArena strings;
+
+	private HashSet<TermID> usedTermIDs = new HashSet<TermID>();
+
+	private AssociationResolver resolver;
+
+	/** The pool used for the term ids of unresolved associations */
+	private TermIDInterner termIDs;
+
+	public GAFLineParser(Set<ByteString> names, TermMap terms, Set<ByteString> evidences)
+	{
+		this(names, terms, evidences, new ByteStringArena());
+	}
+
+	public GAFLineParser(Set<ByteString> names, TermMap terms, Set<ByteString> evidences, ByteStringArena strings)
+	{
+		this(names, terms, evidences, terms != null ? terms.getTermIDInterner() : new TermIDInterner(), strings);
+	}
+
+	/**
+	 * Constructs the parser.
+	 *
+	 * @param names the items whose associations should be gathered or null
+	 *  if all should be gathered
+	 * @param terms the known terms or null if associations shall not be resolved
+	 * @param evidences the evidences that shall be considered or null for all
+	 * @param termIDs the pool for the term ids. If terms are given, this
+	 *  should be the pool of the term map, so the ordinals of the resolved
+	 *  term ids are the ones of the term map. It may be shared with parsers
+	 *  of other threads.
+	 * @param strings the arena receiving the strings of the associations.
+	 *  It may be shared with parsers of other threads.
+	 */
+	public GAFLineParser(Set<ByteString> names, TermMap terms, Set<ByteString> evidences, TermIDInterner termIDs, ByteStringArena strings)
+	{
+		this.names = names;
+		this.termIDs = termIDs;
+		this.strings = strings;
+
+		if (terms != null)
+		{
+			resolver = new AssociationResolver(terms, evidences);
+		}
+	}
+
+	/**
+	 * Parses the given line.
+	 *
+	 * @param buf the buffer containing the line
+	 * @param start the offset of the first byte of the line
+	 * @param len the length of the line excluding the new line character
+	 * @return the association if it should be kept, or null if it is a comment
+	 *  or shall be skipped for another reason.
+	 */
+	public Association parse(byte [] buf, int start, int len)
+	{
+		/* Ignore comments */
+		if (len < 1 || buf[start]=='!')
+			return null;
+
+		Association assoc = Association.createFromGAFLine(buf,start,len,prefixPool,strings);
+
+		TermID currentTermID = assoc.getTermID();
+
+		good++;
+
+		if (assoc.hasNotQualifier())
+		{
+			skipped++;
+			nots++;
+			return null;
+		}
+
+		if (resolver != null)
+		{
+			currentTermID = resolver.resolveAssociation(assoc);
+			if (currentTermID == null)
+			{
+				return null;
+			}
+		}
+
+		/* Resolved term ids are the ones of the term map, so this is a lookup only */
+		currentTermID = termIDs.intern(currentTermID);
+		assoc.setTermID(currentTermID);
+
+		usedTermIDs.add(currentTermID);
+
+		if (names != null)
+		{
+			/* We are only interested in associations to given genes */
+			boolean keep = false;
+
+			/* Check if synonyms are contained */
+			ByteString[] synonyms = assoc.getSynonyms();
+			if (synonyms != null)
+			{
+				for (int i = 0; i < synonyms.length; i++)
+				{
+					if (names.contains(synonyms[i]))
+					{
+						keep = true;
+						break;
+					}
+				}
+			}
+
+			if (keep || names.contains(assoc.getObjectSymbol()) || names.contains(assoc.getDB_Object()))
+			{
+				kept++;
+			} else
+			{
+				skipped++;
+				return null;
+			}
+		} else
+		{
+			kept++;
+		}
+		return assoc;
+	}
+
+	/**
+	 * Adds the statistics of the other parser to the ones of this parser.
+	 *
+	 * @param other the parser whose statistics shall be added.
+	 */
+	public void merge(GAFLineParser other)
+	{
+		good += other.good;
+		bad += other.bad;
+		skipped += other.skipped;
+		nots += other.nots;
+		kept += other.kept;
+		obsolete += other.getObsoleteCount();
+		evidenceMismatch += other.getEvidenceMismatchCount();
+		usedTermIDs.addAll(other.usedTermIDs);
+	}
+
+	/**
+	 * @return the number of terms used by the import.
+	 */
+	public int getNumberOfUsedTerms()
+	{
+		return usedTermIDs.size();
+	}
+
+	/**
+	 * @return total number of entries that didn't match the specified
+	 *  evidences.
+	 */
+	public int getEvidenceMismatchCount()
+	{
+		if (resolver != null)
+		{
+			return resolver.getEvidenceMismatch() + evidenceMismatch;
+		}
+		return evidenceMismatch;
+	}
+
+	/**
+	 * @return total number of entries that referred to obsolete terms.
+	 */
+	public int getObsoleteCount()
+	{
+		if (resolver != null)
+		{
+			return resolver.getObsolete() + obsolete;
+		}
+		return obsolete;
+	}
+}
@@ -0,0 +1,335 @@
+package ontologizer.io.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ontologizer.association.AnnotationContext;
+import ontologizer.association.AnnotationMapBuilder;
+import ontologizer.association.Association;
+import ontologizer.io.IParserInput;
+import ontologizer.io.InputProgress;
+import ontologizer.ontology.TermIDInterner;
+import ontologizer.ontology.TermMap;
+import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
+
+/**
+ * Parses GAF input using several threads. The input is split into chunks
+ * at line boundaries that are parsed concurrently, each thread using its own
+ * prefix pool and resolver, while all threads share the arena receiving the
+ * strings. The chunk results are then merged in input order, so the outcome
+ * is identical to the one of GAFByteLineScanner.
+ */
+class ParallelGAFParser
+{
+	/** The default minimum size of a chunk */
+	private static final int CHUNK_SIZE = 1 << 22;
+
+	/** The minimum size of a chunk */
+	private int chunkSize = CHUNK_SIZE;
+
+	/** The wrapped input */
+	private IParserInput input;
+
+	/** The bytes to be read before the input */
+	private byte [] head;
+
+	private Set<ByteString> names;
+	private TermMap terms;
+	private Set<ByteString> evidences;
+
+	/** Monitor progress */
+	private IAssociationParserProgress progress;
+
+	private int numberOfThreads;
+
+	/** The term ids shared by all line parsers */
+	private final TermIDInterner termIDs;
+
+	/** The strings shared by all line parsers */
+	private final ByteStringArena strings;
+
+	/** The line parsers of all worker threads */
+	private final List<GAFLineParser> lineParsers = Collections.synchronizedList(new ArrayList<GAFLineParser>());
+
+	/** Provides each worker thread its own line parser */
+	private final ThreadLocal<GAFLineParser> threadLineParser = new ThreadLocal<GAFLineParser>()
+	{
+		@Override
+		protected GAFLineParser initialValue()
+		{
+			GAFLineParser lineParser = new GAFLineParser(names, terms, evidences, termIDs, strings);
+			lineParsers.add(lineParser);
+			return lineParser;
+		}
+	};
+
+	/** The statistics of all chunks, available after parsing */
+	private GAFLineParser lineParser;
+
+	private ArrayList<Association> associations = new ArrayList<Association>();
+
+	private AnnotationMapBuilder mapBuilder;
+
+	/** The number of lines of all chunks merged so far */
+	private int lineno;
+
+	/**
+	 * The result of parsing a single chunk.
+	 */
+	private static class Chunk
+	{
+		/** The associations that were kept in the order of appearance */
+		public final ArrayList<Association> associations = new ArrayList<Association>();
+
+		/** The line numbers (relative to the chunk) of the kept associations */
+		public int [] linenos = new int[16];
+
+		/** The number of lines of the chunk */
+		public int numberOfLines;
+
+		public void add(Association assoc, int lineno)
+		{
+			if (associations.size() == linenos.length)
+			{
+				int [] newLinenos = new int[linenos.length * 2];
+				System.arraycopy(linenos, 0, newLinenos, 0, linenos.length);
+				linenos = newLinenos;
+			}
+			linenos[associations.size()] = lineno;
+			associations.add(assoc);
+		}
+	}
+
+	public ParallelGAFParser(IParserInput input, byte [] head, Set<ByteString> names, TermMap terms, Set<ByteString> evidences, ByteStringArena strings, IAssociationParserProgress progress, int numberOfThreads)
+	{
+		if (numberOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive");
+
+		this.input = input;
+		this.head = head;
+		this.names = names;
+		this.terms = terms;
+		this.termIDs = terms != null ? terms.getTermIDInterner() : new TermIDInterner();
+		this.evidences = evidences;
+		this.strings = strings;
+		this.progress = progress;
+		this.numberOfThreads = numberOfThreads;
+		this.mapBuilder = new AnnotationMapBuilder(GAFByteLineScanner.createWarningCallback(progress), strings);
+	}
+
+	/**
+	 * Set the minimum size of the chunks. Mainly useful for testing.
+	 *
+	 * @param chunkSize the minimum number of bytes of a chunk
+	 */
+	void setChunkSize(int chunkSize)
+	{
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Parse the lines of the given chunk. Line splitting follows the one of
+	 * AbstractByteLineScanner, i.e., a trailing segment that is not terminated by a
+	 * new line character is considered as line only if it is not empty.
+	 *
+	 * @param buf the buffer
+	 * @param len the number of valid bytes within buf
+	 * @return the parsed chunk
+	 */
+	private Chunk parseChunk(byte [] buf, int len)
+	{
+		GAFLineParser lp = threadLineParser.get();
+		Chunk chunk = new Chunk();
+
+		int lineStart = 0;
+		for (int pos = 0; pos < len; pos++)
+		{
+			if (buf[pos] == '\n')
+			{
+				chunk.numberOfLines++;
+				Association assoc = lp.parse(buf, lineStart, pos - lineStart);
+				if (assoc != null)
+					chunk.add(assoc, chunk.numberOfLines);
+				lineStart = pos + 1;
+			}
+		}
+		if (lineStart < len)
+		{
+			chunk.numberOfLines++;
+			Association assoc = lp.parse(buf, lineStart, len - lineStart);
+			if (assoc != null)
+				chunk.add(assoc, chunk.numberOfLines);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Merge the given chunk. Chunks must be merged in input order.
+	 *
+	 * @param chunk the chunk to be merged.
+	 */
+	private void merge(Chunk chunk)
+	{
+		for (int i = 0; i < chunk.associations.size(); i++)
+		{
+			Association assoc = chunk.associations.get(i);
+			associations.add(assoc);
+			mapBuilder.add(assoc, assoc.getSynonyms(), lineno + chunk.linenos[i]);
+		}
+		lineno += chunk.numberOfLines;
+	}
+
+	/**
+	 * Reads from the stream until the buffer is full or the end of stream is reached.
+	 *
+	 * @return the number of bytes within the buffer.
+	 */
+	private static int fill(InputStream is, byte [] buf, int off) throws IOException
+	{
+		int read;
+		while (off < buf.length && (read = is.read(buf, off, buf.length - off)) > 0)
+			off += read;
+		return off;
+	}
+
+	/**
+	 * Wait for the given future and rethrow any failure of the task.
+	 */
+	private static Chunk get(Future<Chunk> future) throws IOException
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Parse the input.
+	 *
+	 * @throws IOException
+	 */
+	public void parse() throws IOException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+
+		try
+		{
+			InputStream is = new SequenceInputStream(new ByteArrayInputStream(head), input.inputStream());
+			byte [] buf = new byte[chunkSize];
+			int len = 0;
+			boolean eof = false;
+
+			while (!eof)
+			{
+				int newLen = fill(is, buf, len);
+				eof = newLen < buf.length;
+				len = newLen;
+
+				/* Find the end of the last complete line */
+				int end = len;
+				if (!eof)
+				{
+					while (end > 0 && buf[end - 1] != '\n')
+						end--;
+
+					if (end == 0)
+					{
+						/* Not a single complete line, enlarge the buffer */
+						byte [] newBuf = new byte[buf.length * 2];
+						System.arraycopy(buf, 0, newBuf, 0, len);
+						buf = newBuf;
+						continue;
+					}
+				}
+
+				if (end == 0)
+					break;
+
+				final byte [] chunkBuf = buf;
+				final int chunkLen = end;
+				pending.add(executor.submit(new Callable<Chunk>()
+				{
+					@Override
+					public Chunk call()
+					{
+						return parseChunk(chunkBuf, chunkLen);
+					}
+				}));
+
+				/* Carry the incomplete line over to the next chunk */
+				byte [] newBuf = new byte[Math.max(chunkSize, 2 * (len - end))];
+				System.arraycopy(buf, end, newBuf, 0, len - end);
+				buf = newBuf;
+				len = len - end;
+
+				if (progress != null)
+					progress.update(InputProgress.scale(input.getPosition(), input.getSize()));
+
+				/* Limit the number of chunks held in memory */
+				while (pending.size() > 2 * numberOfThreads)
+					merge(get(pending.removeFirst()));
+			}
+
+			while (!pending.isEmpty())
+				merge(get(pending.removeFirst()));
+		} finally
+		{
+			for (Future<Chunk> f : pending)
+				f.cancel(true);
+			executor.shutdown();
+		}
+
+		lineParser = new GAFLineParser(names, null, null);
+		synchronized (lineParsers)
+		{
+			for (GAFLineParser lp : lineParsers)
+				lineParser.merge(lp);
+		}
+	}
+
+	/**
+	 * @return the line parser containing the statistics of all chunks.
+	 */
+	public GAFLineParser getLineParser()
+	{
+		return lineParser;
+	}
+
+	public ArrayList<Association> getAssociations()
+	{
+		return associations;
+	}
+
+	/**
+	 * @return the annotation context.
+	 */
+	public AnnotationContext getAnnotationContext()
+	{
+		return mapBuilder.build();
+	}
+}
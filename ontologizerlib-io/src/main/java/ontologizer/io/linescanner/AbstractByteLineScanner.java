@@ -2,11 +2,18 @@ package ontologizer.io.linescanner;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import ontologizer.io.IMappedParserInput;
+import ontologizer.io.IParserInput;
 
 /**
  * This is a simple class that can be used to read an input stream
  * in byte representation in a line-based manner.
  *
+ * If the input provides direct access to its contents (see IMappedParserInput),
+ * the lines are scanned directly from the buffers of the input instead.
+ *
  * @author Sebastian Bauer
  */
 public abstract class AbstractByteLineScanner
@@ -18,6 +25,12 @@ public abstract class AbstractByteLineScanner
 
 	byte [] byteBuf = new byte[2*BUF_SIZE];
 
+	/** The buffer to which available and availableStart refer */
+	private byte [] availableBuf = byteBuf;
+
+	/** The buffers to be scanned directly or null if the stream shall be scanned */
+	private ByteBuffer [] buffers;
+
 	private byte [] pushedBytes;
 	private int pushedCurrent = -1;
 
@@ -28,8 +41,28 @@ public abstract class AbstractByteLineScanner
 		this.is = is;
 	}
 
+	/**
+	 * Constructs a scanner for the given input. The buffers of the input are
+	 * scanned directly if possible, otherwise the input stream is scanned.
+	 *
+	 * @param input the input to be scanned
+	 */
+	public AbstractByteLineScanner(IParserInput input)
+	{
+		if (input instanceof IMappedParserInput)
+			buffers = ((IMappedParserInput)input).getBuffers();
+		if (buffers == null)
+			is = input.inputStream();
+	}
+
 	public void scan() throws IOException
 	{
+		if (buffers != null)
+		{
+			scanBuffers();
+			return;
+		}
+
 		int read;
 		int read_offset = 0;
 
@@ -66,6 +99,109 @@ public abstract class AbstractByteLineScanner
 		}
 	}
 
+	/**
+	 * Scans the pushed bytes followed by the buffers. The positions of the
+	 * buffers are advanced behind each line before the line is reported.
+	 * Lines are copied once into byteBuf (or a temporary array if they span
+	 * the pushed bytes or several buffers).
+	 */
+	private void scanBuffers()
+	{
+		/* A line that is not completed yet */
+		byte [] carry = null;
+		int carryLen = 0;
+
+		if (pushedBytes != null)
+		{
+			int lineStart = pushedCurrent;
+			for (int pos = pushedCurrent; pos < pushedBytes.length; pos++)
+			{
+				if (pushedBytes[pos] == '\n')
+				{
+					lineNum++;
+					pushedCurrent = pos + 1;
+					if (!newLine(pushedBytes, lineStart, pos - lineStart))
+					{
+						availableBuf = pushedBytes;
+						availableStart = pushedCurrent;
+						available = pushedBytes.length - pushedCurrent;
+						return;
+					}
+					lineStart = pos + 1;
+				}
+			}
+			carryLen = pushedBytes.length - lineStart;
+			carry = new byte[Math.max(carryLen, 256)];
+			System.arraycopy(pushedBytes, lineStart, carry, 0, carryLen);
+			pushedCurrent = pushedBytes.length;
+		}
+
+		for (ByteBuffer bb : buffers)
+		{
+			int lineStart = bb.position();
+			int limit = bb.limit();
+
+			for (int pos = lineStart; pos < limit; pos++)
+			{
+				if (bb.get(pos) == '\n')
+				{
+					int len = pos - lineStart;
+					byte [] line;
+
+					if (carryLen > 0)
+					{
+						carry = ensureCapacity(carry, carryLen + len);
+						bb.get(carry, carryLen, len);
+						line = carry;
+						len += carryLen;
+						carryLen = 0;
+					} else
+					{
+						byteBuf = ensureCapacity(byteBuf, len);
+						bb.get(byteBuf, 0, len);
+						line = byteBuf;
+					}
+					bb.position(pos + 1);
+
+					lineNum++;
+					if (!newLine(line, 0, len))
+						return;
+					lineStart = pos + 1;
+				}
+			}
+
+			/* Remember the incomplete line */
+			int len = limit - lineStart;
+			if (len > 0)
+			{
+				carry = ensureCapacity(carry, carryLen + len);
+				bb.get(carry, carryLen, len);
+				carryLen += len;
+			}
+		}
+
+		if (carryLen != 0)
+		{
+			lineNum++;
+			newLine(carry, 0, carryLen);
+		}
+	}
+
+	/**
+	 * Returns an array of at least the given capacity, which has the contents
+	 * of the given array if it needs to be reallocated.
+	 */
+	private static byte [] ensureCapacity(byte [] buf, int capacity)
+	{
+		if (buf != null && buf.length >= capacity)
+			return buf;
+
+		byte [] newBuf = new byte[Math.max(capacity, buf != null ? buf.length * 2 : 256)];
+		if (buf != null)
+			System.arraycopy(buf, 0, newBuf, 0, buf.length);
+		return newBuf;
+	}
+
 	/**
 	 * @return the current line number
 	 */
@@ -97,7 +233,9 @@ public abstract class AbstractByteLineScanner
 
 	/**
 	 * Returns the number of bytes that are still available in the buffer after
-	 * the reading has been aborted.
+	 * the reading has been aborted. When the buffers of the input are scanned
+	 * directly, the bytes that were not consumed remain in these buffers
+	 * instead.
 	 *
 	 * @return number of bytes still available
 	 */
@@ -113,7 +251,7 @@ public abstract class AbstractByteLineScanner
 	 */
 	public byte [] availableBuffer() {
 		byte [] b = new byte[available];
-		System.arraycopy(byteBuf, availableStart, b, 0, available);
+		System.arraycopy(availableBuf, availableStart, b, 0, available);
 		return b;
 	}
 
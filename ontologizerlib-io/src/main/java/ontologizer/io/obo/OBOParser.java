@@ -25,7 +25,6 @@ import static ontologizer.io.obo.OBOKeywords.TYPEDEF_KEYWORD;
 import static ontologizer.io.obo.OBOKeywords.XREF_KEYWORD;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -35,6 +34,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import ontologizer.io.IParserInput;
+import ontologizer.io.InputProgress;
 import ontologizer.io.linescanner.AbstractByteLineScanner;
 import ontologizer.ontology.Namespace;
 import ontologizer.ontology.ParentTermID;
@@ -44,10 +44,10 @@ import ontologizer.ontology.RelationTypePool;
 import ontologizer.ontology.Subset;
 import ontologizer.ontology.Term;
 import ontologizer.ontology.TermID;
+import ontologizer.ontology.TermIDInterner;
 import ontologizer.ontology.RelationMeaning;
 import ontologizer.ontology.TermXref;
 import ontologizer.types.ByteString;
-import sonumina.collections.ReferencePool;
 
 /*
  * I gratefully acknowledge the help of John Richter Day, who provided the
@@ -172,7 +172,7 @@ public class OBOParser
 	private boolean [] referencedRelations = new boolean[knownRelations.length];
 
 	/** Pool for term ids */
-	private ReferencePool<TermID> termIDPool = new ReferencePool<TermID>();
+	private TermIDInterner termIDPool = new TermIDInterner();
 
 	/** All parsed namespaces */
 	private HashMap<ByteString,Namespace> namespaces = new HashMap<ByteString,Namespace>();
@@ -346,7 +346,7 @@ public class OBOParser
 		long startMillis = System.currentTimeMillis();
 
 		if (progress != null)
-			progress.init(input.getSize());
+			progress.init(InputProgress.scale(input.getSize(), input.getSize()));
 
 		class OBOByteLineScanner extends AbstractByteLineScanner
 		{
@@ -363,9 +363,9 @@ public class OBOParser
 
 			public OBOParserException exception;
 
-			public OBOByteLineScanner(InputStream is)
+			public OBOByteLineScanner(IParserInput input)
 			{
-				super(is);
+				super(input);
 			}
 
 			/**
@@ -378,9 +378,9 @@ public class OBOParser
 					long newMillis = System.currentTimeMillis();
 					if (newMillis - millis > 250)
 					{
-						int pos = input.getPosition();
+						long pos = input.getPosition();
 						if (pos >= 0)
-							progress.update(pos, currentTerm);
+							progress.update(InputProgress.scale(pos, input.getSize()), currentTerm);
 
 						millis = newMillis;
 					}
@@ -582,7 +582,7 @@ public class OBOParser
 			 */
 			private TermID readTermID(byte[] buf, int valueStart, int valueLen)
 			{
-				return termIDPool.map(new TermID(buf,valueStart,valueLen,prefixPool));
+				return termIDPool.intern(new TermID(buf,valueStart,valueLen,prefixPool));
 			}
 
 			/**
@@ -897,11 +897,11 @@ public class OBOParser
 			}
 		}
 
-		OBOByteLineScanner obls = new OBOByteLineScanner(input.inputStream());
+		OBOByteLineScanner obls = new OBOByteLineScanner(input);
 		obls.scan();
 		enterNewTerm(); /* Get very last stanza after loop! */
 		if (progress != null)
-			progress.update(input.getSize(),obls.currentTerm);
+			progress.update(InputProgress.scale(input.getSize(), input.getSize()),obls.currentTerm);
 
 		if (obls.exception != null)
 			throw obls.exception;
@@ -0,0 +1,111 @@
+package ontologizer.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ontologizer.io.linescanner.AbstractByteLineScanner;
+
+public class MappedParserFileInputTest
+{
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private File createFile(String contents) throws IOException
+	{
+		File outFile = tmpFolder.newFile();
+		OutputStream out = new FileOutputStream(outFile);
+		out.write(contents.getBytes("ASCII"));
+		out.close();
+		return outFile;
+	}
+
+	private static List<String> scan(IParserInput input, final int abortAfter, String push) throws IOException
+	{
+		final List<String> lines = new ArrayList<String>();
+		AbstractByteLineScanner abls = new AbstractByteLineScanner(input)
+		{
+			@Override
+			public boolean newLine(byte[] buf, int start, int len)
+			{
+				lines.add(new String(buf, start, len));
+				return lines.size() != abortAfter;
+			}
+		};
+		if (push != null)
+			abls.push(push.getBytes());
+		abls.scan();
+		return lines;
+	}
+
+	@Test
+	public void testUncompressed() throws IOException
+	{
+		File outFile = tmpFolder.newFile();
+		PrintWriter out = new PrintWriter(new FileWriter(outFile));
+		out.println("line1");
+		out.println("line2");
+		out.close();
+
+		MappedParserFileInput input = new MappedParserFileInput(outFile.getAbsolutePath());
+		assertNotNull(input.getBuffers());
+		assertEquals(outFile.length(), input.getSize());
+		BufferedReader in = new BufferedReader(new InputStreamReader(input.inputStream()));
+		assertEquals("line1", in.readLine());
+		assertEquals("line2", in.readLine());
+		assertEquals(input.getSize(), input.getPosition());
+		input.close();
+	}
+
+	@Test
+	public void testScanLines() throws IOException
+	{
+		String contents = "a\n\nbc\ndef";
+		List<String> expected = scan(new ParserFileInput(createFile(contents).getAbsolutePath()), -1, "x\ny");
+		List<String> lines = scan(new MappedParserFileInput(createFile(contents).getAbsolutePath()), -1, "x\ny");
+		assertArrayEquals(new String[]{"x", "ya", "", "bc", "def"}, lines.toArray());
+		assertEquals(expected, lines);
+	}
+
+	@Test
+	public void testAbortedScan() throws IOException
+	{
+		MappedParserFileInput input = new MappedParserFileInput(createFile("l1\nl2\nl3\n").getAbsolutePath());
+		assertEquals(2, scan(input, 2, null).size());
+
+		/* The remaining contents can be read from the input */
+		assertEquals(6, input.getPosition());
+		assertEquals("l3", new BufferedReader(new InputStreamReader(input.inputStream())).readLine());
+	}
+
+	@Test
+	public void testCompressed() throws IOException
+	{
+		File outFile = tmpFolder.newFile();
+		PrintWriter out = new PrintWriter(new GZIPOutputStream(new FileOutputStream(outFile)));
+		out.println("line1");
+		out.println("line2");
+		out.close();
+
+		MappedParserFileInput input = new MappedParserFileInput(outFile.getAbsolutePath());
+		assertNull(input.getBuffers());
+		assertEquals(2, scan(input, -1, null).size());
+	}
+}
@@ -2,13 +2,20 @@ package ontologizer.io.annotation;
 
 import static ontologizer.types.ByteString.EMPTY;
 import static ontologizer.types.ByteString.b;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 
@@ -19,9 +26,13 @@ import org.junit.rules.TemporaryFolder;
 
 import ontologizer.TestBase;
 import ontologizer.TestSourceUtils;
+import ontologizer.association.AnnotationContext;
 import ontologizer.association.Association;
 import ontologizer.association.AssociationContainer;
 import ontologizer.association.AssociationResolver;
+import ontologizer.association.AssociationSnapshot;
+import ontologizer.association.ItemAssociations;
+import ontologizer.io.MappedParserFileInput;
 import ontologizer.io.ParserFileInput;
 import ontologizer.io.obo.OBOParser;
 import ontologizer.io.obo.OBOParserException;
@@ -29,6 +40,7 @@ import ontologizer.ontology.TermContainer;
 import ontologizer.ontology.TermID;
 import ontologizer.ontology.TermPropertyMap;
 import ontologizer.types.ByteString;
+import ontologizer.types.ByteStringArena;
 
 public class AssociationParserTest extends TestBase
 {
@@ -75,6 +87,136 @@ public class AssociationParserTest extends TestBase
 		}
 	}
 
+	@Test
+	public void testParallel() throws IOException, OBOParserException
+	{
+		TermContainer tc = createTermContainer();
+
+		WarningCapture serialWarnings = new WarningCapture();
+		AssociationParser serial = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc, null, null, serialWarnings, false, 1);
+
+		WarningCapture parallelWarnings = new WarningCapture();
+		AssociationParser parallel = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc, null, null, parallelWarnings, false, 4);
+
+		assertEquals(AssociationParser.Type.GAF, parallel.getFileType());
+		assertEquals(serial.getAssociations().size(), parallel.getAssociations().size());
+		for (int i = 0; i < serial.getAssociations().size(); i++)
+		{
+			Association s = serial.getAssociations().get(i);
+			Association p = parallel.getAssociations().get(i);
+			assertEquals(s.getDB_Object(), p.getDB_Object());
+			assertEquals(s.getObjectSymbol(), p.getObjectSymbol());
+			/* Both parsers use the term ids of the term map */
+			assertSame(s.getTermID(), p.getTermID());
+			assertEquals(s.getEvidence(), p.getEvidence());
+			assertArrayEquals(s.getSynonyms(), p.getSynonyms());
+		}
+
+		assertArrayEquals(serial.getAnnotationMapping().getSymbols(), parallel.getAnnotationMapping().getSymbols());
+		assertEquals(serial.getAnnotationMapping().getSynonym2Symbol(), parallel.getAnnotationMapping().getSynonym2Symbol());
+		assertEquals(serial.getAnnotationMapping().getDbObjectID2Symbol(), parallel.getAnnotationMapping().getDbObjectID2Symbol());
+		assertEquals(serialWarnings.warnings, parallelWarnings.warnings);
+	}
+
+	@Test
+	public void testSharedStrings() throws IOException, OBOParserException
+	{
+		TermContainer tc = createTermContainer();
+		ByteStringArena strings = new ByteStringArena();
+
+		AssociationParser parallel = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc, null, null, null, true, 4);
+		parallel.setStrings(strings);
+		parallel.parse();
+		AssociationParser serial = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc, null, null, null, true, 1);
+		serial.setStrings(strings);
+		serial.parse();
+		assertSame(strings, parallel.getStrings());
+
+		/* Equal strings are the same instances, also across threads and parsers */
+		HashMap<ByteString,ByteString> instances = new HashMap<ByteString,ByteString>();
+		for (int i = 0; i < serial.getAssociations().size(); i++)
+		{
+			Association s = serial.getAssociations().get(i);
+			Association p = parallel.getAssociations().get(i);
+			assertSame(s.getObjectSymbol(), p.getObjectSymbol());
+			assertSame(s.getDB_Object(), p.getDB_Object());
+			assertSame(s.getEvidence(), p.getEvidence());
+			for (ByteString str : new ByteString[]{p.getObjectSymbol(), p.getDB_Object(), p.getEvidence(), p.getAspect()})
+			{
+				ByteString instance = instances.get(str);
+				if (instance == null)
+					instances.put(str, str);
+				else
+					assertSame(instance, str);
+			}
+		}
+		assertTrue(strings.size() < 3 * serial.getAssociations().size());
+
+		/* Byte ranges are looked up in the same arena */
+		AnnotationContext context = parallel.getAnnotationMapping();
+		int arenaSize = strings.size();
+		for (ByteString symbol : context.getSymbols())
+		{
+			byte [] bytes = ("\t" + symbol + "\t").getBytes();
+			assertEquals(context.mapSymbol(symbol), context.mapSymbol(bytes, 1, bytes.length - 2));
+		}
+		for (ByteString objectId : context.getDbObjectID2Symbol().keySet())
+		{
+			byte [] bytes = objectId.toString().getBytes();
+			assertEquals(context.mapObjectID(objectId), context.mapObjectID(bytes, 0, bytes.length));
+		}
+		for (ByteString synonym : context.getSynonym2Symbol().keySet())
+		{
+			byte [] bytes = synonym.toString().getBytes();
+			assertEquals(context.mapSynonym(synonym), context.mapSynonym(bytes, 0, bytes.length));
+		}
+		assertEquals(arenaSize, strings.size());
+	}
+
+	@Test
+	public void testMappedInput() throws IOException, OBOParserException
+	{
+		/* Only uncompressed files are scanned directly */
+		File oboFile = decompress(OBO_FILE);
+		File assocFile = decompress(ASSOCIATION_FILE);
+
+		OBOParser oboParser = new OBOParser(new MappedParserFileInput(oboFile.getAbsolutePath()));
+		oboParser.doParse();
+		TermContainer tc = new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY);
+		assertEquals(createTermContainer().termCount(), tc.termCount());
+
+		AssociationParser serial = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc);
+		AssociationParser mapped = new AssociationParser(new MappedParserFileInput(assocFile.getAbsolutePath()), tc);
+		assertEquals(87599, mapped.getAssociations().size());
+		for (int i = 0; i < serial.getAssociations().size(); i++)
+		{
+			assertEquals(serial.getAssociations().get(i).getDB_Object(), mapped.getAssociations().get(i).getDB_Object());
+			assertEquals(serial.getAssociations().get(i).getTermID(), mapped.getAssociations().get(i).getTermID());
+		}
+		assertArrayEquals(serial.getAnnotationMapping().getSymbols(), mapped.getAnnotationMapping().getSymbols());
+	}
+
+	/**
+	 * Decompress the given gzip file into a temporary file.
+	 *
+	 * @param gzFile the file to decompress
+	 * @return the decompressed file
+	 * @throws IOException
+	 */
+	private File decompress(String gzFile) throws IOException
+	{
+		File outFile = tmpFolder.newFile();
+		GZIPInputStream in = new GZIPInputStream(new FileInputStream(gzFile));
+		FileOutputStream out = new FileOutputStream(outFile);
+		byte [] buf = new byte[65536];
+		int read;
+		while ((read = in.read(buf)) > 0)
+			out.write(buf, 0, read);
+		out.close();
+		in.close();
+		return outFile;
+	}
+
 	@Test
 	public void testWithoutTermMap() throws IOException
 	{
@@ -359,4 +501,68 @@ public class AssociationParserTest extends TestBase
 		assertEquals(21,ap.getAssociations().size());
 	}
 
+
+	@Test
+	public void testSnapshot() throws IOException, OBOParserException
+	{
+		OBOParser oboParser = new OBOParser(new ParserFileInput(OBO_FILE));
+		oboParser.doParse();
+		TermContainer tc = new TermContainer(oboParser.getTermMap(), EMPTY, EMPTY);
+		AssociationParser ap = new AssociationParser(new ParserFileInput(ASSOCIATION_FILE), tc);
+		AssociationContainer ac = new AssociationContainer(ap.getAssociations(), ap.getAnnotationMapping());
+
+		File file = tmpFolder.newFile("sgd.snapshot");
+		AssociationSnapshot.write(ac, file);
+		long start = System.nanoTime();
+		AssociationContainer restored = AssociationSnapshot.read(file, tc);
+		System.out.println("Reading association snapshot took " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		assertArrayEquals(ac.getMapping().getSymbols(), restored.getMapping().getSymbols());
+		assertEquals(ac.getMapping().getSynonym2Symbol(), restored.getMapping().getSynonym2Symbol());
+		assertEquals(ac.getMapping().getDbObjectID2Symbol(), restored.getMapping().getDbObjectID2Symbol());
+		assertEquals(ac.getAllEvidenceCodes(), restored.getAllEvidenceCodes());
+
+		Iterator<ItemAssociations> iter = restored.iterator();
+		int numAssociations = 0;
+		int numRestoredAssociations = 0;
+		for (ItemAssociations expected : ac)
+		{
+			ItemAssociations actual = iter.next();
+			assertEquals(expected.name(), actual.name());
+			assertEquals(expected.getAssociations(), actual.getAssociations());
+
+			Iterator<Association> actualAssocs = actual.iterator();
+			for (Association e : expected)
+			{
+				Association a = actualAssocs.next();
+				assertEquals(e.getDB_Object(), a.getDB_Object());
+				assertEquals(e.getObjectSymbol(), a.getObjectSymbol());
+				assertEquals(e.getEvidence(), a.getEvidence());
+				assertEquals(e.getAspect(), a.getAspect());
+				assertEquals(e.hasNotQualifier(), a.hasNotQualifier());
+				assertArrayEquals(e.getSynonyms(), a.getSynonyms());
+				numAssociations++;
+			}
+			numRestoredAssociations += actual.getAssociations().size();
+		}
+		assertEquals(numAssociations, numRestoredAssociations);
+
+		/* Term ids are shared with the term map */
+		Association a = restored.get(b("SRL1")).iterator().next();
+		assertTrue(tc.get(a.getTermID()).getID() == a.getTermID());
+
+		/* Lookups through synonyms and object ids work as before */
+		for (ByteString synonym : ac.getMapping().getSynonym2Symbol().keySet())
+			assertEquals(ac.get(synonym).name(), restored.get(synonym).name());
+	}
+
+	@Test(expected=IOException.class)
+	public void testSnapshotTruncated() throws IOException
+	{
+		AssociationContainer ac = new AssociationContainer(new ArrayList<Association>(), new AnnotationContext(new ArrayList<ByteString>(), null, null));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AssociationSnapshot.write(ac, out);
+		byte [] bytes = out.toByteArray();
+		AssociationSnapshot.read(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+	}
 }
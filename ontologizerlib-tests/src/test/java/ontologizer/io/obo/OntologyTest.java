@@ -5,25 +5,39 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import ontologizer.io.ParserFileInput;
 import ontologizer.ontology.Namespace;
 import ontologizer.ontology.Ontology;
 import ontologizer.ontology.Ontology.ITermIDVisitor;
 import ontologizer.ontology.Ontology.TermLevels;
+import ontologizer.ontology.OntologySnapshot;
+import ontologizer.ontology.ParentTermID;
+import ontologizer.ontology.RelationType;
 import ontologizer.ontology.Subset;
 import ontologizer.ontology.Term;
 import ontologizer.ontology.TermContainer;
 import ontologizer.ontology.TermID;
 import ontologizer.types.ByteString;
+import sonumina.math.graph.DirectedGraph;
+import sonumina.math.graph.Edge;
 
 public class OntologyTest
 {
@@ -31,6 +45,9 @@ public class OntologyTest
 
 	private Ontology graph;
 
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
 	@Before
 	public void setUp() throws Exception
 	{
@@ -332,4 +349,112 @@ public class OntologyTest
 		Term t = o.getTermIncludingAlternatives("GO:1000011");
 		assertEquals("GO:0000011", t.getID().toString());
 	}
+
+	private static List<Object> neighbours(Iterator<Edge<TermID,RelationType>> iter, boolean source)
+	{
+		List<Object> list = new ArrayList<Object>();
+		while (iter.hasNext())
+		{
+			Edge<TermID,RelationType> e = iter.next();
+			list.add(source ? e.getSource() : e.getDest());
+			list.add(e.getData().name());
+		}
+		return list;
+	}
+
+	private static void assertSameOntology(Ontology expected, Ontology actual)
+	{
+		assertEquals(expected.getNumberOfTerms(), actual.getNumberOfTerms());
+		Iterator<Term> actualIter = actual.iterator();
+		for (Term e : expected)
+		{
+			Term a = actualIter.next();
+			assertEquals(e.getID(), a.getID());
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getDefinition(), a.getDefinition());
+			assertEquals(e.getNamespace().getName(), a.getNamespace().getName());
+			assertEquals(e.isObsolete(), a.isObsolete());
+			assertEquals(e.getParents().length, a.getParents().length);
+			for (int i = 0; i < e.getParents().length; i++)
+			{
+				ParentTermID ep = e.getParents()[i];
+				ParentTermID ap = a.getParents()[i];
+				assertEquals(ep.getRelated(), ap.getRelated());
+				assertEquals(ep.getRelation().name(), ap.getRelation().name());
+				assertEquals(ep.getRelation().meaning(), ap.getRelation().meaning());
+			}
+			Assert.assertArrayEquals(e.getAlternatives(), a.getAlternatives());
+			Assert.assertArrayEquals(e.getEquivalents(), a.getEquivalents());
+			Assert.assertArrayEquals(e.getSynonyms(), a.getSynonyms());
+			Assert.assertArrayEquals(e.getSubsets(), a.getSubsets());
+			Assert.assertArrayEquals(e.getXrefs(), a.getXrefs());
+		}
+
+		DirectedGraph<TermID,RelationType> eg = expected.getGraph();
+		DirectedGraph<TermID,RelationType> ag = actual.getGraph();
+		List<TermID> expectedVertices = new ArrayList<TermID>();
+		for (TermID v : eg)
+			expectedVertices.add(v);
+		List<TermID> actualVertices = new ArrayList<TermID>();
+		for (TermID v : ag)
+			actualVertices.add(v);
+		assertEquals(expectedVertices, actualVertices);
+		assertEquals(eg.getNumberEdges(), ag.getNumberEdges());
+		for (TermID v : eg)
+		{
+			assertEquals(neighbours(eg.getOutEdges(v), false), neighbours(ag.getOutEdges(v), false));
+			assertEquals(neighbours(eg.getInEdges(v), true), neighbours(ag.getInEdges(v), true));
+		}
+
+		assertEquals(expected.getRootTerm().getID(), actual.getRootTerm().getID());
+		assertEquals(expected.getRootTerm().getName(), actual.getRootTerm().getName());
+		assertEquals(expected.isArtificialRootTerm(expected.getRootTerm().getID()), actual.isArtificialRootTerm(actual.getRootTerm().getID()));
+		assertEquals(termIDs(expected.getLevel1Terms()), termIDs(actual.getLevel1Terms()));
+		assertEquals(new ArrayList<Subset>(expected.getAvailableSubsets()), new ArrayList<Subset>(actual.getAvailableSubsets()));
+		assertEquals(expected.getRelevantSubset(), actual.getRelevantSubset());
+		assertEquals(expected.getRelevantSubontology(), actual.getRelevantSubontology());
+	}
+
+	private static List<TermID> termIDs(Collection<Term> terms)
+	{
+		List<TermID> tids = new ArrayList<TermID>();
+		for (Term t : terms)
+			tids.add(t.getID());
+		return tids;
+	}
+
+	@Test
+	public void testSnapshot() throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OntologySnapshot.write(graph, out);
+		Ontology restored = OntologySnapshot.read(ByteBuffer.wrap(out.toByteArray()));
+		assertSameOntology(graph, restored);
+
+		/* Restored ontology must behave like the original one */
+		assertEquals(graph.getTermChildren(tid("GO:0000000")), restored.getTermChildren(tid("GO:0000000")));
+		assertTrue(restored.existsPath(new TermID("GO:0008150"), new TermID("GO:0006281")));
+		assertFalse(restored.existsPath(new TermID("GO:0006281"), new TermID("GO:0008150")));
+
+		/* And through a mapped file */
+		File file = tmpFolder.newFile("go.snapshot");
+		OntologySnapshot.write(graph, file);
+		long start = System.nanoTime();
+		restored = OntologySnapshot.read(file);
+		System.out.println("Reading ontology snapshot took " + (System.nanoTime() - start) / 1000000 + " ms");
+		assertSameOntology(graph, restored);
+
+		/* Relevant subontology and subset survive as well */
+		Ontology internal = new InternalOntology().graph;
+		internal.setRelevantSubontology("C2");
+		out.reset();
+		OntologySnapshot.write(internal, out);
+		assertSameOntology(internal, OntologySnapshot.read(ByteBuffer.wrap(out.toByteArray())));
+	}
+
+	@Test(expected=IOException.class)
+	public void testSnapshotBadMagic() throws IOException
+	{
+		OntologySnapshot.read(ByteBuffer.wrap(new byte[]{1,2,3,4,0,0,0,1}));
+	}
 }